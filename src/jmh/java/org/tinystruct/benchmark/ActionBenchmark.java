@@ -0,0 +1,50 @@
+package org.tinystruct.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tinystruct.ApplicationException;
+import org.tinystruct.application.Action;
+import org.tinystruct.application.ActionRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invocation of a resolved action: argument conversion and the method handle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActionBenchmark {
+    private Action hello;
+    private Action show;
+
+    @Setup
+    public void setUp() {
+        BenchmarkApplication app = Fixtures.application();
+        Fixtures.registerRoutes(app);
+        ActionRegistry registry = ActionRegistry.getInstance();
+        this.hello = registry.getAction("bench/hello/James");
+        this.show = registry.getAction(Fixtures.route(42) + "/1024");
+    }
+
+    @Benchmark
+    public Object executeString() throws ApplicationException {
+        return this.hello.execute();
+    }
+
+    @Benchmark
+    public Object executeInt() throws ApplicationException {
+        return this.show.execute();
+    }
+}
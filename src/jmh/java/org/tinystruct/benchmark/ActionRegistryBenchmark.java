@@ -0,0 +1,56 @@
+package org.tinystruct.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tinystruct.application.Action;
+import org.tinystruct.application.ActionRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route lookup among {@link Fixtures#ROUTES} routes with a placeholder, as
+ * every request and command goes through it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActionRegistryBenchmark {
+    private ActionRegistry registry;
+    private String[] paths;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        BenchmarkApplication app = Fixtures.application();
+        Fixtures.registerRoutes(app);
+        this.registry = ActionRegistry.getInstance();
+        this.paths = Fixtures.paths(1024);
+    }
+
+    @Benchmark
+    public Action get() {
+        String path = this.paths[this.next++ & 1023];
+        return this.registry.getAction(path);
+    }
+
+    @Benchmark
+    public Action getAnnotated() {
+        return this.registry.getAction("bench/hello/James");
+    }
+
+    @Benchmark
+    public Action getMissing() {
+        return this.registry.getAction("module7/missing/42");
+    }
+}
@@ -0,0 +1,34 @@
+package org.tinystruct.benchmark;
+
+import org.tinystruct.AbstractApplication;
+import org.tinystruct.system.annotation.Action;
+import org.tinystruct.system.annotation.Argument;
+
+/**
+ * The application the benchmarks route to and render with.
+ */
+public class BenchmarkApplication extends AbstractApplication {
+
+    @Override
+    public void init() {
+        this.setTemplateRequired(false);
+    }
+
+    @Action(value = "bench/hello", arguments = {
+            @Argument(key = "name", description = "Name")})
+    public String hello(String name) {
+        return "Hello, " + name;
+    }
+
+    /**
+     * Target of the generated routes, see {@link Fixtures#registerRoutes(BenchmarkApplication)}.
+     */
+    public String show(int id) {
+        return "resource " + id;
+    }
+
+    @Override
+    public String version() {
+        return "benchmark";
+    }
+}
@@ -0,0 +1,87 @@
+package org.tinystruct.benchmark;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.tinystruct.AbstractApplication;
+import org.tinystruct.ApplicationException;
+import org.tinystruct.system.ApplicationManager;
+import org.tinystruct.system.annotation.Action;
+import org.tinystruct.system.annotation.Argument;
+
+import java.io.File;
+import java.util.Collection;
+
+/**
+ * Runs the JMH benchmarks of the framework from the dispatcher, once built
+ * with the <code>benchmarks</code> profile:
+ *
+ * <pre>
+ * ./mvnw -Pbenchmarks compile
+ * bin/dispatcher benchmark --import org.tinystruct.benchmark.Benchmarks --include Builder
+ * </pre>
+ * <p>
+ * Results are written as JSON, by default to
+ * <code>target/tinystruct-{version}-benchmarks.json</code>, to compare
+ * releases with any JMH result viewer.
+ * </p>
+ */
+public class Benchmarks extends AbstractApplication {
+
+    @Override
+    public void init() {
+        this.setTemplateRequired(false);
+    }
+
+    @Action(value = "benchmark", description = "Run the JMH benchmarks of the framework", options = {
+            @Argument(key = "include", description = "Regular expression of the benchmarks to run, all by default"),
+            @Argument(key = "forks", description = "Number of forks, 1 by default"),
+            @Argument(key = "warmup", description = "Number of warmup iterations, as each benchmark sets by default"),
+            @Argument(key = "iterations", description = "Number of measurement iterations, as each benchmark sets by default"),
+            @Argument(key = "output", description = "JSON result file")
+    }, mode = Action.Mode.CLI)
+    public String benchmark() throws ApplicationException {
+        String include = this.option("--include", "");
+        String output = this.option("--output", "target/tinystruct-" + ApplicationManager.VERSION + "-benchmarks.json");
+
+        File parent = new File(output).getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new ApplicationException("Could not create " + parent);
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(Benchmarks.class.getPackage().getName() + ".*" + include)
+                .forks(Integer.parseInt(this.option("--forks", "1")))
+                .resultFormat(ResultFormatType.JSON)
+                .result(output);
+        String warmup = this.option("--warmup", null);
+        if (warmup != null) {
+            options.warmupIterations(Integer.parseInt(warmup));
+        }
+        String iterations = this.option("--iterations", null);
+        if (iterations != null) {
+            options.measurementIterations(Integer.parseInt(iterations));
+        }
+
+        Collection<RunResult> results;
+        try {
+            results = new Runner(options.build()).run();
+        } catch (RunnerException | NumberFormatException e) {
+            throw new ApplicationException(e.getMessage(), e);
+        }
+        return results.size() + " benchmark(s) run, results written to " + output;
+    }
+
+    private String option(String key, String defaultValue) {
+        Object value = this.getContext() != null ? this.getContext().getAttribute(key) : null;
+        return value != null ? value.toString() : defaultValue;
+    }
+
+    @Override
+    public String version() {
+        return ApplicationManager.VERSION;
+    }
+}
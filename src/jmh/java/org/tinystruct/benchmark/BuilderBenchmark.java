@@ -0,0 +1,53 @@
+package org.tinystruct.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tinystruct.ApplicationException;
+import org.tinystruct.data.component.Builder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON parsing and serialization of order documents.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuilderBenchmark {
+    @Param({"10", "200"})
+    public int orders;
+
+    private String json;
+    private Builder builder;
+
+    @Setup
+    public void setUp() throws ApplicationException {
+        this.json = Fixtures.orders(this.orders);
+        this.builder = new Builder();
+        this.builder.parse(this.json);
+    }
+
+    @Benchmark
+    public Builder parse() throws ApplicationException {
+        Builder builder = new Builder();
+        builder.parse(this.json);
+        return builder;
+    }
+
+    @Benchmark
+    public String serialize() {
+        return this.builder.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package org.tinystruct.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tinystruct.ApplicationException;
+import org.tinystruct.data.DatabaseOperator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Prepared queries and updates through {@link DatabaseOperator}, on an H2
+ * database in memory and on a SQLite file, with 10,000 orders.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatabaseOperatorBenchmark {
+    private static final int ROWS = 10000;
+
+    @Param({"h2", "sqlite"})
+    public String database;
+
+    private Path file;
+    private DatabaseOperator operator;
+    private final Random random = new Random(42);
+
+    @Setup
+    public void setUp() throws IOException, SQLException, ApplicationException {
+        // Queries are logged at INFO; the console would drown in them
+        Logger.getLogger(DatabaseOperator.class.getName()).setLevel(Level.WARNING);
+
+        Connection connection;
+        if ("h2".equals(this.database)) {
+            connection = DriverManager.getConnection("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+        } else {
+            this.file = Files.createTempFile("benchmark", ".db");
+            connection = DriverManager.getConnection("jdbc:sqlite:" + this.file);
+        }
+        this.operator = new DatabaseOperator(connection);
+        this.operator.execute("DROP TABLE IF EXISTS orders");
+        this.operator.execute("CREATE TABLE orders (id INTEGER PRIMARY KEY, customer VARCHAR(64), total DECIMAL(10,2), status VARCHAR(16))");
+
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO orders (id, customer, total, status) VALUES (?, ?, ?, ?)")) {
+            for (int i = 1; i <= ROWS; i++) {
+                insert.setInt(1, i);
+                insert.setString(2, Fixtures.customer(this.random));
+                insert.setDouble(3, this.random.nextInt(100000) / 100.0);
+                insert.setString(4, Fixtures.status(this.random));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.operator.close();
+        if (this.file != null) {
+            Files.deleteIfExists(this.file);
+        }
+    }
+
+    @Benchmark
+    public String selectById() throws ApplicationException, SQLException {
+        PreparedStatement statement = this.operator.preparedStatement("SELECT id, customer, total, status FROM orders WHERE id = ?",
+                new Object[]{1 + this.random.nextInt(ROWS)});
+        try (statement; ResultSet resultSet = this.operator.executeQuery(statement)) {
+            return resultSet.next() ? resultSet.getString("customer") : null;
+        }
+    }
+
+    @Benchmark
+    public int updateStatus() throws ApplicationException {
+        PreparedStatement statement = this.operator.preparedStatement("UPDATE orders SET status = ? WHERE id = ?",
+                new Object[]{Fixtures.status(this.random), 1 + this.random.nextInt(ROWS)});
+        return this.operator.executeUpdate(statement);
+    }
+}
@@ -0,0 +1,49 @@
+package org.tinystruct.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tinystruct.ApplicationException;
+import org.tinystruct.system.template.DefaultTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering a page of 40 sections with {@link Fixtures#SHARED_VARIABLES}
+ * shared variables and {@link Fixtures#ROUTES} routes, with and without a
+ * script to evaluate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefaultTemplateBenchmark {
+    @Param({"false", "true"})
+    public boolean javascript;
+
+    private BenchmarkApplication app;
+    private String view;
+
+    @Setup
+    public void setUp() {
+        this.app = Fixtures.application();
+        Fixtures.registerRoutes(this.app);
+        Fixtures.sharedVariables(this.app.getLocale().toString());
+        this.view = Fixtures.page(40, this.javascript);
+    }
+
+    @Benchmark
+    public String parse() throws ApplicationException {
+        return new DefaultTemplate(this.app, this.view).parse();
+    }
+}
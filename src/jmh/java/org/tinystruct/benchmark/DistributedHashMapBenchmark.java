@@ -0,0 +1,72 @@
+package org.tinystruct.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tinystruct.valve.DistributedHashMap;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filling a {@link DistributedHashMap} with 500 queues of messages. Every put
+ * is written through to the data file, so the map is emptied before each
+ * fill and the score is the average put into a map of up to 500 entries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class DistributedHashMapBenchmark {
+    private static final int ENTRIES = 500;
+
+    private DistributedHashMap<String> map;
+    private String[] keys;
+    private Queue<String> messages;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.map = new DistributedHashMap<>();
+        this.keys = new String[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            this.keys[i] = "session-" + i;
+        }
+        this.messages = new ArrayDeque<>();
+        for (int i = 0; i < 8; i++) {
+            this.messages.add("{\"type\":\"message\",\"sequence\":" + i + ",\"text\":\"Hello from the other node\"}");
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        this.map.clear();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        this.map.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public int put() {
+        for (String key : this.keys) {
+            this.map.put(key, this.messages);
+        }
+        return this.map.size();
+    }
+}
@@ -0,0 +1,137 @@
+package org.tinystruct.benchmark;
+
+import org.tinystruct.application.ActionRegistry;
+import org.tinystruct.application.SharedVariables;
+import org.tinystruct.system.Settings;
+import org.tinystruct.system.template.variable.StringVariable;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Data shaped like what applications carry: routes spread over modules, order
+ * documents, pages of a few dozen sections. Everything is generated from a
+ * fixed seed, so two runs measure the same work.
+ */
+final class Fixtures {
+    static final int ROUTES = 300;
+    static final int MODULES = 20;
+    static final int SHARED_VARIABLES = 500;
+
+    private static final String[] CUSTOMERS = {"James", "Mover", "Alice", "Bob", "Chen", "Dana", "Émile", "Zhou"};
+    private static final String[] STATUSES = {"NEW", "PAID", "SHIPPED", "DELIVERED", "CANCELLED"};
+    private static final String[] PRODUCTS = {"keyboard", "monitor", "mouse", "dock", "cable", "headset"};
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return an application set up as the dispatcher sets one up
+     */
+    static BenchmarkApplication application() {
+        BenchmarkApplication app = new BenchmarkApplication();
+        app.setConfiguration(new Settings());
+        return app;
+    }
+
+    /**
+     * Register {@link #ROUTES} routes of the form
+     * <code>module{m}/resource{i}</code>, taking the id after the path.
+     */
+    static void registerRoutes(BenchmarkApplication app) {
+        ActionRegistry registry = ActionRegistry.getInstance();
+        for (int i = 0; i < ROUTES; i++) {
+            registry.set(app, route(i), "show");
+        }
+    }
+
+    static String route(int i) {
+        return "module" + (i % MODULES) + "/resource" + i;
+    }
+
+    /**
+     * @param count number of paths
+     * @return paths of registered routes, in a random order
+     */
+    static String[] paths(int count) {
+        Random random = new Random(42);
+        String[] paths = new String[count];
+        for (int i = 0; i < count; i++) {
+            paths[i] = route(random.nextInt(ROUTES)) + "/" + random.nextInt(100000);
+        }
+        return paths;
+    }
+
+    /**
+     * Set {@link #SHARED_VARIABLES} shared variables <code>[%label.{i}%]</code>.
+     *
+     * @param locale locale of the variables
+     */
+    static void sharedVariables(String locale) {
+        SharedVariables variables = SharedVariables.getInstance(locale);
+        for (int i = 0; i < SHARED_VARIABLES; i++) {
+            variables.setVariable(new StringVariable("label." + i, "Label " + i + " & more"), true);
+        }
+    }
+
+    /**
+     * @param sections   number of sections
+     * @param javascript true to embed a script evaluated on render
+     * @return a page referring to shared variables and routes
+     */
+    static String page(int sections, boolean javascript) {
+        StringBuilder page = new StringBuilder("<!DOCTYPE html><html><head><title>[%label.0%]</title>")
+                .append("<meta charset=\"utf-8\"><link rel=\"stylesheet\" href=\"/style.css\"></head><body>");
+        for (int i = 0; i < sections; i++) {
+            page.append("<section id=\"s").append(i).append("\"><h2>[%label.").append(i * 7 % SHARED_VARIABLES).append("%]</h2><p>")
+                    .append("Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt. ".repeat(3))
+                    .append("[%label.").append(i * 11 % SHARED_VARIABLES).append("%]<br></p><ul>");
+            for (int j = 0; j < 3; j++) {
+                int route = (i * 3 + j) % ROUTES;
+                page.append("<li><a href=\"[%LINK:").append(route(route)).append("%]\">[%label.")
+                        .append(route % SHARED_VARIABLES).append("%]</a></li>");
+            }
+            page.append("</ul></section>");
+        }
+        if (javascript) {
+            page.append("<footer><javascript>'Rendered ' + (6 * 7) + ' sections'</javascript></footer>");
+        }
+        return page.append("</body></html>").toString();
+    }
+
+    /**
+     * @param orders number of orders
+     * @return a JSON document of orders, each with a customer and items
+     */
+    static String orders(int orders) {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder("{\"page\":1,\"size\":").append(orders).append(",\"orders\":[");
+        for (int i = 0; i < orders; i++) {
+            if (i > 0) json.append(',');
+            String customer = CUSTOMERS[random.nextInt(CUSTOMERS.length)];
+            json.append("{\"id\":").append(100000 + i)
+                    .append(",\"status\":\"").append(STATUSES[random.nextInt(STATUSES.length)]).append('"')
+                    .append(",\"paid\":").append(random.nextBoolean())
+                    .append(",\"customer\":{\"name\":\"").append(customer).append("\",\"email\":\"")
+                    .append(customer.toLowerCase(Locale.ROOT)).append("@example.com\",\"note\":\"line\\nbreak \\\"quoted\\\"\"}")
+                    .append(",\"items\":[");
+            int items = 1 + random.nextInt(4);
+            for (int j = 0; j < items; j++) {
+                if (j > 0) json.append(',');
+                json.append("{\"sku\":\"").append(PRODUCTS[random.nextInt(PRODUCTS.length)]).append('-').append(random.nextInt(1000))
+                        .append("\",\"quantity\":").append(1 + random.nextInt(5))
+                        .append(",\"price\":").append(random.nextInt(50000) / 100.0).append('}');
+            }
+            json.append("]}");
+        }
+        return json.append("]}").toString();
+    }
+
+    static String customer(Random random) {
+        return CUSTOMERS[random.nextInt(CUSTOMERS.length)];
+    }
+
+    static String status(Random random) {
+        return STATUSES[random.nextInt(STATUSES.length)];
+    }
+}
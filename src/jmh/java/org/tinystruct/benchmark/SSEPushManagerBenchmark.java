@@ -0,0 +1,128 @@
+package org.tinystruct.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tinystruct.data.component.Builder;
+import org.tinystruct.http.Cookie;
+import org.tinystruct.http.Headers;
+import org.tinystruct.http.Response;
+import org.tinystruct.http.ResponseStatus;
+import org.tinystruct.http.SSEPushManager;
+import org.tinystruct.http.Version;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Broadcasting an event to connected clients, each written to by its own
+ * thread as on a servlet container.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SSEPushManagerBenchmark {
+    @Param({"10", "500"})
+    public int clients;
+
+    private SSEPushManager manager;
+    private Builder message;
+
+    @Setup
+    public void setUp() {
+        this.manager = SSEPushManager.getInstance();
+        for (int i = 0; i < this.clients; i++) {
+            this.manager.register("client-" + i, new DiscardingResponse());
+        }
+        this.message = new Builder();
+        this.message.put("type", "price");
+        this.message.put("symbol", "TSLA");
+        this.message.put("price", 251.37);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (int i = 0; i < this.clients; i++) {
+            this.manager.remove("client-" + i);
+        }
+    }
+
+    @Benchmark
+    public void broadcast() {
+        this.manager.broadcast(this.message);
+    }
+
+    /**
+     * A connection that takes whatever is written to it.
+     */
+    static final class DiscardingResponse implements Response<Object, Object> {
+        private final AtomicLong written = new AtomicLong();
+        private final Headers headers = new Headers();
+        private ResponseStatus status = ResponseStatus.OK;
+        private Version version = Version.HTTP1_1;
+
+        @Override
+        public ResponseStatus status() {
+            return this.status;
+        }
+
+        @Override
+        public Response<Object, Object> setStatus(ResponseStatus status) {
+            this.status = status;
+            return this;
+        }
+
+        @Override
+        public Headers headers() {
+            return this.headers;
+        }
+
+        @Override
+        public void addHeader(String header, Object value) {
+        }
+
+        @Override
+        public void addCookie(Cookie cookie) {
+        }
+
+        @Override
+        public void sendRedirect(String url) {
+        }
+
+        @Override
+        public void writeAndFlush(byte[] bytes) {
+            this.written.addAndGet(bytes.length);
+        }
+
+        @Override
+        public Object get() {
+            return this.written;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public Version version() {
+            return this.version;
+        }
+
+        @Override
+        public void setVersion(Version version) {
+            this.version = version;
+        }
+    }
+}
@@ -59,7 +59,10 @@ public class ApplicationException extends Exception {
     }
 
     public int getStatus() {
-        if (this.status == 0) return 500;
+        if (this.status == 0) {
+            // A wrapped exception keeps the status it was thrown with
+            return this.getCause() instanceof ApplicationException ? ((ApplicationException) this.getCause()).getStatus() : 500;
+        }
         return this.status;
     }
 
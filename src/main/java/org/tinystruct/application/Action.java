@@ -40,12 +40,11 @@ public class Action implements org.tinystruct.application.Method<Object> {
     public static final int MAX_ARGUMENTS = 10;
     private static final Logger logger = Logger.getLogger(Action.class.getName());
     private final int id;
-    private final Pattern pattern;
+    private final String expression;
+    private volatile Pattern pattern;
     private final Application app;
     private final String method;
-    private final MethodHandle methodHandle;
-    private final Class<?>[] parameterTypes;
-    private final Class<?> returnType;
+    private final ActionTarget target;
     private final int priority;
     private Mode mode;
     private String pathRule;
@@ -71,16 +70,37 @@ public class Action implements org.tinystruct.application.Method<Object> {
     public Action(int id, Application app, String pathRule, MethodHandle methodHandle, String method, Class<?> returnType, Class<?>[] parameterTypes, int priority) {
         this.app = app;
         this.id = id;
-        this.returnType = returnType;
         this.method = method;
-        this.methodHandle = methodHandle;
-        this.parameterTypes = parameterTypes;
+        this.target = new ActionTarget(methodHandle, returnType, parameterTypes);
         this.pathRule = pathRule;
+        this.expression = pathRule;
         this.pattern = Pattern.compile(pathRule);
         this.priority = priority;
         this.mode = Mode.DEFAULT;
     }
 
+    /**
+     * Constructs an Action read from the action index, whose pattern is only
+     * compiled when first matched and whose method is resolved when first called.
+     *
+     * @param id       A unique identifier for the action.
+     * @param app      The Application instance associated with this action.
+     * @param pathRule The URL pattern (as a regular expression) that the action responds to.
+     * @param target   The method to be executed when this action is invoked.
+     * @param priority The priority of the action.
+     * @param mode     The execution mode for the action.
+     */
+    Action(int id, Application app, String pathRule, ActionTarget target, int priority, Mode mode) {
+        this.app = app;
+        this.id = id;
+        this.method = target.getMethod();
+        this.target = target;
+        this.pathRule = pathRule;
+        this.expression = pathRule;
+        this.priority = priority;
+        this.mode = mode;
+    }
+
     /**
      * Creates a new Action instance based on an existing Action, applying the resolved runtime arguments.
      *
@@ -96,12 +116,11 @@ public class Action implements org.tinystruct.application.Method<Object> {
         this.app = action.app;
         this.args = args;
         this.id = action.getId();
-        this.returnType = action.getReturnType();
         this.method = action.getMethod();
-        this.methodHandle = action.getMethodHandle();
+        this.target = action.target;
         this.mode = action.getMode();
-        this.parameterTypes = action.getParameterTypes();
         this.pathRule = action.getPathRule();
+        this.expression = action.expression;
         this.pattern = action.getPattern();
         this.priority = action.getPriority();
     }
@@ -143,7 +162,7 @@ public class Action implements org.tinystruct.application.Method<Object> {
      * @return methodHandle
      */
     public MethodHandle getMethodHandle() {
-        return this.methodHandle;
+        return this.target.getMethodHandle();
     }
 
     /**
@@ -209,6 +228,7 @@ public class Action implements org.tinystruct.application.Method<Object> {
      */
     @Override
     public Object execute(Object[] args) throws ApplicationException {
+        MethodHandle methodHandle = this.getMethodHandle();
         if (methodHandle != null) {
             Application app;
             Context context;
@@ -250,11 +270,11 @@ public class Action implements org.tinystruct.application.Method<Object> {
     }
 
     private Class<?> getReturnType() {
-        return this.returnType;
+        return this.target.getReturnType();
     }
 
     private Class<?>[] getParameterTypes() {
-        return this.parameterTypes;
+        return this.target.getParameterTypes();
     }
 
     /**
@@ -429,6 +449,10 @@ public class Action implements org.tinystruct.application.Method<Object> {
      * @return The pattern.
      */
     public Pattern getPattern() {
+        Pattern pattern = this.pattern;
+        if (pattern == null) {
+            this.pattern = pattern = Pattern.compile(expression);
+        }
         return pattern;
     }
 
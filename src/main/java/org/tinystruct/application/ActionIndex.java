@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.application;
+
+import org.tinystruct.Application;
+import org.tinystruct.system.annotation.Action.Mode;
+import org.tinystruct.system.annotation.Argument;
+import org.tinystruct.system.annotation.processing.ActionFingerprint;
+import org.tinystruct.system.cli.CommandArgument;
+import org.tinystruct.system.cli.CommandLine;
+import org.tinystruct.system.cli.CommandOption;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The actions of an application as listed at compile time by
+ * {@link org.tinystruct.system.annotation.processing.ActionIndexProcessor}:
+ * the commands and their help, and for every action method its path, mode,
+ * signature and the precomputed pattern and priority of its route.
+ * Registering an application from its index takes no reflection; the method
+ * handle of an action is resolved when the action is first called.
+ * <p>
+ * The index of a class is the resource {@value #LOCATION} followed by the
+ * class name. It is a UTF-8 text file: a header line with the format and the
+ * {@link ActionFingerprint} of the action methods, then one record per line, with tab-separated fields in which backslash, tab, carriage return
+ * and line feed are escaped as <code>\\ \t \r \n</code>.
+ * </p>
+ * <pre>
+ * command  path mode description example
+ * action   path mode description example method returnType parameterTypes expression priority
+ * argument key description
+ * option   key description
+ * </pre>
+ * Arguments and options belong to the command or action before them, and
+ * parameter types are separated by commas.
+ * <p>
+ * An index is only used while its fingerprint matches the action methods of
+ * the class as loaded; one left from an earlier compilation, say by a build
+ * with annotation processing turned off or of a superclass on its own, is
+ * refused and the application is registered by reflection.
+ * </p>
+ */
+public final class ActionIndex {
+    public static final String LOCATION = "META-INF/tinystruct/actions/";
+    public static final String HEADER = "tinystruct-action-index 2";
+    // A loaded class does not change, so its fingerprint is computed once
+    private static final ClassValue<String> FINGERPRINTS = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            return fingerprint(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final List<Entry> entries;
+
+    private ActionIndex(Class<?> type, List<Entry> entries) {
+        this.type = type;
+        this.entries = entries;
+    }
+
+    /**
+     * Load the index generated for an application class.
+     *
+     * @param type the application class
+     * @return the index, or null if the class has none
+     * @throws IOException if the index could not be read, is not understood or
+     *                     was generated for other action methods than the class has
+     */
+    public static ActionIndex load(Class<?> type) throws IOException {
+        ClassLoader loader = type.getClassLoader();
+        if (loader == null) loader = ClassLoader.getSystemClassLoader();
+
+        String name = LOCATION + type.getName();
+        try (InputStream in = loader.getResourceAsStream(name)) {
+            if (in == null) return null;
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String[] header = String.valueOf(reader.readLine()).split("\t", -1);
+            if (!HEADER.equals(header[0]) || header.length != 2) {
+                throw new IOException("Unsupported action index: " + name);
+            }
+            if (!header[1].equals(FINGERPRINTS.get(type))) {
+                throw new IOException("Out of date action index: " + name);
+            }
+
+            List<Entry> entries = new ArrayList<>();
+            Entry entry = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+
+                String[] fields = line.split("\t", -1);
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = unescape(fields[i]);
+                }
+                try {
+                    switch (fields[0]) {
+                        case "command":
+                        case "action":
+                            entries.add(entry = new Entry(fields));
+                            break;
+                        case "argument":
+                            entry.arguments.add(new CommandArgument<>(fields[1], null, fields[2]));
+                            break;
+                        case "option":
+                            entry.options.add(new CommandOption(fields[1], null, fields[2]));
+                            break;
+                        default:
+                            throw new IOException("Unknown record in " + name + ": " + fields[0]);
+                    }
+                } catch (RuntimeException e) {
+                    throw new IOException("Malformed action index " + name + ": " + line, e);
+                }
+            }
+
+            return new ActionIndex(type, entries);
+        }
+    }
+
+    /**
+     * Register the commands and actions of the index for an application.
+     *
+     * @param app the application, an instance of the indexed class
+     */
+    public void register(Application app) {
+        ActionRegistry registry = ActionRegistry.getInstance();
+        for (Entry entry : entries) {
+            CommandLine commandLine = new CommandLine(app, entry.path, entry.description);
+            commandLine.setMode(entry.mode);
+            app.getCommandLines().computeIfAbsent(entry.path, k -> new HashMap<>()).put(entry.mode, commandLine);
+
+            if (entry.method == null) {
+                commandLine.setOptions(new ArrayList<>(entry.options));
+                continue;
+            }
+
+            commandLine.setArguments(new HashSet<>(entry.arguments));
+            commandLine.setOptions(new ArrayList<>(entry.options));
+            if (!entry.example.isEmpty())
+                commandLine.setExample(entry.example);
+
+            ActionTarget target = new ActionTarget(type, entry.method, entry.returnType, entry.parameterTypes);
+            registry.set(app, entry.path, entry.mode, target, entry.expression, entry.priority);
+        }
+    }
+
+    /**
+     * @return the number of commands and actions in the index
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private static String fingerprint(Class<?> type) {
+        ActionFingerprint fingerprint = new ActionFingerprint();
+        for (Method method : type.getMethods()) {
+            org.tinystruct.system.annotation.Action action = method.getAnnotation(org.tinystruct.system.annotation.Action.class);
+            if (action == null || method.isBridge() || Modifier.isStatic(method.getModifiers())) continue;
+
+            List<String> parameterTypes = new ArrayList<>();
+            for (Class<?> parameterType : method.getParameterTypes()) {
+                parameterTypes.add(parameterType.getName());
+            }
+            List<String> keys = new ArrayList<>();
+            for (Argument argument : action.arguments()) {
+                keys.add(argument.key());
+            }
+            fingerprint.add(method.getName(), method.getReturnType().getName(), parameterTypes, action.value(),
+                    action.mode().name(), keys);
+        }
+        return fingerprint.toString();
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) return value;
+
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                switch (next) {
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    default:
+                        builder.append(next);
+                }
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static final class Entry {
+        final String path;
+        final Mode mode;
+        final String description;
+        final String example;
+        final String method;
+        final String returnType;
+        final String[] parameterTypes;
+        final String expression;
+        final int priority;
+        final Set<CommandArgument<String, Object>> arguments = new HashSet<>();
+        final List<CommandOption> options = new ArrayList<>();
+
+        Entry(String[] fields) {
+            this.path = fields[1];
+            this.mode = Mode.valueOf(fields[2]);
+            this.description = fields[3];
+            this.example = fields[4];
+            if ("action".equals(fields[0])) {
+                this.method = fields[5];
+                this.returnType = fields[6];
+                this.parameterTypes = fields[7].isEmpty() ? new String[0] : fields[7].split(",");
+                this.expression = fields[8];
+                this.priority = Integer.parseInt(fields[9]);
+            } else {
+                this.method = null;
+                this.returnType = null;
+                this.parameterTypes = null;
+                this.expression = null;
+                this.priority = 0;
+            }
+        }
+    }
+}
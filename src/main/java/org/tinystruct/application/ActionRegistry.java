@@ -17,7 +17,6 @@ import java.lang.reflect.Parameter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -30,31 +29,8 @@ public final class ActionRegistry {
     private static final Map<String, List<Action>> patternGroups = new ConcurrentHashMap<>();
     // Map to store URL patterns and their corresponding CommandLine objects per Mode
     private static final Map<String, Map<Mode, CommandLine>> commands = new ConcurrentHashMap<>();
-    // Map of type patterns for URL parameter matching
-    private static final Map<Class<?>, PatternPriority> TYPE_PATTERNS = new HashMap<>();
     private final Set<String> paths = ConcurrentHashMap.newKeySet();
 
-    static {
-        // Initialize the type pattern mappings
-        TYPE_PATTERNS.put(Integer.TYPE, new PatternPriority("-?\\d+", 2));
-        TYPE_PATTERNS.put(Integer.class, new PatternPriority("-?\\d+", 2));
-        TYPE_PATTERNS.put(Long.TYPE, new PatternPriority("-?\\d+", 2));
-        TYPE_PATTERNS.put(Long.class, new PatternPriority("-?\\d+", 2));
-        TYPE_PATTERNS.put(Float.TYPE, new PatternPriority("-?\\d+(\\.\\d+)?", 3));
-        TYPE_PATTERNS.put(Float.class, new PatternPriority("-?\\d+(\\.\\d+)?", 3));
-        TYPE_PATTERNS.put(Double.TYPE, new PatternPriority("-?\\d+(\\.\\d+)?", 3));
-        TYPE_PATTERNS.put(Double.class, new PatternPriority("-?\\d+(\\.\\d+)?", 3));
-        TYPE_PATTERNS.put(Short.TYPE, new PatternPriority("-?\\d+", 2));
-        TYPE_PATTERNS.put(Short.class, new PatternPriority("-?\\d+", 2));
-        TYPE_PATTERNS.put(Byte.TYPE, new PatternPriority("\\d+", 2));
-        TYPE_PATTERNS.put(Byte.class, new PatternPriority("\\d+", 2));
-        TYPE_PATTERNS.put(Boolean.TYPE, new PatternPriority("true|false", 3));
-        TYPE_PATTERNS.put(Boolean.class, new PatternPriority("true|false", 3));
-        TYPE_PATTERNS.put(Character.TYPE, new PatternPriority(".{1}", 1));
-        TYPE_PATTERNS.put(Character.class, new PatternPriority(".{1}", 1));
-        TYPE_PATTERNS.put(String.class, new PatternPriority("[^/]+", 1));
-    }
-
     // Private constructor to enforce singleton pattern
     private ActionRegistry() {
     }
@@ -128,6 +104,32 @@ public final class ActionRegistry {
         initializePattern(app, path, method, mode);
     }
 
+    /**
+     * Register an action read from the action index of an application. The
+     * pattern comes precomputed, and the method handle is only resolved when
+     * the action is first called.
+     *
+     * @param app        The Application instance
+     * @param path       The URL pattern
+     * @param mode       The mode name
+     * @param target     The method to call
+     * @param expression The regular expression the path is matched with
+     * @param priority   The priority of the action
+     */
+    void set(final Application app, final String path, final Mode mode, final ActionTarget target,
+             final String expression, final int priority) {
+        validateParameters(path, target);
+        paths.add(path);
+        storeCommandLine(app, path);
+
+        synchronized (this) {
+            String group = extractGroupFromPath(path);
+            List<Action> actions = patternGroups.getOrDefault(group, new ArrayList<>());
+            actions.add(new Action(actions.size(), app, expression, target, priority, mode));
+            patternGroups.put(group, actions);
+        }
+    }
+
     /**
      * Register a new Action object.
      *
@@ -340,7 +342,7 @@ public final class ActionRegistry {
         String group = extractGroupFromPath(path);
 
         if (method != null) {
-            PatternBuilder patternBuilder = buildPattern(path, method);
+            RoutePattern routePattern = buildPattern(path, method);
             Class<?>[] types = method.getParameterTypes();
 
             try {
@@ -349,9 +351,9 @@ public final class ActionRegistry {
                         MethodType.methodType(method.getReturnType(), types));
 
                 List<Action> actions = patternGroups.getOrDefault(group, new ArrayList<>());
-                Action action = createAction(actions.size(), app, patternBuilder.getExpression(),
+                Action action = createAction(actions.size(), app, routePattern.getExpression(),
                         handle, method.getName(), method.getReturnType(),
-                        types, patternBuilder.getPriority(), mode);
+                        types, routePattern.getPriority(), mode);
 
                 actions.add(action);
                 patternGroups.put(group, actions);
@@ -378,147 +380,31 @@ public final class ActionRegistry {
     /**
      * Build a pattern and calculate priority for method parameters
      */
-    private PatternBuilder buildPattern(String path, Method method) {
-        int priority = 0;
+    private RoutePattern buildPattern(String path, Method method) {
         Parameter[] parameters = method.getParameters();
         org.tinystruct.system.annotation.Action annotation = method
                 .getAnnotation(org.tinystruct.system.annotation.Action.class);
 
         // Extract "data" parameters (skipping Request/Response)
-        List<ParameterInfo> dataParams = new ArrayList<>();
-        int dataIndex = 0;
+        List<String> types = new ArrayList<>();
+        List<String> names = new ArrayList<>();
         for (int i = 0; i < parameters.length; i++) {
             Parameter parameter = parameters[i];
             Class<?> type = parameter.getType();
             if (!Request.class.isAssignableFrom(type) && !Response.class.isAssignableFrom(type)) {
-                String name = parameter.getName();
+                // Named by position, as javac does without -parameters, so the route never
+                // depends on how the class was compiled and matches the action index
+                String name = "arg" + i;
                 // Check if there's an @Argument annotation providing a name
                 if (annotation != null && i < annotation.arguments().length) {
                     name = annotation.arguments()[i].key();
                 }
-                dataParams.add(new ParameterInfo(dataIndex++, type, name));
+                types.add(type.getName());
+                names.add(name);
             }
         }
 
-        int parameterIndex = 0;
-        String finalPath = path;
-
-        if (path != null && !path.isEmpty()) {
-            Matcher m = Pattern.compile("\\{([^/]*)\\}").matcher(path);
-            StringBuilder sb = new StringBuilder();
-            int lastEnd = 0;
-            while (m.find()) {
-                String placeholderName = m.group(1);
-                ParameterInfo matchedParam = null;
-                // Try to find a parameter by name
-                for (ParameterInfo param : dataParams) {
-                    if (param.name.equals(placeholderName)) {
-                        matchedParam = param;
-                        break;
-                    }
-                }
-
-                // If not found by name, just take the next data parameter (fallback or
-                // index-based)
-                if (matchedParam == null && parameterIndex < dataParams.size()) {
-                    matchedParam = dataParams.get(parameterIndex);
-                }
-
-                if (matchedParam != null) {
-                    sb.append(path, lastEnd, m.start());
-                    PatternPriority patternPriority = getPatternForType(matchedParam.type);
-                    priority += patternPriority.getPriority();
-                    sb.append("(").append(patternPriority.getPattern()).append(")");
-                    parameterIndex++;
-                    lastEnd = m.end();
-                }
-            }
-            sb.append(path.substring(lastEnd));
-            finalPath = sb.toString();
-        }
-
-        StringBuilder expression = new StringBuilder("^/?").append(finalPath);
-
-        // Handle remaining parameters (Legacy behavior)
-        StringBuilder patterns = new StringBuilder();
-        while (parameterIndex < dataParams.size()) {
-            ParameterInfo param = dataParams.get(parameterIndex++);
-            PatternPriority patternPriority = getPatternForType(param.type);
-            priority += patternPriority.getPriority();
-
-            if (!patterns.isEmpty()) {
-                patterns.append("/");
-            }
-            patterns.append("(").append(patternPriority.getPattern()).append(")");
-        }
-
-        if (!patterns.isEmpty()) {
-            expression.append("/").append(patterns);
-        }
-
-        expression.append("$");
-        return new PatternBuilder(expression.toString(), priority);
-    }
-
-    /**
-     * Helper class to store pattern and priority together
-     */
-    private static class PatternPriority {
-        private final String pattern;
-        private final int priority;
-
-        public PatternPriority(String pattern, int priority) {
-            this.pattern = pattern;
-            this.priority = priority;
-        }
-
-        public String getPattern() {
-            return pattern;
-        }
-
-        public int getPriority() {
-            return priority;
-        }
-    }
-
-    /**
-     * Helper class to build and store pattern expressions
-     */
-    private static class PatternBuilder {
-        private final String expression;
-        private final int priority;
-
-        public PatternBuilder(String expression, int priority) {
-            this.expression = expression;
-            this.priority = priority;
-        }
-
-        public String getExpression() {
-            return expression;
-        }
-
-        public int getPriority() {
-            return priority;
-        }
-    }
-
-    private static class ParameterInfo {
-        final int index;
-        final Class<?> type;
-        final String name;
-
-        ParameterInfo(int index, Class<?> type, String name) {
-            this.index = index;
-            this.type = type;
-            this.name = name;
-        }
-    }
-
-    /**
-     * Gets pattern and priority for a specific parameter type
-     */
-    private PatternPriority getPatternForType(Class<?> type) {
-        return TYPE_PATTERNS.getOrDefault(type, new PatternPriority("[^/]+", 0));
+        return RoutePattern.of(path, types.toArray(new String[0]), names.toArray(new String[0]));
     }
 
     /**
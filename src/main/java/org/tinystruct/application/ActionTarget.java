@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.application;
+
+import org.tinystruct.ApplicationRuntimeException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+
+/**
+ * The method an action calls. It is either given resolved, or by the names of
+ * its class, return type and parameter types, as the action index lists it,
+ * in which case the method handle is looked up on first use. Copies of an
+ * action share the target, so the lookup happens once.
+ */
+final class ActionTarget {
+    private static final Map<String, Class<?>> PRIMITIVES = Map.of(
+            "boolean", boolean.class, "byte", byte.class, "char", char.class, "short", short.class,
+            "int", int.class, "long", long.class, "float", float.class, "double", double.class,
+            "void", void.class);
+
+    private final Class<?> type;
+    private final String method;
+    private final String returnTypeName;
+    private final String[] parameterTypeNames;
+    private MethodHandle methodHandle;
+    private Class<?> returnType;
+    private Class<?>[] parameterTypes;
+    private volatile boolean resolved;
+
+    ActionTarget(MethodHandle methodHandle, Class<?> returnType, Class<?>[] parameterTypes) {
+        this.type = null;
+        this.method = null;
+        this.returnTypeName = null;
+        this.parameterTypeNames = null;
+        this.methodHandle = methodHandle;
+        this.returnType = returnType;
+        this.parameterTypes = parameterTypes;
+        this.resolved = true;
+    }
+
+    ActionTarget(Class<?> type, String method, String returnType, String[] parameterTypes) {
+        this.type = type;
+        this.method = method;
+        this.returnTypeName = returnType;
+        this.parameterTypeNames = parameterTypes;
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    MethodHandle getMethodHandle() {
+        resolve();
+        return methodHandle;
+    }
+
+    Class<?> getReturnType() {
+        resolve();
+        return returnType;
+    }
+
+    Class<?>[] getParameterTypes() {
+        resolve();
+        return parameterTypes;
+    }
+
+    private void resolve() {
+        if (resolved) return;
+
+        synchronized (this) {
+            if (resolved) return;
+
+            ClassLoader loader = type.getClassLoader();
+            try {
+                Class<?>[] types = new Class<?>[parameterTypeNames.length];
+                for (int i = 0; i < types.length; i++) {
+                    types[i] = load(parameterTypeNames[i], loader);
+                }
+                Class<?> returns = load(returnTypeName, loader);
+
+                this.methodHandle = MethodHandles.lookup().findVirtual(type, method, MethodType.methodType(returns, types));
+                this.returnType = returns;
+                this.parameterTypes = types;
+                this.resolved = true;
+            } catch (ClassNotFoundException e) {
+                throw new ApplicationRuntimeException("Type not found for " + type.getName() + "." + method + ": " + e.getMessage(), e);
+            } catch (IllegalAccessException e) {
+                throw new ApplicationRuntimeException(e);
+            } catch (NoSuchMethodException e) {
+                throw new ApplicationRuntimeException("Method not found", e);
+            }
+        }
+    }
+
+    private static Class<?> load(String name, ClassLoader loader) throws ClassNotFoundException {
+        Class<?> primitive = PRIMITIVES.get(name);
+        return primitive != null ? primitive : Class.forName(name, false, loader);
+    }
+}
@@ -0,0 +1,132 @@
+package org.tinystruct.application;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The regular expression an action path is matched with, built from the path
+ * and the types of the method parameters, and the priority of the action
+ * among those matching the same path.
+ * <p>
+ * Types are given by name, as {@link Class#getName()} returns them, so the
+ * expression can be built at compile time as well as from a reflected method.
+ * </p>
+ */
+public final class RoutePattern {
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([^/]*)\\}");
+    private static final String DEFAULT_PATTERN = "[^/]+";
+    // Type name -> pattern of the type in a path, and the priority it adds
+    private static final Map<String, Object[]> TYPE_PATTERNS = new HashMap<>();
+
+    static {
+        type("-?\\d+", 2, "int", "java.lang.Integer", "long", "java.lang.Long", "short", "java.lang.Short");
+        type("-?\\d+(\\.\\d+)?", 3, "float", "java.lang.Float", "double", "java.lang.Double");
+        type("\\d+", 2, "byte", "java.lang.Byte");
+        type("true|false", 3, "boolean", "java.lang.Boolean");
+        type(".{1}", 1, "char", "java.lang.Character");
+        type(DEFAULT_PATTERN, 1, "java.lang.String");
+    }
+
+    private final String expression;
+    private final int priority;
+
+    private RoutePattern(String expression, int priority) {
+        this.expression = expression;
+        this.priority = priority;
+    }
+
+    private static void type(String pattern, int priority, String... names) {
+        for (String name : names) {
+            TYPE_PATTERNS.put(name, new Object[]{pattern, priority});
+        }
+    }
+
+    /**
+     * Build the pattern of an action. Placeholders such as <code>{id}</code>
+     * take the parameter of that name, or else the next parameter; parameters
+     * left over are appended to the path, one segment each.
+     *
+     * @param path  the action path
+     * @param types type names of the parameters taken from the path, without Request and Response
+     * @param names names of those parameters
+     * @return the pattern
+     */
+    public static RoutePattern of(String path, String[] types, String[] names) {
+        int priority = 0;
+        int parameterIndex = 0;
+        String finalPath = path;
+
+        if (path != null && !path.isEmpty()) {
+            Matcher m = PLACEHOLDER.matcher(path);
+            StringBuilder sb = new StringBuilder();
+            int lastEnd = 0;
+            while (m.find()) {
+                String placeholderName = m.group(1);
+                int matched = -1;
+                // Try to find a parameter by name
+                for (int i = 0; i < names.length; i++) {
+                    if (names[i].equals(placeholderName)) {
+                        matched = i;
+                        break;
+                    }
+                }
+                // If not found by name, just take the next data parameter (fallback or
+                // index-based)
+                if (matched == -1 && parameterIndex < types.length) {
+                    matched = parameterIndex;
+                }
+
+                if (matched != -1) {
+                    sb.append(path, lastEnd, m.start());
+                    priority += priorityOf(types[matched]);
+                    sb.append("(").append(patternOf(types[matched])).append(")");
+                    parameterIndex++;
+                    lastEnd = m.end();
+                }
+            }
+            sb.append(path.substring(lastEnd));
+            finalPath = sb.toString();
+        }
+
+        StringBuilder expression = new StringBuilder("^/?").append(finalPath);
+
+        // Handle remaining parameters (Legacy behavior)
+        StringBuilder patterns = new StringBuilder();
+        while (parameterIndex < types.length) {
+            String type = types[parameterIndex++];
+            priority += priorityOf(type);
+
+            if (patterns.length() > 0) {
+                patterns.append("/");
+            }
+            patterns.append("(").append(patternOf(type)).append(")");
+        }
+
+        if (patterns.length() > 0) {
+            expression.append("/").append(patterns);
+        }
+
+        expression.append("$");
+        return new RoutePattern(expression.toString(), priority);
+    }
+
+    private static String patternOf(String type) {
+        Object[] pattern = TYPE_PATTERNS.get(type);
+        return pattern != null ? (String) pattern[0] : DEFAULT_PATTERN;
+    }
+
+    private static int priorityOf(String type) {
+        Object[] pattern = TYPE_PATTERNS.get(type);
+        return pattern != null ? (Integer) pattern[1] : 0;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+}
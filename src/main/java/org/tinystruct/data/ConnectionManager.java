@@ -20,6 +20,9 @@ import org.tinystruct.ApplicationRuntimeException;
 import org.tinystruct.data.repository.Type;
 import org.tinystruct.system.Configuration;
 import org.tinystruct.system.Settings;
+import org.tinystruct.system.metrics.Counter;
+import org.tinystruct.system.metrics.LatencyHistogram;
+import org.tinystruct.system.metrics.MetricsRegistry;
 
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -41,6 +44,10 @@ import java.util.logging.Logger;
 final class ConnectionManager implements Runnable {
 
     private final static Logger logger = Logger.getLogger(ConnectionManager.class.getName());
+    private static final LatencyHistogram BORROW_TIME = MetricsRegistry.getInstance()
+            .timer("tinystruct_jdbc_connection_borrow_seconds", "Time to get a connection from the pool");
+    private static final Counter CREATED = MetricsRegistry.getInstance()
+            .counter("tinystruct_jdbc_connections_created_total", "Connections opened because the pool had none idle");
     private final ConcurrentLinkedQueue<Connection> connections;
     private final String driverName;
     private String url;
@@ -63,6 +70,7 @@ final class ConnectionManager implements Runnable {
         this.maxConnections = !config.get("database.connections.max").trim().isEmpty() ?
                 Integer.parseInt(config.get("database.connections.max")) : 0;
         this.pending = false;
+        MetricsRegistry.getInstance().gauge("tinystruct_jdbc_connections_idle", "Connections idle in the pool", this.connections::size);
     }
 
     /**
@@ -208,6 +216,15 @@ final class ConnectionManager implements Runnable {
      * @throws ApplicationException If there is an error creating a new connection.
      */
     public Connection getConnection() throws ApplicationException {
+        long start = System.nanoTime();
+        try {
+            return borrow();
+        } finally {
+            BORROW_TIME.record(System.nanoTime() - start);
+        }
+    }
+
+    private Connection borrow() throws ApplicationException {
         Connection connection;
         lock.lock();
         try {
@@ -216,11 +233,11 @@ final class ConnectionManager implements Runnable {
                 try {
                     if (connection.isClosed()) {
                         logger.severe("Found an invalid connection, removing it.");
-                        connection = getConnection();
+                        connection = borrow();
                     }
                 } catch (SQLException ex) {
                     handleSQLException("Error while checking connection status.", ex);
-                    connection = getConnection();
+                    connection = borrow();
                 }
             } else {
                 connection = createNewConnection();
@@ -236,6 +253,7 @@ final class ConnectionManager implements Runnable {
             Connection connection = user == null || user.trim().isEmpty() ?
                     DriverManager.getConnection(url) :
                     DriverManager.getConnection(url, user, password);
+            CREATED.increment();
             logger.log(Level.INFO, "System default database: " + connection.getCatalog());
 
             if (!this.database.isEmpty() && !connection.getCatalog().equalsIgnoreCase(this.database))
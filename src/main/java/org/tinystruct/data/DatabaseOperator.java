@@ -3,6 +3,9 @@ package org.tinystruct.data;
 import org.tinystruct.ApplicationException;
 import org.tinystruct.ApplicationRuntimeException;
 import org.tinystruct.data.tools.SQLInjectionDetector;
+import org.tinystruct.system.metrics.Counter;
+import org.tinystruct.system.metrics.LatencyHistogram;
+import org.tinystruct.system.metrics.MetricsRegistry;
 
 import java.io.Closeable;
 import java.sql.*;
@@ -14,6 +17,12 @@ public class DatabaseOperator implements Closeable {
     private static final String SQL_STATE_COMMUNICATION_LINK_FAILURE = "08S01";
     private static final int MAX_RETRIES = 3;
     private static final long RETRY_DELAY_MS = 1000;
+    private static final LatencyHistogram QUERY_TIME = statementTime("query");
+    private static final LatencyHistogram UPDATE_TIME = statementTime("update");
+    private static final LatencyHistogram EXECUTE_TIME = statementTime("execute");
+    private static final Counter QUERY_ERRORS = statementErrors("query");
+    private static final Counter UPDATE_ERRORS = statementErrors("update");
+    private static final Counter EXECUTE_ERRORS = statementErrors("execute");
     private final ConnectionManager manager;
     private boolean injectionCheckEnabled;
     private boolean inTransaction;
@@ -170,8 +179,14 @@ public class DatabaseOperator implements Closeable {
         for (int retry = 0; retry < MAX_RETRIES; retry++) {
             try {
                 logger.log(Level.INFO, statement.toString());
-                return resultSet = statement.executeQuery(); // Return execution result if successful
+                long start = System.nanoTime();
+                try {
+                    return resultSet = statement.executeQuery(); // Return execution result if successful
+                } finally {
+                    QUERY_TIME.record(System.nanoTime() - start);
+                }
             } catch (SQLException e) {
+                QUERY_ERRORS.increment();
                 handleSQLException(e, statement);
             }
 
@@ -197,7 +212,7 @@ public class DatabaseOperator implements Closeable {
      */
     public int executeUpdate(PreparedStatement statement) throws ApplicationException {
         try (statement) {  // Try-with-resources ensures statement is closed
-            int effect = statement.executeUpdate();
+            int effect = timedUpdate(statement);
             logger.log(Level.INFO, statement.toString());
             return effect;
         } catch (SQLException e) {
@@ -214,7 +229,7 @@ public class DatabaseOperator implements Closeable {
      */
     public ResultSet executeUpdateAndGetGeneratedKeys(PreparedStatement statement) throws ApplicationException {
         try {
-            int effect = statement.executeUpdate();
+            int effect = timedUpdate(statement);
             logger.log(Level.INFO, statement + " - Affected rows: " + effect);
             if (effect > 0) {
                 return statement.getGeneratedKeys();
@@ -266,13 +281,39 @@ public class DatabaseOperator implements Closeable {
      * @throws ApplicationException If an error occurs while executing the query.
      */
     public boolean execute(PreparedStatement statement) throws ApplicationException {
+        long start = System.nanoTime();
         try (statement) {
             return statement.execute();
         } catch (SQLException e) {
+            EXECUTE_ERRORS.increment();
             throw new ApplicationException(e.getMessage(), e);
+        } finally {
+            EXECUTE_TIME.record(System.nanoTime() - start);
         }
     }
 
+    private static int timedUpdate(PreparedStatement statement) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            UPDATE_ERRORS.increment();
+            throw e;
+        } finally {
+            UPDATE_TIME.record(System.nanoTime() - start);
+        }
+    }
+
+    private static LatencyHistogram statementTime(String operation) {
+        return MetricsRegistry.getInstance().timer("tinystruct_jdbc_statement_duration_seconds",
+                "Time to execute a statement, per operation", "operation", operation);
+    }
+
+    private static Counter statementErrors(String operation) {
+        return MetricsRegistry.getInstance().counter("tinystruct_jdbc_statement_errors_total",
+                "Statements that failed, per operation", "operation", operation);
+    }
+
     /**
      * Create a PreparedStatement with the given SQL and scrollable option.
      *
@@ -64,7 +64,7 @@ public class Mapping {
             document = manager.get(className);
         }
 
-        Iterator<Element> iterator = document.getRoot().getElementsByTagName("class").iterator();
+        Iterator<Element> iterator = document.getElementsByTagName("class").iterator();
 
         List<Element> list = null;
         Element currentElement;
@@ -0,0 +1,44 @@
+package org.tinystruct.data;
+
+import org.tinystruct.ApplicationException;
+
+/**
+ * Thrown when a statement of an SQL script fails. Everything after the last
+ * commit has been rolled back, so the script can be run again from
+ * {@link #getResumeFrom()}.
+ */
+public class SQLScriptException extends ApplicationException {
+    private static final long serialVersionUID = 1L;
+    private final long statement;
+    private final int line;
+    private final long resumeFrom;
+
+    public SQLScriptException(String message, long statement, int line, long resumeFrom, Throwable cause) {
+        super(message, cause);
+        this.statement = statement;
+        this.line = line;
+        this.resumeFrom = resumeFrom;
+    }
+
+    /**
+     * @return index of the failed statement, or -1 if unknown
+     */
+    public long getStatement() {
+        return statement;
+    }
+
+    /**
+     * @return line of the failed statement in the script, or -1 if unknown
+     */
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return index of the first statement that was not committed
+     */
+    public long getResumeFrom() {
+        return resumeFrom;
+    }
+}
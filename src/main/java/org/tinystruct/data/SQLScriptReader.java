@@ -0,0 +1,550 @@
+package org.tinystruct.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+
+/**
+ * Reads the statements of an SQL script one at a time, without loading the
+ * script into memory.
+ * <p>
+ * Statements end at the current delimiter ({@code ;} by default) unless it is
+ * inside a string literal, a quoted identifier, a dollar-quoted body or a
+ * comment. Line ({@code --}, {@code //} at the start of a line, and {@code #}
+ * at the start of a statement) and block comments are removed; optimizer hints and MySQL conditional comments
+ * ({@code /*! ... *}{@code /}) are kept. A {@code DELIMITER} line changes the
+ * delimiter the way the MySQL client does.
+ * </p>
+ */
+public class SQLScriptReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String DIRECTIVE = "DELIMITER";
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    private String delimiter = ";";
+    private boolean backslashEscapes = true;
+    private long line = 1;
+    private long index;
+
+    /**
+     * A statement of the script.
+     */
+    public static final class Statement {
+        /**
+         * What a statement does, as far as the script runner is concerned.
+         */
+        public enum Kind {
+            /**
+             * INSERT, UPDATE, DELETE, REPLACE or MERGE; may be batched.
+             */
+            DML,
+            /**
+             * SET or USE; changes the state of the connection.
+             */
+            SESSION,
+            /**
+             * LOCK TABLES or UNLOCK TABLES.
+             */
+            LOCK,
+            /**
+             * BEGIN, START TRANSACTION, COMMIT or ROLLBACK.
+             */
+            TRANSACTION,
+            /**
+             * Anything else, such as DDL or queries.
+             */
+            OTHER
+        }
+
+        private final String sql;
+        private final long index;
+        private final long line;
+        private Kind kind;
+        private String table;
+
+        Statement(String sql, long index, long line) {
+            this.sql = sql;
+            this.index = index;
+            this.line = line;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * @return 1-based position of the statement in the script
+         */
+        public long getIndex() {
+            return index;
+        }
+
+        /**
+         * @return line on which the statement starts
+         */
+        public long getLine() {
+            return line;
+        }
+
+        public Kind getKind() {
+            if (kind == null) {
+                classify();
+            }
+            return kind;
+        }
+
+        /**
+         * @return the table a DML statement writes to, in lower case without quotes, or null if unknown
+         */
+        public String getTable() {
+            if (kind == null) {
+                classify();
+            }
+            return table;
+        }
+
+        private void classify() {
+            Words words = new Words(sql);
+            String keyword = words.next();
+            switch (keyword) {
+                case "INSERT":
+                case "REPLACE":
+                case "MERGE":
+                    kind = Kind.DML;
+                    table = words.after("INTO");
+                    break;
+                case "DELETE":
+                    kind = Kind.DML;
+                    table = words.after("FROM");
+                    break;
+                case "UPDATE":
+                    kind = Kind.DML;
+                    String word;
+                    do {
+                        word = words.next();
+                    } while (word.equals("LOW_PRIORITY") || word.equals("IGNORE") || word.equals("ONLY"));
+                    table = words.name(word);
+                    break;
+                case "SET":
+                case "USE":
+                    kind = Kind.SESSION;
+                    break;
+                case "LOCK":
+                case "UNLOCK":
+                    kind = Kind.LOCK;
+                    break;
+                case "BEGIN":
+                    // BEGIN ... END blocks are procedural code, not transaction control
+                    String next = words.next();
+                    kind = next.isEmpty() || next.equals("WORK") || next.equals("TRANSACTION") ? Kind.TRANSACTION : Kind.OTHER;
+                    break;
+                case "COMMIT":
+                case "ROLLBACK":
+                    kind = Kind.TRANSACTION;
+                    break;
+                case "START":
+                    kind = words.next().equals("TRANSACTION") ? Kind.TRANSACTION : Kind.OTHER;
+                    break;
+                default:
+                    kind = Kind.OTHER;
+                    break;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return sql;
+        }
+    }
+
+    /**
+     * Reads words of a statement, skipping leading MySQL conditional comment markers.
+     */
+    private static final class Words {
+        private final String sql;
+        private int position;
+
+        Words(String sql) {
+            this.sql = sql;
+        }
+
+        String next() {
+            int length = sql.length();
+            while (position < length) {
+                char c = sql.charAt(position);
+                if (Character.isWhitespace(c) || c == '(') {
+                    position++;
+                } else if (c == '/' && sql.startsWith("/*!", position)) {
+                    position += 3;
+                    while (position < length && Character.isDigit(sql.charAt(position))) position++;
+                } else {
+                    break;
+                }
+            }
+
+            int start = position;
+            if (position < length && isQuote(sql.charAt(position))) {
+                // Quoted identifier, possibly qualified: `db`.`table`
+                while (position < length && !Character.isWhitespace(sql.charAt(position)) && sql.charAt(position) != '(') {
+                    char quote = sql.charAt(position);
+                    if (isQuote(quote)) {
+                        int end = sql.indexOf(quote, position + 1);
+                        position = end < 0 ? length : end + 1;
+                    } else {
+                        position++;
+                    }
+                }
+                return sql.substring(start, position);
+            }
+
+            while (position < length) {
+                char c = sql.charAt(position);
+                if (Character.isWhitespace(c) || c == '(' || c == ';') break;
+                if (isQuote(c)) {
+                    int end = sql.indexOf(c, position + 1);
+                    position = end < 0 ? length : end + 1;
+                    continue;
+                }
+                position++;
+            }
+            return sql.substring(start, position).toUpperCase(Locale.ROOT);
+        }
+
+        String after(String keyword) {
+            for (int i = 0; i < 8; i++) {
+                String word = next();
+                if (word.isEmpty()) return null;
+                if (word.equals(keyword)) {
+                    return name(next());
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Normalize a table name: drop quotes and schema qualifiers' quoting, lower case.
+         */
+        String name(String word) {
+            if (word == null || word.isEmpty()) return null;
+            StringBuilder name = new StringBuilder(word.length());
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                if (!isQuote(c) && c != '[' && c != ']') {
+                    name.append(c);
+                }
+            }
+            return name.length() == 0 ? null : name.toString().toLowerCase(Locale.ROOT);
+        }
+
+        private static boolean isQuote(char c) {
+            return c == '`' || c == '"';
+        }
+    }
+
+    public SQLScriptReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Set the statement delimiter. A {@code DELIMITER} line in the script overrides it.
+     *
+     * @param delimiter statement delimiter
+     */
+    public void setDelimiter(String delimiter) {
+        if (delimiter == null || delimiter.isEmpty()) {
+            throw new IllegalArgumentException("Delimiter must not be empty");
+        }
+        this.delimiter = delimiter;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    /**
+     * Whether a backslash escapes the next character in string literals, as in
+     * MySQL dumps. Enabled by default; disable it for scripts in standard SQL
+     * where a backslash is an ordinary character.
+     *
+     * @param backslashEscapes true if backslashes escape characters
+     */
+    public void setBackslashEscapes(boolean backslashEscapes) {
+        this.backslashEscapes = backslashEscapes;
+    }
+
+    /**
+     * Read the next statement.
+     *
+     * @return the statement, or null at the end of the script
+     * @throws IOException if the script cannot be read
+     */
+    public Statement next() throws IOException {
+        StringBuilder sql = new StringBuilder(256);
+        long startLine = -1;
+        // Offset of the current line in the statement, to recognize DELIMITER lines
+        int lineStart = 0;
+
+        for (; ; ) {
+            if (!fill(1)) {
+                break;
+            }
+            char c = buffer[position];
+
+            if (c == '\n') {
+                position++;
+                line++;
+                if (isDirective(sql, lineStart)) {
+                    String value = sql.substring(DIRECTIVE.length()).trim();
+                    if (!value.isEmpty()) {
+                        delimiter = value;
+                    }
+                    sql.setLength(0);
+                    startLine = -1;
+                }
+                if (sql.length() > 0) {
+                    sql.append('\n');
+                }
+                lineStart = sql.length();
+                continue;
+            }
+
+            if (Character.isWhitespace(c)) {
+                position++;
+                if (sql.length() > 0) {
+                    sql.append(c);
+                }
+                continue;
+            }
+
+            if (isDirective(sql, lineStart)) {
+                // The rest of a DELIMITER line is taken as is
+                sql.append(c);
+                position++;
+                continue;
+            }
+
+            if (startsWith(delimiter)) {
+                position += delimiter.length();
+                String text = sql.toString().trim();
+                if (text.isEmpty()) {
+                    startLine = -1;
+                    continue;
+                }
+                return new Statement(text, ++index, startLine);
+            }
+
+            if (c == '-' && startsWith("--")) {
+                skipLine();
+                continue;
+            }
+            if (c == '#' && sql.length() == 0) {
+                skipLine();
+                continue;
+            }
+            if (c == '/' && startsWith("//") && sql.substring(lineStart).isBlank()) {
+                skipLine();
+                continue;
+            }
+            if (c == '/' && startsWith("/*")) {
+                if (startsWith("/*!") || startsWith("/*+")) {
+                    if (startLine < 0) startLine = line;
+                    copyBlockComment(sql);
+                } else {
+                    skipBlockComment();
+                    if (sql.length() > 0) sql.append(' ');
+                }
+                continue;
+            }
+
+            if (startLine < 0) {
+                startLine = line;
+            }
+
+            if (c == '\'' || c == '"' || c == '`') {
+                copyQuoted(sql, c);
+                continue;
+            }
+            if (c == '$' && copyDollarQuoted(sql)) {
+                continue;
+            }
+
+            sql.append(c);
+            position++;
+        }
+
+        if (isDirective(sql, lineStart)) {
+            sql.setLength(0);
+        }
+        String text = sql.toString().trim();
+        if (text.isEmpty()) {
+            return null;
+        }
+        return new Statement(text, ++index, startLine);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Whether the statement so far is a DELIMITER line. Leading whitespace is
+     * never buffered, so such a line always starts at offset 0.
+     */
+    private boolean isDirective(StringBuilder sql, int lineStart) {
+        int length = DIRECTIVE.length();
+        if (lineStart != 0 || sql.length() <= length || !Character.isWhitespace(sql.charAt(length))) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.toUpperCase(sql.charAt(i)) != DIRECTIVE.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void copyQuoted(StringBuilder sql, char quote) throws IOException {
+        sql.append(quote);
+        position++;
+        while (fill(1)) {
+            char c = buffer[position++];
+            sql.append(c);
+            if (c == '\n') {
+                line++;
+            } else if (c == '\\' && quote == '\'' && backslashEscapes) {
+                if (fill(1)) {
+                    char escaped = buffer[position++];
+                    if (escaped == '\n') line++;
+                    sql.append(escaped);
+                }
+            } else if (c == quote) {
+                // A doubled quote is an escaped quote
+                if (fill(1) && buffer[position] == quote) {
+                    sql.append(quote);
+                    position++;
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy a PostgreSQL dollar-quoted string such as {@code $body$ ... $body$}.
+     *
+     * @return false if the dollar sign does not start one
+     */
+    private boolean copyDollarQuoted(StringBuilder sql) throws IOException {
+        int length = 1;
+        while (fill(length + 1)) {
+            char c = buffer[position + length];
+            if (c == '$') {
+                break;
+            }
+            if (!(Character.isLetter(c) || c == '_' || (length > 1 && Character.isDigit(c))) || length > 64) {
+                return false;
+            }
+            length++;
+        }
+        if (!fill(length + 1)) {
+            return false;
+        }
+        // $1 is a positional parameter, not a quote
+        if (sql.length() > 0 && Character.isLetterOrDigit(sql.charAt(sql.length() - 1))) {
+            return false;
+        }
+
+        String tag = new String(buffer, position, length + 1);
+        sql.append(tag);
+        position += tag.length();
+        while (fill(1)) {
+            if (buffer[position] == '$' && startsWith(tag)) {
+                sql.append(tag);
+                position += tag.length();
+                return true;
+            }
+            char c = buffer[position++];
+            if (c == '\n') line++;
+            sql.append(c);
+        }
+        return true;
+    }
+
+    private void skipLine() throws IOException {
+        while (fill(1) && buffer[position] != '\n') {
+            position++;
+        }
+    }
+
+    private void skipBlockComment() throws IOException {
+        position += 2;
+        while (fill(1)) {
+            if (buffer[position] == '*' && startsWith("*/")) {
+                position += 2;
+                return;
+            }
+            if (buffer[position++] == '\n') line++;
+        }
+    }
+
+    private void copyBlockComment(StringBuilder sql) throws IOException {
+        sql.append("/*");
+        position += 2;
+        while (fill(1)) {
+            if (buffer[position] == '*' && startsWith("*/")) {
+                sql.append("*/");
+                position += 2;
+                return;
+            }
+            char c = buffer[position++];
+            if (c == '\n') line++;
+            sql.append(c);
+        }
+    }
+
+    private boolean startsWith(String text) throws IOException {
+        if (!fill(text.length())) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (buffer[position + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Make sure at least {@code count} characters are buffered.
+     *
+     * @return false if the script ends before that
+     */
+    private boolean fill(int count) throws IOException {
+        if (limit - position >= count) {
+            return true;
+        }
+        if (eof) {
+            return false;
+        }
+
+        System.arraycopy(buffer, position, buffer, 0, limit - position);
+        limit -= position;
+        position = 0;
+        while (limit < count) {
+            int n = reader.read(buffer, limit, buffer.length - limit);
+            if (n < 0) {
+                eof = true;
+                return false;
+            }
+            limit += n;
+        }
+        return true;
+    }
+}
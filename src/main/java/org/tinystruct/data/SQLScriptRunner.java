@@ -0,0 +1,713 @@
+package org.tinystruct.data;
+
+import org.tinystruct.ApplicationException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executes SQL scripts of any size.
+ * <p>
+ * The script is read one statement at a time with {@link SQLScriptReader}.
+ * Consecutive INSERT, UPDATE and DELETE statements are sent to the database
+ * in JDBC batches and committed every {@link #setCommitInterval(int)}
+ * statements, instead of one round trip and one commit per statement. Other
+ * statements, such as DDL, are executed on their own between two commits.
+ * </p>
+ * <p>
+ * With {@link #setParallelism(int)} greater than one, DML statements are
+ * spread over several connections by the table they write to, so statements
+ * for the same table keep their order. SET and USE statements are executed
+ * on every connection, LOCK TABLES statements are skipped, and any other
+ * statement waits for all connections to commit first. At a commit every
+ * connection sends its pending batch before any of them commits, so a failing
+ * statement leaves all of them at the last commit. Only a failing COMMIT
+ * itself can leave the other connections committed past the resume point;
+ * statements of their tables would then be executed again on resume.
+ * </p>
+ * <p>
+ * When a statement fails, the uncommitted work is rolled back and a
+ * {@link SQLScriptException} tells which statement failed and from which
+ * statement to resume. Resuming with {@link #setResumeFrom(long)} skips the
+ * statements before it, except SET and USE statements, which are replayed to
+ * restore the session.
+ * </p>
+ */
+public class SQLScriptRunner {
+    private static final Logger logger = Logger.getLogger(SQLScriptRunner.class.getName());
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_COMMIT_INTERVAL = 10000;
+    private static final int REPORT_INTERVAL = 1000;
+    private static final Object STOP = new Object();
+
+    private final Connector connector;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int commitInterval = DEFAULT_COMMIT_INTERVAL;
+    private int parallelism = 1;
+    private long resumeFrom = 1;
+    private String delimiter = ";";
+    private boolean backslashEscapes = true;
+    private ProgressListener listener;
+
+    /**
+     * Opens a database connection for the runner.
+     */
+    @FunctionalInterface
+    public interface Connector {
+        DatabaseOperator open() throws ApplicationException;
+    }
+
+    /**
+     * Receives the progress of a script, after every commit and every
+     * {@value #REPORT_INTERVAL} statements.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void progress(Progress progress);
+    }
+
+    /**
+     * The progress of a script.
+     */
+    public static final class Progress {
+        private final long executed;
+        private final long skipped;
+        private final long committed;
+        private final long bytes;
+        private final long totalBytes;
+        private final long elapsedNanos;
+
+        Progress(long executed, long skipped, long committed, long bytes, long totalBytes, long elapsedNanos) {
+            this.executed = executed;
+            this.skipped = skipped;
+            this.committed = committed;
+            this.bytes = bytes;
+            this.totalBytes = totalBytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return number of statements executed so far
+         */
+        public long getExecuted() {
+            return executed;
+        }
+
+        /**
+         * @return number of statements skipped before the resume point
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * @return index of the last statement known to be committed
+         */
+        public long getCommitted() {
+            return committed;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return size of the script, or -1 if unknown
+         */
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public Duration getElapsed() {
+            return Duration.ofNanos(elapsedNanos);
+        }
+
+        /**
+         * @return percentage of the script read, or -1 if the size is unknown
+         */
+        public double getPercent() {
+            return totalBytes > 0 ? Math.min(100.0, bytes * 100.0 / totalBytes) : -1;
+        }
+
+        /**
+         * @return estimated time to finish, or null if unknown
+         */
+        public Duration getEta() {
+            if (totalBytes <= 0 || bytes <= 0) {
+                return null;
+            }
+            double nanosPerByte = (double) elapsedNanos / bytes;
+            return Duration.ofNanos((long) (nanosPerByte * Math.max(0, totalBytes - bytes)));
+        }
+    }
+
+    /**
+     * Create a runner on connections from the {@link ConnectionManager}.
+     */
+    public SQLScriptRunner() {
+        this(DatabaseOperator::new);
+    }
+
+    public SQLScriptRunner(Connector connector) {
+        this.connector = connector;
+    }
+
+    /**
+     * Set the maximum number of DML statements sent to the database at once.
+     * A batch size of 1 executes every statement on its own.
+     *
+     * @param batchSize batch size
+     * @return this runner
+     */
+    public SQLScriptRunner setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+        return this;
+    }
+
+    /**
+     * Set the number of statements executed between two commits.
+     *
+     * @param commitInterval commit interval
+     * @return this runner
+     */
+    public SQLScriptRunner setCommitInterval(int commitInterval) {
+        this.commitInterval = Math.max(1, commitInterval);
+        return this;
+    }
+
+    /**
+     * Set the number of connections DML statements are spread over. With more
+     * than one, a COMMIT that fails on one connection may leave the others
+     * committed past the resume point, see the class description.
+     *
+     * @param parallelism number of connections
+     * @return this runner
+     */
+    public SQLScriptRunner setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        return this;
+    }
+
+    /**
+     * Skip the statements before the given one, as reported by
+     * {@link SQLScriptException#getResumeFrom()}.
+     *
+     * @param statement 1-based index of the first statement to execute
+     * @return this runner
+     */
+    public SQLScriptRunner setResumeFrom(long statement) {
+        this.resumeFrom = Math.max(1, statement);
+        return this;
+    }
+
+    public SQLScriptRunner setDelimiter(String delimiter) {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * @param backslashEscapes whether a backslash escapes characters in string literals
+     * @return this runner
+     * @see SQLScriptReader#setBackslashEscapes(boolean)
+     */
+    public SQLScriptRunner setBackslashEscapes(boolean backslashEscapes) {
+        this.backslashEscapes = backslashEscapes;
+        return this;
+    }
+
+    public SQLScriptRunner setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Execute a UTF-8 encoded script file.
+     *
+     * @param script script file
+     * @return the final progress
+     * @throws ApplicationException if the script cannot be read or a statement fails
+     */
+    public Progress run(Path script) throws ApplicationException {
+        try (CountingInputStream in = new CountingInputStream(Files.newInputStream(script))) {
+            return run(new InputStreamReader(in, StandardCharsets.UTF_8), in::count, Files.size(script));
+        } catch (IOException e) {
+            throw new ApplicationException("Error reading SQL script file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Execute a script.
+     *
+     * @param script script
+     * @return the final progress
+     * @throws ApplicationException if the script cannot be read or a statement fails
+     */
+    public Progress run(Reader script) throws ApplicationException {
+        return run(script, () -> -1, -1);
+    }
+
+    private Progress run(Reader script, LongSupplier bytes, long totalBytes) throws ApplicationException {
+        SQLScriptReader reader = new SQLScriptReader(script);
+        reader.setDelimiter(delimiter);
+        reader.setBackslashEscapes(backslashEscapes);
+        return new Execution(reader, bytes, totalBytes).run();
+    }
+
+    /**
+     * A statement that failed, or a commit if the statement is null.
+     */
+    private static final class Failure extends Exception {
+        private static final long serialVersionUID = 1L;
+        final SQLScriptReader.Statement statement;
+
+        Failure(SQLScriptReader.Statement statement, SQLException cause) {
+            super(cause.getMessage(), cause);
+            this.statement = statement;
+        }
+    }
+
+    /**
+     * One connection with its pending batch.
+     */
+    private final class Lane {
+        private final DatabaseOperator operator;
+        private final Connection connection;
+        private final boolean autoCommit;
+        private final Statement statement;
+        private final List<SQLScriptReader.Statement> batch = new ArrayList<>();
+
+        Lane() throws ApplicationException {
+            operator = connector.open();
+            try {
+                connection = operator.connection;
+                autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                statement = connection.createStatement();
+            } catch (SQLException e) {
+                operator.close();
+                throw new ApplicationException("Could not prepare connection: " + e.getMessage(), e);
+            }
+        }
+
+        void execute(SQLScriptReader.Statement sql) throws Failure {
+            if (batchSize == 1 || sql.getKind() != SQLScriptReader.Statement.Kind.DML) {
+                executeNow(sql);
+                return;
+            }
+
+            try {
+                statement.addBatch(sql.getSql());
+            } catch (SQLException e) {
+                throw new Failure(sql, e);
+            }
+            batch.add(sql);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void executeNow(SQLScriptReader.Statement sql) throws Failure {
+            flush();
+            try {
+                statement.execute(sql.getSql());
+            } catch (SQLException e) {
+                throw new Failure(sql, e);
+            }
+        }
+
+        void flush() throws Failure {
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            try {
+                statement.executeBatch();
+            } catch (BatchUpdateException e) {
+                // Drivers either stop at the failed statement or mark it and go on
+                int[] counts = e.getUpdateCounts();
+                int failed = counts != null ? counts.length : 0;
+                for (int i = 0; counts != null && i < counts.length; i++) {
+                    if (counts[i] == Statement.EXECUTE_FAILED) {
+                        failed = i;
+                        break;
+                    }
+                }
+                throw new Failure(batch.get(Math.min(failed, batch.size() - 1)), e);
+            } catch (SQLException e) {
+                throw new Failure(batch.get(0), e);
+            } finally {
+                batch.clear();
+                try {
+                    statement.clearBatch();
+                } catch (SQLException e) {
+                    logger.log(Level.FINE, e.getMessage(), e);
+                }
+            }
+        }
+
+        void commit() throws Failure {
+            flush();
+            try {
+                connection.commit();
+            } catch (SQLException e) {
+                throw new Failure(null, e);
+            }
+        }
+
+        void rollback() {
+            batch.clear();
+            try {
+                statement.clearBatch();
+                connection.rollback();
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, "Error rolling back: " + e.getMessage(), e);
+            }
+        }
+
+        void close() {
+            try {
+                statement.close();
+                connection.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, "Error closing statement: " + e.getMessage(), e);
+            } finally {
+                operator.close();
+            }
+        }
+    }
+
+    private final class Execution {
+        private final SQLScriptReader reader;
+        private final LongSupplier bytes;
+        private final long totalBytes;
+        private final long start = System.nanoTime();
+        private final List<Lane> lanes = new ArrayList<>();
+        private final List<Worker> workers = new ArrayList<>();
+        private final AtomicReference<Failure> failure = new AtomicReference<>();
+
+        private long executed;
+        private long skipped;
+        private long committed = resumeFrom - 1;
+        private long dispatched = resumeFrom - 1;
+        private int sinceCommit;
+
+        Execution(SQLScriptReader reader, LongSupplier bytes, long totalBytes) {
+            this.reader = reader;
+            this.bytes = bytes;
+            this.totalBytes = totalBytes;
+        }
+
+        Progress run() throws ApplicationException {
+            boolean completed = false;
+            try {
+                for (int i = 0; i < parallelism; i++) {
+                    lanes.add(new Lane());
+                }
+                if (parallelism > 1) {
+                    for (int i = 0; i < parallelism; i++) {
+                        Worker worker = new Worker(lanes.get(i), i);
+                        workers.add(worker);
+                        worker.start();
+                    }
+                }
+
+                SQLScriptReader.Statement sql;
+                while ((sql = reader.next()) != null) {
+                    if (sql.getIndex() < resumeFrom) {
+                        if (sql.getKind() == SQLScriptReader.Statement.Kind.SESSION) {
+                            broadcast(sql);
+                        }
+                        skipped++;
+                        continue;
+                    }
+
+                    execute(sql);
+                    dispatched = sql.getIndex();
+                    executed++;
+                    if (committed == dispatched) {
+                        // Executed on its own and committed already
+                        report();
+                    } else if (++sinceCommit >= commitInterval) {
+                        checkpoint();
+                    } else if (executed % REPORT_INTERVAL == 0) {
+                        report();
+                    }
+                }
+
+                checkpoint();
+                completed = true;
+                return progress();
+            } catch (Failure e) {
+                throw failed(e);
+            } catch (IOException e) {
+                throw new SQLScriptException("Error reading SQL script: " + e.getMessage(), -1, -1, committed + 1, e);
+            } finally {
+                stopWorkers();
+                for (Lane lane : lanes) {
+                    if (!completed) lane.rollback();
+                    lane.close();
+                }
+            }
+        }
+
+        private void execute(SQLScriptReader.Statement sql) throws Failure {
+            switch (sql.getKind()) {
+                case TRANSACTION:
+                    // Transactions are managed by the runner
+                    logger.fine("Skipped transaction control statement #" + sql.getIndex() + ": " + sql);
+                    return;
+                case SESSION:
+                    broadcast(sql);
+                    return;
+                case LOCK:
+                    if (!workers.isEmpty()) {
+                        // Table locks held by one connection would block the others
+                        logger.fine("Skipped table lock statement #" + sql.getIndex() + ": " + sql);
+                        return;
+                    }
+                    break;
+                case DML:
+                    if (workers.isEmpty()) {
+                        lanes.get(0).execute(sql);
+                        return;
+                    }
+                    if (sql.getTable() != null) {
+                        dispatch(workers.get(Math.floorMod(sql.getTable().hashCode(), workers.size())), sql);
+                        return;
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            // Run anything else on its own between two commits, so the resume point stays exact
+            checkpoint();
+            Lane lane = lanes.get(0);
+            lane.executeNow(sql);
+            lane.commit();
+            committed = sql.getIndex();
+        }
+
+        private void broadcast(SQLScriptReader.Statement sql) throws Failure {
+            if (workers.isEmpty()) {
+                lanes.get(0).executeNow(sql);
+                return;
+            }
+            for (Worker worker : workers) {
+                dispatch(worker, sql);
+            }
+        }
+
+        private void dispatch(Worker worker, Object item) throws Failure {
+            Failure error = failure.get();
+            if (error != null) {
+                throw error;
+            }
+            try {
+                worker.queue.put(item);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new Failure(null, new SQLException("Interrupted", e));
+            }
+        }
+
+        /**
+         * Commit every connection and move the resume point past everything dispatched so far.
+         */
+        private void checkpoint() throws Failure {
+            if (workers.isEmpty()) {
+                lanes.get(0).commit();
+            } else {
+                // No connection commits before every one has executed its statements
+                synchronize(false);
+                synchronize(true);
+            }
+
+            committed = dispatched;
+            sinceCommit = 0;
+            report();
+        }
+
+        /**
+         * Have every worker flush its batch, or commit, and wait for all of them.
+         */
+        private void synchronize(boolean commit) throws Failure {
+            List<Barrier> barriers = new ArrayList<>(workers.size());
+            for (Worker worker : workers) {
+                Barrier barrier = new Barrier(commit);
+                dispatch(worker, barrier);
+                barriers.add(barrier);
+            }
+            for (Barrier barrier : barriers) {
+                try {
+                    barrier.done.get();
+                } catch (ExecutionException e) {
+                    throw (Failure) e.getCause();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new Failure(null, new SQLException("Interrupted", e));
+                }
+            }
+        }
+
+        private SQLScriptException failed(Failure e) {
+            SQLScriptReader.Statement sql = e.statement;
+            long resume = committed + 1;
+            String message = sql != null
+                    ? "Statement #" + sql.getIndex() + " at line " + sql.getLine() + " failed: " + e.getMessage()
+                    : "Commit failed: " + e.getMessage();
+            message += ". Statements before #" + resume + " are committed, resume from #" + resume + ".";
+            return new SQLScriptException(message, sql != null ? sql.getIndex() : -1,
+                    sql != null ? (int) sql.getLine() : -1, resume, e.getCause());
+        }
+
+        private void stopWorkers() {
+            for (Worker worker : workers) {
+                try {
+                    worker.queue.put(STOP);
+                    worker.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    worker.interrupt();
+                }
+            }
+        }
+
+        private void report() {
+            if (listener != null) {
+                listener.progress(progress());
+            }
+        }
+
+        private Progress progress() {
+            return new Progress(executed, skipped, committed, bytes.getAsLong(), totalBytes, System.nanoTime() - start);
+        }
+
+        /**
+         * Executes the statements for one connection in order.
+         */
+        private final class Worker extends Thread {
+            final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(Math.max(64, batchSize * 2));
+            private final Lane lane;
+
+            Worker(Lane lane, int number) {
+                super("sql-script-" + number);
+                this.lane = lane;
+                setDaemon(true);
+            }
+
+            @Override
+            public void run() {
+                for (; ; ) {
+                    Object item;
+                    try {
+                        item = queue.take();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (item == STOP) {
+                        return;
+                    }
+
+                    if (item instanceof Barrier) {
+                        Barrier barrier = (Barrier) item;
+                        Failure error = failure.get();
+                        if (error != null) {
+                            barrier.done.completeExceptionally(error);
+                            continue;
+                        }
+                        try {
+                            if (barrier.commit) {
+                                lane.commit();
+                            } else {
+                                lane.flush();
+                            }
+                            barrier.done.complete(null);
+                        } catch (Failure e) {
+                            failure.compareAndSet(null, e);
+                            barrier.done.completeExceptionally(failure.get());
+                        }
+                        continue;
+                    }
+
+                    if (failure.get() != null) {
+                        // Drain until stopped
+                        continue;
+                    }
+                    try {
+                        lane.execute((SQLScriptReader.Statement) item);
+                    } catch (Failure e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Asks a worker to flush its batch or to commit, and tells when it has.
+     */
+    private static final class Barrier {
+        final boolean commit;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Barrier(boolean commit) {
+            this.commit = commit;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long count() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
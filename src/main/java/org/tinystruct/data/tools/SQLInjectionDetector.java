@@ -1,41 +1,317 @@
 package org.tinystruct.data.tools;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Detects SQL text carrying typical injection constructs: tautologies such as
+ * <code>OR 1=1</code> or <code>OR 'a'='a'</code>, comments, stacked statements,
+ * <code>UNION SELECT</code>, time delays, system variables and functions
+ * revealing the server, file access, DDL on tables, hex literals and
+ * unterminated literals.
+ * <p>
+ * The SQL is scanned once, token by token, so string literals, quoted
+ * identifiers and comments are told apart: a <code>;</code> or <code>--</code>
+ * inside a string literal is not a finding, and column names are not taken for
+ * keywords. Verdicts are cached by SQL text, as applications prepare the same
+ * statements over and over.
+ * </p>
+ */
 public class SQLInjectionDetector {
+    private static final String MESSAGE = "Potential SQL injection detected: ";
+    // Verdicts kept, cleared at once when full; SQL inlining values does not repeat anyway
+    private static final int CACHE_SIZE = 4096;
+    private static final int MAX_CACHED_LENGTH = 8192;
+    private static final String SAFE = "";
+    private static final Map<String, String> VERDICTS = new ConcurrentHashMap<>();
 
-    private static final Pattern[] SQL_INJECTION_PATTERNS = new Pattern[]{
-            Pattern.compile("(?i)\\sOR\\s+1=1"),
-            Pattern.compile("(?i)\\sOR\\s+'1'='1'"),
-//            Pattern.compile("(?i)'.*?'"),
-            Pattern.compile("(?i)--[^\r\n]*"),
-            Pattern.compile(";"),
-            Pattern.compile("(?i)\\bUNION\\b\\s+SELECT"),
-            Pattern.compile("(?i)\\bSELECT\\b\\s+\\*\\s+\\bFROM\\b"),
-            Pattern.compile("(?i)\\bSLEEP\\b\\s*\\(|\\bBENCHMARK\\b\\s*\\(|\\bWAITFOR\\b\\s+DELAY"),
-            Pattern.compile("(?i)@@\\w+|\\bDATABASE\\b\\s*\\(|\\bUSER\\b\\s*\\("),
-            Pattern.compile("(?i)\\b0x[0-9A-Fa-f]+\\b|\\b0b[01]+\\b"),
-            Pattern.compile("(?i)\\bLIKE\\b\\s+['\"].*[%_].*['\"]"),
-            Pattern.compile("(?i)\\bCAST\\b\\s*\\(|\\bCONVERT\\b\\s*\\("),
-            Pattern.compile("(?i)\\bAND\\b\\s+['\"]?.*['\"]?\\b=\\b|\\bOR\\b\\s+['\"]?.*['\"]?\\b=\\b"),
-            Pattern.compile("(?i)\\b(DROP|ALTER|CREATE|TRUNCATE|RENAME|INSERT|UPDATE|DELETE)\\b\\s+TABLE")
-    };
+    private static final Set<String> DELAY_FUNCTIONS = Set.of("SLEEP", "BENCHMARK", "PG_SLEEP");
+    private static final Set<String> SERVER_FUNCTIONS = Set.of("DATABASE", "USER", "CURRENT_USER", "SYSTEM_USER", "SESSION_USER", "VERSION", "LOAD_FILE");
+    private static final Set<String> DDL = Set.of("DROP", "ALTER", "CREATE", "TRUNCATE", "RENAME");
+    // Words after which a name followed by a parenthesis is a table, not a function, and #name a temporary table
+    private static final Set<String> TABLE_CONTEXT = Set.of("INTO", "TABLE", "FROM", "JOIN", "UPDATE");
+    private static final Set<String> CONSTANTS = Set.of("TRUE", "FALSE", "NULL");
 
+    /**
+     * Check a SQL statement for injection constructs.
+     *
+     * @param sql SQL statement
+     * @throws SQLInjectionException listing the constructs found, if any
+     */
     public static void checkForUnsafeSQL(String sql) throws SQLInjectionException {
-        StringBuilder detectedPatterns = new StringBuilder();
+        String verdict = VERDICTS.get(sql);
+        if (verdict == null) {
+            StringBuilder detectedPatterns = new StringBuilder();
+            for (String construct : findUnsafeConstructs(sql)) {
+                detectedPatterns.append(MESSAGE).append(construct).append("\n");
+            }
+            verdict = detectedPatterns.length() > 0 ? detectedPatterns.toString() : SAFE;
 
-        for (Pattern pattern : SQL_INJECTION_PATTERNS) {
-            Matcher matcher = pattern.matcher(sql);
-            if (matcher.find()) {
-                detectedPatterns.append("Potential SQL injection detected: ").append(matcher.group()).append("\n");
+            if (sql.length() <= MAX_CACHED_LENGTH) {
+                if (VERDICTS.size() >= CACHE_SIZE) {
+                    VERDICTS.clear();
+                }
+                VERDICTS.put(sql, verdict);
             }
         }
 
-        if (detectedPatterns.length() > 0) {
-            throw new SQLInjectionException(detectedPatterns.toString());
+        if (!verdict.isEmpty()) {
+            throw new SQLInjectionException(verdict);
         }
     }
 
-}
+    /**
+     * Scan a SQL statement for injection constructs, without the verdict cache.
+     *
+     * @param sql SQL statement
+     * @return the text of every construct found, in order
+     */
+    public static List<String> findUnsafeConstructs(String sql) {
+        return new Scanner(sql).scan();
+    }
+
+    private enum Type {
+        WORD, QUOTED_IDENTIFIER, STRING, NUMBER, OPERATOR, PUNCTUATION
+    }
+
+    /**
+     * One pass over the SQL, keeping the last three tokens to recognize the
+     * constructs ending at the current one.
+     */
+    private static final class Scanner {
+        private final String sql;
+        private final int length;
+        private final List<String> findings = new ArrayList<>();
+        private int position;
+
+        // The current token and the three before it
+        private final Type[] types = new Type[4];
+        private final int[] starts = new int[4];
+        private final int[] ends = new int[4];
+        private final String[] words = new String[4];
+        private int count;
+        // Position of a statement separator, reported if a token follows it
+        private int separator = -1;
+
+        Scanner(String sql) {
+            this.sql = sql;
+            this.length = sql.length();
+        }
+
+        List<String> scan() {
+            while (this.position < this.length) {
+                char ch = this.sql.charAt(this.position);
+                int start = this.position;
+
+                if (Character.isWhitespace(ch)) {
+                    this.position++;
+                } else if (ch == '\'' || ch == '"') {
+                    this.quoted(start, ch, Type.STRING, "unterminated string literal ");
+                } else if (ch == '`') {
+                    this.quoted(start, '`', Type.QUOTED_IDENTIFIER, "unterminated identifier ");
+                } else if (ch == '[') {
+                    this.quoted(start, ']', Type.QUOTED_IDENTIFIER, "unterminated identifier ");
+                } else if (ch == '-' && this.next(1) == '-') {
+                    this.lineComment(start);
+                } else if (ch == '#' && !(isWordPart(this.next(1)) && this.isTableContext())) {
+                    // #name where a table is named is a temporary table in SQL Server, otherwise a MySQL comment
+                    this.lineComment(start);
+                } else if (ch == '/' && this.next(1) == '*') {
+                    int end = this.sql.indexOf("*/", start + 2);
+                    this.position = end < 0 ? this.length : end + 2;
+                    this.finding(start, this.position);
+                } else if (isDigit(ch) || (ch == '.' && isDigit(this.next(1)))) {
+                    this.number(start);
+                } else if (isWordStart(ch) || (ch == '#' || ch == '@')) {
+                    if (ch == '@' && this.next(1) == '@') {
+                        this.position += 2;
+                    } else {
+                        this.position++;
+                    }
+                    while (this.position < this.length && isWordPart(this.sql.charAt(this.position))) {
+                        this.position++;
+                    }
+                    if (ch == '@' && this.position - start > 2 && this.sql.charAt(start + 1) == '@') {
+                        this.finding(start, this.position);
+                    }
+                    this.token(Type.WORD, start, this.position);
+                } else if (ch == ';') {
+                    this.position++;
+                    if (this.separator < 0) {
+                        this.separator = start;
+                    }
+                } else if (ch == '=' || ch == '<' || ch == '>' || ch == '!') {
+                    this.position++;
+                    while (this.position < this.length && "=<>".indexOf(this.sql.charAt(this.position)) >= 0
+                            && this.position - start < 3) {
+                        this.position++;
+                    }
+                    this.token(Type.OPERATOR, start, this.position);
+                } else {
+                    this.position++;
+                    this.token(Type.PUNCTUATION, start, this.position);
+                }
+            }
+            return this.findings;
+        }
+
+        private boolean isTableContext() {
+            return this.count > 0 && this.types[0] == Type.WORD && TABLE_CONTEXT.contains(this.words[0]);
+        }
+
+        private char next(int offset) {
+            int index = this.position + offset;
+            return index < this.length ? this.sql.charAt(index) : '\0';
+        }
+
+        private void quoted(int start, char close, Type type, String unterminated) {
+            int i = start + 1;
+            while (i < this.length) {
+                char ch = this.sql.charAt(i);
+                if (ch == '\\' && type == Type.STRING) {
+                    i += 2;
+                } else if (ch == close) {
+                    if (i + 1 < this.length && this.sql.charAt(i + 1) == close) {
+                        i += 2;
+                    } else {
+                        this.position = i + 1;
+                        this.token(type, start, this.position);
+                        return;
+                    }
+                } else {
+                    i++;
+                }
+            }
+            this.position = this.length;
+            this.findings.add(unterminated + this.sql.substring(start));
+        }
+
+        private void lineComment(int start) {
+            int end = start;
+            while (end < this.length && this.sql.charAt(end) != '\n' && this.sql.charAt(end) != '\r') {
+                end++;
+            }
+            this.position = end;
+            this.finding(start, end);
+        }
+
+        private void number(int start) {
+            if (this.sql.charAt(start) == '0' && (this.next(1) == 'x' || this.next(1) == 'X' || this.next(1) == 'b' || this.next(1) == 'B')
+                    && isWordPart(this.next(2))) {
+                this.position += 2;
+                while (this.position < this.length && isWordPart(this.sql.charAt(this.position))) {
+                    this.position++;
+                }
+                this.finding(start, this.position);
+                this.token(Type.NUMBER, start, this.position);
+                return;
+            }
+
+            while (this.position < this.length) {
+                char ch = this.sql.charAt(this.position);
+                if (isDigit(ch) || ch == '.') {
+                    this.position++;
+                } else if ((ch == 'e' || ch == 'E') && (isDigit(this.next(1))
+                        || ((this.next(1) == '+' || this.next(1) == '-') && isDigit(this.next(2))))) {
+                    this.position += 2;
+                } else {
+                    break;
+                }
+            }
+            this.token(Type.NUMBER, start, this.position);
+        }
+
+        private void token(Type type, int start, int end) {
+            if (this.separator >= 0) {
+                // Anything after a statement separator is another statement
+                this.finding(this.separator, end);
+                this.separator = -1;
+            }
+
+            for (int i = 3; i > 0; i--) {
+                this.types[i] = this.types[i - 1];
+                this.starts[i] = this.starts[i - 1];
+                this.ends[i] = this.ends[i - 1];
+                this.words[i] = this.words[i - 1];
+            }
+            this.types[0] = type;
+            this.starts[0] = start;
+            this.ends[0] = end;
+            this.words[0] = type == Type.WORD ? this.sql.substring(start, end).toUpperCase(Locale.ROOT) : null;
+            this.count++;
+
+            this.detect();
+        }
+
+        /**
+         * Recognize the constructs ending at the current token.
+         */
+        private void detect() {
+            if (this.types[0] == Type.WORD) {
+                String word = this.words[0];
+                if (word.equals("SELECT")) {
+                    if (this.is(1, "UNION")) {
+                        this.finding(this.starts[1], this.ends[0]);
+                    } else if ((this.is(1, "ALL") || this.is(1, "DISTINCT")) && this.is(2, "UNION")) {
+                        this.finding(this.starts[2], this.ends[0]);
+                    }
+                } else if (word.equals("DELAY") && this.is(1, "WAITFOR")) {
+                    this.finding(this.starts[1], this.ends[0]);
+                } else if ((word.equals("OUTFILE") || word.equals("DUMPFILE")) && this.is(1, "INTO")) {
+                    this.finding(this.starts[1], this.ends[0]);
+                } else if ((word.equals("TABLE") || word.equals("DATABASE")) && this.count > 1
+                        && this.types[1] == Type.WORD && DDL.contains(this.words[1])) {
+                    this.finding(this.starts[1], this.ends[0]);
+                }
+            } else if (this.types[0] == Type.PUNCTUATION && this.sql.charAt(this.starts[0]) == '(') {
+                // A function call: the name directly followed by the parenthesis
+                if (this.count > 1 && this.types[1] == Type.WORD && this.ends[1] == this.starts[0]
+                        && (DELAY_FUNCTIONS.contains(this.words[1]) || SERVER_FUNCTIONS.contains(this.words[1]))
+                        && !(this.count > 2 && this.types[2] == Type.WORD && TABLE_CONTEXT.contains(this.words[2]))) {
+                    this.finding(this.starts[1], this.ends[0]);
+                }
+            }
+
+            // OR / AND followed by a comparison known before any row is read
+            if (this.count > 3 && this.types[1] == Type.OPERATOR && (this.is(3, "OR") || this.is(3, "AND"))) {
+                boolean constant = this.isConstant(0) && this.isConstant(2);
+                boolean same = (this.types[0] == Type.WORD || this.types[0] == Type.QUOTED_IDENTIFIER)
+                        && this.types[0] == this.types[2]
+                        && this.sql.regionMatches(true, this.starts[0], this.sql, this.starts[2], this.ends[2] - this.starts[2])
+                        && this.ends[0] - this.starts[0] == this.ends[2] - this.starts[2];
+                if (constant || same) {
+                    this.finding(this.starts[3], this.ends[0]);
+                }
+            }
+        }
 
+        private boolean is(int index, String word) {
+            return this.count > index && word.equals(this.words[index]);
+        }
+
+        private boolean isConstant(int index) {
+            return this.types[index] == Type.NUMBER || this.types[index] == Type.STRING
+                    || (this.types[index] == Type.WORD && CONSTANTS.contains(this.words[index]));
+        }
+
+        private void finding(int start, int end) {
+            this.findings.add(this.sql.substring(start, end));
+        }
+
+        private static boolean isDigit(char ch) {
+            return ch >= '0' && ch <= '9';
+        }
+
+        private static boolean isWordStart(char ch) {
+            return Character.isLetter(ch) || ch == '_';
+        }
+
+        private static boolean isWordPart(char ch) {
+            return Character.isLetterOrDigit(ch) || ch == '_' || ch == '$';
+        }
+    }
+}
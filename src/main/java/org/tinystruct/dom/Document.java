@@ -24,7 +24,6 @@ import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 import java.io.*;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
@@ -92,6 +91,8 @@ public class Document extends DefaultHandler {
     private URL url = null;
     private DocumentType documentType = DocumentType.XML;
     private boolean preserveWhitespace = false;
+    // Indexes of the elements, built on the first lookup after a change
+    private volatile ElementIndex index;
 
     public Document(URL url) {
         super();
@@ -140,22 +141,12 @@ public class Document extends DefaultHandler {
      */
     public boolean load(InputStream input) {
         try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-
-            // Configure parser for HTML/XML handling
-            factory.setValidating(false);
-            factory.setNamespaceAware(true);
-
-            // Set features for more lenient HTML parsing
-            if (documentType != DocumentType.XML) {
-                factory.setFeature("http://xml.org/sax/features/namespaces", false);
-                factory.setFeature("http://xml.org/sax/features/validation", false);
-                factory.setFeature("http://apache.org/xml/features/nonvalidating/load-dtd-grammar", false);
-                factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            // Lenient parsing for HTML, no DTDs loaded
+            XMLPool.SAXProfile profile = documentType == DocumentType.XML
+                    ? XMLPool.SAXProfile.NAMESPACE_AWARE : XMLPool.SAXProfile.LENIENT;
+            try (XMLPool.Lease<SAXParser> saxParser = XMLPool.saxParser(profile)) {
+                saxParser.get().parse(input, this);
             }
-
-            SAXParser saxParser = factory.newSAXParser();
-            saxParser.parse(input, this);
         } catch (javax.xml.parsers.ParserConfigurationException ex) {
             LOG.severe("Parser configuration error while attempting to read from the input stream \n'"
                     + input + "'");
@@ -182,6 +173,21 @@ public class Document extends DefaultHandler {
         return true;
     }
 
+    /**
+     * Read the elements at a path of a document one at a time, without loading
+     * the document, for documents too large to hold in memory. The whitespace
+     * of the element data is handled as this document handles it.
+     *
+     * @param input the input stream to read from, closed with the reader
+     * @param path  path of the elements, such as <code>/feed/entry</code>
+     * @return reader of the elements at the path
+     * @throws ApplicationException if the document can not be read
+     * @see ElementReader
+     */
+    public ElementReader iterate(InputStream input, String path) throws ApplicationException {
+        return new ElementReader(input, path).setPreserveWhitespace(this.preserveWhitespace);
+    }
+
     /**
      * Load a file. This is what starts things off.
      *
@@ -190,9 +196,9 @@ public class Document extends DefaultHandler {
      */
     public boolean load(URL inputURL) {
         try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            SAXParser saxParser = factory.newSAXParser();
-            saxParser.parse(inputURL.toString(), this);
+            try (XMLPool.Lease<SAXParser> saxParser = XMLPool.saxParser(XMLPool.SAXProfile.DEFAULT)) {
+                saxParser.get().parse(inputURL.toString(), this);
+            }
         } catch (javax.xml.parsers.ParserConfigurationException ex) {
             LOG.severe("XML config error while attempting to read XML file \n'"
                     + inputURL + "'");
@@ -215,9 +221,9 @@ public class Document extends DefaultHandler {
 
     public boolean read(String text) throws ApplicationException {
         try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            SAXParser saxParser = factory.newSAXParser();
-            saxParser.parse(new ByteArrayInputStream(text.getBytes()), this);
+            try (XMLPool.Lease<SAXParser> saxParser = XMLPool.saxParser(XMLPool.SAXProfile.DEFAULT)) {
+                saxParser.get().parse(new ByteArrayInputStream(text.getBytes()), this);
+            }
         } catch (javax.xml.parsers.ParserConfigurationException ex) {
             LOG.severe("XML config ParserConfigurationException error while attempting to read XML text");
             LOG.severe(ex.getMessage());
@@ -393,6 +399,68 @@ public class Document extends DefaultHandler {
         return this.rootElement;
     }
 
+    /**
+     * Find the first element of the document, in document order, with the id.
+     * Ids are compared without case. Lookups go through an index, built on the
+     * first lookup after the tree changed.
+     *
+     * @param id id
+     * @return the element, or null if there is none
+     */
+    public Element getElementById(String id) {
+        ElementIndex index = this.index();
+        if (index == null) {
+            return null;
+        }
+        List<Element> elements = index.getElementsById(id);
+        return elements.isEmpty() ? null : elements.get(0);
+    }
+
+    /**
+     * Find the elements of the document, the root included, with the tag name.
+     * Tag names are compared without case. Lookups go through an index, built on
+     * the first lookup after the tree changed.
+     *
+     * @param tagName tag name
+     * @return unmodifiable list of the elements, in document order
+     */
+    public List<Element> getElementsByTagName(String tagName) {
+        ElementIndex index = this.index();
+        return index == null ? Collections.emptyList() : index.getElementsByTagName(tagName);
+    }
+
+    /**
+     * Find the elements of the document matching a selector, such as
+     * <code>class[name=User] property</code>. Compile a selector used repeatedly
+     * once with {@link Selector#compile(String)}.
+     *
+     * @param selector selector
+     * @return matching elements, in document order
+     * @throws IllegalArgumentException if the selector is invalid
+     */
+    public List<Element> select(String selector) {
+        return Selector.compile(selector).select(this);
+    }
+
+    /**
+     * The indexes of the elements, rebuilt if the tree changed since they were built.
+     * Changes made directly to the lists of {@link Element#getChildNodes()} and
+     * {@link Element#getAttributes()} are not noticed.
+     *
+     * @return indexes, or null if the document has no root
+     */
+    ElementIndex index() {
+        Element root = this.rootElement;
+        if (root == null) {
+            return null;
+        }
+        ElementIndex index = this.index;
+        if (index == null || !index.isValid(root)) {
+            this.index = index = new ElementIndex(root);
+        }
+        return index;
+    }
+
     public void save() throws Exception {
         try (FileOutputStream out = new FileOutputStream(url.getPath())) {
             save(out);
@@ -415,7 +483,7 @@ public class Document extends DefaultHandler {
             if (documentType != DocumentType.XML) {
                 writer.write(rootElement.toHtml(documentType, voidElements));
             } else {
-                writer.write(rootElement.toString());
+                new ElementWriter(writer).write(rootElement).flush();
             }
         }
 
@@ -484,22 +552,10 @@ public class Document extends DefaultHandler {
             // Pre-process HTML to make it more XML-like
             html = preprocessHtml(html);
 
-            // Configure parser
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            factory.setValidating(false);
-            factory.setNamespaceAware(false);
-
-            // Disable DTD loading and validation
-            try {
-                factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-            } catch (ParserConfigurationException e) {
-                // Ignore if features are not supported
-                logger.log(Level.WARNING, "Could not configure parser features", e);
+            // Parse the HTML, no DTD loaded
+            try (XMLPool.Lease<SAXParser> parser = XMLPool.saxParser(XMLPool.SAXProfile.HTML)) {
+                parser.get().parse(new InputSource(new StringReader(html)), this);
             }
-
-            // Parse the HTML
-            SAXParser parser = factory.newSAXParser();
-            parser.parse(new InputSource(new StringReader(html)), this);
             return html;
         } catch (Exception ex) {
             throw new ApplicationException("Failed to parse HTML: " + ex.getMessage(), ex);
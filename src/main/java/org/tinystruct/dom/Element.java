@@ -15,7 +15,12 @@
  *******************************************************************************/
 package org.tinystruct.dom;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -29,6 +34,8 @@ public class Element implements Cloneable {
     private List<Element> childNodes;
     private Element parent;
     private boolean haveData = false;
+    // Changes of the tree, shared by the elements of the tree
+    private Modifications modifications;
 
     /**
      * Default Constructor
@@ -117,6 +124,7 @@ public class Element implements Cloneable {
             if (!exists) {
                 Attribute returnValue = new Attribute(keyName, String.valueOf(value));
                 this.attributes.add(returnValue);
+                this.modified();
 
                 return returnValue;
             }
@@ -153,6 +161,7 @@ public class Element implements Cloneable {
             attribute = iterator.next();
             if (attribute.name.equalsIgnoreCase(attributeName)) {
                 this.attributes.remove(attribute);
+                this.modified();
                 break;
             }
         }
@@ -173,6 +182,7 @@ public class Element implements Cloneable {
      */
     public void setAttributes(List<Attribute> attributes) {
         this.attributes = attributes;
+        this.modified();
     }
 
     /**
@@ -195,6 +205,8 @@ public class Element implements Cloneable {
     public boolean addElement(Element element) {
         element.setParent(this);
         element.level = this.level + 1;
+        element.adopt(this.tree());
+        this.modified();
 
         return this.childNodes.add(element);
     }
@@ -209,6 +221,7 @@ public class Element implements Cloneable {
     }
 
     public boolean removeElement(Element element) {
+        this.modified();
         return this.childNodes.remove(element);
     }
 
@@ -220,15 +233,18 @@ public class Element implements Cloneable {
             if (the_target_element.name.equalsIgnoreCase(elementName))
                 break;
         }
+        this.modified();
         return this.childNodes.remove(the_target_element);
     }
 
     public Element removeElement(int index) {
+        this.modified();
         return this.childNodes.remove(index);
     }
 
     public void removeAllElements() {
         this.childNodes = new Vector<Element>();
+        this.modified();
     }
 
     public void removeFromParent() {
@@ -260,6 +276,8 @@ public class Element implements Cloneable {
         e.removeFromParent();
         this.childNodes.add(index, e);
         e.setParent(this);
+        e.adopt(this.tree());
+        this.modified();
     }
 
     /**
@@ -291,7 +309,7 @@ public class Element implements Cloneable {
         int i = 0, size = attributes.size();
 
         while (i < size) {
-            if (this.attributes.get(i++).name.equalsIgnoreCase(attributeName))
+            if (attributes.get(i++).name.equalsIgnoreCase(attributeName))
                 return true;
         }
         return false;
@@ -311,21 +329,23 @@ public class Element implements Cloneable {
     }
 
     public Element getElementById(String Id) {
-        int i = 0;
-        Element currentElement = null;
-        while (i < this.childNodes.size()) {
-            if (containsAttribute(this.childNodes.get(i).attributes, "id")) {
-                if (getAttribute(this.childNodes.get(i).attributes, "id")
-                        .equalsIgnoreCase(Id)) {
-                    currentElement = this.childNodes.get(i);
-                    break;
-                } else
-                    currentElement = this.childNodes.get(i++).getElementById(Id);
-            } else
-                currentElement = this.childNodes.get(i++).getElementById(Id);
+        // Depth first, in document order, without recursion
+        Deque<Element> stack = new ArrayDeque<>();
+        for (int i = this.childNodes.size() - 1; i >= 0; i--) {
+            stack.push(this.childNodes.get(i));
+        }
+        while (!stack.isEmpty()) {
+            Element currentElement = stack.pop();
+            if (containsAttribute(currentElement.attributes, "id")
+                    && getAttribute(currentElement.attributes, "id").equalsIgnoreCase(Id)) {
+                return currentElement;
+            }
+            for (int i = currentElement.childNodes.size() - 1; i >= 0; i--) {
+                stack.push(currentElement.childNodes.get(i));
+            }
         }
 
-        return currentElement;
+        return null;
     }
 
     private List<Element> getChildElementsByTagName(String tagName) {
@@ -411,60 +431,76 @@ public class Element implements Cloneable {
         return "\r\n" + space;
     }
 
-    @Override
-    public String toString() {
-        if (this.elementType == ElementType.TEXT) {
-            return this.name;
-        }
-
-        boolean valid = this.name != null && !this.name.trim().isEmpty();
-
-        if (!valid)
-            return "Invalid Tag Name";
+    /**
+     * @return true if data was set on the element, even empty data, so it is written with an end tag
+     */
+    boolean hasData() {
+        return this.haveData;
+    }
 
-        StringBuffer buffer = new StringBuffer();
-        StringBuffer nodes = new StringBuffer();
-        buffer.append(this.getSpace());
-        buffer.append("<");
-        buffer.append(this.name);
+    /**
+     * Count a change of the tree the element belongs to, so the indexes of a
+     * {@link Document} over the tree are rebuilt. Changes made directly to the
+     * lists of {@link #getChildNodes()} and {@link #getAttributes()} are not counted.
+     */
+    void modified() {
+        this.tree().count++;
+    }
 
-        Attribute currentAttribute;
-        Iterator<Attribute> iterator = this.attributes.iterator();
-        while (iterator.hasNext()) {
-            currentAttribute = iterator.next();
-            buffer.append(" ").append(currentAttribute.name).append("=\"").append(currentAttribute.value).append("\"");
-        }
+    /**
+     * @return the number of changes of the tree the element belongs to
+     */
+    int modifications() {
+        return this.tree().count;
+    }
 
-        if (this.data != null) {
-            nodes.append(this.data);
+    private Modifications tree() {
+        if (this.modifications == null) {
+            this.modifications = new Modifications();
         }
+        return this.modifications;
+    }
 
-        if (!this.childNodes.isEmpty()) {
-            Iterator<Element> childList = this.childNodes.iterator();
-
-            while (childList.hasNext()) {
-                nodes.append(childList.next().toString());
+    /**
+     * Make the element and its descendants count their changes with the tree
+     * they are added to. A new element is adopted at once.
+     */
+    private void adopt(Modifications tree) {
+        if (this.modifications == tree) {
+            return;
+        }
+        Deque<Element> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            Element element = stack.pop();
+            element.modifications = tree;
+            for (Element child : element.childNodes) {
+                if (child.modifications != tree) {
+                    stack.push(child);
+                }
             }
-
-            nodes.append(this.getSpace());
         }
+    }
 
-        if (this.haveData || nodes.length() > 0) {
-            buffer.append(">");
-            buffer.append(nodes);
-            buffer.append("</");
-            buffer.append(this.name);
-            buffer.append(">");
+    private static final class Modifications {
+        int count;
+    }
 
-            nodes.delete(0, nodes.length());
-        } else {
-            buffer.append("/>");
+    /**
+     * Lay the element out as text, as it is, without escaping. Use an
+     * {@link ElementWriter} to write a large tree or to escape it.
+     *
+     * @return the element and everything it contains
+     */
+    @Override
+    public String toString() {
+        StringWriter writer = new StringWriter();
+        try {
+            new ElementWriter(writer).setEscaping(false).write(this).flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-
-        String s = buffer.toString();
-        buffer.delete(0, buffer.length());
-
-        return s;
+        return writer.toString();
     }
 
     public static void printNode(Element node, String indent) {
@@ -495,6 +531,7 @@ public class Element implements Cloneable {
         try {
             Element clone = (Element) super.clone(); // creates a shallow
             // copy of this object
+            clone.modifications = null;
             if (this.attributes != null) {
                 clone.attributes = new Vector<Attribute>();
                 List<Attribute> attribs = this.attributes;
@@ -537,6 +574,7 @@ public class Element implements Cloneable {
      */
     public void setName(String name) {
         this.name = name;
+        this.modified();
     }
 
     /**
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.dom;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Indexes of an element tree: every element in document order, the elements
+ * by id and the elements by tag name. Ids and tag names are compared without
+ * case, as {@link Element#getElementById(String)} and
+ * {@link Element#getElementsByTagName(String)} compare them.
+ * <p>
+ * An index is immutable, and is valid as long as the number of modifications
+ * of its root is the one it was built from.
+ * </p>
+ */
+final class ElementIndex {
+    private final Element root;
+    private final int modifications;
+    private final List<Element> elements;
+    private final Map<String, List<Element>> ids = new HashMap<>();
+    private final Map<String, List<Element>> tags = new HashMap<>();
+
+    ElementIndex(Element root) {
+        this.root = root;
+        this.modifications = root.modifications();
+
+        List<Element> elements = new ArrayList<>();
+        Deque<Element> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Element element = stack.pop();
+            elements.add(element);
+
+            String name = element.getName();
+            if (name != null && element.getElementType() != ElementType.TEXT) {
+                this.tags.computeIfAbsent(key(name), k -> new ArrayList<>()).add(element);
+            }
+            for (Attribute attribute : element.getAttributes()) {
+                if ("id".equalsIgnoreCase(attribute.name) && attribute.value != null) {
+                    this.ids.computeIfAbsent(key(attribute.value), k -> new ArrayList<>(1)).add(element);
+                    break;
+                }
+            }
+
+            List<Element> children = element.getChildNodes();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(children.get(i));
+            }
+        }
+
+        this.elements = Collections.unmodifiableList(elements);
+        this.ids.replaceAll((id, list) -> Collections.unmodifiableList(list));
+        this.tags.replaceAll((name, list) -> Collections.unmodifiableList(list));
+    }
+
+    static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return true if the tree has not changed since the index was built
+     */
+    boolean isValid(Element root) {
+        return this.root == root && this.modifications == root.modifications();
+    }
+
+    List<Element> elements() {
+        return this.elements;
+    }
+
+    /**
+     * @return the elements with the id, in document order, as ids are not always unique
+     */
+    List<Element> getElementsById(String id) {
+        return this.ids.getOrDefault(key(id), Collections.emptyList());
+    }
+
+    List<Element> getElementsByTagName(String tagName) {
+        return this.tags.getOrDefault(key(tagName), Collections.emptyList());
+    }
+}
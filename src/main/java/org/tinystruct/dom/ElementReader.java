@@ -0,0 +1,282 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.dom;
+
+import org.tinystruct.ApplicationException;
+import org.tinystruct.ApplicationRuntimeException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Pull parser reading the elements at a path of an XML document, one at a time.
+ * <p>
+ * Only the elements at the path are built, each with its subtree, and as
+ * {@link Document#load(InputStream)} would build them; everything else is
+ * skipped as it is read. Elements are not attached to a parent, so once the
+ * caller is done with one it can be collected: a document of any size is
+ * read in memory bounded by its largest matching subtree and its depth.
+ * </p>
+ * <p>
+ * A path is a sequence of element names separated by <code>/</code>, where
+ * <code>*</code> stands for any name. A path starting with a single
+ * <code>/</code> is followed from the root of the document; any other path,
+ * such as <code>entry</code> or <code>//feed/entry</code>, matches at any
+ * depth. Names are compared without case. An element at the path within an
+ * element already read is part of that element, and is not read on its own.
+ * </p>
+ *
+ * <pre>
+ * try (ElementReader reader = new ElementReader(input, "/feed/entry")) {
+ *     while (reader.hasNext()) {
+ *         Element entry = reader.next();
+ *         ...
+ *     }
+ * }
+ * </pre>
+ */
+public final class ElementReader implements Iterator<Element>, Closeable {
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    static {
+        FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+        // Feeds come from elsewhere: no DTDs, no external entities
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final XMLStreamReader reader;
+    private final Closeable input;
+    private final String[] steps;
+    private final boolean absolute;
+    // Names of the elements open at the current position of the reader
+    private final List<String> names = new ArrayList<>();
+    private boolean preserveWhitespace;
+    private Element next;
+    private boolean closed;
+
+    /**
+     * @param input input stream of the document, closed with the reader
+     * @param path  path of the elements to read
+     * @throws ApplicationException if the document can not be read
+     */
+    public ElementReader(InputStream input, String path) throws ApplicationException {
+        this.input = input;
+        this.absolute = path.startsWith("/") && !path.startsWith("//");
+        this.steps = steps(path);
+        try {
+            this.reader = FACTORY.createXMLStreamReader(input);
+        } catch (XMLStreamException e) {
+            throw new ApplicationException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param input reader of the document, closed with the reader
+     * @param path  path of the elements to read
+     * @throws ApplicationException if the document can not be read
+     */
+    public ElementReader(Reader input, String path) throws ApplicationException {
+        this.input = input;
+        this.absolute = path.startsWith("/") && !path.startsWith("//");
+        this.steps = steps(path);
+        try {
+            this.reader = FACTORY.createXMLStreamReader(input);
+        } catch (XMLStreamException e) {
+            throw new ApplicationException(e.getMessage(), e);
+        }
+    }
+
+    private static String[] steps(String path) {
+        String trimmed = path.startsWith("//") ? path.substring(2) : path.startsWith("/") ? path.substring(1) : path;
+        String[] steps = trimmed.split("/", -1);
+        for (String step : steps) {
+            if (step.trim().isEmpty()) {
+                throw new IllegalArgumentException("Invalid path: " + path);
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Keep the whitespace of the element data as it is, rather than collapsing
+     * it and trimming it, as {@link Document#setPreserveWhitespace(boolean)}.
+     *
+     * @param preserveWhitespace true to keep the whitespace
+     * @return this reader
+     */
+    public ElementReader setPreserveWhitespace(boolean preserveWhitespace) {
+        this.preserveWhitespace = preserveWhitespace;
+        return this;
+    }
+
+    /**
+     * @return true if there is another element at the path
+     * @throws ApplicationRuntimeException if the document is malformed or can not be read
+     */
+    @Override
+    public boolean hasNext() {
+        if (this.next == null && !this.closed) {
+            try {
+                this.next = this.advance();
+            } catch (XMLStreamException e) {
+                throw new ApplicationRuntimeException(e.getMessage(), e);
+            }
+        }
+        return this.next != null;
+    }
+
+    /**
+     * @return the next element at the path, with its subtree
+     * @throws NoSuchElementException if there is none
+     */
+    @Override
+    public Element next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Element element = this.next;
+        this.next = null;
+        return element;
+    }
+
+    /**
+     * Stream the elements at the path. Closing the stream closes the reader.
+     *
+     * @return stream of the elements
+     */
+    public Stream<Element> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        this.close();
+                    } catch (IOException e) {
+                        throw new ApplicationRuntimeException(e.getMessage(), e);
+                    }
+                });
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.next = null;
+        try {
+            this.reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            this.input.close();
+        }
+    }
+
+    private Element advance() throws XMLStreamException {
+        while (this.reader.hasNext()) {
+            int event = this.reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                this.names.add(this.reader.getLocalName());
+                if (this.matches()) {
+                    Element element = this.subtree();
+                    this.names.remove(this.names.size() - 1);
+                    return element;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                this.names.remove(this.names.size() - 1);
+            }
+        }
+        return null;
+    }
+
+    private boolean matches() {
+        int depth = this.names.size();
+        if (this.absolute ? depth != this.steps.length : depth < this.steps.length) {
+            return false;
+        }
+        for (int i = this.steps.length - 1, j = depth - 1; i >= 0; i--, j--) {
+            if (!"*".equals(this.steps[i]) && !this.steps[i].equalsIgnoreCase(this.names.get(j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Build the element the reader is at the start of, up to its end.
+     */
+    private Element subtree() throws XMLStreamException {
+        Deque<Element> elements = new ArrayDeque<>();
+        Deque<StringBuilder> texts = new ArrayDeque<>();
+        Element root = this.element();
+        elements.push(root);
+        texts.push(new StringBuilder());
+
+        while (true) {
+            int event = this.reader.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    Element child = this.element();
+                    elements.peek().addElement(child);
+                    elements.push(child);
+                    texts.push(new StringBuilder());
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    texts.peek().append(this.reader.getTextCharacters(), this.reader.getTextStart(), this.reader.getTextLength());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    Element element = elements.pop();
+                    String text = texts.pop().toString();
+                    element.setData(this.preserveWhitespace ? text : WHITESPACE.matcher(text).replaceAll(" ").trim());
+                    if (elements.isEmpty()) {
+                        return root;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private Element element() {
+        Element element = new Element(this.reader.getLocalName());
+        for (int i = 0, n = this.reader.getAttributeCount(); i < n; i++) {
+            element.setAttribute(this.reader.getAttributeLocalName(i), this.reader.getAttributeValue(i));
+        }
+        return element;
+    }
+}
@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.dom;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Streaming serializer for an {@link Element} tree.
+ * <p>
+ * The tree is walked with an explicit stack rather than by recursion, so deep
+ * trees neither grow the call stack nor copy a subtree into each of its
+ * ancestors: every character is written once, through a buffer of its own, to
+ * the underlying writer. Attribute values and element content are escaped with
+ * {@link Escape}. By default elements go on lines of their own, indented by
+ * their level, as {@link Element#toString()} lays them out; in compact mode no
+ * whitespace is added at all.
+ * </p>
+ *
+ * <pre>
+ * try (OutputStream out = Files.newOutputStream(path)) {
+ *     new ElementWriter(out).setCompact(true).write(document.getRoot()).flush();
+ * }
+ * </pre>
+ */
+public class ElementWriter implements Flushable {
+    private static final char[] LINE_SEPARATOR = {'\r', '\n'};
+
+    private final Writer out;
+    private final char[] buffer = new char[8192];
+    private final Writer output = new Output();
+    private int count;
+    private char[] indentation = new char[64];
+    private boolean compact;
+    private boolean escaping = true;
+    private Escape escape;
+
+    /**
+     * @param out writer to serialize to
+     */
+    public ElementWriter(Writer out) {
+        this.out = out;
+        this.escape = new Escape();
+        this.escape.setMappingLimit(Character.MAX_VALUE);
+        this.escape.setAllowControlCharacters(true);
+        System.arraycopy(LINE_SEPARATOR, 0, indentation, 0, LINE_SEPARATOR.length);
+        Arrays.fill(indentation, LINE_SEPARATOR.length, indentation.length, ' ');
+    }
+
+    /**
+     * @param out stream to serialize to, in UTF-8
+     */
+    public ElementWriter(OutputStream out) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Leave out the line breaks and indentation between elements.
+     *
+     * @param compact true for no whitespace between elements
+     * @return this writer
+     */
+    public ElementWriter setCompact(boolean compact) {
+        this.compact = compact;
+        return this;
+    }
+
+    /**
+     * Escape attribute values and element content, which is the default. Without
+     * escaping they are written as they are, which suits content holding markup.
+     *
+     * @param escaping true to escape
+     * @return this writer
+     */
+    public ElementWriter setEscaping(boolean escaping) {
+        this.escaping = escaping;
+        return this;
+    }
+
+    /**
+     * Use an escape of its own, for example one writing characters beyond ASCII
+     * as character references. By default every character is written as it is.
+     *
+     * @param escape escape
+     * @return this writer
+     */
+    public ElementWriter setEscape(Escape escape) {
+        this.escape = escape;
+        return this;
+    }
+
+    /**
+     * Write an element and everything it contains.
+     *
+     * @param element element
+     * @return this writer
+     * @throws IOException if writing fails
+     */
+    public ElementWriter write(Element element) throws IOException {
+        Deque<Frame> stack = new ArrayDeque<>();
+        if (this.open(element)) {
+            stack.push(new Frame(element));
+        }
+
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (frame.index < frame.children.size()) {
+                Element child = frame.children.get(frame.index++);
+                if (this.open(child)) {
+                    stack.push(new Frame(child));
+                }
+            } else {
+                stack.pop();
+                this.indent(frame.element.level);
+                this.close(frame.element);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Write the buffered output to the underlying writer and flush it.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void flush() throws IOException {
+        this.drain();
+        this.out.flush();
+    }
+
+    /**
+     * Write the start of an element, its attributes and its data.
+     *
+     * @return true if its children follow, and its end tag is still to be written
+     */
+    private boolean open(Element element) throws IOException {
+        String name = element.getName();
+        if (element.getElementType() == ElementType.TEXT) {
+            this.output.write(name);
+            return false;
+        }
+        if (name == null || name.trim().isEmpty()) {
+            this.output.write("Invalid Tag Name");
+            return false;
+        }
+
+        this.indent(element.level);
+        this.output.write('<');
+        this.output.write(name);
+        for (Attribute attribute : element.getAttributes()) {
+            this.output.write(' ');
+            this.output.write(attribute.name);
+            this.output.write("=\"");
+            String value = String.valueOf(attribute.value);
+            if (this.escaping) {
+                this.escape.write(value, this.output);
+            } else {
+                this.output.write(value);
+            }
+            this.output.write('"');
+        }
+
+        String data = element.getData();
+        List<Element> children = element.getChildNodes();
+        boolean empty = data == null || data.isEmpty();
+        if (empty && children.isEmpty() && !element.hasData()) {
+            this.output.write("/>");
+            return false;
+        }
+
+        this.output.write('>');
+        if (!empty) {
+            if (this.escaping) {
+                this.escape.writeText(data, this.output);
+            } else {
+                this.output.write(data);
+            }
+        }
+        if (children.isEmpty()) {
+            this.close(element);
+            return false;
+        }
+        return true;
+    }
+
+    private void close(Element element) throws IOException {
+        this.output.write("</");
+        this.output.write(element.getName());
+        this.output.write('>');
+    }
+
+    /**
+     * Start a line indented by the level, from a buffer kept between elements.
+     */
+    private void indent(int level) throws IOException {
+        if (this.compact) {
+            return;
+        }
+        if (level == 0) {
+            // A top level element is preceded by a bare line break
+            this.output.write(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+            return;
+        }
+
+        int length = LINE_SEPARATOR.length + level;
+        if (length > this.indentation.length) {
+            int size = this.indentation.length;
+            this.indentation = Arrays.copyOf(this.indentation, Math.max(length, size * 2));
+            Arrays.fill(this.indentation, size, this.indentation.length, ' ');
+        }
+        this.output.write(this.indentation, 0, length);
+    }
+
+    private void drain() throws IOException {
+        if (this.count > 0) {
+            this.out.write(this.buffer, 0, this.count);
+            this.count = 0;
+        }
+    }
+
+    /**
+     * An element being written, and the next of its children to write.
+     */
+    private static final class Frame {
+        final Element element;
+        final List<Element> children;
+        int index;
+
+        Frame(Element element) {
+            this.element = element;
+            this.children = element.getChildNodes();
+        }
+    }
+
+    /**
+     * The buffer in front of the underlying writer, unsynchronized as it belongs to a single writer.
+     */
+    private final class Output extends Writer {
+        @Override
+        public void write(int c) throws IOException {
+            if (count == buffer.length) {
+                drain();
+            }
+            buffer[count++] = (char) c;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            if (length > buffer.length - count) {
+                drain();
+                if (length > buffer.length) {
+                    out.write(chars, offset, length);
+                    return;
+                }
+            }
+            System.arraycopy(chars, offset, buffer, count, length);
+            count += length;
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (count == buffer.length) {
+                    drain();
+                }
+                int n = Math.min(length, buffer.length - count);
+                text.getChars(offset, offset + n, buffer, count);
+                count += n;
+                offset += n;
+                length -= n;
+            }
+        }
+
+        @Override
+        public void write(String text) throws IOException {
+            this.write(text, 0, text.length());
+        }
+
+        @Override
+        public void flush() throws IOException {
+            ElementWriter.this.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            ElementWriter.this.flush();
+        }
+    }
+}
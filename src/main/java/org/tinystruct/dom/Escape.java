@@ -15,6 +15,9 @@
  *******************************************************************************/
 package org.tinystruct.dom;
 
+import java.io.IOException;
+import java.io.Writer;
+
 public class Escape {
     protected char[] value;
     protected int mappableLimit;
@@ -438,6 +441,120 @@ public class Escape {
         return changed ? new String(value, 0, outputPos) : input;
     }
 
+    /**
+     * Write an attribute value converted as by {@link #convert(String)}, straight
+     * to the writer: unchanged runs are written as they are, without building a
+     * converted copy of the value.
+     *
+     * @param input attribute value
+     * @param out   writer
+     * @throws IOException if writing fails
+     */
+    public void write(String input, Writer out) throws IOException {
+        int length = input.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = input.charAt(i);
+            char[] replacement;
+            switch (ch) {
+                case '&':
+                    replacement = AMP;
+                    break;
+                case '<':
+                    replacement = LESS;
+                    break;
+                case '"':
+                    replacement = QUOTE;
+                    break;
+                case '\n':
+                    replacement = LF;
+                    break;
+                case '\r':
+                    replacement = CR;
+                    break;
+                case '\t':
+                    replacement = TAB;
+                    break;
+                default:
+                    replacement = replacement(ch, input);
+                    break;
+            }
+            if (replacement != null) {
+                out.write(input, start, i - start);
+                out.write(replacement);
+                start = i + 1;
+            }
+        }
+        out.write(input, start, length - start);
+    }
+
+    /**
+     * Write element content converted as by {@link #convertText(String)}, straight
+     * to the writer: unchanged runs are written as they are, without building a
+     * converted copy of the content.
+     *
+     * @param input element content
+     * @param out   writer
+     * @throws IOException if writing fails
+     */
+    public void writeText(String input, Writer out) throws IOException {
+        if (useCDATA) {
+            // Whether it becomes a CDATA section depends on the whole content
+            out.write(convertText(input));
+            return;
+        }
+
+        int length = input.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = input.charAt(i);
+            char[] replacement;
+            switch (ch) {
+                case '&':
+                    replacement = AMP;
+                    break;
+                case '<':
+                    replacement = LESS;
+                    break;
+                case '"':
+                    replacement = QUOTE;
+                    break;
+                case '\n':
+                    replacement = LINE_FEED;
+                    break;
+                case '\r':
+                    replacement = CR;
+                    break;
+                case '>':
+                    replacement = i >= 2 && input.charAt(i - 1) == ']' && input.charAt(i - 2) == ']' ? GREATER : null;
+                    break;
+                default:
+                    replacement = replacement(ch, input);
+                    break;
+            }
+            if (replacement != null) {
+                out.write(input, start, i - start);
+                out.write(replacement);
+                start = i + 1;
+            }
+        }
+        out.write(input, start, length - start);
+    }
+
+    /**
+     * @return the reference for a control character or a character beyond the mapping limit,
+     * or null if the character is written as it is
+     */
+    private char[] replacement(char ch, String input) {
+        if (ch > 0 && ch < 0x20 && ch != '\t' && ch != '\n' && ch != '\r') {
+            if (!allowControlCharacters) {
+                throw new RuntimeException("An invalid XML character (Unicode: 0x" + Integer.toHexString(ch) + ") was found in the element content:" + input);
+            }
+            return CONTROL_CHARACTERS[ch];
+        }
+        return ch <= mappableLimit ? null : ("&#x" + Integer.toHexString(ch) + ";").toCharArray();
+    }
+
     protected int replaceChars(int pos, char[] replacement, int inputLength) {
         int rlen = replacement.length;
         int newPos = pos + rlen;
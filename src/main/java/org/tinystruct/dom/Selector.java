@@ -0,0 +1,282 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.dom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compiled selector over the elements of a {@link Document}.
+ * <p>
+ * A selector is a sequence of compound selectors separated by whitespace, each
+ * matching a descendant of an element matched by the one before. A compound
+ * selector is a tag name or <code>*</code>, followed by any of
+ * <code>#id</code>, <code>[attr]</code> and <code>[attr=value]</code>, for
+ * example <code>mapping class[name=User] property</code> or
+ * <code>#content [type="text"]</code>. Tag names, ids and attribute names are
+ * compared without case; attribute values are compared exactly.
+ * </p>
+ * <p>
+ * Candidates for the last compound selector are taken from the indexes of the
+ * document, by id or by tag name, and their ancestors are checked against the
+ * compound selectors before it, so a query does not walk the whole tree.
+ * </p>
+ */
+public final class Selector {
+    private final String selector;
+    private final Compound[] compounds;
+
+    private Selector(String selector, Compound[] compounds) {
+        this.selector = selector;
+        this.compounds = compounds;
+    }
+
+    /**
+     * Compile a selector.
+     *
+     * @param selector selector
+     * @return compiled selector
+     * @throws IllegalArgumentException if the selector is invalid
+     */
+    public static Selector compile(String selector) {
+        if (selector == null) {
+            throw new IllegalArgumentException("Selector is null");
+        }
+        return new Parser(selector).parse();
+    }
+
+    /**
+     * Select the elements of a document matching the selector.
+     *
+     * @param document document
+     * @return matching elements, in document order
+     */
+    public List<Element> select(Document document) {
+        ElementIndex index = document.index();
+        if (index == null) {
+            return Collections.emptyList();
+        }
+
+        Compound last = this.compounds[this.compounds.length - 1];
+        List<Element> candidates;
+        if (last.id != null) {
+            candidates = index.getElementsById(last.id);
+        } else if (last.tag != null) {
+            candidates = index.getElementsByTagName(last.tag);
+        } else {
+            candidates = index.elements();
+        }
+
+        List<Element> found = new ArrayList<>();
+        for (Element candidate : candidates) {
+            if (this.matches(candidate)) {
+                found.add(candidate);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Select the first element of a document matching the selector.
+     *
+     * @param document document
+     * @return the first matching element in document order, or null
+     */
+    public Element selectFirst(Document document) {
+        List<Element> found = this.select(document);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * @param element element
+     * @return true if the element matches the selector
+     */
+    public boolean matches(Element element) {
+        int i = this.compounds.length - 1;
+        if (!this.compounds[i].matches(element)) {
+            return false;
+        }
+        // With descendant combinators only, the nearest matching ancestor is always the right one
+        Element ancestor = element.getParent();
+        while (--i >= 0) {
+            while (ancestor != null && !this.compounds[i].matches(ancestor)) {
+                ancestor = ancestor.getParent();
+            }
+            if (ancestor == null) {
+                return false;
+            }
+            ancestor = ancestor.getParent();
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return this.selector;
+    }
+
+    private static final class Compound {
+        private String tag;
+        private String id;
+        private final List<String> names = new ArrayList<>();
+        private final List<String> values = new ArrayList<>();
+
+        boolean matches(Element element) {
+            if (element.getElementType() == ElementType.TEXT) {
+                return false;
+            }
+            if (this.tag != null && !this.tag.equalsIgnoreCase(element.getName())) {
+                return false;
+            }
+            if (this.id != null && !this.id.equalsIgnoreCase(value(element, "id"))) {
+                return false;
+            }
+            for (int i = 0; i < this.names.size(); i++) {
+                String value = value(element, this.names.get(i));
+                if (value == null || (this.values.get(i) != null && !this.values.get(i).equals(value))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the value of the attribute, or null if the element does not have it
+         */
+        private static String value(Element element, String name) {
+            for (Attribute attribute : element.getAttributes()) {
+                if (attribute.name.equalsIgnoreCase(name)) {
+                    return attribute.value;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Parser {
+        private final String selector;
+        private int position;
+
+        Parser(String selector) {
+            this.selector = selector;
+        }
+
+        Selector parse() {
+            List<Compound> compounds = new ArrayList<>();
+            this.skipWhitespace();
+            while (this.position < this.selector.length()) {
+                compounds.add(this.compound());
+                this.skipWhitespace();
+            }
+            if (compounds.isEmpty()) {
+                throw new IllegalArgumentException("Empty selector");
+            }
+            return new Selector(this.selector, compounds.toArray(new Compound[0]));
+        }
+
+        private Compound compound() {
+            Compound compound = new Compound();
+            char ch = this.selector.charAt(this.position);
+            if (ch == '*') {
+                this.position++;
+            } else if (isNameCharacter(ch)) {
+                compound.tag = this.name();
+            }
+
+            while (this.position < this.selector.length()) {
+                ch = this.selector.charAt(this.position);
+                if (ch == '#') {
+                    this.position++;
+                    if (compound.id != null) {
+                        throw this.error("More than one id");
+                    }
+                    compound.id = this.name();
+                } else if (ch == '[') {
+                    this.position++;
+                    this.skipWhitespace();
+                    compound.names.add(this.name());
+                    this.skipWhitespace();
+                    String value = null;
+                    if (this.position < this.selector.length() && this.selector.charAt(this.position) == '=') {
+                        this.position++;
+                        this.skipWhitespace();
+                        value = this.value();
+                        this.skipWhitespace();
+                    }
+                    compound.values.add(value);
+                    if (this.position >= this.selector.length() || this.selector.charAt(this.position) != ']') {
+                        throw this.error("Expected ']'");
+                    }
+                    this.position++;
+                } else if (Character.isWhitespace(ch)) {
+                    break;
+                } else {
+                    throw this.error("Unexpected '" + ch + "'");
+                }
+            }
+            return compound;
+        }
+
+        private String name() {
+            int start = this.position;
+            while (this.position < this.selector.length() && isNameCharacter(this.selector.charAt(this.position))) {
+                this.position++;
+            }
+            if (start == this.position) {
+                throw this.error("Expected a name");
+            }
+            return this.selector.substring(start, this.position);
+        }
+
+        private String value() {
+            if (this.position >= this.selector.length()) {
+                throw this.error("Expected a value");
+            }
+            char quote = this.selector.charAt(this.position);
+            if (quote == '"' || quote == '\'') {
+                int end = this.selector.indexOf(quote, this.position + 1);
+                if (end < 0) {
+                    throw this.error("Unterminated value");
+                }
+                String value = this.selector.substring(this.position + 1, end);
+                this.position = end + 1;
+                return value;
+            }
+
+            int start = this.position;
+            while (this.position < this.selector.length() && this.selector.charAt(this.position) != ']'
+                    && !Character.isWhitespace(this.selector.charAt(this.position))) {
+                this.position++;
+            }
+            return this.selector.substring(start, this.position);
+        }
+
+        private void skipWhitespace() {
+            while (this.position < this.selector.length() && Character.isWhitespace(this.selector.charAt(this.position))) {
+                this.position++;
+            }
+        }
+
+        private static boolean isNameCharacter(char ch) {
+            return Character.isLetterOrDigit(ch) || ch == '-' || ch == '_' || ch == ':' || ch == '.';
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at " + this.position + " in selector: " + this.selector);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.dom;
+
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shared JAXP factories, and pools of the parsers and transformers they make.
+ * <p>
+ * Looking up a JAXP factory goes through the service loader and the class
+ * path, and costs more than parsing a small document. The factories here are
+ * looked up and configured once, security attributes included. The parsers
+ * and transformers, which are not thread-safe, are lent out one caller at a
+ * time and reset when given back:
+ * </p>
+ *
+ * <pre>
+ * try (XMLPool.Lease&lt;SAXParser&gt; parser = XMLPool.saxParser(XMLPool.SAXProfile.NAMESPACE_AWARE)) {
+ *     parser.get().parse(input, handler);
+ * }
+ * </pre>
+ * <p>
+ * A pool keeps a few idle instances per processor; any more are dropped when
+ * given back. The instance given back last is lent out first. An instance that can not be reset is dropped too.
+ * </p>
+ */
+public final class XMLPool {
+    private static final Logger logger = Logger.getLogger(XMLPool.class.getName());
+    private static final int MAX_IDLE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private static final Pool<DocumentBuilder> DOCUMENT_BUILDERS = new Pool<>(DocumentBuilder::reset);
+    private static final Pool<Transformer> TRANSFORMERS = new Pool<>(Transformer::reset);
+
+    private XMLPool() {
+    }
+
+    /**
+     * How a SAX parser is configured.
+     */
+    public enum SAXProfile {
+        /**
+         * The defaults of the factory: not validating, not namespace aware.
+         */
+        DEFAULT(false),
+        /**
+         * Namespace aware, not validating.
+         */
+        NAMESPACE_AWARE(true),
+        /**
+         * For HTML read as XML: no namespaces, no validation, and no DTD loaded.
+         */
+        LENIENT(true,
+                "http://xml.org/sax/features/namespaces",
+                "http://xml.org/sax/features/validation",
+                "http://apache.org/xml/features/nonvalidating/load-dtd-grammar",
+                "http://apache.org/xml/features/nonvalidating/load-external-dtd"),
+        /**
+         * For HTML made well-formed: not namespace aware, no external DTD loaded.
+         */
+        HTML(false, "http://apache.org/xml/features/nonvalidating/load-external-dtd");
+
+        private final boolean namespaceAware;
+        private final String[] disabledFeatures;
+        private final Pool<SAXParser> pool = new Pool<>(SAXParser::reset);
+        private SAXParserFactory factory;
+
+        SAXProfile(boolean namespaceAware, String... disabledFeatures) {
+            this.namespaceAware = namespaceAware;
+            this.disabledFeatures = disabledFeatures;
+        }
+
+        // Factories are not thread-safe; this only runs when the pool is empty
+        private synchronized SAXParser newSAXParser() throws ParserConfigurationException, SAXException {
+            if (this.factory == null) {
+                SAXParserFactory factory = SAXParserFactory.newInstance();
+                factory.setValidating(false);
+                factory.setNamespaceAware(this.namespaceAware);
+                for (String feature : this.disabledFeatures) {
+                    try {
+                        factory.setFeature(feature, false);
+                    } catch (ParserConfigurationException | SAXException e) {
+                        // Not every parser knows the features of Xerces
+                        logger.log(Level.WARNING, "Could not configure parser feature " + feature, e);
+                    }
+                }
+                this.factory = factory;
+            }
+            return this.factory.newSAXParser();
+        }
+    }
+
+    /**
+     * Borrow a SAX parser.
+     *
+     * @param profile how the parser is configured
+     * @return lease of the parser, to be closed once the parser is done with
+     * @throws ParserConfigurationException if the parser can not be created
+     * @throws SAXException                 if the parser can not be created
+     */
+    public static Lease<SAXParser> saxParser(SAXProfile profile) throws ParserConfigurationException, SAXException {
+        SAXParser parser = profile.pool.poll();
+        return new Lease<>(profile.pool, parser != null ? parser : profile.newSAXParser());
+    }
+
+    /**
+     * Borrow a document builder, not validating, with external DTDs and
+     * schemas not accessed.
+     *
+     * @return lease of the builder, to be closed once the builder is done with
+     * @throws ParserConfigurationException if the builder can not be created
+     */
+    public static Lease<DocumentBuilder> documentBuilder() throws ParserConfigurationException {
+        DocumentBuilder builder = DOCUMENT_BUILDERS.poll();
+        return new Lease<>(DOCUMENT_BUILDERS, builder != null ? builder : Factories.newDocumentBuilder());
+    }
+
+    /**
+     * Borrow an identity transformer, with external DTDs and stylesheets not
+     * accessed. Its output properties are those of a new transformer.
+     *
+     * @return lease of the transformer, to be closed once the transformer is done with
+     * @throws TransformerConfigurationException if the transformer can not be created
+     */
+    public static Lease<Transformer> transformer() throws TransformerConfigurationException {
+        Transformer transformer = TRANSFORMERS.poll();
+        return new Lease<>(TRANSFORMERS, transformer != null ? transformer : Factories.newTransformer());
+    }
+
+    /**
+     * A parser or transformer borrowed from a pool, given back on close.
+     *
+     * @param <T> type of the instance
+     */
+    public static final class Lease<T> implements AutoCloseable {
+        private final Pool<T> pool;
+        private T instance;
+
+        private Lease(Pool<T> pool, T instance) {
+            this.pool = pool;
+            this.instance = instance;
+        }
+
+        /**
+         * @return the instance borrowed
+         * @throws IllegalStateException if the lease is closed
+         */
+        public T get() {
+            if (this.instance == null) {
+                throw new IllegalStateException("The lease has been closed");
+            }
+            return this.instance;
+        }
+
+        /**
+         * Give the instance back. It must not be used afterwards.
+         */
+        @Override
+        public void close() {
+            if (this.instance != null) {
+                this.pool.release(this.instance);
+                this.instance = null;
+            }
+        }
+    }
+
+    // Last in, first out: the instance given back last is the one warm in the caches
+    private static final class Pool<T> {
+        private final Deque<T> idle = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final Consumer<T> reset;
+
+        Pool(Consumer<T> reset) {
+            this.reset = reset;
+        }
+
+        T poll() {
+            T instance = this.idle.pollFirst();
+            if (instance != null) {
+                this.size.decrementAndGet();
+            }
+            return instance;
+        }
+
+        void release(T instance) {
+            try {
+                this.reset.accept(instance);
+            } catch (RuntimeException e) {
+                // Not resettable, so not reusable
+                return;
+            }
+            if (this.size.incrementAndGet() <= MAX_IDLE) {
+                this.idle.offerFirst(instance);
+            } else {
+                this.size.decrementAndGet();
+            }
+        }
+    }
+
+    // Factories of the DOM pipeline, looked up when first needed
+    private static final class Factories {
+        private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY;
+        private static final TransformerFactory TRANSFORMER_FACTORY;
+
+        static {
+            DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+            DOCUMENT_BUILDER_FACTORY.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            DOCUMENT_BUILDER_FACTORY.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+            DOCUMENT_BUILDER_FACTORY.setValidating(false);
+
+            TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+            TRANSFORMER_FACTORY.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            TRANSFORMER_FACTORY.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
+        }
+
+        static DocumentBuilder newDocumentBuilder() throws ParserConfigurationException {
+            synchronized (DOCUMENT_BUILDER_FACTORY) {
+                return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+            }
+        }
+
+        static Transformer newTransformer() throws TransformerConfigurationException {
+            synchronized (TRANSFORMER_FACTORY) {
+                return TRANSFORMER_FACTORY.newTransformer();
+            }
+        }
+    }
+}
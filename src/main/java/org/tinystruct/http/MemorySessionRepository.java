@@ -39,6 +39,11 @@ public class MemorySessionRepository implements SessionRepository {
         manager.fireEvent(new SessionEvent(SessionEvent.Type.DESTROYED, session));
     }
 
+    @Override
+    public long size() {
+        return sessions.size();
+    }
+
     private final class ExpirationValidator extends TimerTask {
         @Override
         public void run() {
@@ -144,6 +144,15 @@ public class SSEClient implements Runnable {
         }
     }
 
+    /**
+     * Returns the number of messages waiting to be written to the client.
+     *
+     * @return queued message count
+     */
+    public int getQueueSize() {
+        return messageQueue.size();
+    }
+
     /**
      * Checks if the client connection is still active.
      *
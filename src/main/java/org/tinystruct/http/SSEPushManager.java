@@ -1,6 +1,7 @@
 package org.tinystruct.http;
 
 import org.tinystruct.data.component.Builder;
+import org.tinystruct.system.metrics.MetricsRegistry;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -65,6 +66,11 @@ public class SSEPushManager {
             return t;
         });
         this.watchdog.scheduleAtFixedRate(this::checkStaleConnections, 30, 30, TimeUnit.SECONDS);
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        String manager = getClass().getSimpleName();
+        metrics.gauge("tinystruct_sse_clients", "Connected SSE clients, per push manager", this.clients::size, "manager", manager);
+        metrics.gauge("tinystruct_sse_queue_depth", "Messages queued for SSE clients, per push manager", this::queueDepth, "manager", manager);
         logger.info("SSEPushManager initialized");
     }
 
@@ -342,6 +348,16 @@ public class SSEPushManager {
         return Collections.unmodifiableMap(stats);
     }
 
+    private long queueDepth() {
+        long depth = 0;
+        for (Object client : clients.values()) {
+            if (client instanceof SSEClient) {
+                depth += ((SSEClient) client).getQueueSize();
+            }
+        }
+        return depth;
+    }
+
     /**
      * Watchdog task: logs a WARNING for every Servlet-mode SSE client whose
      * last activity (message or heartbeat) is older than {@link #STALE_THRESHOLD_SEC}.
@@ -2,6 +2,7 @@ package org.tinystruct.http;
 
 import org.tinystruct.system.Configuration;
 import org.tinystruct.system.Settings;
+import org.tinystruct.system.metrics.MetricsRegistry;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -27,6 +28,9 @@ public final class SessionManager implements Monitor<SessionListener> {
         }
 
         this.repository = sessionRepository;
+        if (this.repository.size() >= 0) {
+            MetricsRegistry.getInstance().gauge("tinystruct_sessions", "Sessions held by the session repository", this.repository::size);
+        }
     }
 
     public static SessionManager getInstance() {
@@ -52,4 +52,13 @@ public interface SessionRepository {
      * @param sessionId the session identifier
      */
     void delete(String sessionId);
+
+    /**
+     * Count the sessions held by the repository.
+     *
+     * @return the number of sessions, or -1 if the repository cannot count them cheaply
+     */
+    default long size() {
+        return -1;
+    }
 }
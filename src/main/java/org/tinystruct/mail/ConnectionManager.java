@@ -38,12 +38,18 @@ import java.time.Instant;
 public final class ConnectionManager implements AutoCloseable {
     private static final Logger logger = Logger.getLogger(ConnectionManager.class.getName());
 
-    private final ConcurrentLinkedQueue<PooledConnection> idleConnections;
+    private final LinkedBlockingQueue<PooledConnection> idleConnections;
     private final ConcurrentHashMap<Connection, Instant> activeConnections;
     private final ScheduledExecutorService cleanupExecutor;
     private final int maxPoolSize;
+    /**
+     * One permit per connection that may be handed out; taken before a connection is
+     * borrowed and returned when it comes back, so waiting callers block on it.
+     */
+    private final Semaphore permits;
     private final Duration maxIdleTime;
     private final Duration maxLifetime;
+    private final Duration maxWait;
     private volatile boolean isShutdown;
 
     private static final class SingletonHolder {
@@ -51,7 +57,7 @@ public final class ConnectionManager implements AutoCloseable {
     }
 
     private ConnectionManager() {
-        this.idleConnections = new ConcurrentLinkedQueue<>();
+        this.idleConnections = new LinkedBlockingQueue<>();
         this.activeConnections = new ConcurrentHashMap<>();
         this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
             Thread t = new Thread(r, "ConnectionManager-Cleanup");
@@ -61,6 +67,8 @@ public final class ConnectionManager implements AutoCloseable {
         this.maxPoolSize = Integer.parseInt(System.getProperty("mail.pool.size", "10"));
         this.maxIdleTime = Duration.ofMinutes(Integer.parseInt(System.getProperty("mail.pool.idle.minutes", "5")));
         this.maxLifetime = Duration.ofMinutes(Integer.parseInt(System.getProperty("mail.pool.lifetime.minutes", "30")));
+        this.maxWait = Duration.ofSeconds(Integer.parseInt(System.getProperty("mail.pool.wait.seconds", "3")));
+        this.permits = new Semaphore(this.maxPoolSize, true);
         this.isShutdown = false;
 
         // Schedule periodic cleanup
@@ -87,30 +95,32 @@ public final class ConnectionManager implements AutoCloseable {
             throw new ApplicationException("Connection manager is shut down");
         }
 
-        // First try to get an idle connection
-        PooledConnection connection = idleConnections.poll();
-        if (connection != null) {
-            if (isConnectionValid(connection)) {
-                markConnectionActive(connection);
-                return connection;
-            } else {
-                closeConnection(connection);
+        // Wait until a connection may be handed out, instead of polling the pool
+        try {
+            if (!permits.tryAcquire(maxWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new ApplicationException("Connection pool exhausted");
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApplicationException("Interrupted while waiting for connection", e);
         }
 
-        // Create new connection if pool is not full
-        if (activeConnections.size() < maxPoolSize) {
+        try {
+            PooledConnection connection;
+            while ((connection = idleConnections.poll()) != null) {
+                if (isConnectionValid(connection)) {
+                    markConnectionActive(connection);
+                    return connection;
+                }
+                closeConnection(connection);
+            }
+
             connection = createNewConnection(config, protocol);
             markConnectionActive(connection);
             return connection;
-        }
-
-        // Wait for a connection to become available
-        try {
-            return waitForConnection(config, protocol);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new ApplicationException("Interrupted while waiting for connection", e);
+        } catch (ApplicationException | RuntimeException e) {
+            permits.release();
+            throw e;
         }
     }
 
@@ -122,7 +132,11 @@ public final class ConnectionManager implements AutoCloseable {
     public void releaseConnection(Connection connection) {
         if (connection instanceof PooledConnection) {
             PooledConnection pooledConnection = (PooledConnection) connection;
-            activeConnections.remove(connection);
+            if (activeConnections.remove(connection) == null) {
+                // Already reclaimed by the cleanup
+                closeConnection(pooledConnection);
+                return;
+            }
 
             if (pooledConnection.dead) {
                 closeConnection(pooledConnection);
@@ -131,7 +145,7 @@ public final class ConnectionManager implements AutoCloseable {
             } else {
                 closeConnection(pooledConnection);
             }
-
+            permits.release();
         }
     }
 
@@ -161,7 +175,7 @@ public final class ConnectionManager implements AutoCloseable {
 
         // Cleanup idle connections
         idleConnections.removeIf(conn -> {
-            if (conn.available() || isConnectionExpired(conn, now)) {
+            if (!conn.available() || isConnectionExpired(conn, now)) {
                 closeConnection(conn);
                 return true;
             }
@@ -172,6 +186,7 @@ public final class ConnectionManager implements AutoCloseable {
         activeConnections.entrySet().removeIf(entry -> {
             if (Duration.between(entry.getValue(), now).compareTo(maxLifetime) > 0) {
                 closeConnection(entry.getKey());
+                permits.release();
                 return true;
             }
             return false;
@@ -214,22 +229,6 @@ public final class ConnectionManager implements AutoCloseable {
         return new PooledConnection(baseConnection);
     }
 
-    private Connection waitForConnection(Configuration<String> config, PROTOCOL protocol)
-            throws InterruptedException, ApplicationException {
-        int attempts = 0;
-        while (attempts < 3) {
-            PooledConnection connection = idleConnections.poll();
-            if (connection != null && isConnectionValid(connection)) {
-                markConnectionActive(connection);
-                return connection;
-            }
-
-            Thread.sleep(1000);
-            attempts++;
-        }
-        throw new ApplicationException("Connection pool exhausted");
-    }
-
     /**
      * Wraps a Connection with pooling metadata.
      */
@@ -0,0 +1,646 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.mail;
+
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.tinystruct.ApplicationException;
+import org.tinystruct.system.Configuration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Asynchronous outbound mail queue.
+ * <p>
+ * A message is written to a spool directory before {@link #enqueue(MimeMessage)}
+ * returns, one copy per recipient domain, so queued mail survives a restart and
+ * each domain is delivered and rate limited on its own. A fixed number of sender
+ * threads each keep one SMTP transport open and send many messages over it.
+ * Temporary failures are retried with exponential backoff; permanent (5xx)
+ * rejections and messages out of attempts are moved to the {@code failed}
+ * folder of the spool.
+ * </p>
+ *
+ * <pre>
+ * MailQueue queue = new MailQueue(settings, Paths.get("mail-spool")).setSenders(4).start();
+ * queue.enqueue(message);
+ * </pre>
+ */
+public final class MailQueue implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(MailQueue.class.getName());
+
+    private static final String MESSAGE = ".eml";
+    private static final String ENVELOPE = ".envelope";
+    private static final String FAILED = "failed";
+
+    private final Session session;
+    private final Path spool;
+    private final DelayQueue<Envelope> queue = new DelayQueue<>();
+    private final Map<String, RateLimit> limits = new ConcurrentHashMap<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private int senders = 2;
+    private int maxAttempts = 8;
+    private long backoffMillis = TimeUnit.SECONDS.toMillis(30);
+    private long maxBackoffMillis = TimeUnit.HOURS.toMillis(1);
+    private int messagesPerSession = 100;
+    private long idleMillis = TimeUnit.SECONDS.toMillis(30);
+    private int defaultPermits = 0;
+    private long defaultPeriodNanos = 0;
+    private volatile Listener listener;
+    private volatile boolean running;
+
+    /**
+     * Create a queue sending through the server of the mail.smtp.* settings.
+     *
+     * @param config configuration
+     * @param spool  spool directory
+     */
+    public MailQueue(Configuration<String> config, Path spool) {
+        this(SMTPConnection.createSession(config), spool);
+    }
+
+    /**
+     * Create a queue sending through the server of a session.
+     *
+     * @param session mail session
+     * @param spool   spool directory
+     */
+    public MailQueue(Session session, Path spool) {
+        this.session = session;
+        this.spool = spool;
+    }
+
+    /**
+     * @return session to create messages for this queue with
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Set the number of sender threads, each with its own SMTP connection.
+     */
+    public MailQueue setSenders(int senders) {
+        if (senders <= 0) {
+            throw new IllegalArgumentException("At least one sender is required");
+        }
+        this.senders = senders;
+        return this;
+    }
+
+    /**
+     * Set how many times a message is tried before it is given up.
+     */
+    public MailQueue setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * Set the wait before the first retry; it doubles with every further attempt up to the maximum.
+     */
+    public MailQueue setBackoff(long backoff, long maxBackoff, TimeUnit unit) {
+        this.backoffMillis = unit.toMillis(backoff);
+        this.maxBackoffMillis = unit.toMillis(maxBackoff);
+        return this;
+    }
+
+    /**
+     * Set how many messages are sent over one SMTP session before it is reopened.
+     */
+    public MailQueue setMessagesPerSession(int messagesPerSession) {
+        this.messagesPerSession = messagesPerSession;
+        return this;
+    }
+
+    /**
+     * Set how long an idle sender keeps its SMTP session open.
+     */
+    public MailQueue setIdleTimeout(long timeout, TimeUnit unit) {
+        this.idleMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Limit the messages sent to a recipient domain.
+     *
+     * @param domain  recipient domain, e.g. example.com
+     * @param permits messages per period
+     * @param period  period
+     * @param unit    time unit of the period
+     * @return this queue
+     */
+    public MailQueue setRateLimit(String domain, int permits, long period, TimeUnit unit) {
+        this.limits.put(domain.toLowerCase(Locale.ROOT), new RateLimit(permits, unit.toNanos(period)));
+        return this;
+    }
+
+    /**
+     * Limit the messages sent to each domain without a limit of its own.
+     */
+    public MailQueue setDefaultRateLimit(int permits, long period, TimeUnit unit) {
+        this.defaultPermits = permits;
+        this.defaultPeriodNanos = unit.toNanos(period);
+        return this;
+    }
+
+    public MailQueue setListener(Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Load the messages left in the spool and start the senders.
+     *
+     * @return this queue
+     * @throws ApplicationException if the spool cannot be read
+     */
+    public synchronized MailQueue start() throws ApplicationException {
+        if (running) {
+            return this;
+        }
+
+        try {
+            Files.createDirectories(spool.resolve(FAILED));
+            recover();
+        } catch (IOException e) {
+            throw new ApplicationException("Could not open mail spool " + spool + ": " + e.getMessage(), e);
+        }
+
+        running = true;
+        for (int i = 0; i < senders; i++) {
+            Thread thread = new Thread(this::send, "mail-sender-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        return this;
+    }
+
+    /**
+     * Spool a message for delivery to its recipients.
+     *
+     * @param message message
+     * @return message id in the spool
+     * @throws ApplicationException if the message has no recipients or cannot be spooled
+     */
+    public String enqueue(MimeMessage message) throws ApplicationException {
+        try {
+            message.saveChanges();
+            Address[] recipients = message.getAllRecipients();
+            if (recipients == null || recipients.length == 0) {
+                throw new ApplicationException("No recipients specified");
+            }
+
+            Map<String, List<Address>> domains = new LinkedHashMap<>();
+            for (Address recipient : recipients) {
+                domains.computeIfAbsent(domainOf(recipient), k -> new ArrayList<>()).add(recipient);
+            }
+
+            ByteArrayOutputStream raw = new ByteArrayOutputStream();
+            message.writeTo(raw, new String[]{"Bcc"});
+
+            String id = UUID.randomUUID().toString().replace("-", "");
+            int part = 0;
+            for (Map.Entry<String, List<Address>> domain : domains.entrySet()) {
+                Envelope envelope = new Envelope(id + "." + (part++), domain.getKey(),
+                        domain.getValue().toArray(new Address[0]), System.currentTimeMillis());
+                write(spool.resolve(envelope.id + MESSAGE), raw.toByteArray());
+                save(envelope);
+                pending.incrementAndGet();
+                queue.add(envelope);
+            }
+            return id;
+        } catch (MessagingException | IOException e) {
+            throw new ApplicationException("Could not spool message: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return messages not yet delivered or given up, one per recipient domain
+     */
+    public int size() {
+        return pending.get();
+    }
+
+    /**
+     * Stop the senders. Messages not yet sent stay in the spool for the next start.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        threads.clear();
+        queue.clear();
+        pending.set(0);
+    }
+
+    private void send() {
+        SMTPConnection connection = null;
+        int sent = 0;
+        try {
+            while (running) {
+                Envelope envelope = queue.poll(idleMillis, TimeUnit.MILLISECONDS);
+                if (envelope == null) {
+                    connection = close(connection);
+                    continue;
+                }
+
+                long wait = limitOf(envelope.domain).reserve();
+                if (wait > 0) {
+                    envelope.next = System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(wait) + 1;
+                    queue.add(envelope);
+                    continue;
+                }
+
+                try {
+                    if (connection == null || sent >= messagesPerSession) {
+                        close(connection);
+                        connection = null;
+                        connection = new SMTPConnection(session);
+                        sent = 0;
+                    }
+                    connection.send(load(envelope), envelope.recipients);
+                    sent++;
+                    delivered(envelope, envelope.recipients);
+                } catch (SendFailedException e) {
+                    rejected(envelope, e);
+                } catch (MessagingException e) {
+                    // The session may be unusable now
+                    connection = close(connection);
+                    retry(envelope, e);
+                } catch (ApplicationException | IOException e) {
+                    connection = close(connection);
+                    retry(envelope, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            close(connection);
+        }
+    }
+
+    /**
+     * Sort the recipients of a failed transaction into given up and to be retried.
+     */
+    private void rejected(Envelope envelope, SendFailedException e) {
+        if (e instanceof SMTPSendFailedException) {
+            // The whole transaction was refused, e.g. at MAIL FROM or DATA
+            if (((SMTPSendFailedException) e).getReturnCode() / 100 == 5) {
+                failed(envelope, envelope.recipients, e);
+            } else {
+                retry(envelope, e);
+            }
+            return;
+        }
+
+        List<Address> refused = new ArrayList<>();
+        List<Address> again = new ArrayList<>();
+        Exception next = e.getNextException();
+        while (next instanceof MessagingException) {
+            if (next instanceof SMTPAddressFailedException) {
+                SMTPAddressFailedException failure = (SMTPAddressFailedException) next;
+                (failure.getReturnCode() / 100 == 5 ? refused : again).add(failure.getAddress());
+            }
+            next = ((MessagingException) next).getNextException();
+        }
+        if (e.getValidUnsentAddresses() != null) {
+            again.addAll(List.of(e.getValidUnsentAddresses()));
+        }
+        if (e.getValidSentAddresses() != null && e.getValidSentAddresses().length > 0) {
+            notifySent(envelope, e.getValidSentAddresses());
+        }
+
+        if (again.isEmpty()) {
+            failed(envelope, refused.isEmpty() ? envelope.recipients : refused.toArray(new Address[0]), e);
+            return;
+        }
+        if (!refused.isEmpty()) {
+            notifyFailed(envelope, refused.toArray(new Address[0]), e);
+        }
+        envelope.recipients = again.toArray(new Address[0]);
+        retry(envelope, e);
+    }
+
+    private void retry(Envelope envelope, Exception cause) {
+        envelope.attempts++;
+        if (envelope.attempts >= maxAttempts) {
+            failed(envelope, envelope.recipients, cause);
+            return;
+        }
+
+        long delay = Math.min(maxBackoffMillis, backoffMillis << Math.min(envelope.attempts - 1, 30));
+        delay += ThreadLocalRandom.current().nextLong(delay / 5 + 1);
+        envelope.next = System.currentTimeMillis() + delay;
+        logger.log(Level.FINE, "Delivery of " + envelope.id + " failed, retrying in " + delay + "ms: " + cause.getMessage());
+        try {
+            save(envelope);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not update spooled message " + envelope.id, e);
+        }
+        queue.add(envelope);
+    }
+
+    private void delivered(Envelope envelope, Address[] recipients) {
+        try {
+            Files.deleteIfExists(spool.resolve(envelope.id + ENVELOPE));
+            Files.deleteIfExists(spool.resolve(envelope.id + MESSAGE));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not remove sent message " + envelope.id + " from the spool", e);
+        }
+        pending.decrementAndGet();
+        notifySent(envelope, recipients);
+    }
+
+    private void failed(Envelope envelope, Address[] recipients, Exception cause) {
+        logger.log(Level.WARNING, "Giving up message " + envelope.id + " to " + InternetAddress.toString(recipients)
+                + ": " + cause.getMessage());
+        envelope.error = String.valueOf(cause.getMessage());
+        try {
+            save(envelope);
+            Path failed = spool.resolve(FAILED);
+            Files.move(spool.resolve(envelope.id + MESSAGE), failed.resolve(envelope.id + MESSAGE), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(spool.resolve(envelope.id + ENVELOPE), failed.resolve(envelope.id + ENVELOPE), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not move message " + envelope.id + " to the failed folder", e);
+        }
+        pending.decrementAndGet();
+        notifyFailed(envelope, recipients, cause);
+    }
+
+    private void notifySent(Envelope envelope, Address[] recipients) {
+        Listener listener = this.listener;
+        if (listener != null) {
+            listener.sent(envelope.messageId(), recipients);
+        }
+    }
+
+    private void notifyFailed(Envelope envelope, Address[] recipients, Exception cause) {
+        Listener listener = this.listener;
+        if (listener != null) {
+            listener.failed(envelope.messageId(), recipients, cause);
+        }
+    }
+
+    private RateLimit limitOf(String domain) {
+        return limits.computeIfAbsent(domain, d -> new RateLimit(defaultPermits, defaultPeriodNanos));
+    }
+
+    private MimeMessage load(Envelope envelope) throws IOException, MessagingException {
+        try (InputStream in = Files.newInputStream(spool.resolve(envelope.id + MESSAGE))) {
+            return new MimeMessage(session, in);
+        }
+    }
+
+    private void recover() throws IOException {
+        int recovered = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spool)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.delete(file);
+                } else if (name.endsWith(MESSAGE)) {
+                    String id = name.substring(0, name.length() - MESSAGE.length());
+                    if (!Files.exists(spool.resolve(id + ENVELOPE))) {
+                        // Spooling was interrupted before the envelope was written
+                        Files.delete(file);
+                    }
+                } else if (name.endsWith(ENVELOPE)) {
+                    String id = name.substring(0, name.length() - ENVELOPE.length());
+                    if (!Files.exists(spool.resolve(id + MESSAGE))) {
+                        Files.delete(file);
+                        continue;
+                    }
+                    try {
+                        queue.add(Envelope.parse(id, Files.readString(file, StandardCharsets.UTF_8)));
+                        pending.incrementAndGet();
+                        recovered++;
+                    } catch (AddressException | RuntimeException e) {
+                        logger.log(Level.WARNING, "Skipping unreadable envelope " + file, e);
+                    }
+                }
+            }
+        }
+        if (recovered > 0) {
+            logger.info("Recovered " + recovered + " queued messages from " + spool);
+        }
+    }
+
+    private void save(Envelope envelope) throws IOException {
+        write(spool.resolve(envelope.id + ENVELOPE), envelope.format().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write a file durably: to a temporary file first, forced to disk, then moved in place.
+     */
+    private static void write(Path target, byte[] data) throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String domainOf(Address address) {
+        String value = address instanceof InternetAddress ? ((InternetAddress) address).getAddress() : address.toString();
+        int at = value.lastIndexOf('@');
+        return at < 0 ? "" : value.substring(at + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static SMTPConnection close(SMTPConnection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (MessagingException e) {
+                logger.log(Level.FINE, "Error closing SMTP connection", e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Delivery outcome of queued messages, reported from the sender threads.
+     */
+    public interface Listener {
+        /**
+         * Called when a message was accepted by the server for some of its recipients.
+         *
+         * @param id         message id returned by {@link #enqueue(MimeMessage)}
+         * @param recipients recipients the message was sent to
+         */
+        void sent(String id, Address[] recipients);
+
+        /**
+         * Called when a message is given up for some of its recipients.
+         *
+         * @param id         message id returned by {@link #enqueue(MimeMessage)}
+         * @param recipients recipients the message was not sent to
+         * @param cause      last failure
+         */
+        default void failed(String id, Address[] recipients, Exception cause) {
+        }
+    }
+
+    /**
+     * A spooled message for the recipients of one domain, with its delivery state.
+     */
+    private static final class Envelope implements Delayed {
+        final String id;
+        final String domain;
+        final long created;
+        Address[] recipients;
+        int attempts;
+        volatile long next;
+        String error;
+
+        Envelope(String id, String domain, Address[] recipients, long created) {
+            this.id = id;
+            this.domain = domain;
+            this.recipients = recipients;
+            this.created = created;
+            this.next = created;
+        }
+
+        String messageId() {
+            return id.substring(0, id.lastIndexOf('.'));
+        }
+
+        String format() throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("domain", domain);
+            properties.setProperty("recipients", InternetAddress.toString(recipients));
+            properties.setProperty("created", String.valueOf(created));
+            properties.setProperty("attempts", String.valueOf(attempts));
+            properties.setProperty("next", String.valueOf(next));
+            if (error != null) {
+                properties.setProperty("error", error);
+            }
+            StringWriter writer = new StringWriter();
+            properties.store(writer, null);
+            return writer.toString();
+        }
+
+        static Envelope parse(String id, String text) throws IOException, AddressException {
+            Properties properties = new Properties();
+            properties.load(new StringReader(text));
+            Envelope envelope = new Envelope(id, properties.getProperty("domain"),
+                    InternetAddress.parse(properties.getProperty("recipients")),
+                    Long.parseLong(properties.getProperty("created")));
+            envelope.attempts = Integer.parseInt(properties.getProperty("attempts", "0"));
+            envelope.next = Long.parseLong(properties.getProperty("next", String.valueOf(envelope.created)));
+            return envelope;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(next - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            Envelope envelope = (Envelope) other;
+            int order = Long.compare(next, envelope.next);
+            return order != 0 ? order : Long.compare(created, envelope.created);
+        }
+    }
+
+    /**
+     * Token bucket: up to {@code permits} messages at once, refilled evenly over the period.
+     */
+    private static final class RateLimit {
+        private final double capacity;
+        private final double perNano;
+        private double tokens;
+        private long updated = System.nanoTime();
+
+        RateLimit(int permits, long periodNanos) {
+            this.capacity = permits;
+            this.perNano = permits > 0 && periodNanos > 0 ? permits / (double) periodNanos : 0;
+            this.tokens = permits;
+        }
+
+        /**
+         * Take a permit.
+         *
+         * @return 0 if taken, otherwise nanoseconds until one is available
+         */
+        synchronized long reserve() {
+            if (perNano == 0) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - updated) * perNano);
+            updated = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / perNano);
+        }
+    }
+}
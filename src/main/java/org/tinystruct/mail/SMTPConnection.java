@@ -30,8 +30,6 @@ public class SMTPConnection implements Connection {
 
     private Session session;
     private Transport transport;
-    private String username;
-    private String password;
 
     private String id;
 
@@ -41,35 +39,62 @@ public class SMTPConnection implements Connection {
         this.init();
     }
 
+    /**
+     * Open a connection on an existing session, so that several connections share
+     * one configuration.
+     *
+     * @param session mail session, see {@link #createSession(Configuration)}
+     * @throws ApplicationException if the server cannot be reached
+     */
+    public SMTPConnection(Session session) throws ApplicationException {
+        this.config = null;
+        this.id = java.util.UUID.randomUUID().toString().replace("-", "");
+        this.session = session;
+        this.connect();
+    }
+
     private void init() throws ApplicationException {
         this.id = java.util.UUID.randomUUID().toString().replace("-", "");
+        this.session = createSession(this.config);
+        this.connect();
+    }
 
+    /**
+     * Create an SMTP session from the mail.smtp.* settings.
+     *
+     * @param config configuration
+     * @return mail session
+     */
+    public static Session createSession(Configuration<String> config) {
         /**
          * Load Configuration
          */
-        Properties props = System.getProperties();
+        Properties props = new Properties();
+        props.putAll(System.getProperties());
 
-        boolean isSSL = Boolean.parseBoolean(this.config.get("mail.smtp.starttls.enable"));
-        String socketFactoryPort = this.config.get("mail.smtp.socketFactory.port");
+        boolean isSSL = Boolean.parseBoolean(config.get("mail.smtp.starttls.enable"));
+        String socketFactoryPort = config.get("mail.smtp.socketFactory.port");
 
-        this.username = this.config.get("mail.smtp.username");
-        this.password = this.config.get("mail.smtp.password");
+        String username = config.get("mail.smtp.username");
+        String password = config.get("mail.smtp.password");
 
         if (isSSL) {
 //            Security.addProvider(new com.sun.net.ssl.internal.ssl.Provider());
             props.setProperty("mail.smtp.socketFactory.class", "javax.net.ssl.SSLSocketFactory");
             props.setProperty("mail.smtp.socketFactory.fallback", "false");
-            props.setProperty("mail.smtp.socketFactory.port",  socketFactoryPort);
+            if (!isEmpty(socketFactoryPort))
+                props.setProperty("mail.smtp.socketFactory.port", socketFactoryPort);
         }
 
-        String host = this.config.get("mail.smtp.host"),
-                port = this.config.get("mail.smtp.port"),
-                auth = this.config.get("mail.smtp.auth"),
-                from = this.config.get("mail.smtp.from");
-        props.setProperty("mail.smtp.from", from.isEmpty() ? this.username : from);
-        props.setProperty("mail.smtp.host", host.isEmpty() ? "localhost" : host); // eg. smtp.gmail.com
-        props.setProperty("mail.smtp.port", port.isEmpty() ? "25" : port); // eg. // 443
-        props.setProperty("mail.smtp.auth", auth.isEmpty() ? "false" : auth); // "true" or "false"
+        String host = config.get("mail.smtp.host"),
+                port = config.get("mail.smtp.port"),
+                auth = config.get("mail.smtp.auth"),
+                from = config.get("mail.smtp.from");
+        if (!isEmpty(from) || !isEmpty(username))
+            props.setProperty("mail.smtp.from", isEmpty(from) ? username : from);
+        props.setProperty("mail.smtp.host", isEmpty(host) ? "localhost" : host); // eg. smtp.gmail.com
+        props.setProperty("mail.smtp.port", isEmpty(port) ? "25" : port); // eg. // 443
+        props.setProperty("mail.smtp.auth", isEmpty(auth) ? "false" : auth); // "true" or "false"
 
         if ("true".equalsIgnoreCase(auth)) {
             jakarta.mail.Authenticator authenticator = new jakarta.mail.Authenticator() {
@@ -79,18 +104,22 @@ public class SMTPConnection implements Connection {
                 }
             };
 
-            this.session = Session.getInstance(props, authenticator);
-        } else {
-            this.session = Session.getInstance(props);
+            return Session.getInstance(props, authenticator);
         }
+        return Session.getInstance(props);
+    }
 
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    private void connect() throws ApplicationException {
         try {
             this.transport = this.session.getTransport("smtp");
             this.transport.connect();
         } catch (MessagingException e) {
             throw new ApplicationException(e.getMessage(), e);
         }
-
     }
 
     public Transport getTransport() throws ApplicationException {
@@ -130,12 +159,19 @@ public class SMTPConnection implements Connection {
 
     public void send(Message message, Address[] allRecipients)
             throws MessagingException {
+        if (!this.transport.isConnected()) {
+            this.transport.connect();
+        }
         this.transport.sendMessage(message, allRecipients);
     }
 
+    /**
+     * Send a message to its own recipients over this connection's transport,
+     * rather than opening a new session for it.
+     */
     public void send(Message message)
             throws MessagingException {
-        Transport.send(message);
+        this.send(message, message.getAllRecipients());
     }
 
     /* (non-Javadoc)
@@ -226,50 +226,7 @@ public class SimpleMail implements MailService {
             // Get a connection from the pool
             connection = manager.getConnection(config, PROTOCOL.SMTP);
 
-            // Create the message
-            Session session = connection.getSession();
-            MimeMessage message = new MimeMessage(session);
-            
-            // Set From
-            if (fromName != null) {
-                message.setFrom(new InternetAddress(username, fromName));
-            } else {
-                message.setFrom(new InternetAddress(username));
-            }
-
-            // Set recipients
-            InternetAddress[] toAddresses = to.toArray(new InternetAddress[0]);
-            message.addRecipients(Message.RecipientType.TO, toAddresses);
-            if (!copyTo.isEmpty()) {
-                message.addRecipients(Message.RecipientType.CC, copyTo.toArray(new InternetAddress[0]));
-            }
-            if (!behindCopyTo.isEmpty()) {
-                message.addRecipients(Message.RecipientType.BCC, behindCopyTo.toArray(new InternetAddress[0]));
-            }
-
-            message.setSubject(subject);
-
-            // Handle content and attachments
-            if (attachments.isEmpty()) {
-                message.setContent(content, "text/html; charset=utf-8");
-            } else {
-                // Create multipart message
-                MimeMultipart multipart = new MimeMultipart();
-
-                // Add content part
-                MimeBodyPart contentPart = new MimeBodyPart();
-                contentPart.setContent(content, "text/html; charset=utf-8");
-                multipart.addBodyPart(contentPart);
-
-                // Add attachment parts
-                for (File file : attachments) {
-                    MimeBodyPart attachmentPart = new MimeBodyPart();
-                    attachmentPart.attachFile(file);
-                    multipart.addBodyPart(attachmentPart);
-                }
-
-                message.setContent(multipart);
-            }
+            MimeMessage message = createMessage(connection.getSession());
 
             // Send message using the pooled connection
             connection.send(message, message.getAllRecipients());
@@ -286,6 +243,73 @@ public class SimpleMail implements MailService {
         }
     }
 
+    /**
+     * Queues the email for asynchronous delivery instead of sending it on this thread.
+     *
+     * @param queue outbound mail queue
+     * @return message id in the queue
+     * @throws ApplicationException if the message cannot be created or spooled
+     */
+    public String send(MailQueue queue) throws ApplicationException {
+        if (to.isEmpty()) {
+            throw new ApplicationException("No recipients specified");
+        }
+
+        try {
+            return queue.enqueue(createMessage(queue.getSession()));
+        } catch (ApplicationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ApplicationException("Failed to queue email: " + e.getMessage(), e);
+        }
+    }
+
+    private MimeMessage createMessage(Session session) throws Exception {
+        MimeMessage message = new MimeMessage(session);
+
+        // Set From
+        if (fromName != null) {
+            message.setFrom(new InternetAddress(username, fromName));
+        } else {
+            message.setFrom(new InternetAddress(username));
+        }
+
+        // Set recipients
+        InternetAddress[] toAddresses = to.toArray(new InternetAddress[0]);
+        message.addRecipients(Message.RecipientType.TO, toAddresses);
+        if (!copyTo.isEmpty()) {
+            message.addRecipients(Message.RecipientType.CC, copyTo.toArray(new InternetAddress[0]));
+        }
+        if (!behindCopyTo.isEmpty()) {
+            message.addRecipients(Message.RecipientType.BCC, behindCopyTo.toArray(new InternetAddress[0]));
+        }
+
+        message.setSubject(subject);
+
+        // Handle content and attachments
+        if (attachments.isEmpty()) {
+            message.setContent(content, "text/html; charset=utf-8");
+        } else {
+            // Create multipart message
+            MimeMultipart multipart = new MimeMultipart();
+
+            // Add content part
+            MimeBodyPart contentPart = new MimeBodyPart();
+            contentPart.setContent(content, "text/html; charset=utf-8");
+            multipart.addBodyPart(contentPart);
+
+            // Add attachment parts
+            for (File file : attachments) {
+                MimeBodyPart attachmentPart = new MimeBodyPart();
+                attachmentPart.attachFile(file);
+                multipart.addBodyPart(attachmentPart);
+            }
+
+            message.setContent(multipart);
+        }
+        return message;
+    }
+
     private void clearRecipients() {
         to.clear();
         copyTo.clear();
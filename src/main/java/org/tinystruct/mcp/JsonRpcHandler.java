@@ -3,16 +3,56 @@ package org.tinystruct.mcp;
 import org.tinystruct.data.component.Builder;
 import org.tinystruct.data.component.Builders;
 
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Handles JSON-RPC request processing and response formatting
+ * Handles JSON-RPC request processing and response formatting.
+ * <p>
+ * Requests of a batch are executed concurrently on a bounded pool, and the
+ * responses are assembled in request order. Each request gets its own timeout
+ * from the moment it starts running; a request waiting for a worker gives up
+ * only once every request of the batch ahead of it could have used its full
+ * timeout. Results
+ * of the idempotent list methods are cached until a tool, resource or prompt
+ * is registered (see {@link #invalidateCache()}).
+ * </p>
  */
 public class JsonRpcHandler {
     private static final Logger LOGGER = Logger.getLogger(JsonRpcHandler.class.getName());
+    public static final int DEFAULT_PARALLELISM = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    public static final long DEFAULT_REQUEST_TIMEOUT = 30_000L;
+
+    // Methods whose result depends only on the registries and the params
+    private static final Set<String> CACHEABLE_METHODS = Set.of(
+            MCPSpecification.Methods.LIST_TOOLS,
+            MCPSpecification.Methods.LIST_RESOURCES,
+            MCPSpecification.Methods.LIST_PROMPTS);
+
+    // Bumped on every registration; cached results from older generations are ignored.
+    private static final AtomicLong generation = new AtomicLong();
+
+    private final int parallelism;
+    private final long requestTimeout;
+    private final Map<String, CachedResult> cache = new ConcurrentHashMap<>();
+    private volatile ExecutorService executor;
+
+    public JsonRpcHandler() {
+        this(DEFAULT_PARALLELISM, DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    /**
+     * @param parallelism    maximum number of batch requests executed at the same time
+     * @param requestTimeout timeout in milliseconds for each request of a batch, counted from when it starts running
+     */
+    public JsonRpcHandler(int parallelism, long requestTimeout) {
+        this.parallelism = Math.max(1, parallelism);
+        this.requestTimeout = requestTimeout > 0 ? requestTimeout : DEFAULT_REQUEST_TIMEOUT;
+    }
 
     /**
      * Validates a JSON-RPC request
@@ -23,7 +63,14 @@ public class JsonRpcHandler {
         try {
             Builder jsonObject = new Builder();
             jsonObject.parse(json);
-            
+            return isValid(jsonObject);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static boolean isValid(Builder jsonObject) {
+        try {
             // Validate required JSON-RPC 2.0 fields
             if (!jsonObject.containsKey(MCPSpecification.JsonRpc.VERSION_FIELD) || 
                 !MCPSpecification.JsonRpc.VERSION.equals(jsonObject.get(MCPSpecification.JsonRpc.VERSION_FIELD)) ||
@@ -68,31 +115,237 @@ public class JsonRpcHandler {
     }
 
     /**
-     * Processes a batch of JSON-RPC requests
+     * Processes a single JSON-RPC request, serving the idempotent list methods
+     * from the result cache when possible.
+     *
+     * @param request       the JSON-RPC request
+     * @param methodHandler Handler for processing individual methods
+     * @return JSON-RPC response
+     */
+    public JsonRpcResponse handle(JsonRpcRequest request, MethodHandler methodHandler) {
+        JsonRpcResponse response = new JsonRpcResponse();
+        String key = cacheKey(request);
+        if (key != null) {
+            CachedResult cached = cache.get(key);
+            if (cached != null && cached.generation == generation.get()) {
+                response.setId(request.getId());
+                response.setResult(cached.result, cached.json);
+                return response;
+            }
+        }
+
+        long current = generation.get();
+        methodHandler.handleMethod(request, response);
+        if (key != null && !response.hasError() && response.getResult() != null) {
+            cache.put(key, new CachedResult(response.getResult(), response.getResultJson(), current));
+        }
+        return response;
+    }
+
+    /**
+     * Processes a batch of JSON-RPC requests. The requests are executed
+     * concurrently, and the responses are returned in the order of the
+     * requests. Notifications (requests without an id) produce no response,
+     * and requests failing the checks of {@link #validateJsonRpcRequest(String)}
+     * an INVALID_REQUEST error.
      *
      * @param jsonStr       JSON string containing batch requests
      * @param methodHandler Handler for processing individual methods
-     * @return JSON-RPC batch response
+     * @return JSON-RPC batch response, or an empty string if the batch only contained notifications
      */
     public String handleBatchRequest(String jsonStr, MethodHandler methodHandler) {
+        Builders requests = new Builders();
         try {
-            Builders requests = new Builders();
             requests.parse(jsonStr);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Batch request processing failed", e);
+            return createErrorResponse("Batch processing failed", MCPSpecification.ErrorCodes.PARSE_ERROR);
+        }
 
-            Builders responses = new Builders();
-            for (int i = 0; i < requests.size(); i++) {
-                JsonRpcRequest rpcRequest = new JsonRpcRequest();
-                rpcRequest.parse(requests.get(i).toString());
-                
-                JsonRpcResponse jsonResponse = new JsonRpcResponse();
-                methodHandler.handleMethod(rpcRequest, jsonResponse);
-                responses.add(jsonResponse.getResult());
+        if (requests.isEmpty()) {
+            return createErrorResponse("Empty batch", MCPSpecification.ErrorCodes.INVALID_REQUEST);
+        }
+
+        // Submit everything first so that the requests run side by side
+        int size = requests.size();
+        JsonRpcRequest[] rpcRequests = new JsonRpcRequest[size];
+        BatchTask[] tasks = new BatchTask[size];
+        for (int i = 0; i < size; i++) {
+            JsonRpcRequest rpcRequest = toRequest(requests.get(i));
+            rpcRequests[i] = rpcRequest;
+            if (rpcRequest != null) {
+                tasks[i] = new BatchTask(() -> handle(rpcRequest, methodHandler));
+                if (size == 1) {
+                    tasks[i].run();
+                } else {
+                    executor().execute(tasks[i]);
+                }
             }
-            
-            return responses.toString();
-        } catch (Exception e) {
-            LOGGER.severe("Batch request processing failed");
-            return createErrorResponse("Batch processing failed", MCPSpecification.ErrorCodes.INTERNAL_ERROR);
+        }
+
+        long submitted = System.nanoTime();
+        StringJoiner responses = new StringJoiner(",", "[", "]");
+        responses.setEmptyValue("");
+        for (int i = 0; i < size; i++) {
+            JsonRpcRequest rpcRequest = rpcRequests[i];
+            JsonRpcResponse jsonResponse;
+            if (rpcRequest == null) {
+                jsonResponse = new JsonRpcResponse();
+                jsonResponse.setError(new JsonRpcError(MCPSpecification.ErrorCodes.INVALID_REQUEST, "Invalid JSON-RPC request"));
+            } else {
+                // At most i requests of the batch are ahead of this one, parallelism of them at a time
+                long queueDeadline = submitted + (i / parallelism + 1) * TimeUnit.MILLISECONDS.toNanos(requestTimeout);
+                jsonResponse = await(tasks[i], rpcRequest, queueDeadline);
+            }
+
+            // Notifications must not be answered
+            if (rpcRequest != null && rpcRequest.getId() == null) {
+                continue;
+            }
+
+            responses.add(jsonResponse.toString());
+        }
+
+        return responses.toString();
+    }
+
+    /**
+     * Drop all cached results. Called whenever tools, resources or prompts are
+     * registered, as the list methods would return different results.
+     */
+    public static void invalidateCache() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * @return the current registration generation, which changes whenever
+     * {@link #invalidateCache()} is called
+     */
+    static long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Stop the batch executor. A new one is created if another batch arrives.
+     */
+    public void shutdown() {
+        ExecutorService current = executor;
+        executor = null;
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+
+    private JsonRpcResponse await(BatchTask future, JsonRpcRequest request, long queueDeadline) {
+        JsonRpcResponse response;
+        try {
+            if (!future.started.await(Math.max(0, queueDeadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                future.cancel(false);
+                response = new JsonRpcResponse();
+                response.setError(new JsonRpcError(MCPSpecification.ErrorCodes.INTERNAL_ERROR,
+                        "Request was not started in time: " + request.getMethod()));
+                response.setId(request.getId());
+                return response;
+            }
+            long deadline = future.startedAt + TimeUnit.MILLISECONDS.toNanos(requestTimeout);
+            response = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            response = new JsonRpcResponse();
+            response.setError(new JsonRpcError(MCPSpecification.ErrorCodes.INTERNAL_ERROR,
+                    "Request timed out after " + requestTimeout + " ms: " + request.getMethod()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            response = new JsonRpcResponse();
+            response.setError(new JsonRpcError(MCPSpecification.ErrorCodes.INTERNAL_ERROR, "Request interrupted"));
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.SEVERE, "Batch request " + request.getMethod() + " failed", e.getCause());
+            response = new JsonRpcResponse();
+            response.setError(new JsonRpcError(MCPSpecification.ErrorCodes.INTERNAL_ERROR,
+                    "Internal server error: " + e.getCause().getMessage()));
+        }
+
+        if (response.getId() == null) {
+            response.setId(request.getId());
+        }
+        return response;
+    }
+
+    private JsonRpcRequest toRequest(Builder builder) {
+        if (builder == null || !isValid(builder)) {
+            return null;
+        }
+
+        JsonRpcRequest request = new JsonRpcRequest();
+        Object id = builder.get(MCPSpecification.JsonRpc.ID_FIELD);
+        if (id != null) {
+            request.setId(String.valueOf(id));
+        }
+        request.setMethod(String.valueOf(builder.get(MCPSpecification.JsonRpc.METHOD_FIELD)));
+        Object params = builder.get(MCPSpecification.JsonRpc.PARAMS_FIELD);
+        if (params instanceof Builder) {
+            request.setParams((Builder) params);
+        }
+        return request;
+    }
+
+    private String cacheKey(JsonRpcRequest request) {
+        if (!CACHEABLE_METHODS.contains(request.getMethod())) {
+            return null;
+        }
+        return request.getParams() != null ? request.getMethod() + request.getParams() : request.getMethod();
+    }
+
+    private ExecutorService executor() {
+        ExecutorService current = executor;
+        if (current == null) {
+            synchronized (this) {
+                current = executor;
+                if (current == null) {
+                    AtomicInteger count = new AtomicInteger();
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(), r -> {
+                        Thread t = new Thread(r, "mcp-batch-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    pool.allowCoreThreadTimeOut(true);
+                    executor = current = pool;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static final class CachedResult {
+        final Builder result;
+        final String json;
+        final long generation;
+
+        CachedResult(Builder result, String json, long generation) {
+            this.result = result;
+            this.json = json;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * A request of a batch, which notes when a worker picks it up.
+     */
+    private static final class BatchTask extends FutureTask<JsonRpcResponse> {
+        final CountDownLatch started = new CountDownLatch(1);
+        volatile long startedAt;
+
+        BatchTask(Callable<JsonRpcResponse> callable) {
+            super(callable);
+        }
+
+        @Override
+        public void run() {
+            startedAt = System.nanoTime();
+            started.countDown();
+            super.run();
         }
     }
 
@@ -5,6 +5,7 @@ import org.tinystruct.data.component.Builder;
 
 public class JsonRpcResponse extends JsonRpcMessage {
     private Builder result;
+    private String resultJson;
     private JsonRpcError error;
 
     public Builder getResult() {
@@ -13,6 +14,29 @@ public class JsonRpcResponse extends JsonRpcMessage {
 
     public void setResult(Builder result) {
         this.result = result;
+        this.resultJson = null;
+    }
+
+    /**
+     * Set a result together with its serialized form, so that a result which
+     * does not change between requests is not serialized again for each one.
+     *
+     * @param result the result
+     * @param json   the JSON text of {@code result}
+     */
+    void setResult(Builder result, String json) {
+        this.result = result;
+        this.resultJson = json;
+    }
+
+    /**
+     * @return the JSON text of the result, or null if there is no result
+     */
+    String getResultJson() {
+        if (resultJson != null) {
+            return resultJson;
+        }
+        return result != null ? result.toString() : null;
     }
 
     public JsonRpcError getError() {
@@ -27,6 +51,17 @@ public class JsonRpcResponse extends JsonRpcMessage {
     public void parse(String json) throws ApplicationException {
         Builder builder = new Builder();
         builder.parse(json);
+        parse(builder);
+    }
+
+    /**
+     * Populate this response from an already parsed JSON object, such as one
+     * element of a batch response.
+     *
+     * @param builder parsed response object
+     * @throws ApplicationException if a nested value cannot be parsed
+     */
+    void parse(Builder builder) throws ApplicationException {
         if (builder.containsKey("id")) {
             this.setId(String.valueOf(builder.get("id")));
         }
@@ -93,9 +128,6 @@ public class JsonRpcResponse extends JsonRpcMessage {
         if (getId() != null) {
             builder.put("id", getId());
         }
-        if (result != null) {
-            builder.put("result", result);
-        }
         if (error != null) {
             Builder errorBuilder = new Builder();
             errorBuilder.put("code", error.getCode());
@@ -105,7 +137,13 @@ public class JsonRpcResponse extends JsonRpcMessage {
             }
             builder.put("error", errorBuilder);
         }
-        return builder.toString();
+
+        String json = builder.toString();
+        if (result == null) {
+            return json;
+        }
+        // Append the result text rather than serializing the result tree again
+        return json.substring(0, json.length() - 1) + ",\"result\":" + getResultJson() + "}";
     }
 
     public boolean hasError() {
@@ -63,7 +63,9 @@ public abstract class MCPApplication extends AbstractApplication {
             LOGGER.info("Generated new MCP auth token: " + token);
         }
         this.authHandler = new AuthorizationHandler(getConfiguration().get(Config.AUTH_TOKEN));
-        this.jsonRpcHandler = new JsonRpcHandler();
+        this.jsonRpcHandler = new JsonRpcHandler(
+                parseInt(getConfiguration().get(Config.BATCH_PARALLELISM), JsonRpcHandler.DEFAULT_PARALLELISM),
+                parseInt(getConfiguration().get(Config.BATCH_TIMEOUT), (int) JsonRpcHandler.DEFAULT_REQUEST_TIMEOUT));
 
         // Register core protocol handlers
         this.registerRpcHandler(Methods.INITIALIZE, (req, res, app) -> app.handleInitialize(req, res));
@@ -114,6 +116,16 @@ public abstract class MCPApplication extends AbstractApplication {
         this.sessionCleanupWatchdog.scheduleAtFixedRate(this::cleanupStaleSessions, timeoutMs / 2, timeoutMs / 2, TimeUnit.MILLISECONDS);
     }
     
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null || value.trim().isEmpty()) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.warning("Invalid number: " + value + ", using default " + defaultValue);
+            return defaultValue;
+        }
+    }
+
     private long getSessionTimeoutMs() {
         String timeoutStr = getConfiguration().getOrDefault(Config.SESSION_TIMEOUT, "1800"); // Default 30 min (1800s)
         try {
@@ -150,6 +162,9 @@ public abstract class MCPApplication extends AbstractApplication {
         if (sessionCleanupWatchdog != null) {
             sessionCleanupWatchdog.shutdownNow();
         }
+        if (jsonRpcHandler != null) {
+            jsonRpcHandler.shutdown();
+        }
         super.destroy();
     }
 
@@ -260,39 +275,40 @@ public abstract class MCPApplication extends AbstractApplication {
             String requestBody = request.body();
             assert requestBody != null;
             LOGGER.fine("Received JSON: " + requestBody);
+
+            // Add batch request support
+            if (requestBody.trim().startsWith("[")) {
+                method = "batch";
+                // Batch requests run on worker threads, which need the session of this request.
+                // Each request of the batch is validated like a single one, and may initialize the session.
+                final String batchSessionId = sessionId;
+                return jsonRpcHandler.handleBatchRequest(requestBody, (rpcReq, rpcRes) -> {
+                    currentSessionId.set(batchSessionId);
+                    try {
+                        if (Methods.INITIALIZE.equals(rpcReq.getMethod())) {
+                            initializing(batchSessionId);
+                        }
+                        dispatch(rpcReq, rpcRes);
+                    } finally {
+                        currentSessionId.remove();
+                    }
+                });
+            }
+
             if (!jsonRpcHandler.validateJsonRpcRequest(requestBody)) {
                 response.setStatus(ResponseStatus.BAD_REQUEST);
                 return jsonRpcHandler.createErrorResponse("Invalid JSON-RPC request", ErrorCodes.INVALID_REQUEST);
             }
 
             if (requestBody.contains("\"method\":\"initialize\"")) {
-                sessionMap.put(sessionId, System.currentTimeMillis()); // Store session start time
-                setSessionState(SessionState.INITIALIZING); // Set initial state
-            }
-            // Add batch request support
-            else if (requestBody.trim().startsWith("[")) {
-                return jsonRpcHandler.handleBatchRequest(requestBody, (rpcReq, rpcRes) -> {
-                    RpcMethodHandler handler = rpcHandlers.get(rpcReq.getMethod());
-                    if (handler != null) {
-                        handler.handle(rpcReq, rpcRes, this);
-                    } else {
-                        rpcRes.setError(new JsonRpcError(ErrorCodes.METHOD_NOT_FOUND,
-                                "Method not found: " + rpcReq.getMethod()));
-                    }
-                });
+                initializing(sessionId);
             }
 
             JsonRpcRequest rpcRequest = new JsonRpcRequest();
             rpcRequest.parse(requestBody);
-            JsonRpcResponse jsonResponse = new JsonRpcResponse();
             // Restrict methods before READY
             method = rpcRequest.getMethod();
-            RpcMethodHandler handler = rpcHandlers.get(method);
-            if (handler != null) {
-                handler.handle(rpcRequest, jsonResponse, this);
-            } else {
-                jsonResponse.setError(new JsonRpcError(ErrorCodes.METHOD_NOT_FOUND, "Method not found: " + method));
-            }
+            JsonRpcResponse jsonResponse = jsonRpcHandler.handle(rpcRequest, this::dispatch);
 
             return jsonResponse.toString();
         } catch (SecurityException e) {
@@ -311,6 +327,31 @@ public abstract class MCPApplication extends AbstractApplication {
         }
     }
 
+    /**
+     * Start a session with an initialize request.
+     *
+     * @param sessionId The session ID
+     */
+    private void initializing(String sessionId) {
+        sessionMap.put(sessionId, System.currentTimeMillis()); // Store session start time
+        setSessionState(SessionState.INITIALIZING); // Set initial state
+    }
+
+    /**
+     * Dispatch a JSON-RPC request to its registered handler.
+     *
+     * @param request  The JSON-RPC request
+     * @param response The JSON-RPC response to populate
+     */
+    private void dispatch(JsonRpcRequest request, JsonRpcResponse response) {
+        RpcMethodHandler handler = rpcHandlers.get(request.getMethod());
+        if (handler != null) {
+            handler.handle(request, response, this);
+        } else {
+            response.setError(new JsonRpcError(ErrorCodes.METHOD_NOT_FOUND, "Method not found: " + request.getMethod()));
+        }
+    }
+
     /**
      * Handles the 'initialize' JSON-RPC method.
      * Subclasses may override to customize initialization behavior.
@@ -517,6 +558,7 @@ public abstract class MCPApplication extends AbstractApplication {
             tools.put(tool.getName(), tool);
             LOGGER.info("Registered tool: " + tool.getName());
         }
+        JsonRpcHandler.invalidateCache();
     }
 
     /**
@@ -541,6 +583,7 @@ public abstract class MCPApplication extends AbstractApplication {
                 LOGGER.info("Registered tool method: " + toolMethod.getName());
             }
         }
+        JsonRpcHandler.invalidateCache();
     }
 
     /**
@@ -551,6 +594,7 @@ public abstract class MCPApplication extends AbstractApplication {
      */
     public void registerResource(MCPDataResource resource) {
         resources.put(resource.getName(), resource);
+        JsonRpcHandler.invalidateCache();
         LOGGER.info("Registered resource: " + resource.getName());
     }
 
@@ -562,6 +606,7 @@ public abstract class MCPApplication extends AbstractApplication {
      */
     public void registerPrompt(MCPPrompt prompt) {
         prompts.put(prompt.getName(), prompt);
+        JsonRpcHandler.invalidateCache();
         LOGGER.info("Registered prompt: " + prompt.getName());
     }
 
@@ -19,19 +19,19 @@ import org.tinystruct.ApplicationException;
 import org.tinystruct.data.component.Builder;
 import org.tinystruct.data.component.Builders;
 
-import org.tinystruct.net.URLRequest;
-import org.tinystruct.net.URLResponse;
-import org.tinystruct.net.handlers.HTTPHandler;
-
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
-import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -70,21 +70,48 @@ import static org.tinystruct.mcp.MCPSpecification.*;
  * client.disconnect();
  * </pre>
  * </p>
+ * <p>
+ * All requests share one persistent {@link HttpClient} (HTTP/2 where the
+ * server supports it). {@link #callToolAsync(String, Builder)} and
+ * {@link #readResourceAsync(String)} return immediately; responses are
+ * matched to their futures by JSON-RPC id, so many calls can be in flight at
+ * once. While a request is outstanding, calls issued within the batch window
+ * are coalesced into a single JSON-RPC batch, and the number of outstanding
+ * requests is bounded so a fast producer cannot overrun the server.
+ * </p>
  */
 public class MCPClient {
     // --------------------------------------------------------------------------
     // Constants and Fields
     // --------------------------------------------------------------------------
     private static final Logger LOGGER = Logger.getLogger(MCPClient.class.getName());
+    public static final int DEFAULT_MAX_OUTSTANDING = 256;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
     private final String baseUrl;
     private final String authToken;
+    private final URI endpoint;
+    private final HttpClient httpClient;
     private String clientId;
-    private String sessionId;
-    private SessionState sessionState = SessionState.DISCONNECTED;
+    private volatile String sessionId;
+    private volatile SessionState sessionState = SessionState.DISCONNECTED;
 
     // Cache for discovered resources
     private final Map<String, MCPResource> resourceCache = new ConcurrentHashMap<>();
 
+    // Outstanding requests by JSON-RPC id, and requests waiting for the next batch
+    private final Map<String, CompletableFuture<JsonRpcResponse>> pending = new ConcurrentHashMap<>();
+    private final Queue<JsonRpcRequest> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicLong nextId = new AtomicLong();
+    private final Semaphore permits;
+    private volatile long batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(2);
+    private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private ScheduledExecutorService scheduler;
+    private volatile Flow.Subscription eventSubscription;
+
     /**
      * Constructs a new MCPClient with the specified base URL and authentication
      * token.
@@ -100,14 +127,59 @@ public class MCPClient {
      * @throws IllegalArgumentException If baseUrl is null
      */
     public MCPClient(String baseUrl, String authToken) {
+        this(baseUrl, authToken, DEFAULT_MAX_OUTSTANDING);
+    }
+
+    /**
+     * Constructs a new MCPClient with a limit on outstanding requests.
+     * <p>
+     * Once {@code maxOutstanding} requests are waiting for a response, further
+     * calls block until one of them completes.
+     * </p>
+     *
+     * @param baseUrl        The base URL of the MCP server (must not be null)
+     * @param authToken      The authentication token (may be null)
+     * @param maxOutstanding The maximum number of outstanding requests
+     * @throws IllegalArgumentException If baseUrl is null or maxOutstanding is not positive
+     */
+    public MCPClient(String baseUrl, String authToken, int maxOutstanding) {
         if (baseUrl == null) {
             throw new IllegalArgumentException("Base URL must not be null");
         }
+        if (maxOutstanding <= 0) {
+            throw new IllegalArgumentException("maxOutstanding must be positive");
+        }
         this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
         this.authToken = authToken;
+        this.endpoint = URI.create(this.baseUrl + "?q=" + Endpoints.SSE);
+        this.permits = new Semaphore(maxOutstanding);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(30))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
         this.sessionState = SessionState.DISCONNECTED;
     }
 
+    /**
+     * Sets how long a call may wait for others to join its batch while earlier
+     * requests are still in flight. A zero window sends every call on its own.
+     *
+     * @param window The batch window
+     */
+    public void setBatchWindow(Duration window) {
+        this.batchWindowNanos = Math.max(0, window.toNanos());
+    }
+
+    /**
+     * Sets the maximum number of calls sent in one JSON-RPC batch.
+     *
+     * @param size The maximum batch size
+     */
+    public void setMaxBatchSize(int size) {
+        this.maxBatchSize = Math.max(1, size);
+    }
+
     /**
      * Connects to the MCP server and initializes the session.
      * <p>
@@ -204,6 +276,36 @@ public class MCPClient {
             sessionState = SessionState.ERROR;
             LOGGER.log(Level.SEVERE, "Disconnect failed", e);
             throw new IOException("Disconnect failed: " + e.getMessage(), e);
+        } finally {
+            closePipeline();
+        }
+    }
+
+    /**
+     * Stops the event stream and the batch scheduler, and fails any request
+     * that is still waiting for a response.
+     */
+    private void closePipeline() {
+        Flow.Subscription subscription = eventSubscription;
+        eventSubscription = null;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+
+        JsonRpcRequest request;
+        while ((request = queue.poll()) != null) {
+            queued.decrementAndGet();
+        }
+        IOException closed = new IOException("Client disconnected");
+        for (CompletableFuture<JsonRpcResponse> future : pending.values()) {
+            future.completeExceptionally(closed);
         }
     }
 
@@ -356,113 +458,287 @@ public class MCPClient {
     }
 
     private JsonRpcResponse sendRequest(String method, Builder params) throws IOException {
-        URL url = URI.create(baseUrl + "?q=" + Endpoints.SSE).toURL();
-        URLRequest urlRequest = new URLRequest(url);
-        urlRequest.setMethod("POST")
-                .setHeader("Content-Type", Http.CONTENT_TYPE_JSON);
+        JsonRpcRequest request = createRequest(method, params);
 
-        if (authToken != null) {
-            urlRequest.setHeader(Http.AUTH_HEADER, authToken);
+        // Log the full request
+        String requestString = request.toString();
+        LOGGER.info("Full JSON-RPC request: " + requestString);
+
+        HttpResponse<String> httpResponse;
+        try {
+            httpResponse = httpClient.send(newPost(requestString), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Request failed: " + e.getMessage(), e);
         }
 
-        if (sessionId != null) {
-            urlRequest.setHeader(Http.SESSION_ID, sessionId);
+        String responseString = receive(httpResponse);
+        LOGGER.info("Raw server response: " + responseString);
+
+        JsonRpcResponse jsonRpcResponse = new JsonRpcResponse();
+        try {
+            jsonRpcResponse.parse(responseString);
+        } catch (ApplicationException e) {
+            LOGGER.severe("Error parsing response: " + responseString + ", error: " + e.getMessage());
+            throw new IOException("Error parsing response: " + e.getMessage(), e);
         }
 
-        // Create JSON-RPC request
-        JsonRpcRequest request = new JsonRpcRequest();
-        request.setMethod(method);
-        request.setId(UUID.randomUUID().toString());
-        if (params != null) {
+        if (jsonRpcResponse.hasError()) {
+            LOGGER.warning("Server returned error: " + jsonRpcResponse.getError().getMessage() +
+                    " (code: " + jsonRpcResponse.getError().getCode() + ")");
+        } else {
+            LOGGER.info("Server returned result: " + jsonRpcResponse.getResult());
+        }
+
+        return jsonRpcResponse;
+    }
+
+    /**
+     * Queues a request for the next batch and returns a future for its response.
+     * Blocks while the maximum number of requests is outstanding.
+     *
+     * @param method The JSON-RPC method
+     * @param params The parameters, may be null
+     * @return A future completed with the response
+     */
+    private CompletableFuture<JsonRpcResponse> sendRequestAsync(String method, Builder params) {
+        JsonRpcRequest request;
+        try {
+            request = createRequest(method, params);
+            permits.acquire();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        String id = request.getId();
+        CompletableFuture<JsonRpcResponse> future = new CompletableFuture<>();
+        pending.put(id, future);
+        future.whenComplete((response, error) -> {
+            pending.remove(id);
+            permits.release();
+        });
+
+        queue.add(request);
+        if (queued.incrementAndGet() >= maxBatchSize || inFlight.get() == 0 || batchWindowNanos == 0) {
+            // Nothing to wait for, or the batch is already full
+            flush();
+        } else if (flushScheduled.compareAndSet(false, true)) {
             try {
-                request.setParams(params);
-            } catch (Exception e) {
-                LOGGER.severe("Error setting params: " + params + ", error: " + e.getMessage());
-                throw new IOException("Error setting params: " + e.getMessage(), e);
+                scheduler().schedule(this::flush, batchWindowNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                flush();
             }
         }
+        return future;
+    }
 
-        // Log the full request
-        String requestString = request.toString();
-        LOGGER.info("Full JSON-RPC request: " + requestString);
-        urlRequest.setBody(requestString);
+    private synchronized ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "mcp-client-batcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return scheduler;
+    }
 
-        try {
-            HTTPHandler handler = new HTTPHandler();
-            URLResponse urlResponse = handler.handleRequest(urlRequest);
+    /**
+     * Sends everything that is queued, in batches of at most {@link #maxBatchSize}.
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        int limit = maxBatchSize;
+        List<JsonRpcRequest> batch = new ArrayList<>(Math.min(limit, Math.max(1, queued.get())));
+        JsonRpcRequest request;
+        while ((request = queue.poll()) != null) {
+            queued.decrementAndGet();
+            batch.add(request);
+            if (batch.size() == limit) {
+                post(batch);
+                batch = new ArrayList<>(limit);
+            }
+        }
+        if (!batch.isEmpty()) {
+            post(batch);
+        }
+    }
+
+    private void post(List<JsonRpcRequest> batch) {
+        String body;
+        if (batch.size() == 1) {
+            body = batch.get(0).toString();
+        } else {
+            StringJoiner joiner = new StringJoiner(",", "[", "]");
+            for (JsonRpcRequest request : batch) {
+                joiner.add(request.toString());
+            }
+            body = joiner.toString();
+        }
+
+        inFlight.incrementAndGet();
+        httpClient.sendAsync(newPost(body), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+                .whenComplete((httpResponse, error) -> {
+                    inFlight.decrementAndGet();
+                    if (error != null) {
+                        fail(batch, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                    } else {
+                        complete(batch, httpResponse);
+                    }
+                });
+    }
 
-            // Capture session ID if provided by the server
-            List<String> headerSessionIdValues = urlResponse.getHeaders().get(Http.SESSION_ID);
-            if (headerSessionIdValues != null && !headerSessionIdValues.isEmpty()) {
-                this.sessionId = headerSessionIdValues.get(0);
+    /**
+     * Completes the futures of a batch from the server response, matching
+     * responses to requests by id.
+     */
+    private void complete(List<JsonRpcRequest> batch, HttpResponse<String> httpResponse) {
+        try {
+            String body = receive(httpResponse).trim();
+            if (body.startsWith("[")) {
+                Builders responses = new Builders();
+                responses.parse(body);
+                for (Builder response : responses) {
+                    resolve(response);
+                }
+            } else if (!body.isEmpty()) {
+                Builder response = new Builder();
+                response.parse(body);
+                resolve(response);
             }
+        } catch (IOException | ApplicationException e) {
+            fail(batch, e);
+            return;
+        }
 
-            if (urlResponse.getStatusCode() != HttpURLConnection.HTTP_OK) {
-                throw new IOException("Request failed with response code: " + urlResponse.getStatusCode());
+        // Anything still pending got no response from the server
+        for (JsonRpcRequest request : batch) {
+            CompletableFuture<JsonRpcResponse> future = pending.get(request.getId());
+            if (future != null) {
+                future.completeExceptionally(new IOException("No response for request " + request.getId()));
             }
+        }
+    }
 
-            String responseString = urlResponse.getBody();
-            LOGGER.info("Raw server response: " + responseString);
+    private void resolve(Builder builder) throws ApplicationException {
+        JsonRpcResponse response = new JsonRpcResponse();
+        response.parse(builder);
+        CompletableFuture<JsonRpcResponse> future = response.getId() != null ? pending.get(response.getId()) : null;
+        if (future != null) {
+            future.complete(response);
+        }
+    }
 
-            JsonRpcResponse jsonRpcResponse = new JsonRpcResponse();
-            try {
-                jsonRpcResponse.parse(responseString);
-            } catch (ApplicationException e) {
-                LOGGER.severe("Error parsing response: " + responseString + ", error: " + e.getMessage());
-                throw new IOException("Error parsing response: " + e.getMessage(), e);
+    private void fail(List<JsonRpcRequest> batch, Throwable error) {
+        LOGGER.log(Level.WARNING, "Batch of " + batch.size() + " request(s) failed", error);
+        for (JsonRpcRequest request : batch) {
+            CompletableFuture<JsonRpcResponse> future = pending.get(request.getId());
+            if (future != null) {
+                future.completeExceptionally(error);
             }
+        }
+    }
 
-            if (jsonRpcResponse.hasError()) {
-                LOGGER.warning("Server returned error: " + jsonRpcResponse.getError().getMessage() +
-                        " (code: " + jsonRpcResponse.getError().getCode() + ")");
-            } else {
-                LOGGER.info("Server returned result: " + jsonRpcResponse.getResult());
+    private JsonRpcRequest createRequest(String method, Builder params) throws IOException {
+        JsonRpcRequest request = new JsonRpcRequest();
+        request.setMethod(method);
+        request.setId(Long.toString(nextId.incrementAndGet()));
+        if (params != null) {
+            try {
+                request.setParams(params);
+            } catch (Exception e) {
+                LOGGER.severe("Error setting params: " + params + ", error: " + e.getMessage());
+                throw new IOException("Error setting params: " + e.getMessage(), e);
             }
+        }
+        return request;
+    }
 
-            return jsonRpcResponse;
-        } catch (ApplicationException e) {
-            throw new IOException("Request failed: " + e.getMessage(), e);
+    private HttpRequest newPost(String body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(endpoint)
+                .header("Content-Type", Http.CONTENT_TYPE_JSON)
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8));
+
+        if (authToken != null) {
+            builder.header(Http.AUTH_HEADER, authToken);
         }
+
+        String session = sessionId;
+        if (session != null) {
+            builder.header(Http.SESSION_ID, session);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Captures the session ID if provided by the server and checks the status code.
+     *
+     * @return The response body
+     */
+    private String receive(HttpResponse<String> httpResponse) throws IOException {
+        httpResponse.headers().firstValue(Http.SESSION_ID).ifPresent(value -> this.sessionId = value);
+
+        if (httpResponse.statusCode() != HttpURLConnection.HTTP_OK) {
+            throw new IOException("Request failed with response code: " + httpResponse.statusCode());
+        }
+        return httpResponse.body();
     }
 
     private void startEventStream() {
-        Thread eventThread = new Thread(() -> {
-            try {
-                URL url = URI.create(baseUrl + "?q=" + Endpoints.SSE).toURL();
-                URLRequest urlRequest = new URLRequest(url);
-                urlRequest.setMethod("GET")
-                        .setHeader("Accept", Http.CONTENT_TYPE_SSE);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(endpoint)
+                .header("Accept", Http.CONTENT_TYPE_SSE)
+                .GET();
 
-                if (authToken != null) {
-                    urlRequest.setHeader(Http.AUTH_HEADER, authToken);
-                }
+        if (authToken != null) {
+            builder.header(Http.AUTH_HEADER, authToken);
+        }
 
-                HTTPHandler handler = new HTTPHandler();
-                handler.handleRequest(urlRequest, new java.util.function.Consumer<String>() {
-                    String lastEvent = null;
-
-                    @Override
-                    public void accept(String line) {
-                        if (sessionState != SessionState.READY)
-                            return;
-
-                        line = line.trim();
-                        if (line.startsWith("event: ")) {
-                            lastEvent = line.substring(7);
-                        } else if (line.startsWith("data: ") && lastEvent != null) {
-                            String data = line.substring(6);
-                            handleEvent(lastEvent, data);
-                            lastEvent = null;
-                        }
+        // Lines are pushed to the subscriber as they arrive, so no thread is parked on the stream
+        httpClient.sendAsync(builder.build(), HttpResponse.BodyHandlers.fromLineSubscriber(new EventSubscriber()))
+                .whenComplete((response, error) -> {
+                    if (error != null && eventSubscription != null) {
+                        LOGGER.log(Level.SEVERE, "Error in SSE connection", error);
+                        sessionState = SessionState.ERROR;
                     }
                 });
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "Error in SSE connection", e);
-                sessionState = SessionState.ERROR;
+    }
+
+    private final class EventSubscriber implements Flow.Subscriber<String> {
+        private String lastEvent;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            eventSubscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (sessionState != SessionState.READY)
+                return;
+
+            line = line.trim();
+            if (line.startsWith("event: ")) {
+                lastEvent = line.substring(7);
+            } else if (line.startsWith("data: ") && lastEvent != null) {
+                String data = line.substring(6);
+                handleEvent(lastEvent, data);
+                lastEvent = null;
             }
-        });
-        eventThread.setDaemon(true);
-        eventThread.start();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            LOGGER.log(Level.FINE, "SSE stream ended with error", throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            LOGGER.fine("SSE stream closed");
+        }
     }
 
     private void handleEvent(String event, String data) {
@@ -563,9 +839,7 @@ public class MCPClient {
             case ErrorCodes.UNAUTHORIZED:
                 throw new SecurityException("Unauthorized: " + error.getMessage());
             case ErrorCodes.NOT_INITIALIZED:
-                synchronized (this) {
-                    sessionState = SessionState.DISCONNECTED;
-                }
+                sessionState = SessionState.DISCONNECTED;
                 throw new IllegalStateException(error.getMessage());
             case ErrorCodes.ALREADY_INITIALIZED:
                 throw new IllegalStateException(error.getMessage());
@@ -654,33 +928,29 @@ public class MCPClient {
             throw new IllegalStateException("Client not in READY state");
         }
 
-        try {
-            Builder params = new Builder();
-            params.put("name", name);
-            params.put("arguments", parameters);
-
-            LOGGER.info("Sending JSON-RPC request: method=" + Methods.CALL_TOOL + ", params=" + params);
+        LOGGER.info("Sending JSON-RPC request: method=" + Methods.CALL_TOOL + ", tool=" + name);
+        return await(callToolAsync(name, parameters), "Tool execution failed");
+    }
 
-            JsonRpcResponse response = sendRequest(Methods.CALL_TOOL, params);
-            if (response.hasError()) {
-                throw new IOException("Tool execution failed: " + response.getError().getMessage());
-            }
+    /**
+     * Calls a tool without waiting for the result. Calls made from several
+     * threads, or in quick succession, share connections and batches.
+     *
+     * @param name       The name of the tool
+     * @param parameters The parameters to use for execution
+     * @return A future completed with the result of the tool execution
+     */
+    public CompletableFuture<Object> callToolAsync(String name, Builder parameters) {
+        if (sessionState != SessionState.READY) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Client not in READY state"));
+        }
 
-            Builder result = response.getResult();
-            if (result != null && result.containsKey("content")) {
-                Builders contentArray = (Builders) result.get("content");
-                if (contentArray != null && !contentArray.isEmpty()) {
-                    Builder firstContent = contentArray.get(0);
-                    if (firstContent.containsKey("text")) {
-                        return firstContent.get("text");
-                    }
-                }
-            }
+        Builder params = new Builder();
+        params.put("name", name);
+        params.put("arguments", parameters);
 
-            return result;
-        } catch (Exception e) {
-            throw new IOException("Tool execution failed", e);
-        }
+        return sendRequestAsync(Methods.CALL_TOOL, params)
+                .thenApply(response -> extract(response, "content", "Tool execution failed"));
     }
 
     /**
@@ -695,29 +965,57 @@ public class MCPClient {
             throw new IllegalStateException("Client not in READY state");
         }
 
-        try {
-            Builder params = new Builder();
-            params.put("uri", uri);
+        return await(readResourceAsync(uri), "Resource read failed");
+    }
 
-            JsonRpcResponse response = sendRequest(Methods.READ_RESOURCE, params);
-            if (response.hasError()) {
-                throw new IOException("Resource read failed: " + response.getError().getMessage());
-            }
+    /**
+     * Reads a resource without waiting for the content.
+     *
+     * @param uri The URI of the resource
+     * @return A future completed with the resource content
+     */
+    public CompletableFuture<Object> readResourceAsync(String uri) {
+        if (sessionState != SessionState.READY) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Client not in READY state"));
+        }
 
-            Builder result = response.getResult();
-            if (result != null && result.containsKey("contents")) {
-                Builders contents = (Builders) result.get("contents");
-                if (contents != null && !contents.isEmpty()) {
-                    Builder firstContent = contents.get(0);
-                    if (firstContent.containsKey("text")) {
-                        return firstContent.get("text");
-                    }
+        Builder params = new Builder();
+        params.put("uri", uri);
+
+        return sendRequestAsync(Methods.READ_RESOURCE, params)
+                .thenApply(response -> extract(response, "contents", "Resource read failed"));
+    }
+
+    /**
+     * Returns the text of the first content item, or the whole result if there is none.
+     */
+    private static Object extract(JsonRpcResponse response, String field, String failure) {
+        if (response.hasError()) {
+            throw new CompletionException(new IOException(failure + ": " + response.getError().getMessage()));
+        }
+
+        Builder result = response.getResult();
+        if (result != null && result.containsKey(field)) {
+            Object value = result.get(field);
+            if (value instanceof Builders && !((Builders) value).isEmpty()) {
+                Builder firstContent = ((Builders) value).get(0);
+                if (firstContent.containsKey("text")) {
+                    return firstContent.get("text");
                 }
             }
+        }
 
-            return result;
-        } catch (Exception e) {
-            throw new IOException("Resource read failed", e);
+        return result;
+    }
+
+    private static Object await(CompletableFuture<Object> future, String failure) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException(failure, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(failure, e);
         }
     }
 
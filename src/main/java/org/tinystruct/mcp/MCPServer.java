@@ -23,9 +23,13 @@ import org.tinystruct.system.annotation.Argument;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static org.tinystruct.mcp.MCPSpecification.Config;
 import static org.tinystruct.mcp.MCPSpecification.ErrorCodes;
 
 /**
@@ -34,95 +38,57 @@ import static org.tinystruct.mcp.MCPSpecification.ErrorCodes;
  */
 public class MCPServer extends MCPApplication {
     private static final Logger LOGGER = Logger.getLogger(MCPServer.class.getName());
+    /**
+     * Name and URI of the resource reporting per-tool call metrics, published only
+     * once enabled with {@link #enableToolMetrics()} or mcp.metrics.enabled=true.
+     */
+    public static final String METRICS_RESOURCE = "tinystruct://metrics";
+
+    private final Map<String, ToolMetrics> toolMetrics = new ConcurrentHashMap<>();
+    private volatile ToolIndex toolIndex;
 
     @Override
     public void init() {
         super.init();
+        if (Boolean.parseBoolean(getConfiguration().get(Config.METRICS_ENABLED))) {
+            this.enableToolMetrics();
+        }
 
         LOGGER.info("MCPServerApplication initialized");
     }
 
     /**
-     * Handles a list tools request.
+     * Get the compiled tool index, rebuilding it if tools were registered
+     * since it was compiled.
      *
-     * @param request  The JSON-RPC request
-     * @param response The JSON-RPC response
+     * @return the tool index
      */
-    protected void handleListTools(JsonRpcRequest request, JsonRpcResponse response) {
-        Builder result = new Builder();
-        Builders toolsList = new Builders();
-
-        // Add individual tool methods (which may be overloaded)
-        for (List<MCPTool.ToolMethod> toolMethodList : toolMethods.values()) {
-            if (toolMethodList.isEmpty()) continue;
-            
-            Builder mergedSchema = new Builder();
-            mergedSchema.put("type", "object");
-            Builder mergedProperties = new Builder();
-            java.util.Set<String> allRequired = null;
-            
-            for (MCPTool.ToolMethod tm : toolMethodList) {
-                Builder schema = tm.getSchema();
-                if (schema.containsKey("properties")) {
-                    Builder props = (Builder) schema.get("properties");
-                    for (String key : props.keySet()) {
-                        mergedProperties.put(key, props.get(key));
-                    }
-                }
-                
-                java.util.Set<String> currentRequired = new java.util.HashSet<>();
-                if (schema.containsKey("required")) {
-                    Object req = schema.get("required");
-                    if (req instanceof String[]) {
-                        for (String r : (String[]) req) {
-                            currentRequired.add(r);
-                        }
-                    }
+    ToolIndex toolIndex() {
+        long generation = JsonRpcHandler.generation();
+        ToolIndex index = toolIndex;
+        if (index == null || index.getGeneration() != generation) {
+            synchronized (this) {
+                index = toolIndex;
+                if (index == null || index.getGeneration() != generation) {
+                    index = ToolIndex.compile(toolMethods, tools,
+                            name -> toolMetrics.computeIfAbsent(name, k -> new ToolMetrics()), generation);
+                    toolIndex = index;
                 }
-                
-                if (allRequired == null) {
-                    allRequired = currentRequired;
-                } else {
-                    allRequired.retainAll(currentRequired); // Only parameters required by ALL overloads remain required
-                }
-            }
-            
-            mergedSchema.put("properties", mergedProperties);
-            if (allRequired != null && !allRequired.isEmpty()) {
-                mergedSchema.put("required", allRequired.toArray(new String[0]));
-            }
-
-            MCPTool.ToolMethod first = toolMethodList.get(0);
-            Builder toolInfo = new Builder();
-            toolInfo.put("name", first.getName());
-            toolInfo.put("description", first.getDescription());
-            toolInfo.put("inputSchema", mergedSchema);
-            toolsList.add(toolInfo);
-        }
-
-        // Add registered tool classes
-        for (MCPTool tool : tools.values()) {
-            boolean hasSubMethods = false;
-            String prefix = tool.getName() + "/";
-            for (String methodName : toolMethods.keySet()) {
-                if (methodName.startsWith(prefix)) {
-                    hasSubMethods = true;
-                    break;
-                }
-            }
-            if (!hasSubMethods) {
-                Builder toolInfo = new Builder();
-                toolInfo.put("name", tool.getName());
-                toolInfo.put("description", tool.getDescription());
-                toolInfo.put("inputSchema", tool.getSchema());
-                toolsList.add(toolInfo);
             }
         }
+        return index;
+    }
 
-        result.put("tools", toolsList);
-
+    /**
+     * Handles a list tools request.
+     *
+     * @param request  The JSON-RPC request
+     * @param response The JSON-RPC response
+     */
+    protected void handleListTools(JsonRpcRequest request, JsonRpcResponse response) {
+        ToolIndex index = toolIndex();
         response.setId(request.getId());
-        response.setResult(result);
+        response.setResult(index.getListResult(), index.getListJson());
     }
 
     /**
@@ -137,42 +103,13 @@ public class MCPServer extends MCPApplication {
             String toolName = params.get("name").toString();
             Builder toolParams = (Builder) params.get("arguments");
 
-            // First try to find the tool method
-            List<MCPTool.ToolMethod> methods = toolMethods.get(toolName);
-            if (methods != null && !methods.isEmpty()) {
-                Object result = null;
-                boolean executed = false;
-                MCPException lastException = null;
-
-                for (MCPTool.ToolMethod toolMethod : methods) {
-                    try {
-                        // Attempt to execute. The ToolMethod.execute will perform schema validation first.
-                        result = toolMethod.execute(toolParams);
-                        executed = true;
-                        break;
-                    } catch (MCPException e) {
-                        lastException = e;
-                    }
-                }
-
-                if (executed) {
-                    response.setId(request.getId());
-                    response.setResult(formatToolResult(result));
-                } else if (lastException != null) {
-                    throw lastException;
-                } else {
-                    throw new MCPException("No matching overloaded method found for tool: " + toolName);
-                }
+            ToolDescriptor tool = toolIndex().get(toolName);
+            if (tool != null) {
+                Object result = tool.invoke(toolParams);
+                response.setId(request.getId());
+                response.setResult(formatToolResult(result));
             } else {
-                // Try to find the tool in the tools map
-                MCPTool tool = tools.get(toolName);
-                if (tool != null) {
-                    Object result = tool.execute(toolParams);
-                    response.setId(request.getId());
-                    response.setResult(formatToolResult(result));
-                } else {
-                    response.setError(new JsonRpcError(ErrorCodes.METHOD_NOT_FOUND, "Tool not exists: " + toolName));
-                }
+                response.setError(new JsonRpcError(ErrorCodes.METHOD_NOT_FOUND, "Tool not exists: " + toolName));
             }
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error calling tool", e);
@@ -197,6 +134,31 @@ public class MCPServer extends MCPApplication {
         }
     }
 
+    /**
+     * Publishes the call metrics of the tools as the {@link #METRICS_RESOURCE}
+     * resource, readable by every client of this server.
+     */
+    public void enableToolMetrics() {
+        if (!resources.containsKey(METRICS_RESOURCE)) {
+            this.registerResource(new MetricsResource());
+        }
+    }
+
+    /**
+     * Collects the call metrics of every tool that has been called.
+     *
+     * @return the metrics, with latencies in milliseconds
+     */
+    public Builder getToolMetrics() {
+        Builders list = new Builders();
+        for (Map.Entry<String, ToolMetrics> entry : new TreeMap<>(toolMetrics).entrySet()) {
+            if (entry.getValue().latency().count() > 0) {
+                list.add(entry.getValue().toBuilder(entry.getKey()));
+            }
+        }
+        return new Builder().put("tools", list);
+    }
+
     /**
      * Handles a list resources request.
      *
@@ -236,8 +198,9 @@ public class MCPServer extends MCPApplication {
 
             // Parse the URI to extract the resource name and parameters
             // This is a simplified implementation
-            String resourceName = uri.substring(0, uri.indexOf("?"));
-            String queryString = uri.substring(uri.indexOf("?") + 1);
+            int query = uri.indexOf("?");
+            String resourceName = query >= 0 ? uri.substring(0, query) : uri;
+            String queryString = query >= 0 ? uri.substring(query + 1) : "";
 
             Builder resourceParams = new Builder();
             for (String param : queryString.split("&")) {
@@ -465,6 +428,26 @@ public class MCPServer extends MCPApplication {
 
         return resultBuilder;
     }
+
+    /**
+     * Read-only resource reporting the call count, error count and latency
+     * percentiles of each tool.
+     */
+    private final class MetricsResource extends MCPDataResource {
+        MetricsResource() {
+            super(METRICS_RESOURCE, "Call counts and latency percentiles of the tools", METRICS_RESOURCE, null);
+        }
+
+        @Override
+        protected boolean supportsLocalExecution() {
+            return true;
+        }
+
+        @Override
+        protected Object executeLocally(Builder builder) {
+            return getToolMetrics();
+        }
+    }
 }
 
 class SchemaGenerator {
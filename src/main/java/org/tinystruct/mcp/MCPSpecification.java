@@ -416,6 +416,9 @@ public final class MCPSpecification {
         public static final String SERVER_PORT = "mcp.server.port";
         public static final String SERVER_HOST = "mcp.server.host";
         public static final String SESSION_TIMEOUT = "mcp.session.timeout";
+        public static final String BATCH_PARALLELISM = "mcp.batch.parallelism";
+        public static final String BATCH_TIMEOUT = "mcp.batch.timeout";
+        public static final String METRICS_ENABLED = "mcp.metrics.enabled";
 
         private Config() {
         } // Prevent instantiation
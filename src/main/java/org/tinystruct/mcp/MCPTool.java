@@ -20,7 +20,12 @@ import org.tinystruct.data.component.Builder;
 import org.tinystruct.system.annotation.Action;
 import org.tinystruct.system.annotation.Argument;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
@@ -329,6 +334,19 @@ public class MCPTool extends AbstractMCPResource {
         private final Object toolInstance;
         private final List<ParameterInfo> parameters;
 
+        // Compiled once: a direct invoker taking the bound arguments, and one binder per argument
+        private final MethodHandle invoker;
+        private final ArgumentBinder[] binders;
+        private final int arity;
+
+        /**
+         * Converts a JSON value to the type of a method parameter.
+         */
+        @FunctionalInterface
+        interface ArgumentBinder {
+            Object bind(Object value) throws MCPException;
+        }
+
         /**
          * Information about a tool method parameter.
          */
@@ -382,6 +400,33 @@ public class MCPTool extends AbstractMCPResource {
             
             // Generate schema from parameters
             this.schema = generateSchema();
+
+            Class<?>[] paramTypes = method.getParameterTypes();
+            this.arity = paramTypes.length;
+            this.binders = new ArgumentBinder[Math.min(this.parameters.size(), paramTypes.length)];
+            for (int i = 0; i < this.binders.length; i++) {
+                this.binders[i] = binderFor(paramTypes[i]);
+            }
+            this.invoker = compileInvoker(method, toolInstance);
+        }
+
+        /**
+         * Build a method handle of type {@code (Object[])Object} bound to the tool
+         * instance, or null if the method is not accessible through a handle.
+         */
+        private static MethodHandle compileInvoker(Method method, Object toolInstance) {
+            try {
+                method.setAccessible(true);
+                MethodHandle handle = MethodHandles.lookup().unreflect(method);
+                if (!Modifier.isStatic(method.getModifiers())) {
+                    handle = handle.bindTo(toolInstance);
+                }
+                return handle.asSpreader(Object[].class, method.getParameterCount())
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (IllegalAccessException | RuntimeException e) {
+                LOGGER.fine("Falling back to reflection for tool method " + method.getName() + ": " + e.getMessage());
+                return null;
+            }
         }
 
         public String getName() { return name; }
@@ -395,7 +440,15 @@ public class MCPTool extends AbstractMCPResource {
 
             try {
                 Object[] args = convertParametersToArguments(parameters);
-                return method.invoke(toolInstance, args);
+                if (invoker == null) {
+                    return method.invoke(toolInstance, args);
+                }
+                try {
+                    return (Object) invoker.invokeExact(args);
+                } catch (Throwable t) {
+                    // Report failures the same way reflective invocation does
+                    throw new InvocationTargetException(t);
+                }
             } catch (Exception e) {
                 String errorMsg = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
                 LOGGER.severe("Error executing tool method " + name + ": " + errorMsg);
@@ -404,8 +457,7 @@ public class MCPTool extends AbstractMCPResource {
         }
 
         private Object[] convertParametersToArguments(Builder parameters) throws MCPException {
-            Class<?>[] paramTypes = method.getParameterTypes();
-            Object[] args = new Object[paramTypes.length];
+            Object[] args = new Object[arity];
             for (int i = 0; i < this.parameters.size(); i++) {
                 ParameterInfo paramInfo = this.parameters.get(i);
                 String paramName = paramInfo.getName();
@@ -413,67 +465,65 @@ public class MCPTool extends AbstractMCPResource {
                 if (value == null && paramInfo.isRequired()) {
                     throw new MCPException("Missing required parameter: " + paramName);
                 }
-                if (i < paramTypes.length) {
-                    Class<?> paramType = paramTypes[i];
-                    args[i] = convertValue(value, paramType);
+                if (i < binders.length && value != null) {
+                    try {
+                        args[i] = binders[i].bind(value);
+                    } catch (NumberFormatException e) {
+                        throw new MCPException("Invalid number format for parameter: " + e.getMessage());
+                    }
                 }
             }
             return args;
         }
 
-        private Object convertValue(Object value, Class<?> targetType) throws MCPException {
-            try {
-                if (value == null) {
-                    return null;
-                }
-                if (targetType == String.class) {
-                    return value.toString();
-                } else if (targetType == int.class || targetType == Integer.class) {
-                    if (value instanceof Number) {
-                        return ((Number) value).intValue();
-                    }
-                    return Integer.parseInt(value.toString());
-                } else if (targetType == long.class || targetType == Long.class) {
-                    if (value instanceof Number) {
-                        return ((Number) value).longValue();
-                    }
-                    return Long.parseLong(value.toString());
-                } else if (targetType == double.class || targetType == Double.class) {
-                    if (value instanceof Number) {
-                        return ((Number) value).doubleValue();
-                    }
-                    return Double.parseDouble(value.toString());
-                } else if (targetType == float.class || targetType == Float.class) {
-                    if (value instanceof Number) {
-                        return ((Number) value).floatValue();
-                    }
-                    return Float.parseFloat(value.toString());
-                } else if (targetType == boolean.class || targetType == Boolean.class) {
-                    if (value instanceof Boolean) {
-                        return value;
-                    }
-                    return Boolean.parseBoolean(value.toString());
-                } else if (targetType == Builder.class) {
+        /**
+         * Select the conversion for a parameter type once, at registration.
+         */
+        private static ArgumentBinder binderFor(Class<?> targetType) {
+            if (targetType == String.class) {
+                return Object::toString;
+            } else if (targetType == int.class || targetType == Integer.class) {
+                return value -> value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString());
+            } else if (targetType == long.class || targetType == Long.class) {
+                return value -> value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+            } else if (targetType == double.class || targetType == Double.class) {
+                return value -> value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
+            } else if (targetType == float.class || targetType == Float.class) {
+                return value -> value instanceof Number ? ((Number) value).floatValue() : Float.parseFloat(value.toString());
+            } else if (targetType == boolean.class || targetType == Boolean.class) {
+                return value -> value instanceof Boolean ? value : Boolean.parseBoolean(value.toString());
+            } else if (targetType == Builder.class) {
+                return value -> {
                     if (value instanceof Builder) {
                         return value;
                     }
-                    Builder b = new Builder();
-                    b.parse(value.toString());
-                    return b;
-                } else if (targetType == org.tinystruct.data.component.Builders.class) {
+                    try {
+                        Builder b = new Builder();
+                        b.parse(value.toString());
+                        return b;
+                    } catch (ApplicationException e) {
+                        throw new MCPException("Invalid number format for parameter: " + e.getMessage());
+                    }
+                };
+            } else if (targetType == org.tinystruct.data.component.Builders.class) {
+                return value -> {
                     if (value instanceof org.tinystruct.data.component.Builders) {
                         return value;
                     }
-                    org.tinystruct.data.component.Builders b = new org.tinystruct.data.component.Builders();
-                    b.parse(value.toString());
-                    return b;
-                } else if (targetType == Object.class) {
-                    return value;
-                } else {
+                    try {
+                        org.tinystruct.data.component.Builders b = new org.tinystruct.data.component.Builders();
+                        b.parse(value.toString());
+                        return b;
+                    } catch (ApplicationException e) {
+                        throw new MCPException("Invalid number format for parameter: " + e.getMessage());
+                    }
+                };
+            } else if (targetType == Object.class) {
+                return value -> value;
+            } else {
+                return value -> {
                     throw new MCPException("Unsupported parameter type: " + targetType.getName());
-                }
-            } catch (NumberFormatException | ApplicationException e) {
-                throw new MCPException("Invalid number format for parameter: " + e.getMessage());
+                };
             }
         }
 
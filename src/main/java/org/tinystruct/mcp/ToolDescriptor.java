@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.mcp;
+
+import org.tinystruct.data.component.Builder;
+
+/**
+ * The compiled, immutable form of a registered tool: its tools/list entry,
+ * serialized once, and what to invoke for tools/call. Overloaded tool
+ * methods are tried in registration order, as before.
+ */
+final class ToolDescriptor {
+    private final String name;
+    private final Builder entry;
+    private final String json;
+    private final MCPTool.ToolMethod[] overloads;
+    private final MCPTool tool;
+    private final ToolMetrics metrics;
+
+    private ToolDescriptor(String name, String description, Builder inputSchema,
+                           MCPTool.ToolMethod[] overloads, MCPTool tool, ToolMetrics metrics) {
+        this.name = name;
+        this.entry = new Builder()
+                .put("name", name)
+                .put("description", description)
+                .put("inputSchema", inputSchema);
+        this.json = entry.toString();
+        this.overloads = overloads;
+        this.tool = tool;
+        this.metrics = metrics;
+    }
+
+    static ToolDescriptor of(String name, String description, Builder inputSchema,
+                             MCPTool.ToolMethod[] overloads, ToolMetrics metrics) {
+        return new ToolDescriptor(name, description, inputSchema, overloads, null, metrics);
+    }
+
+    static ToolDescriptor of(MCPTool tool, ToolMetrics metrics) {
+        return new ToolDescriptor(tool.getName(), tool.getDescription(), tool.getSchema(), null, tool, metrics);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return the tools/list entry of this tool
+     */
+    Builder getEntry() {
+        return entry;
+    }
+
+    /**
+     * @return the JSON text of {@link #getEntry()}
+     */
+    String getJson() {
+        return json;
+    }
+
+    /**
+     * Invoke the tool and record the call latency.
+     *
+     * @param arguments the tool arguments
+     * @return the result of the tool
+     * @throws MCPException if no overload accepts the arguments or the tool fails
+     */
+    Object invoke(Builder arguments) throws MCPException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = execute(arguments);
+            failed = false;
+            return result;
+        } finally {
+            metrics.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    private Object execute(Builder arguments) throws MCPException {
+        if (tool != null) {
+            return tool.execute(arguments);
+        }
+
+        MCPException lastException = null;
+        for (MCPTool.ToolMethod toolMethod : overloads) {
+            try {
+                // ToolMethod.execute validates against the overload's schema first
+                return toolMethod.execute(arguments);
+            } catch (MCPException e) {
+                lastException = e;
+            }
+        }
+
+        if (lastException != null) {
+            throw lastException;
+        }
+        throw new MCPException("No matching overloaded method found for tool: " + name);
+    }
+}
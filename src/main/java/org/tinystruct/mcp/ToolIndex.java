@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.mcp;
+
+import org.tinystruct.data.component.Builder;
+import org.tinystruct.data.component.Builders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * An immutable snapshot of the registered tools, compiled when the
+ * registrations change rather than on every request.
+ * <p>
+ * tools/call looks a tool up with one hash lookup, and tools/list is answered
+ * with the JSON text built at compile time. The list carries a version derived
+ * from its content, which a client can send back to learn that its copy is
+ * still current, in the manner of an HTTP ETag.
+ * </p>
+ */
+final class ToolIndex {
+    private final Map<String, ToolDescriptor> tools;
+    private final Builder listResult;
+    private final String listJson;
+    private final String version;
+    private final long generation;
+
+    private ToolIndex(Map<String, ToolDescriptor> tools, List<ToolDescriptor> listed, long generation) {
+        this.tools = Collections.unmodifiableMap(tools);
+        this.generation = generation;
+
+        Builders entries = new Builders();
+        StringJoiner array = new StringJoiner(",", "[", "]");
+        for (ToolDescriptor descriptor : listed) {
+            entries.add(descriptor.getEntry());
+            array.add(descriptor.getJson());
+        }
+
+        String toolsJson = array.toString();
+        CRC32 crc = new CRC32();
+        crc.update(toolsJson.getBytes(StandardCharsets.UTF_8));
+        this.version = Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(toolsJson.length());
+
+        this.listResult = new Builder();
+        this.listResult.put("tools", entries);
+        this.listResult.put("_meta", new Builder().put("version", version));
+        this.listJson = "{\"tools\":" + toolsJson + ",\"_meta\":{\"version\":\"" + version + "\"}}";
+    }
+
+    /**
+     * Compile the current registrations.
+     *
+     * @param toolMethods @Action methods by tool name, possibly overloaded
+     * @param classTools  tools registered as {@link MCPTool} classes without @Action methods
+     * @param metrics     supplies the metrics of a tool by name
+     * @param generation  registration generation the index is built from
+     * @return the index
+     */
+    static ToolIndex compile(Map<String, List<MCPTool.ToolMethod>> toolMethods, Map<String, MCPTool> classTools,
+                             Function<String, ToolMetrics> metrics, long generation) {
+        Map<String, ToolDescriptor> tools = new HashMap<>();
+        List<ToolDescriptor> listed = new ArrayList<>();
+
+        // Individual tool methods, whose overloads are listed with one merged schema
+        for (Map.Entry<String, List<MCPTool.ToolMethod>> entry : toolMethods.entrySet()) {
+            MCPTool.ToolMethod[] overloads = entry.getValue().toArray(new MCPTool.ToolMethod[0]);
+            if (overloads.length == 0) continue;
+
+            MCPTool.ToolMethod first = overloads[0];
+            ToolDescriptor descriptor = ToolDescriptor.of(first.getName(), first.getDescription(),
+                    mergeSchemas(overloads), overloads, metrics.apply(entry.getKey()));
+            tools.put(entry.getKey(), descriptor);
+            listed.add(descriptor);
+        }
+
+        // Tool classes, unless they are already represented by their methods
+        for (MCPTool tool : classTools.values()) {
+            String prefix = tool.getName() + "/";
+            boolean hasSubMethods = false;
+            for (String methodName : toolMethods.keySet()) {
+                if (methodName.startsWith(prefix)) {
+                    hasSubMethods = true;
+                    break;
+                }
+            }
+            if (!hasSubMethods) {
+                ToolDescriptor descriptor = ToolDescriptor.of(tool, metrics.apply(tool.getName()));
+                tools.putIfAbsent(tool.getName(), descriptor);
+                listed.add(descriptor);
+            }
+        }
+
+        return new ToolIndex(tools, listed, generation);
+    }
+
+    private static Builder mergeSchemas(MCPTool.ToolMethod[] overloads) {
+        Builder mergedSchema = new Builder();
+        mergedSchema.put("type", "object");
+        Builder mergedProperties = new Builder();
+        Set<String> allRequired = null;
+
+        for (MCPTool.ToolMethod tm : overloads) {
+            Builder schema = tm.getSchema();
+            if (schema.containsKey("properties")) {
+                Builder props = (Builder) schema.get("properties");
+                for (String key : props.keySet()) {
+                    mergedProperties.put(key, props.get(key));
+                }
+            }
+
+            Set<String> currentRequired = new HashSet<>();
+            Object req = schema.get("required");
+            if (req instanceof String[]) {
+                Collections.addAll(currentRequired, (String[]) req);
+            }
+
+            if (allRequired == null) {
+                allRequired = currentRequired;
+            } else {
+                allRequired.retainAll(currentRequired); // Only parameters required by ALL overloads remain required
+            }
+        }
+
+        mergedSchema.put("properties", mergedProperties);
+        if (allRequired != null && !allRequired.isEmpty()) {
+            mergedSchema.put("required", allRequired.toArray(new String[0]));
+        }
+        return mergedSchema;
+    }
+
+    ToolDescriptor get(String name) {
+        return tools.get(name);
+    }
+
+    Collection<ToolDescriptor> descriptors() {
+        return tools.values();
+    }
+
+    /**
+     * @return the tools/list result
+     */
+    Builder getListResult() {
+        return listResult;
+    }
+
+    /**
+     * @return the JSON text of {@link #getListResult()}
+     */
+    String getListJson() {
+        return listJson;
+    }
+
+    String getVersion() {
+        return version;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.mcp;
+
+import org.tinystruct.data.component.Builder;
+import org.tinystruct.system.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call latency and error counts of one tool. Kept per tool name, so the
+ * numbers survive the tool index being rebuilt when tools are registered.
+ */
+final class ToolMetrics {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    void record(long nanos, boolean failed) {
+        latency.record(nanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    LatencyHistogram latency() {
+        return latency;
+    }
+
+    long errors() {
+        return errors.sum();
+    }
+
+    /**
+     * @param name the tool name
+     * @return the metrics as a JSON object, with latencies in milliseconds
+     */
+    Builder toBuilder(String name) {
+        return new Builder()
+                .put("name", name)
+                .put("calls", latency.count())
+                .put("errors", errors.sum())
+                .put("mean_ms", millis(latency.mean()))
+                .put("p50_ms", millis(latency.percentile(50)))
+                .put("p90_ms", millis(latency.percentile(90)))
+                .put("p99_ms", millis(latency.percentile(99)))
+                .put("max_ms", millis(latency.max()));
+    }
+
+    private static double millis(double nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+}
@@ -91,11 +91,44 @@ public class HTTPHandler implements URLHandler {
         this.followRedirects = false;
     }
 
+    /**
+     * Get the HttpClient shared by all handlers. It follows redirects and uses
+     * the proxies configured through the standard {@code http.proxyHost} and
+     * {@code https.proxyHost} system properties. An HttpClient keeps a
+     * connection pool, so sharing it lets requests to the same host reuse
+     * connections instead of opening a new one each time.
+     *
+     * @return the shared client
+     */
+    public static HttpClient sharedClient() {
+        return SharedClient.INSTANCE;
+    }
+
+    private static final class SharedClient {
+        static final HttpClient INSTANCE = create();
+
+        private static HttpClient create() {
+            HttpClient.Builder builder = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .followRedirects(HttpClient.Redirect.NORMAL);
+            // The default selector reads the proxy system properties on every request
+            ProxySelector selector = ProxySelector.getDefault();
+            if (selector != null) {
+                builder.proxy(selector);
+            }
+            return builder.build();
+        }
+    }
+
     /**
      * Builds an HttpClient with proxy and redirect settings derived from the
      * request.
      */
     private HttpClient buildClient(URLRequest request) {
+        if (this.followRedirects && request.getProxy() == null) {
+            return sharedClient();
+        }
+
         HttpClient.Builder builder = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(30));
 
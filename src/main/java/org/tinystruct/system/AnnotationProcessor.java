@@ -1,16 +1,22 @@
 package org.tinystruct.system;
 
 import org.tinystruct.Application;
+import org.tinystruct.application.ActionIndex;
 import org.tinystruct.application.ActionRegistry;
 import org.tinystruct.system.annotation.Action;
 import org.tinystruct.system.annotation.Argument;
 import org.tinystruct.system.cli.CommandArgument;
 import org.tinystruct.system.cli.CommandLine;
 import org.tinystruct.system.cli.CommandOption;
+import org.tinystruct.system.metrics.MetricsRegistry;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class AnnotationProcessor {
+    private static final Logger logger = Logger.getLogger(AnnotationProcessor.class.getName());
     private final Application app;
     private final ActionRegistry actionRegistry = ActionRegistry.getInstance();
 
@@ -18,7 +24,43 @@ public class AnnotationProcessor {
         this.app = app;
     }
 
+    /**
+     * Register the commands and actions of the application, from the action
+     * index generated at compile time when there is one, otherwise from the
+     * annotations by reflection. Setting <code>action.index.enabled</code> to
+     * false always uses reflection. The time taken is recorded in the metric
+     * <code>tinystruct_action_registration_seconds</code>, labelled with the source.
+     */
     public void processActionAnnotations() {
+        long start = System.nanoTime();
+        String source = "reflection";
+        ActionIndex index = loadIndex();
+        if (index != null) {
+            index.register(this.app);
+            source = "index";
+        } else {
+            processByReflection();
+        }
+
+        MetricsRegistry.getInstance().timer("tinystruct_action_registration_seconds",
+                "Time taken to register the actions of an application", "source", source).record(System.nanoTime() - start);
+    }
+
+    private ActionIndex loadIndex() {
+        if (this.app.getConfiguration() != null
+                && "false".equalsIgnoreCase(this.app.getConfiguration().getOrDefault("action.index.enabled", "true"))) {
+            return null;
+        }
+
+        try {
+            return ActionIndex.load(this.app.getClass());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Ignored the action index of " + this.app.getClass().getName() + ": " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private void processByReflection() {
         Action annotation = this.app.getClass().getAnnotation(Action.class);
 
         if (annotation != null) {
@@ -9,6 +9,9 @@ import org.tinystruct.application.ActionRegistry;
 import org.tinystruct.application.Context;
 import org.tinystruct.system.cli.CommandLine;
 import org.tinystruct.system.logging.LoggerConfigurer;
+import org.tinystruct.system.metrics.ActionMetrics;
+import org.tinystruct.system.metrics.Counter;
+import org.tinystruct.system.metrics.MetricsRegistry;
 import org.tinystruct.system.util.TextFileLoader;
 
 import java.io.BufferedWriter;
@@ -28,6 +31,8 @@ public final class ApplicationManager {
     public static final String VERSION = "1.7.27";
     private static final ConcurrentHashMap<String, Application> applications = new ConcurrentHashMap<>();
     private static final ActionRegistry ROUTE_REGISTRY_INSTANCE = ActionRegistry.getInstance();
+    private static final Counter NOT_FOUND = MetricsRegistry.getInstance()
+            .counter("tinystruct_action_not_found_total", "Calls to paths no action matches");
     private static Configuration<String> settings;
     private static volatile boolean initialized = false;
 
@@ -245,6 +250,7 @@ public final class ApplicationManager {
 
         Action action = ROUTE_REGISTRY_INSTANCE.getAction(path, mode);
         if (action == null) {
+            NOT_FOUND.increment();
             throw new ApplicationException(
                     "No matching function found for path [" + path + "]. Ensure the path is correct and the function is public.", 404);
         }
@@ -258,7 +264,15 @@ public final class ApplicationManager {
             action.setContext(context);
         }
 
-        return action.execute();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = action.execute();
+            failed = false;
+            return result;
+        } finally {
+            ActionMetrics.of(action.getPathRule()).record(mode, System.nanoTime() - start, failed);
+        }
     }
 
     /**
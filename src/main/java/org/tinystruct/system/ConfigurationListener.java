@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.system;
+
+/**
+ * Callback notified whenever {@link Settings} publishes a new
+ * {@link ConfigurationSnapshot}, either because a value was set or removed
+ * programmatically or because the underlying file changed on disk.
+ */
+@FunctionalInterface
+public interface ConfigurationListener {
+    /**
+     * Invoked after the new snapshot has been published.
+     *
+     * @param previous the snapshot that was replaced
+     * @param current  the snapshot now in effect
+     */
+    void onChange(ConfigurationSnapshot previous, ConfigurationSnapshot current);
+}
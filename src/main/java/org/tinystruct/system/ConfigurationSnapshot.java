@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.system;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * An immutable view of the configuration at a point in time.
+ * <p>
+ * Every value is trimmed and resolved (including {@code $_NAME} environment
+ * references) when the snapshot is built, so reading a property is a single
+ * hash lookup. Typed values are parsed on first access and memoized for the
+ * lifetime of the snapshot; a reload publishes a new snapshot instead of
+ * mutating this one.
+ * </p>
+ */
+public final class ConfigurationSnapshot {
+    private static final Object MISSING = new Object();
+
+    private final Map<String, String> values;
+    private final long version;
+
+    private final Map<String, Object> integers = new ConcurrentHashMap<>();
+    private final Map<String, Object> longs = new ConcurrentHashMap<>();
+    private final Map<String, Object> booleans = new ConcurrentHashMap<>();
+    private final Map<String, Object> durations = new ConcurrentHashMap<>();
+    private final Map<String, Object> lists = new ConcurrentHashMap<>();
+
+    ConfigurationSnapshot(Map<String, String> values, long version) {
+        this.values = Collections.unmodifiableMap(values);
+        this.version = version;
+    }
+
+    /**
+     * Build a snapshot from raw properties, resolving environment references.
+     *
+     * @param properties the raw properties
+     * @param version    the version of the snapshot
+     * @return snapshot
+     */
+    static ConfigurationSnapshot of(Properties properties, long version) {
+        Map<String, String> resolved = new HashMap<>(Math.max(16, properties.size() * 2));
+        for (String name : properties.stringPropertyNames()) {
+            resolved.put(name, resolve(properties.getProperty(name)));
+        }
+        return new ConfigurationSnapshot(resolved, version);
+    }
+
+    private static String resolve(String value) {
+        if (value == null) return "";
+        value = value.trim();
+        // Handle environment variables if needed
+        if (value.startsWith("$_")) {
+            String env = System.getenv(value.substring(2).toUpperCase());
+            return env != null ? env.trim() : "";
+        }
+        return value;
+    }
+
+    /**
+     * Get the resolved value of the property.
+     *
+     * @param name property name
+     * @return the value, or an empty string if the property is not set
+     */
+    public String get(String name) {
+        String value = values.get(name);
+        return value != null ? value : "";
+    }
+
+    public String getOrDefault(String name, String defaultValue) {
+        String value = values.get(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    public boolean contains(String name) {
+        return values.containsKey(name);
+    }
+
+    public int getInt(String name, int defaultValue) {
+        Object value = parse(integers, name, Integer::valueOf);
+        return value != MISSING ? (Integer) value : defaultValue;
+    }
+
+    public long getLong(String name, long defaultValue) {
+        Object value = parse(longs, name, Long::valueOf);
+        return value != MISSING ? (Long) value : defaultValue;
+    }
+
+    public boolean getBoolean(String name, boolean defaultValue) {
+        Object value = parse(booleans, name, Boolean::valueOf);
+        return value != MISSING ? (Boolean) value : defaultValue;
+    }
+
+    /**
+     * Get a duration. Accepts plain milliseconds ({@code 1500}), a number with
+     * one of the units {@code ms, s, m, h, d} ({@code 30s}) or an ISO-8601
+     * duration ({@code PT30S}).
+     *
+     * @param name         property name
+     * @param defaultValue value to return if the property is absent or invalid
+     * @return duration
+     */
+    public Duration getDuration(String name, Duration defaultValue) {
+        Object value = parse(durations, name, ConfigurationSnapshot::parseDuration);
+        return value != MISSING ? (Duration) value : defaultValue;
+    }
+
+    /**
+     * Get a comma separated value as a list of trimmed, non-empty items.
+     *
+     * @param name property name
+     * @return immutable list, empty if the property is not set
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getList(String name) {
+        Object value = parse(lists, name, ConfigurationSnapshot::parseList);
+        return value != MISSING ? (List<String>) value : Collections.emptyList();
+    }
+
+    public Set<String> propertyNames() {
+        return values.keySet();
+    }
+
+    public Map<String, String> asMap() {
+        return values;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    private Object parse(Map<String, Object> cache, String name, Function<String, Object> parser) {
+        Object value = cache.get(name);
+        if (value == null) {
+            String raw = values.get(name);
+            if (raw == null || raw.isEmpty()) {
+                value = MISSING;
+            } else {
+                try {
+                    value = parser.apply(raw);
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    value = MISSING;
+                }
+            }
+            cache.putIfAbsent(name, value);
+        }
+        return value;
+    }
+
+    private static Duration parseDuration(String value) {
+        if (value.startsWith("P") || value.startsWith("p")) {
+            return Duration.parse(value);
+        }
+
+        int i = 0;
+        while (i < value.length() && (Character.isDigit(value.charAt(i)) || value.charAt(i) == '-')) i++;
+        long amount = Long.parseLong(value.substring(0, i));
+        String unit = value.substring(i).trim().toLowerCase(Locale.ROOT);
+        switch (unit) {
+            case "":
+            case "ms":
+                return Duration.ofMillis(amount);
+            case "s":
+                return Duration.ofSeconds(amount);
+            case "m":
+                return Duration.ofMinutes(amount);
+            case "h":
+                return Duration.ofHours(amount);
+            case "d":
+                return Duration.ofDays(amount);
+            default:
+                throw new IllegalArgumentException("Unknown duration unit: " + unit);
+        }
+    }
+
+    private static List<String> parseList(String value) {
+        List<String> items = new ArrayList<>();
+        for (String item : value.split(",")) {
+            item = item.trim();
+            if (!item.isEmpty()) items.add(item);
+        }
+        return Collections.unmodifiableList(items);
+    }
+
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+}
@@ -18,15 +18,21 @@ package org.tinystruct.system;
 import org.tinystruct.*;
 import org.tinystruct.application.Context;
 import org.tinystruct.data.DatabaseOperator;
+import org.tinystruct.data.SQLScriptException;
+import org.tinystruct.data.SQLScriptRunner;
 import org.tinystruct.data.repository.Type;
 import org.tinystruct.data.tools.*;
+import org.tinystruct.http.Header;
+import org.tinystruct.http.Response;
 import org.tinystruct.system.annotation.Action;
 import org.tinystruct.system.annotation.Argument;
 import org.tinystruct.system.cli.CommandLine;
 import org.tinystruct.system.cli.Kernel32;
 import org.tinystruct.system.event.UpgradeEvent;
+import org.tinystruct.system.metrics.MetricsRegistry;
 import org.tinystruct.system.util.StringUtilities;
 import org.tinystruct.system.util.URLResourceLoader;
+import org.tinystruct.transfer.http.Downloader;
 import org.tinystruct.transfer.http.ReadableByteChannelWrapper;
 
 import java.awt.*;
@@ -39,6 +45,7 @@ import java.net.URL;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -49,6 +56,7 @@ import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.*;
@@ -57,6 +65,8 @@ import java.util.jar.JarFile;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static org.tinystruct.http.Constants.HTTP_RESPONSE;
+
 @Action(value = "", description = "A command line tool for tinystruct framework",
         options = {
                 @Argument(key = "import", description = "Import application"),
@@ -90,6 +100,26 @@ public class Dispatcher extends AbstractApplication implements RemoteDispatcher
         }
     }
 
+    /**
+     * Run a command line in this process as {@link #main(String[])} does,
+     * leaving failures to the caller. The dispatcher daemon runs every
+     * command it is sent this way.
+     *
+     * @param args arguments
+     * @throws RemoteException if a remote dispatcher failed
+     */
+    static void dispatch(String[] args) throws RemoteException {
+        new DispatcherRunner().run(args);
+    }
+
+    /**
+     * Load the configuration and install the dispatcher and the default
+     * applications, as the first command would.
+     */
+    static void prepare() {
+        new DispatcherRunner();
+    }
+
     /**
      * Internal runner class to encapsulate the main method logic.
      */
@@ -559,6 +589,8 @@ public class Dispatcher extends AbstractApplication implements RemoteDispatcher
      */
     @Action(value = "download", description = "Download a resource from other servers", options = {
             @Argument(key = "url", description = "URL resource to be downloaded"),
+            @Argument(key = "checksum", description = "Expected checksum as algorithm:hex, e.g. SHA-256:<hex>"),
+            @Argument(key = "segments", description = "Maximum number of parallel segments for large files"),
             @Argument(key = "http.proxyHost", description = "Proxy host for http"),
             @Argument(key = "http.proxyPort", description = "Proxy port for http"),
             @Argument(key = "https.proxyHost", description = "Proxy host for https"),
@@ -569,7 +601,8 @@ public class Dispatcher extends AbstractApplication implements RemoteDispatcher
             URL uri;
             try {
                 uri = URI.create(getContext().getAttribute("--url").toString()).toURL();
-                this.download(uri, uri.getFile());
+                Object checksum = getContext().getAttribute("--checksum");
+                this.download(uri, uri.getFile(), checksum != null ? checksum.toString() : null);
             } catch (MalformedURLException e) {
                 throw new ApplicationException(e.getMessage(), e.getCause());
             }
@@ -577,24 +610,60 @@ public class Dispatcher extends AbstractApplication implements RemoteDispatcher
     }
 
     public void download(URL uri, String destination) throws ApplicationException {
-        try (ReadableByteChannel rbc = new ReadableByteChannelWrapper(uri)) {
-            if (destination.trim().length() <= 1) {
-                destination = uri.toString().replaceAll("http://|https://|/", "+");
-            }
+        this.download(uri, destination, null);
+    }
+
+    /**
+     * Download a resource and verify it against a checksum. HTTP(S) resources
+     * are fetched in parallel segments when the server supports ranges, and an
+     * interrupted download resumes from where it stopped.
+     *
+     * @param uri         resource to download
+     * @param destination destination path relative to the working directory
+     * @param checksum    expected checksum as algorithm:hex, e.g. SHA-256:ab12..., or null
+     * @throws ApplicationException if the download fails or the checksum does not match
+     */
+    public void download(URL uri, String destination, String checksum) throws ApplicationException {
+        Path dest = this.destinationOf(uri, destination);
+        String protocol = uri.getProtocol();
+        if ("http".equalsIgnoreCase(protocol) || "https".equalsIgnoreCase(protocol)) {
+            Downloader downloader = new Downloader().setProgressListener((received, total) -> {
+                if (total > 0)
+                    System.out.printf("\r%d bytes received, %.02f%%", received, received * 100.0 / total);
+                else
+                    System.out.printf("\r%d bytes received", received);
+            });
 
-            // Remove insecure string in the destination
-            destination = destination.replaceAll("\\.\\.", "");
+            Object segments = getContext() != null ? getContext().getAttribute("--segments") : null;
+            if (segments != null) {
+                downloader.setSegments((int) parseNumber("--segments", segments, 1, Integer.MAX_VALUE));
+            }
 
-            // Replace the path with default file separator
-            destination = destination.replaceAll("/", "\\" + File.separator);
+            if (checksum != null && !checksum.isEmpty()) {
+                int colon = checksum.indexOf(':');
+                if (colon <= 0) {
+                    throw new ApplicationException("Invalid checksum, expected algorithm:hex - " + checksum);
+                }
+                try {
+                    downloader.setChecksum(checksum.substring(0, colon), checksum.substring(colon + 1));
+                } catch (IllegalArgumentException e) {
+                    throw new ApplicationException(e.getMessage(), e);
+                }
+            }
 
-            // Remove the suffix after '?' if contains '?'
-            if (destination.contains("?")) {
-                destination = destination.substring(0, destination.indexOf("?"));
+            try {
+                downloader.download(uri.toURI(), dest);
+            } catch (URISyntaxException e) {
+                throw new ApplicationException("Could not be downloaded:" + e.getMessage(), e);
             }
+            return;
+        }
 
-            String path = new File("").getAbsolutePath() + File.separatorChar + destination;
-            Path dest = Paths.get(path);
+        if (checksum != null && !checksum.isEmpty()) {
+            throw new ApplicationException("Checksum verification is only supported for http(s) downloads");
+        }
+
+        try (ReadableByteChannel rbc = new ReadableByteChannelWrapper(uri)) {
             try {
                 Path parent = dest.getParent();
                 if (parent != null)
@@ -608,7 +677,7 @@ public class Dispatcher extends AbstractApplication implements RemoteDispatcher
             // Use buffered streaming for efficient file download
             try (InputStream inputStream = Channels.newInputStream(rbc);
                  BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream);
-                 FileOutputStream fos = new FileOutputStream(path);
+                 FileOutputStream fos = new FileOutputStream(dest.toFile());
                  BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(fos)) {
 
                 byte[] buffer = new byte[8192]; // 8KB buffer
@@ -625,6 +694,25 @@ public class Dispatcher extends AbstractApplication implements RemoteDispatcher
         }
     }
 
+    private Path destinationOf(URL uri, String destination) {
+        if (destination.trim().length() <= 1) {
+            destination = uri.toString().replaceAll("http://|https://|/", "+");
+        }
+
+        // Remove insecure string in the destination
+        destination = destination.replaceAll("\\.\\.", "");
+
+        // Replace the path with default file separator
+        destination = destination.replaceAll("/", "\\" + File.separator);
+
+        // Remove the suffix after '?' if contains '?'
+        if (destination.contains("?")) {
+            destination = destination.substring(0, destination.indexOf("?"));
+        }
+
+        return Paths.get(new File("").getAbsolutePath() + File.separatorChar + destination);
+    }
+
     /**
      * Execute native command(s).
      */
@@ -686,7 +774,12 @@ public class Dispatcher extends AbstractApplication implements RemoteDispatcher
      */
     @Action(value = "sql-execute", description = "Executes the given SQL statement, which may be an INSERT, UPDATE, DELETE, or DDL statement", options = {
             @Argument(key = "sql", description = "an SQL Data Manipulation Language (DML) statement, such as INSERT, UPDATE or DELETE; or an SQL statement that returns nothing, such as a DDL statement."),
-            @Argument(key = "sql-file", description = "path to a SQL script file to execute")
+            @Argument(key = "sql-file", description = "path to a SQL script file to execute"),
+            @Argument(key = "batch-size", description = "number of consecutive DML statements sent in one batch, default 500"),
+            @Argument(key = "commit-interval", description = "number of statements executed between two commits, default 10000"),
+            @Argument(key = "parallel", description = "number of connections to spread DML statements over by table, default 1; a failed commit may leave other connections committed past the resume point"),
+            @Argument(key = "resume-from", description = "index of the statement to resume the script from after a failure"),
+            @Argument(key = "delimiter", description = "statement delimiter, default ;")
     }, mode = Action.Mode.CLI)
     public void executeUpdate() throws ApplicationException {
         String sql = null;
@@ -700,48 +793,77 @@ public class Dispatcher extends AbstractApplication implements RemoteDispatcher
             throw new ApplicationException("Either --sql or --sql-file parameter must be provided.");
         }
 
+        if (filePath != null) {
+            this.executeScript(filePath);
+            return;
+        }
+
         try (DatabaseOperator operator = new DatabaseOperator()) {
             operator.disableSafeCheck();
 
-            if (sql != null) {
-                if (operator.update(sql) > 0) {
-                    System.out.println("Done!");
-                }
-            } else if (filePath != null) {
-                File sqlFile = new File(filePath);
-                if (!sqlFile.exists()) {
-                    throw new ApplicationException("SQL script file not found: " + filePath);
-                }
+            if (operator.update(sql) > 0) {
+                System.out.println("Done!");
+            }
+        } catch (ApplicationException e) {
+            System.err.println(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+        }
+    }
 
-                try (BufferedReader reader = new BufferedReader(new FileReader(sqlFile))) {
-                    StringBuilder script = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        // Skip comments and empty lines
-                        if (line.trim().startsWith("--") || line.trim().startsWith("//") || line.trim().isEmpty()) {
-                            continue;
-                        }
-                        script.append(line).append("\n");
-                    }
+    private void executeScript(String filePath) throws ApplicationException {
+        Path script = Paths.get(filePath);
+        if (!Files.exists(script)) {
+            throw new ApplicationException("SQL script file not found: " + filePath);
+        }
 
-                    // Split the script into individual statements
-                    String[] statements = script.toString().split(";");
-                    for (String statement : statements) {
-                        statement = statement.trim();
-                        if (!statement.isEmpty()) {
-                            if (operator.update(statement) > 0) {
-                                System.out.println("Executed: " + statement);
-                            }
-                        }
-                    }
-                    System.out.println("Script execution completed!");
-                } catch (IOException e) {
-                    throw new ApplicationException("Error reading SQL script file: " + e.getMessage());
-                }
+        SQLScriptRunner runner = new SQLScriptRunner();
+        if (getContext().getAttribute("--batch-size") != null)
+            runner.setBatchSize((int) parseNumber("--batch-size", getContext().getAttribute("--batch-size"), 1, Integer.MAX_VALUE));
+        if (getContext().getAttribute("--commit-interval") != null)
+            runner.setCommitInterval((int) parseNumber("--commit-interval", getContext().getAttribute("--commit-interval"), 1, Integer.MAX_VALUE));
+        if (getContext().getAttribute("--parallel") != null)
+            runner.setParallelism((int) parseNumber("--parallel", getContext().getAttribute("--parallel"), 1, Integer.MAX_VALUE));
+        if (getContext().getAttribute("--resume-from") != null)
+            runner.setResumeFrom(parseNumber("--resume-from", getContext().getAttribute("--resume-from"), 1, Long.MAX_VALUE));
+        if (getContext().getAttribute("--delimiter") != null)
+            runner.setDelimiter(getContext().getAttribute("--delimiter").toString());
+
+        runner.setProgressListener(progress -> {
+            Duration eta = progress.getEta();
+            System.out.printf("\rExecuted %d statements, %.02f%%, ETA %s", progress.getExecuted(),
+                    Math.max(0, progress.getPercent()), eta != null ? formatDuration(eta) : "-");
+        });
+
+        try {
+            SQLScriptRunner.Progress result = runner.run(script);
+            System.out.printf("%nScript execution completed! %d statements executed in %s%n",
+                    result.getExecuted(), formatDuration(result.getElapsed()));
+        } catch (SQLScriptException e) {
+            System.err.println();
+            System.err.println(e.getMessage());
+            System.err.println("Fix the statement and run again with --resume-from " + e.getResumeFrom());
+        }
+    }
+
+    /**
+     * Parse the value of a numeric option.
+     *
+     * @throws ApplicationException if the value is not a whole number between min and max
+     */
+    private static long parseNumber(String option, Object value, long min, long max) throws ApplicationException {
+        try {
+            long number = Long.parseLong(value.toString().trim());
+            if (number >= min && number <= max) {
+                return number;
             }
-        } catch (ApplicationException e) {
-            System.err.println(e.getCause().getMessage());
+        } catch (NumberFormatException ignored) {
+            // Reported below
         }
+        throw new ApplicationException("Invalid " + option + " '" + value + "', expected a whole number of at least " + min);
+    }
+
+    private static String formatDuration(Duration duration) {
+        long seconds = duration.getSeconds();
+        return String.format("%d:%02d:%02d", seconds / 3600, (seconds % 3600) / 60, seconds % 60);
     }
 
     /**
@@ -883,6 +1005,42 @@ public class Dispatcher extends AbstractApplication implements RemoteDispatcher
         return settings;
     }
 
+    /**
+     * Print the metrics of the framework in the Prometheus text format. Over
+     * HTTP this is the scrape endpoint, <code>?q=metrics</code>, which answers
+     * anyone and so is only served with <code>metrics.http.enabled=true</code>. From the
+     * command line it prints the metrics of this process, or with
+     * <code>--url</code> those of a running server.
+     */
+    @Action(value = "metrics", description = "Print the metrics of the framework in the Prometheus text format", options = {
+            @Argument(key = "url", description = "Base URL of a running server to read the metrics from, e.g. http://localhost:8080")
+    })
+    public Object metrics() throws ApplicationException {
+        Context context = getContext();
+        Object response = context != null ? context.getAttribute(HTTP_RESPONSE) : null;
+        if (response instanceof Response) {
+            if (!"true".equalsIgnoreCase(getConfiguration().get("metrics.http.enabled"))) {
+                throw new ApplicationException("Metrics are not exposed over HTTP.", 404);
+            }
+
+            ((Response<?, ?>) response).addHeader(Header.CONTENT_TYPE.name(), MetricsRegistry.CONTENT_TYPE);
+            // Bytes are written as they are, keeping the content type set above
+            return MetricsRegistry.getInstance().scrape().getBytes(StandardCharsets.UTF_8);
+        }
+
+        Object url = context != null ? context.getAttribute("--url") : null;
+        if (url != null) {
+            String base = url.toString().replaceAll("/+$", "");
+            try {
+                return new URLResourceLoader(new URL(base + "/?q=metrics")).getContent().toString();
+            } catch (MalformedURLException e) {
+                throw new ApplicationException("Invalid URL: " + url, e);
+            }
+        }
+
+        return MetricsRegistry.getInstance().scrape();
+    }
+
     /**
      * Start a default browser to open the specific URL.
      */
@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.system;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sends a command line to the {@link DispatcherDaemon} of the working
+ * directory, starting the daemon when there is none, and writes out what the
+ * command prints as it prints it. The <code>dispatcher</code> script uses it
+ * when <code>DISPATCHER_DAEMON=true</code> is set.
+ * <p>
+ * Commands that listen for remote access, start a server or prompt for input
+ * are left to a JVM of their own: the client then exits with
+ * {@link #RUN_DIRECTLY}, as it does when no daemon can be reached, and the
+ * script runs the command the usual way.
+ * </p>
+ * Besides the arguments of the dispatcher, it takes:
+ * <ul>
+ *     <li><code>--daemon-status</code> prints the state of the daemon</li>
+ *     <li><code>--daemon-stop</code> stops the daemon</li>
+ *     <li><code>--daemon-timing</code> prints the time the daemon took to run the command</li>
+ * </ul>
+ */
+public final class DispatcherClient {
+    /**
+     * Exit status asking the script to run the command without the daemon.
+     */
+    public static final int RUN_DIRECTLY = 75;
+
+    private static final Set<String> DIRECT_OPTIONS = Set.of("--host", "--allow-remote-access");
+    private static final Set<String> DIRECT_COMMANDS = Set.of("start", "generate");
+    private static final long STARTUP_TIMEOUT = 60_000;
+
+    private final Path socket;
+    private long elapsed;
+
+    public DispatcherClient(Path socket) {
+        this.socket = socket;
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        boolean timing = arguments.remove("--daemon-timing");
+        DispatcherClient client = new DispatcherClient(
+                DispatcherDaemon.socketPath(System.getProperty("user.dir"), System.getProperty("java.class.path")));
+
+        int status;
+        if (arguments.equals(List.of("--daemon-status"))) {
+            status = client.status(System.out, System.err);
+        } else if (arguments.equals(List.of("--daemon-stop"))) {
+            status = client.stop();
+        } else if (requiresOwnProcess(arguments)) {
+            status = RUN_DIRECTLY;
+        } else {
+            byte[] input = System.in.available() > 0 ? System.in.readAllBytes() : null;
+            status = client.run(arguments, input, System.out, System.err, true);
+            if (timing && status != RUN_DIRECTLY) {
+                System.err.printf("Completed in %.1f ms%n", client.getElapsed() / 1e6);
+            }
+        }
+
+        System.out.flush();
+        System.exit(status);
+    }
+
+    /**
+     * Run a command line on the daemon.
+     *
+     * @param args  the arguments of the dispatcher
+     * @param input bytes to be read from standard input, or null
+     * @param out   receives the standard output of the command
+     * @param err   receives the standard error of the command
+     * @param spawn whether to start the daemon if it is not running
+     * @return the exit status of the command, or {@link #RUN_DIRECTLY} if no daemon could be reached
+     */
+    public int run(List<String> args, byte[] input, OutputStream out, OutputStream err, boolean spawn) {
+        if (!isSecure(err)) {
+            return RUN_DIRECTLY;
+        }
+
+        SocketChannel channel = connect();
+        if (channel == null && spawn) {
+            channel = spawn(err);
+        }
+        if (channel == null) {
+            return RUN_DIRECTLY;
+        }
+
+        return request(channel, DispatcherDaemon.RUN, args, input, out, err);
+    }
+
+    /**
+     * Print the state of the daemon.
+     *
+     * @param out receives the state
+     * @param err receives errors
+     * @return 0, or 1 if no daemon is running
+     */
+    public int status(OutputStream out, OutputStream err) {
+        if (!isSecure(err)) {
+            return 1;
+        }
+
+        SocketChannel channel = connect();
+        if (channel == null) {
+            new PrintStream(err, true).println("No dispatcher daemon is running on " + socket);
+            return 1;
+        }
+        return request(channel, DispatcherDaemon.STATUS, List.of(), null, out, err);
+    }
+
+    /**
+     * Stop the daemon if it is running.
+     *
+     * @return 0, or 1 if the socket is not safe to use
+     */
+    public int stop() {
+        if (!isSecure(System.err)) {
+            return 1;
+        }
+
+        SocketChannel channel = connect();
+        if (channel == null) {
+            return 0;
+        }
+        return request(channel, DispatcherDaemon.STOP, List.of(), null, OutputStream.nullOutputStream(), OutputStream.nullOutputStream());
+    }
+
+    /**
+     * @return the time the daemon took to run the last command, in nanoseconds
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    static boolean requiresOwnProcess(List<String> args) {
+        for (String arg : args) {
+            String option = arg.contains("=") ? arg.substring(0, arg.indexOf('=')) : arg;
+            if (DIRECT_OPTIONS.contains(option)) return true;
+        }
+        return !args.isEmpty() && DIRECT_COMMANDS.contains(args.get(0));
+    }
+
+    private int request(SocketChannel channel, int type, List<String> args, byte[] input, OutputStream out, OutputStream err) {
+        boolean sent = false;
+        try (channel;
+             DataOutputStream request = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+             DataInputStream response = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)))) {
+            request.writeInt(DispatcherDaemon.MAGIC);
+            request.writeInt(type);
+            request.writeInt(args.size());
+            for (String arg : args) {
+                DispatcherDaemon.writeString(request, arg);
+            }
+            if (input == null) {
+                request.writeInt(-1);
+            } else {
+                request.writeInt(input.length);
+                request.write(input);
+            }
+            request.flush();
+            sent = true;
+
+            while (true) {
+                byte kind = response.readByte();
+                if (kind == DispatcherDaemon.EXIT) {
+                    int status = response.readInt();
+                    elapsed = response.readLong();
+                    return status;
+                }
+
+                byte[] bytes = response.readNBytes(response.readInt());
+                OutputStream target = kind == DispatcherDaemon.STDERR ? err : out;
+                target.write(bytes);
+                target.flush();
+            }
+        } catch (IOException e) {
+            if (!sent) {
+                return RUN_DIRECTLY;
+            }
+            // The command may have done part of its work, so it is not run again
+            new PrintStream(err, true).println("Lost the dispatcher daemon: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Check the directory of the socket before anything is sent through it,
+     * or a daemon is started there.
+     */
+    private boolean isSecure(OutputStream err) {
+        try {
+            DispatcherDaemon.secureDirectory(socket.getParent());
+            return true;
+        } catch (IOException e) {
+            new PrintStream(err, true).println("Not using the dispatcher daemon: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private SocketChannel connect() {
+        if (!Files.exists(socket)) return null;
+
+        try {
+            return SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Start a daemon with the class path and JVM options of this process,
+     * logging to a file next to its socket, and wait until it listens.
+     */
+    private SocketChannel spawn(OutputStream err) {
+        String name = socket.getFileName().toString().replaceAll("\\.sock$", "");
+        File log = socket.resolveSibling(name + ".log").toFile();
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            // The script starts the client for a quick start, the daemon needs the full compiler
+            if (!option.startsWith("-XX:TieredStopAtLevel")) {
+                command.add(option);
+            }
+        }
+        command.add("-Ddispatcher.daemon.socket=" + socket);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(DispatcherDaemon.class.getName());
+
+        Process process;
+        try {
+            process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.appendTo(log))
+                    .start();
+            process.getOutputStream().close();
+        } catch (IOException e) {
+            new PrintStream(err, true).println("Could not start the dispatcher daemon: " + e.getMessage());
+            return null;
+        }
+
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+        while (System.currentTimeMillis() < deadline) {
+            SocketChannel channel = connect();
+            if (channel != null) return channel;
+            // Another client may have started a daemon first, which this one then found listening
+            if (!process.isAlive()) break;
+
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+
+        new PrintStream(err, true).println("The dispatcher daemon did not start, see " + log);
+        return null;
+    }
+}
@@ -0,0 +1,398 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.system;
+
+import org.tinystruct.system.metrics.LatencyHistogram;
+import org.tinystruct.system.metrics.MetricsRegistry;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.*;
+
+/**
+ * A dispatcher that stays resident and runs the commands it is sent over a
+ * Unix domain socket, so that a command line no longer pays for starting a
+ * JVM, installing the applications and warming up the code.
+ * <p>
+ * {@link DispatcherClient} forwards the arguments and any piped input of a
+ * command, and receives its standard output and error as the command writes
+ * them, then its exit status and run time. Commands run one at a time, with
+ * <code>System.out</code>, <code>System.err</code>, <code>System.in</code> and
+ * the log output of the process routed to the client. The daemon shuts down
+ * once it has been idle for <code>dispatcher.daemon.idle.timeout</code>
+ * seconds, 900 by default.
+ * </p>
+ * <p>
+ * There is one daemon per working directory and class path. Its socket lives
+ * under <code>java.io.tmpdir</code>, unless <code>-Ddispatcher.daemon.socket</code>
+ * names another path. Either way the directory of the socket must belong to
+ * the user and be closed to everyone else (<code>rwx------</code>); the daemon
+ * and the client refuse to use it otherwise.
+ * </p>
+ */
+public final class DispatcherDaemon {
+    // Request: MAGIC, type, argument count, arguments, standard input
+    static final int MAGIC = 0x54534431;
+    static final int RUN = 0;
+    static final int STATUS = 1;
+    static final int STOP = 2;
+    // Response frames
+    static final byte STDOUT = 1;
+    static final byte STDERR = 2;
+    static final byte EXIT = 3;
+
+    private static final Logger logger = Logger.getLogger(DispatcherDaemon.class.getName());
+
+    private final Path socket;
+    private final Duration idleTimeout;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram latencyTotal = MetricsRegistry.getInstance()
+            .timer("tinystruct_dispatcher_daemon_command_seconds", "Time the dispatcher daemon takes to run a command");
+    private final long started = System.currentTimeMillis();
+    private volatile long lastActivity = System.nanoTime();
+    private volatile long lastCommand;
+    private volatile ServerSocketChannel server;
+
+    public DispatcherDaemon(Path socket, Duration idleTimeout) {
+        this.socket = socket;
+        this.idleTimeout = idleTimeout;
+    }
+
+    public static void main(String[] args) {
+        Settings settings = new Settings();
+        Path socket = socketPath(System.getProperty("user.dir"), System.getProperty("java.class.path"));
+        DispatcherDaemon daemon = new DispatcherDaemon(socket,
+                Duration.ofSeconds(settings.getInt("dispatcher.daemon.idle.timeout", 900)));
+        try {
+            // Ready before listening, so the first client does not wait on a cold start
+            Dispatcher.prepare();
+            daemon.serve();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Dispatcher daemon failed: " + e.getMessage(), e);
+            System.exit(1);
+        }
+
+        // Applications may have left threads running
+        System.exit(0);
+    }
+
+    /**
+     * The socket of the daemon serving a working directory and class path.
+     *
+     * @param directory the working directory
+     * @param classPath the class path
+     * @return the socket path
+     */
+    public static Path socketPath(String directory, String classPath) {
+        String path = System.getProperty("dispatcher.daemon.socket");
+        if (path != null && !path.isEmpty()) {
+            return Path.of(path);
+        }
+
+        // String hashes are cheap to compute in the client, which starts for every command
+        long hash = ((long) directory.hashCode() << 32) | (classPath.hashCode() & 0xffffffffL);
+        return Path.of(System.getProperty("java.io.tmpdir"), "tinystruct-" + System.getProperty("user.name"),
+                "dispatcher-" + Long.toHexString(hash) + ".sock");
+    }
+
+    /**
+     * Listen for commands until stopped or idle for too long.
+     *
+     * @throws IOException if the socket could not be bound
+     */
+    public void serve() throws IOException {
+        secureDirectory(socket.getParent());
+        if (Files.exists(socket)) {
+            if (isListening(socket)) {
+                throw new IOException("A dispatcher daemon is already listening on " + socket);
+            }
+            Files.delete(socket);
+        }
+
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socket));
+        this.server = server;
+        if (isPosix()) {
+            Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+        }
+        logger.info("Dispatcher daemon listening on " + socket);
+
+        ScheduledExecutorService idle = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dispatcher-daemon-idle");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(100, Math.min(idleTimeout.toMillis() / 10, 10_000));
+        idle.scheduleAtFixedRate(() -> {
+            if (active.get() == 0 && System.nanoTime() - lastActivity > idleTimeout.toNanos()) {
+                logger.info("Dispatcher daemon idle for " + idleTimeout.getSeconds() + "s, shutting down");
+                stop();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+
+        try {
+            while (server.isOpen()) {
+                SocketChannel channel;
+                try {
+                    channel = server.accept();
+                } catch (ClosedChannelException e) {
+                    break;
+                }
+
+                active.incrementAndGet();
+                Thread thread = new Thread(() -> handle(channel), "dispatcher-daemon-client");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } finally {
+            idle.shutdownNow();
+            stop();
+        }
+    }
+
+    /**
+     * Stop listening and remove the socket. A command being run finishes.
+     */
+    public void stop() {
+        ServerSocketChannel server = this.server;
+        if (server == null || !stopped.compareAndSet(false, true)) return;
+
+        try {
+            // Gone before the server closes, so no client finds a socket nobody listens on
+            Files.deleteIfExists(socket);
+            server.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not close " + socket + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try (channel;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            if (in.readInt() != MAGIC) return;
+
+            int type = in.readInt();
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = readString(in);
+            }
+            int length = in.readInt();
+            byte[] input = length < 0 ? new byte[0] : in.readNBytes(length);
+
+            switch (type) {
+                case STATUS:
+                    new FrameOutputStream(out, STDOUT).write(status().getBytes(StandardCharsets.UTF_8));
+                    exit(out, 0, 0);
+                    break;
+                case STOP:
+                    exit(out, 0, 0);
+                    stop();
+                    break;
+                default:
+                    run(args, input, out);
+            }
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Dispatcher client went away: " + e.getMessage(), e);
+        } finally {
+            lastActivity = System.nanoTime();
+            active.decrementAndGet();
+        }
+    }
+
+    private void run(String[] args, byte[] input, DataOutputStream out) throws IOException {
+        PrintStream stdout = new PrintStream(new FrameOutputStream(out, STDOUT), true, StandardCharsets.UTF_8);
+        PrintStream stderr = new PrintStream(new FrameOutputStream(out, STDERR), true, StandardCharsets.UTF_8);
+        Handler handler = new StreamHandler(stderr, new SimpleFormatter()) {
+            @Override
+            public synchronized void publish(LogRecord record) {
+                super.publish(record);
+                flush();
+            }
+        };
+        Logger root = Logger.getLogger("");
+
+        int status = 0;
+        long elapsed;
+        lock.lock();
+        PrintStream systemOut = System.out;
+        PrintStream systemErr = System.err;
+        InputStream systemIn = System.in;
+        long start = System.nanoTime();
+        try {
+            System.setOut(stdout);
+            System.setErr(stderr);
+            System.setIn(new ByteArrayInputStream(input));
+            root.addHandler(handler);
+
+            Dispatcher.dispatch(args);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Fatal error in dispatcher: " + e.getMessage(), e);
+            status = 1;
+        } finally {
+            elapsed = System.nanoTime() - start;
+            root.removeHandler(handler);
+            System.setOut(systemOut);
+            System.setErr(systemErr);
+            System.setIn(systemIn);
+            lock.unlock();
+        }
+
+        latency.record(elapsed);
+        latencyTotal.record(elapsed);
+        lastCommand = elapsed;
+        stdout.flush();
+        stderr.flush();
+        exit(out, status, elapsed);
+    }
+
+    private String status() {
+        return String.format("Dispatcher daemon %d on %s%nUp %ds, idle timeout %ds%n%d commands, last %.1f ms, p50 %.1f ms, p99 %.1f ms%n",
+                ProcessHandle.current().pid(), socket, (System.currentTimeMillis() - started) / 1000, idleTimeout.getSeconds(),
+                latency.count(), lastCommand / 1e6, latency.percentile(50) / 1e6, latency.percentile(99) / 1e6);
+    }
+
+    private static void exit(DataOutputStream out, int status, long elapsed) throws IOException {
+        synchronized (out) {
+            out.writeByte(EXIT);
+            out.writeInt(status);
+            out.writeLong(elapsed);
+            out.flush();
+        }
+    }
+
+    static boolean isListening(Path socket) {
+        try (SocketChannel ignored = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Create the directory of the socket if needed, and make sure it belongs
+     * to the user and no one else may enter it. In a shared temporary
+     * directory another user could have made it first, to reach the daemon or
+     * to stand in for it.
+     *
+     * @throws IOException if the directory can not be created, or is not safe to use
+     */
+    static void secureDirectory(Path directory) throws IOException {
+        if (!isPosix()) {
+            Files.createDirectories(directory);
+            return;
+        }
+
+        Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rwx------");
+        if (Files.notExists(directory, LinkOption.NOFOLLOW_LINKS)) {
+            Path parent = directory.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try {
+                Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(ownerOnly));
+                // The umask may have taken away more than asked
+                Files.setPosixFilePermissions(directory, ownerOnly);
+            } catch (FileAlreadyExistsException e) {
+                // Made by someone else in the meantime, checked below
+            }
+        }
+
+        PosixFileAttributes attributes = Files.readAttributes(directory, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        UserPrincipal user = directory.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!attributes.isDirectory() || !attributes.owner().equals(user)) {
+            throw new IOException(directory + " is not a directory of " + user.getName());
+        }
+        if (!attributes.permissions().equals(ownerOnly)) {
+            throw new IOException(directory + " is open to other users, its permissions must be rwx------");
+        }
+    }
+
+    private static boolean isPosix() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) throw new EOFException();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes what it is given to the client as frames of one kind, as soon
+     * as it is given.
+     */
+    private static final class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte kind;
+
+        FrameOutputStream(DataOutputStream out, byte kind) {
+            this.out = out;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return;
+
+            synchronized (out) {
+                out.writeByte(kind);
+                out.writeInt(len);
+                out.write(b, off, len);
+                out.flush();
+            }
+        }
+    }
+}
@@ -1,22 +1,66 @@
 package org.tinystruct.system;
 
+import org.tinystruct.system.metrics.Counter;
+import org.tinystruct.system.metrics.LatencyHistogram;
+import org.tinystruct.system.metrics.MetricsRegistry;
+
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * A singleton class that manages event dispatching in the system.
  * It allows registering event handlers for specific event types
  * and dispatching events to the registered handlers.
+ * <p>
+ * A handler registered for a type receives the events of that type and of
+ * its subtypes, so a handler for {@link Event} sees every event. Handlers
+ * registered with {@link #registerHandler(Class, Consumer)} run on the
+ * dispatching thread. Those registered with
+ * {@link #registerAsyncHandler(Class, Consumer)} or
+ * {@link #registerBatchHandler(Class, Consumer)} run on a small pool of
+ * daemon threads, each handler receiving its events one at a time and in the
+ * order they were dispatched.
+ * </p>
+ * <p>
+ * Every asynchronous handler has a queue of <code>event.async.queue.capacity</code>
+ * events (10000 by default); once it is full, dispatching waits for the
+ * handler to catch up. The pool has <code>event.async.threads</code> threads,
+ * the number of processors by default.
+ * </p>
  */
 public class EventDispatcher {
-    // A map to hold event handlers, categorized by event type.
-    private final Map<Class<? extends Event<?>>, List<Consumer<Event<?>>>> handlers = new ConcurrentHashMap<>();
+    private static final Logger logger = Logger.getLogger(EventDispatcher.class.getName());
+    // Most events an asynchronous handler takes from its queue at once
+    private static final int MAX_BATCH = 256;
+    private static final Subscription[] NONE = new Subscription[0];
+
+    // Handlers registered for each event type, replaced as a whole on every change
+    private final ConcurrentHashMap<Class<?>, Subscription[]> handlers = new ConcurrentHashMap<>();
+    // Handlers matching each dispatched event class, supertypes included
+    private final ConcurrentHashMap<Class<?>, Delivery> deliveries = new ConcurrentHashMap<>();
+    // Events waiting in the queues of asynchronous handlers
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger version = new AtomicInteger();
+    private volatile ExecutorService executor;
+    private volatile int capacity;
 
     // Private constructor to prevent instantiation from outside.
     private EventDispatcher() {
+        MetricsRegistry.getInstance().gauge("tinystruct_event_queue_depth", "Events waiting for asynchronous handlers", pending::get);
     }
 
     /**
@@ -37,7 +81,8 @@ public class EventDispatcher {
     }
 
     /**
-     * Registers an event handler for a specific event type.
+     * Registers an event handler for a specific event type, run on the
+     * thread dispatching the event.
      *
      * @param eventType the class of the event to listen for
      * @param handler   the consumer that handles the event
@@ -45,24 +90,325 @@ public class EventDispatcher {
      */
     public <E extends Event<?>> void registerHandler(Class<E> eventType, Consumer<E> handler) {
         if (handler != null) {
-            // Compute the list of handlers for the given event type or create a new one if it doesn't exist
-            handlers.computeIfAbsent(eventType, k -> new ArrayList<>())
-                    .add(event -> handler.accept(eventType.cast(event)));
+            register(eventType, new Subscription(handler) {
+                @Override
+                void deliver(Event<?> event, long dispatched, Delivery delivery) {
+                    try {
+                        handler.accept(eventType.cast(event));
+                    } catch (RuntimeException e) {
+                        delivery.errors().increment();
+                        throw e;
+                    } finally {
+                        delivery.latency().record(System.nanoTime() - dispatched);
+                    }
+                }
+            });
         }
     }
 
     /**
-     * Dispatches an event to all registered handlers for the event's type.
+     * Registers an event handler run away from the dispatching thread, so
+     * that a slow handler does not hold up the code raising the event. The
+     * handler receives events in the order they were dispatched, never two
+     * at the same time. Exceptions it throws are logged.
+     *
+     * @param eventType the class of the event to listen for
+     * @param handler   the consumer that handles the event
+     * @param <E>      the type of the event
+     */
+    public <E extends Event<?>> void registerAsyncHandler(Class<E> eventType, Consumer<E> handler) {
+        if (handler != null) {
+            register(eventType, new AsyncSubscription(handler, this.capacity()) {
+                @Override
+                void handle(List<Envelope> envelopes) {
+                    for (Envelope envelope : envelopes) {
+                        try {
+                            handler.accept(eventType.cast(envelope.event));
+                        } catch (RuntimeException e) {
+                            envelope.delivery.errors().increment();
+                            logger.log(Level.SEVERE, "Event handler failed on " + envelope.event.getName() + ": " + e.getMessage(), e);
+                        } finally {
+                            envelope.delivery.latency().record(System.nanoTime() - envelope.dispatched);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Registers an asynchronous handler for high-rate events, which receives
+     * the events queued since its last call together, up to 256 at a time,
+     * in the order they were dispatched.
+     *
+     * @param eventType the class of the event to listen for
+     * @param handler   the consumer that handles a batch of events
+     * @param <E>      the type of the event
+     */
+    public <E extends Event<?>> void registerBatchHandler(Class<E> eventType, Consumer<List<E>> handler) {
+        if (handler != null) {
+            register(eventType, new AsyncSubscription(handler, this.capacity()) {
+                @Override
+                void handle(List<Envelope> envelopes) {
+                    List<E> events = new ArrayList<>(envelopes.size());
+                    for (Envelope envelope : envelopes) {
+                        events.add(eventType.cast(envelope.event));
+                    }
+
+                    try {
+                        handler.accept(events);
+                    } catch (RuntimeException e) {
+                        for (Envelope envelope : envelopes) {
+                            envelope.delivery.errors().increment();
+                        }
+                        logger.log(Level.SEVERE, "Event handler failed on a batch of " + events.size() + " events: " + e.getMessage(), e);
+                    } finally {
+                        long now = System.nanoTime();
+                        for (Envelope envelope : envelopes) {
+                            envelope.delivery.latency().record(now - envelope.dispatched);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes a handler registered for the event type. Events already queued
+     * for an asynchronous handler are still delivered.
+     *
+     * @param eventType the class of the event the handler was registered for
+     * @param handler   the handler as it was registered
+     * @param <E>      the type of the event
+     * @return true if the handler was registered
+     */
+    public <E extends Event<?>> boolean unregisterHandler(Class<E> eventType, Object handler) {
+        boolean[] removed = {false};
+        handlers.computeIfPresent(eventType, (type, subscriptions) -> {
+            for (int i = 0; i < subscriptions.length; i++) {
+                if (subscriptions[i].registered == handler) {
+                    removed[0] = true;
+                    Subscription[] remaining = new Subscription[subscriptions.length - 1];
+                    System.arraycopy(subscriptions, 0, remaining, 0, i);
+                    System.arraycopy(subscriptions, i + 1, remaining, i, remaining.length - i);
+                    return remaining.length > 0 ? remaining : null;
+                }
+            }
+            return subscriptions;
+        });
+        if (removed[0]) {
+            invalidate();
+        }
+        return removed[0];
+    }
+
+    /**
+     * Dispatches an event to all registered handlers for the event's type
+     * and its supertypes.
      *
      * @param event the event to be dispatched
      */
     public void dispatch(Event<?> event) {
-        // Retrieve the list of handlers for the event's type
-        List<Consumer<Event<?>>> eventHandlers = handlers.get(event.getClass());
+        Delivery delivery = delivery(event.getClass());
+        Subscription[] subscriptions = delivery.subscriptions;
+        if (subscriptions.length == 0) return;
+
+        long dispatched = System.nanoTime();
+        for (Subscription subscription : subscriptions) {
+            subscription.deliver(event, dispatched, delivery);
+        }
+    }
+
+    private void register(Class<?> eventType, Subscription subscription) {
+        handlers.compute(eventType, (type, subscriptions) -> {
+            if (subscriptions == null) return new Subscription[]{subscription};
+            Subscription[] updated = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+            updated[subscriptions.length] = subscription;
+            return updated;
+        });
+        invalidate();
+    }
+
+    private void invalidate() {
+        version.incrementAndGet();
+        deliveries.clear();
+    }
+
+    private Delivery delivery(Class<?> eventClass) {
+        // Read the version before the handlers: a registration made meanwhile leaves the entry stale
+        int current = this.version.get();
+        Delivery delivery = deliveries.get(eventClass);
+        if (delivery != null && delivery.version == current) {
+            return delivery;
+        }
+
+        List<Subscription> matching = new ArrayList<>();
+        for (Class<?> type : hierarchy(eventClass)) {
+            Subscription[] subscriptions = handlers.get(type);
+            if (subscriptions != null) {
+                matching.addAll(Arrays.asList(subscriptions));
+            }
+        }
+        delivery = new Delivery(current, eventClass, matching.isEmpty() ? NONE : matching.toArray(NONE));
+        deliveries.put(eventClass, delivery);
+        return delivery;
+    }
+
+    /**
+     * @return the class, then its superclasses, then the interfaces of them all
+     */
+    private static Set<Class<?>> hierarchy(Class<?> eventClass) {
+        Set<Class<?>> types = new LinkedHashSet<>();
+        for (Class<?> type = eventClass; type != null; type = type.getSuperclass()) {
+            types.add(type);
+        }
+
+        ArrayDeque<Class<?>> queue = new ArrayDeque<>(types);
+        while (!queue.isEmpty()) {
+            for (Class<?> parent : queue.poll().getInterfaces()) {
+                if (types.add(parent)) {
+                    queue.add(parent);
+                }
+            }
+        }
+        return types;
+    }
+
+    private int capacity() {
+        this.executor();
+        return this.capacity;
+    }
+
+    private ExecutorService executor() {
+        ExecutorService executor = this.executor;
+        if (executor == null) {
+            synchronized (this) {
+                if ((executor = this.executor) == null) {
+                    Settings settings = new Settings();
+                    int threads = Math.max(1, settings.getInt("event.async.threads", Runtime.getRuntime().availableProcessors()));
+                    this.capacity = Math.max(1, settings.getInt("event.async.queue.capacity", 10000));
+                    AtomicInteger count = new AtomicInteger();
+                    this.executor = executor = Executors.newFixedThreadPool(threads, runnable -> {
+                        Thread thread = new Thread(runnable, "event-dispatcher-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * The handlers an event class is delivered to, with its metrics.
+     */
+    private static final class Delivery {
+        final int version;
+        final Class<?> eventClass;
+        final Subscription[] subscriptions;
+        private volatile LatencyHistogram latency;
+        private volatile Counter errors;
+
+        Delivery(int version, Class<?> eventClass, Subscription[] subscriptions) {
+            this.version = version;
+            this.eventClass = eventClass;
+            this.subscriptions = subscriptions;
+        }
+
+        LatencyHistogram latency() {
+            LatencyHistogram latency = this.latency;
+            if (latency == null) {
+                this.latency = latency = MetricsRegistry.getInstance().timer("tinystruct_event_delivery_seconds",
+                        "Time from dispatching an event to a handler having handled it, per event class", "event", eventClass.getName());
+            }
+            return latency;
+        }
+
+        Counter errors() {
+            Counter errors = this.errors;
+            if (errors == null) {
+                this.errors = errors = MetricsRegistry.getInstance().counter("tinystruct_event_handler_errors_total",
+                        "Events a handler failed on, per event class", "event", eventClass.getName());
+            }
+            return errors;
+        }
+    }
+
+    private abstract static class Subscription {
+        // The handler as registered, to find it again when unregistering
+        final Object registered;
+
+        Subscription(Object registered) {
+            this.registered = registered;
+        }
+
+        abstract void deliver(Event<?> event, long dispatched, Delivery delivery);
+    }
+
+    private static final class Envelope {
+        final Event<?> event;
+        final long dispatched;
+        final Delivery delivery;
+
+        Envelope(Event<?> event, long dispatched, Delivery delivery) {
+            this.event = event;
+            this.dispatched = dispatched;
+            this.delivery = delivery;
+        }
+    }
+
+    /**
+     * A handler with its own queue, drained by at most one pool thread at a
+     * time, which keeps its events in order.
+     */
+    private abstract class AsyncSubscription extends Subscription {
+        private final BlockingQueue<Envelope> queue;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        AsyncSubscription(Object registered, int capacity) {
+            super(registered);
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        abstract void handle(List<Envelope> envelopes);
+
+        @Override
+        void deliver(Event<?> event, long dispatched, Delivery delivery) {
+            Envelope envelope = new Envelope(event, dispatched, delivery);
+            if (!queue.offer(envelope)) {
+                try {
+                    queue.put(envelope);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.warning("Interrupted while waiting to queue " + event.getName() + ", the event is dropped.");
+                    return;
+                }
+            }
+            pending.incrementAndGet();
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor().execute(this::drain);
+            }
+        }
 
-        // If handlers exist for this event type, invoke each handler
-        if (eventHandlers != null) {
-            eventHandlers.forEach(handler -> handler.accept(event));
+        private void drain() {
+            try {
+                List<Envelope> envelopes = new ArrayList<>(Math.min(MAX_BATCH, queue.size()));
+                queue.drainTo(envelopes, MAX_BATCH);
+                pending.addAndGet(-envelopes.size());
+                if (!envelopes.isEmpty()) {
+                    handle(envelopes);
+                }
+            } finally {
+                scheduled.set(false);
+                // Events queued after the drain, or beyond the batch, take another turn on the pool
+                if (!queue.isEmpty()) {
+                    schedule();
+                }
+            }
         }
     }
 }
@@ -29,6 +29,9 @@ import org.tinystruct.mcp.MCPPushManager;
 import org.tinystruct.mcp.MCPSpecification;
 import org.tinystruct.system.annotation.Action;
 import org.tinystruct.system.annotation.Argument;
+import org.tinystruct.system.metrics.Counter;
+import org.tinystruct.system.metrics.LatencyHistogram;
+import org.tinystruct.system.metrics.MetricsRegistry;
 import org.tinystruct.system.util.StringUtilities;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
@@ -45,6 +48,8 @@ import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -94,6 +99,10 @@ public class HttpServer extends AbstractApplication implements Bootstrap {
         if (this.settings.get("system.directory") == null)
             this.settings.set("system.directory", System.getProperty("user.dir"));
 
+        // Reload application.properties automatically when it is edited on disk.
+        if (this.settings.getBoolean("default.settings.watch", false))
+            this.settings.watch();
+
         try {
             // Initialize the application manager with the configuration.
             ApplicationManager.init(this.settings);
@@ -244,6 +253,61 @@ public class HttpServer extends AbstractApplication implements Bootstrap {
         return "1.0.0";
     }
 
+    /**
+     * Requests served and time taken, per HTTP method. The metrics of a method
+     * and of a status are registered the first time they are seen.
+     */
+    private static final class RequestMetrics {
+        private static final AtomicInteger ACTIVE = new AtomicInteger();
+        private static final Method[] METHODS = Method.values();
+        private static final AtomicReferenceArray<RequestMetrics> BY_METHOD = new AtomicReferenceArray<>(METHODS.length + 1);
+
+        static {
+            MetricsRegistry.getInstance().gauge("tinystruct_http_requests_active", "Requests being served", ACTIVE::get);
+        }
+
+        private final String method;
+        private final LatencyHistogram duration;
+        private final AtomicReferenceArray<Counter> statuses = new AtomicReferenceArray<>(600);
+
+        private RequestMetrics(String method) {
+            this.method = method;
+            this.duration = MetricsRegistry.getInstance().timer("tinystruct_http_request_duration_seconds", "Time to serve a request, per method", "method", method);
+        }
+
+        static RequestMetrics of(String method) {
+            int i = METHODS.length;
+            for (int j = 0; j < METHODS.length; j++) {
+                if (METHODS[j].name().equalsIgnoreCase(method)) {
+                    i = j;
+                    break;
+                }
+            }
+
+            RequestMetrics metrics = BY_METHOD.get(i);
+            if (metrics == null) {
+                // Methods outside the standard ones share one series, so clients cannot grow the label set
+                BY_METHOD.compareAndSet(i, null, new RequestMetrics(i < METHODS.length ? METHODS[i].name() : "OTHER"));
+                metrics = BY_METHOD.get(i);
+            }
+            return metrics;
+        }
+
+        void record(int status, long nanos) {
+            duration.record(nanos);
+
+            // No status when the exchange ended before a response was sent
+            int i = status >= 100 && status < 600 ? status : 0;
+            Counter counter = statuses.get(i);
+            if (counter == null) {
+                counter = MetricsRegistry.getInstance().counter("tinystruct_http_requests_total", "Requests served, per method and status",
+                        "method", method, "status", Integer.toString(i));
+                statuses.set(i, counter);
+            }
+            counter.increment();
+        }
+    }
+
     /**
      * HTTP handler that integrates with TinyStruct framework
      */
@@ -257,10 +321,23 @@ public class HttpServer extends AbstractApplication implements Bootstrap {
 
         @Override
         public void handle(HttpExchange exchange) throws IOException {
+            long start = System.nanoTime();
+            RequestMetrics.ACTIVE.incrementAndGet();
+            try {
+                serve(exchange);
+            } finally {
+                RequestMetrics.ACTIVE.decrementAndGet();
+                RequestMetrics.of(exchange.getRequestMethod()).record(exchange.getResponseCode(), System.nanoTime() - start);
+            }
+        }
+
+        private void serve(HttpExchange exchange) throws IOException {
             try {
+                // Read all settings for this request from one consistent snapshot.
+                ConfigurationSnapshot config = settings.snapshot();
                 String origin = exchange.getRequestHeaders().getFirst("Origin");
                 // Allow origins: prefer explicit setting, otherwise echo Origin or wildcard
-                String allowOrigin = getAllowOrigin(origin);
+                String allowOrigin = getAllowOrigin(config, origin);
                 if (allowOrigin != null) {
                     exchange.getResponseHeaders().set("Access-Control-Allow-Origin", allowOrigin);
                 }
@@ -270,12 +347,12 @@ public class HttpServer extends AbstractApplication implements Bootstrap {
                 }
 
                 // Allow credentials if explicitly enabled in settings
-                if ("true".equalsIgnoreCase(settings.get("cors.allow.credentials"))) {
+                if (config.getBoolean("cors.allow.credentials", false)) {
                     exchange.getResponseHeaders().set("Access-Control-Allow-Credentials", "true");
                 }
 
                 // Expose specific headers for clients to read (e.g. MCP session ID)
-                String exposeHeaders = settings.getOrDefault("cors.exposed.headers", MCPSpecification.Http.SESSION_ID + "," + MCPSpecification.Http.CONVERSATION_ID);
+                String exposeHeaders = config.getOrDefault("cors.exposed.headers", MCPSpecification.Http.SESSION_ID + "," + MCPSpecification.Http.CONVERSATION_ID);
                 exchange.getResponseHeaders().set("Access-Control-Expose-Headers", exposeHeaders);
 
                 // Handle CORS preflight (OPTIONS) requests up-front: these have no body.
@@ -284,15 +361,15 @@ public class HttpServer extends AbstractApplication implements Bootstrap {
                     String acrHeaders = exchange.getRequestHeaders().getFirst("Access-Control-Request-Headers");
 
                     // Allow methods: prefer configured list, otherwise echo requested or use sensible defaults
-                    String allowMethods = settings.getOrDefault("cors.allowed.methods", acrMethod != null ? acrMethod : "GET,POST,PUT,DELETE,OPTIONS,PATCH");
+                    String allowMethods = config.getOrDefault("cors.allowed.methods", acrMethod != null ? acrMethod : "GET,POST,PUT,DELETE,OPTIONS,PATCH");
                     exchange.getResponseHeaders().set("Access-Control-Allow-Methods", allowMethods);
 
                     // Allow headers: prefer configured list, otherwise echo requested or common headers
-                    String allowHeaders = settings.getOrDefault("cors.allowed.headers", acrHeaders != null ? acrHeaders : "Content-Type,Authorization,Mcp-session-id");
+                    String allowHeaders = config.getOrDefault("cors.allowed.headers", acrHeaders != null ? acrHeaders : "Content-Type,Authorization,Mcp-session-id");
                     exchange.getResponseHeaders().set("Access-Control-Allow-Headers", allowHeaders);
 
                     // Cache the preflight response for a configurable duration (seconds)
-                    String maxAge = settings.getOrDefault("cors.preflight.maxage", "3600");
+                    String maxAge = config.getOrDefault("cors.preflight.maxage", "3600");
                     exchange.getResponseHeaders().set("Access-Control-Max-Age", maxAge);
 
                     // No response body for preflight; return 204 No Content
@@ -319,7 +396,7 @@ public class HttpServer extends AbstractApplication implements Bootstrap {
                 ApplicationContext context = new ApplicationContext();
 
                 // Authenticate request
-                if (!authenticateRequest(request, context)) {
+                if (!authenticateRequest(config, request, context)) {
                     sendErrorResponse(exchange, 401, "Invalid or expired token.");
                     return;
                 }
@@ -367,26 +444,25 @@ public class HttpServer extends AbstractApplication implements Bootstrap {
             }
         }
 
-        private String getAllowOrigin(String origin) {
+        private String getAllowOrigin(ConfigurationSnapshot config, String origin) {
             // Get the configured allowed origins.
-            String allowedOrigins = settings.get("cors.allowed.origins");
+            String allowedOrigins = config.get("cors.allowed.origins");
 
-            if (allowedOrigins == null || allowedOrigins.trim().isEmpty()) {
+            if (allowedOrigins.isEmpty()) {
                 return origin != null ? origin : "*";
             }
 
             if ("*".equals(allowedOrigins)) {
                 // If credentials are allowed, we MUST echo the origin instead of returning "*"
-                if ("true".equalsIgnoreCase(settings.get("cors.allow.credentials"))) {
+                if (config.getBoolean("cors.allow.credentials", false)) {
                     return origin != null ? origin : "*";
                 }
                 return "*";
             }
 
             if (origin != null) {
-                String[] origins = allowedOrigins.split(",");
-                for (String allowed : origins) {
-                    if (origin.equalsIgnoreCase(allowed.trim())) {
+                for (String allowed : config.getList("cors.allowed.origins")) {
+                    if (origin.equalsIgnoreCase(allowed)) {
                         return origin;
                     }
                 }
@@ -395,15 +471,15 @@ public class HttpServer extends AbstractApplication implements Bootstrap {
             return null;
         }
 
-        private boolean authenticateRequest(Request<?, ?> request, Context context) {
+        private boolean authenticateRequest(ConfigurationSnapshot config, Request<?, ?> request, Context context) {
             Object authorization;
             if ((authorization = request.headers().get(Header.AUTHORIZATION)) != null) {
                 String authHeader = authorization.toString();
                 if (authHeader != null && authHeader.startsWith("Bearer ")) {
                     String token = authHeader.substring(7);
 
-                    String secret = settings.get("jwt.secret");
-                    if (secret == null || secret.trim().isEmpty()) {
+                    String secret = config.get("jwt.secret");
+                    if (secret.isEmpty()) {
                         // jwt.secret is not configured — cannot validate Bearer token.
                         // Log a warning and reject the request to avoid using a weak/empty key.
                         logger.warning("jwt.secret is not configured. " +
@@ -415,8 +491,8 @@ public class HttpServer extends AbstractApplication implements Bootstrap {
                     JWTManager jwtManager = new JWTManager();
                     jwtManager.withBase64Secret(secret);
 
-                    String timezone = settings.get("jwt.timezone");
-                    if (timezone != null && !timezone.trim().isEmpty()) {
+                    String timezone = config.get("jwt.timezone");
+                    if (!timezone.isEmpty()) {
                         try {
                             jwtManager.withTimezone(timezone);
                         } catch (NumberFormatException e) {
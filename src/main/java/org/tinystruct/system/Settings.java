@@ -22,13 +22,32 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.Properties;
-import java.util.Set;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Application settings backed by a properties file on the classpath.
+ * <p>
+ * Reads are served from an immutable {@link ConfigurationSnapshot} that is
+ * swapped atomically whenever the configuration changes, so request threads
+ * never trim strings or consult the environment. Writes update the snapshot
+ * immediately and are persisted to disk shortly afterwards on a background
+ * thread. Call {@link #watch()} to reload the file automatically when it is
+ * edited on disk.
+ * </p>
+ */
 public class Settings implements Configuration<String> {
     private static final long serialVersionUID = 8348657988449703373L;
     private static final String DEFAULT_FILE = "application.properties";
+    private static final Logger logger = Logger.getLogger(Settings.class.getName());
     private final Properties properties;
     private final String file;
 
@@ -45,31 +64,51 @@ public class Settings implements Configuration<String> {
         return properties;
     }
 
+    /**
+     * Get the configuration snapshot currently in effect.
+     * Hold on to the returned instance to read several values consistently.
+     *
+     * @return current snapshot
+     */
+    public ConfigurationSnapshot snapshot() {
+        return SingletonHolder.INSTANCE.snapshot;
+    }
+
     @Override
     public String get(String property) {
-        String value = properties.getProperty(property);
-        if (value == null) return "";
-        value = value.trim();
-        // Handle environment variables if needed
-        if (value.startsWith("$_")) {
-            String envName = value.substring(2).toUpperCase();
-            return System.getenv(envName) != null ? System.getenv(envName) : "";
-        }
+        return SingletonHolder.INSTANCE.snapshot.get(property);
+    }
+
+    public int getInt(String property, int defaultValue) {
+        return SingletonHolder.INSTANCE.snapshot.getInt(property, defaultValue);
+    }
 
-        return value.trim();
+    public long getLong(String property, long defaultValue) {
+        return SingletonHolder.INSTANCE.snapshot.getLong(property, defaultValue);
     }
 
+    public boolean getBoolean(String property, boolean defaultValue) {
+        return SingletonHolder.INSTANCE.snapshot.getBoolean(property, defaultValue);
+    }
+
+    public Duration getDuration(String property, Duration defaultValue) {
+        return SingletonHolder.INSTANCE.snapshot.getDuration(property, defaultValue);
+    }
+
+    public List<String> getList(String property) {
+        return SingletonHolder.INSTANCE.snapshot.getList(property);
+    }
 
     @Override
     public void set(String key, String value) {
-        properties.put(key, value);
-        saveProperties();
+        SingletonHolder.INSTANCE.update(() -> properties.put(key, value));
+        SingletonHolder.INSTANCE.scheduleSave(this.file);
     }
 
     @Override
     public void remove(String key) {
-        properties.remove(key);
-        saveProperties();
+        SingletonHolder.INSTANCE.update(() -> properties.remove(key));
+        SingletonHolder.INSTANCE.scheduleSave(this.file);
     }
 
     @Override
@@ -79,7 +118,7 @@ public class Settings implements Configuration<String> {
 
     @Override
     public String getOrDefault(String key, String value) {
-        return this.get(key).isEmpty() ? value : this.get(key);
+        return SingletonHolder.INSTANCE.snapshot.getOrDefault(key, value);
     }
 
     @Override
@@ -92,14 +131,54 @@ public class Settings implements Configuration<String> {
         return properties.isEmpty();
     }
 
+    /**
+     * Register a listener to be notified when a new snapshot is published.
+     *
+     * @param listener listener
+     */
+    public void addListener(ConfigurationListener listener) {
+        if (listener != null)
+            SingletonHolder.INSTANCE.listeners.add(listener);
+    }
+
+    public void removeListener(ConfigurationListener listener) {
+        SingletonHolder.INSTANCE.listeners.remove(listener);
+    }
+
+    /**
+     * Watch the backing file and reload it whenever it is modified on disk.
+     * Has no effect if the file is not a plain file on the local file system.
+     */
+    public void watch() {
+        Path path = resolvePath(this.file);
+        if (path != null) {
+            SingletonHolder.INSTANCE.watch(this.fileName(), path);
+        }
+    }
+
+    /**
+     * Persist any pending changes immediately.
+     */
+    public void flush() {
+        SingletonHolder.INSTANCE.flush();
+    }
+
     @Override
     public String toString() {
         return properties.toString();
     }
 
     public void saveProperties() {
-        URL resource = Settings.class.getClassLoader().getResource(this.file != null ? this.file : DEFAULT_FILE);
-        if (null != resource) {
+        SingletonHolder.INSTANCE.save(this.fileName());
+    }
+
+    private String fileName() {
+        return this.file != null ? this.file : DEFAULT_FILE;
+    }
+
+    private static Path resolvePath(String fileName) {
+        URL resource = Settings.class.getClassLoader().getResource(fileName != null ? fileName : DEFAULT_FILE);
+        if (null != resource && "file".equals(resource.getProtocol())) {
             URI uri;
             try {
                 uri = resource.toURI();
@@ -109,35 +188,193 @@ public class Settings implements Configuration<String> {
 
             String path = uri.getPath();
             if (path != null) {
-                try (FileOutputStream outputStream = new FileOutputStream(path); OutputStream out = new BufferedOutputStream(outputStream)) {
-                    properties.store(out, "#tinystruct configuration");
-                } catch (FileNotFoundException e) {
-                    throw new ApplicationRuntimeException("File not found:" + e.getMessage(), e);
-                } catch (IOException e) {
-                    throw new ApplicationRuntimeException("Error saving properties: " + e.getMessage(), e);
-                }
+                return Paths.get(path);
             }
         }
+        return null;
     }
 
     private static final class SingletonHolder {
         public static final SingletonHolder INSTANCE = new SingletonHolder();
+        private static final long WRITE_BEHIND_DELAY = 200L;
+
         private final Properties properties = new Properties();
+        // Keys loaded from each file, so a reload can drop the ones that disappeared.
+        private final Map<String, Set<String>> keys = new ConcurrentHashMap<>();
+        private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+        private final List<ConfigurationListener> listeners = new CopyOnWriteArrayList<>();
+        private final Map<Path, String> watched = new ConcurrentHashMap<>();
+        private volatile ConfigurationSnapshot snapshot = ConfigurationSnapshot.of(properties, 0);
+        private long version;
+        private ScheduledExecutorService writer;
+        private WatchService watchService;
 
         private Properties getProperties(String fileName) {
+            if (keys.containsKey(fileName)) {
+                return properties;
+            }
+
+            synchronized (this) {
+                if (!keys.containsKey(fileName)) {
+                    Properties loaded = load(fileName);
+                    if (loaded == null) {
+                        logger.warning("No settings loaded.");
+                    }
+
+                    update(() -> {
+                        if (loaded != null) properties.putAll(loaded);
+                    });
+                    keys.put(fileName, loaded != null ? loaded.stringPropertyNames() : Collections.emptySet());
+                }
+            }
+            return properties;
+        }
+
+        private Properties load(String fileName) {
             try (InputStream in = Settings.class.getClassLoader().getResourceAsStream(fileName)) {
                 if (in != null) {
+                    Properties loaded = new Properties();
                     try (InputStreamReader reader = new InputStreamReader(
                             in, StandardCharsets.UTF_8)) {
-                        properties.load(reader);
+                        loaded.load(reader);
                     }
-                } else {
-                    Logger.getLogger(Settings.class.getName()).warning("No settings loaded.");
+                    return loaded;
                 }
             } catch (IOException e) {
                 throw new ApplicationRuntimeException("Error loading properties: " + e.getMessage(), e);
             }
-            return properties;
+            return null;
+        }
+
+        /**
+         * Apply a mutation to the raw properties and publish a new snapshot.
+         */
+        private void update(Runnable mutation) {
+            ConfigurationSnapshot previous, current;
+            synchronized (this) {
+                mutation.run();
+                previous = snapshot;
+                current = ConfigurationSnapshot.of(properties, ++version);
+                if (current.asMap().equals(previous.asMap())) {
+                    return;
+                }
+                snapshot = current;
+            }
+
+            for (ConfigurationListener listener : listeners) {
+                try {
+                    listener.onChange(previous, current);
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Configuration listener failed: " + e.getMessage(), e);
+                }
+            }
+        }
+
+        private void reload(String fileName) {
+            // A pending write will overwrite the file anyway, and reloading now
+            // could revert values that have not been flushed yet.
+            if (dirty.contains(fileName)) return;
+
+            Properties loaded;
+            try {
+                loaded = load(fileName);
+            } catch (ApplicationRuntimeException e) {
+                logger.log(Level.WARNING, e.getMessage(), e);
+                return;
+            }
+            if (loaded == null) return;
+
+            update(() -> {
+                Set<String> previous = keys.getOrDefault(fileName, Collections.emptySet());
+                for (String key : previous) {
+                    if (!loaded.containsKey(key)) properties.remove(key);
+                }
+                properties.putAll(loaded);
+                keys.put(fileName, loaded.stringPropertyNames());
+            });
+        }
+
+        private synchronized void scheduleSave(String fileName) {
+            if (fileName == null) fileName = DEFAULT_FILE;
+            if (dirty.add(fileName)) {
+                if (writer == null) {
+                    writer = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread thread = new Thread(r, "settings-writer");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "settings-flush"));
+                }
+                writer.schedule(this::flush, WRITE_BEHIND_DELAY, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void flush() {
+            for (String fileName : dirty) {
+                try {
+                    save(fileName);
+                } catch (ApplicationRuntimeException e) {
+                    logger.log(Level.WARNING, e.getMessage(), e);
+                }
+            }
+        }
+
+        private void save(String fileName) {
+            dirty.remove(fileName);
+            Path path = resolvePath(fileName);
+            if (path != null) {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+                    properties.store(out, "#tinystruct configuration");
+                } catch (NoSuchFileException e) {
+                    throw new ApplicationRuntimeException("File not found:" + e.getMessage(), e);
+                } catch (IOException e) {
+                    throw new ApplicationRuntimeException("Error saving properties: " + e.getMessage(), e);
+                }
+            }
+        }
+
+        private synchronized void watch(String fileName, Path path) {
+            Path absolute = path.toAbsolutePath();
+            if (watched.putIfAbsent(absolute, fileName) != null) return;
+
+            try {
+                if (watchService == null) {
+                    watchService = absolute.getFileSystem().newWatchService();
+                    Thread thread = new Thread(this::poll, "settings-watcher");
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+                absolute.getParent().register(watchService, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+            } catch (IOException e) {
+                watched.remove(absolute);
+                throw new ApplicationRuntimeException("Error watching " + absolute + ": " + e.getMessage(), e);
+            }
+        }
+
+        private void poll() {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key;
+                try {
+                    key = watchService.take();
+                    // Editors tend to emit several events per save; let them settle.
+                    Thread.sleep(50);
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                Path directory = (Path) key.watchable();
+                Set<String> changed = new HashSet<>();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path) {
+                        String fileName = watched.get(directory.resolve((Path) event.context()));
+                        if (fileName != null) changed.add(fileName);
+                    }
+                }
+                key.reset();
+
+                changed.forEach(this::reload);
+            }
         }
     }
 }
@@ -0,0 +1,52 @@
+package org.tinystruct.system.annotation.processing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The fingerprint of the action methods of a class: their names, return and
+ * parameter types, paths, modes and argument keys, in no particular order.
+ * {@link ActionIndexProcessor} writes it into the header of the action index,
+ * and {@link org.tinystruct.application.ActionIndex} compares it with the
+ * class as loaded, so an index left from an earlier compilation is not used.
+ * <p>
+ * Types are given by name, as {@link Class#getName()} returns them.
+ * </p>
+ */
+public final class ActionFingerprint {
+    private final List<String> signatures = new ArrayList<>();
+
+    /**
+     * Add an action method.
+     *
+     * @param method         name of the method
+     * @param returnType     return type
+     * @param parameterTypes parameter types
+     * @param path           path of the action
+     * @param mode           name of the mode of the action
+     * @param argumentKeys   keys of the arguments of the action
+     * @return this fingerprint
+     */
+    public ActionFingerprint add(String method, String returnType, List<String> parameterTypes, String path, String mode,
+                                 List<String> argumentKeys) {
+        signatures.add(String.join("\t", method, returnType, String.join(",", parameterTypes), path, mode,
+                String.join(",", argumentKeys)));
+        return this;
+    }
+
+    /**
+     * @return the fingerprint as a hexadecimal number
+     */
+    @Override
+    public String toString() {
+        List<String> sorted = new ArrayList<>(signatures);
+        Collections.sort(sorted);
+
+        CRC32 crc = new CRC32();
+        crc.update(String.join("\n", sorted).getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+}
@@ -0,0 +1,283 @@
+package org.tinystruct.system.annotation.processing;
+
+import org.tinystruct.application.RoutePattern;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the action index of every concrete application compiled, so that
+ * registering the application needs no reflection. See
+ * {@link org.tinystruct.application.ActionIndex} for the format.
+ * <p>
+ * The processor is listed in <code>META-INF/services</code>, so javac finds
+ * it on the class path of any project depending on tinystruct; from JDK 23
+ * annotation processing has to be turned on with <code>-proc:full</code>.
+ * Applications compiled without it are registered by reflection as before.
+ * </p>
+ * <p>
+ * Because it claims every annotation type (<code>*</code>), javac runs it in
+ * every compilation that has tinystruct on its class path, the applications of
+ * downstream projects included; it only writes indexes for concrete
+ * applications. Turn it off with <code>-proc:none</code>, or name the
+ * processors to run with <code>-processor</code>. An index whose fingerprint no
+ * longer matches the compiled class, see {@link ActionFingerprint}, is ignored.
+ * </p>
+ * <p>
+ * It works on the names of the framework types rather than the classes, and
+ * depends on nothing but {@link RoutePattern}, so it can be compiled ahead of
+ * the rest of the framework and index the applications of the framework too.
+ * </p>
+ */
+@SupportedAnnotationTypes("*")
+public class ActionIndexProcessor extends AbstractProcessor {
+    // Kept as names, see ActionIndex
+    private static final String LOCATION = "META-INF/tinystruct/actions/";
+    private static final String HEADER = "tinystruct-action-index 2";
+    private static final String APPLICATION = "org.tinystruct.Application";
+    private static final String ACTION = "org.tinystruct.system.annotation.Action";
+    private static final String REQUEST = "org.tinystruct.http.Request";
+    private static final String RESPONSE = "org.tinystruct.http.Response";
+
+    private final Set<String> written = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Elements elements = processingEnv.getElementUtils();
+        TypeElement application = elements.getTypeElement(APPLICATION);
+        if (application == null || elements.getTypeElement(ACTION) == null) {
+            return false;
+        }
+
+        List<TypeElement> types = new ArrayList<>();
+        collect(ElementFilter.typesIn(roundEnv.getRootElements()), types);
+        for (TypeElement type : types) {
+            if (isApplication(type, application)) {
+                write(type);
+            }
+        }
+
+        // Other processors still see every annotation
+        return false;
+    }
+
+    private static void collect(Iterable<TypeElement> types, List<TypeElement> into) {
+        for (TypeElement type : types) {
+            into.add(type);
+            collect(ElementFilter.typesIn(type.getEnclosedElements()), into);
+        }
+    }
+
+    private boolean isApplication(TypeElement type, TypeElement application) {
+        Types types = processingEnv.getTypeUtils();
+        return type.getKind().isClass() && !type.getModifiers().contains(Modifier.ABSTRACT)
+                && types.isSubtype(types.erasure(type.asType()), types.erasure(application.asType()));
+    }
+
+    private void write(TypeElement type) {
+        String name = processingEnv.getElementUtils().getBinaryName(type).toString();
+        if (!written.add(name)) return;
+
+        StringBuilder index = new StringBuilder();
+        ActionFingerprint fingerprint = new ActionFingerprint();
+        AnnotationMirror command = find(type);
+        if (command != null) {
+            Map<String, Object> values = values(command);
+            record(index, "command", values.get("value"), mode(values), values.get("description"), "");
+            arguments(index, "option", values.get("options"));
+        }
+
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            AnnotationMirror action = find(method);
+            if (action == null || !method.getModifiers().contains(Modifier.PUBLIC)
+                    || method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+
+            Map<String, Object> values = values(action);
+            String path = (String) values.get("value");
+            List<AnnotationMirror> arguments = mirrors(values.get("arguments"));
+            List<? extends VariableElement> parameters = method.getParameters();
+
+            List<String> parameterTypes = new ArrayList<>();
+            List<String> dataTypes = new ArrayList<>();
+            List<String> dataNames = new ArrayList<>();
+            for (int i = 0; i < parameters.size(); i++) {
+                VariableElement parameter = parameters.get(i);
+                String parameterType = className(parameter.asType());
+                parameterTypes.add(parameterType);
+                if (!isContext(parameter.asType())) {
+                    // Named as the registry does: by the argument at the same position, or else by
+                    // position, since reflection only sees the declared names under -parameters
+                    dataTypes.add(parameterType);
+                    dataNames.add(i < arguments.size() ? (String) values(arguments.get(i)).get("key") : "arg" + i);
+                }
+            }
+
+            List<String> keys = new ArrayList<>();
+            for (AnnotationMirror argument : arguments) {
+                keys.add((String) values(argument).get("key"));
+            }
+            fingerprint.add(method.getSimpleName().toString(), className(method.getReturnType()), parameterTypes, path,
+                    mode(values), keys);
+
+            RoutePattern pattern = RoutePattern.of(path, dataTypes.toArray(new String[0]), dataNames.toArray(new String[0]));
+            record(index, "action", path, mode(values), values.get("description"), values.get("example"),
+                    method.getSimpleName(), className(method.getReturnType()), String.join(",", parameterTypes),
+                    pattern.getExpression(), pattern.getPriority());
+            arguments(index, "argument", arguments);
+            arguments(index, "option", values.get("options"));
+        }
+
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", LOCATION + name, type);
+            try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write(HEADER + '\t' + fingerprint + '\n');
+                writer.write(index.toString());
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Could not write the action index of " + name + ": " + e.getMessage(), type);
+        }
+    }
+
+    private void arguments(StringBuilder index, String kind, Object arguments) {
+        for (AnnotationMirror argument : mirrors(arguments)) {
+            Map<String, Object> values = values(argument);
+            record(index, kind, values.get("key"), values.get("description"));
+        }
+    }
+
+    private static void record(StringBuilder index, String kind, Object... fields) {
+        index.append(kind);
+        for (Object field : fields) {
+            index.append('\t').append(escape(String.valueOf(field)));
+        }
+        index.append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\r", "\\r").replace("\n", "\\n");
+    }
+
+    private static AnnotationMirror find(Element element) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(ACTION)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private Map<String, Object> values(AnnotationMirror mirror) {
+        Map<String, Object> values = new HashMap<>();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+            values.put(entry.getKey().getSimpleName().toString(), entry.getValue().getValue());
+        }
+        return values;
+    }
+
+    private static String mode(Map<String, Object> values) {
+        Object mode = values.get("mode");
+        return mode instanceof VariableElement ? ((VariableElement) mode).getSimpleName().toString() : "DEFAULT";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<AnnotationMirror> mirrors(Object values) {
+        if (!(values instanceof List)) return Collections.emptyList();
+
+        List<AnnotationMirror> mirrors = new ArrayList<>();
+        for (AnnotationValue value : (List<? extends AnnotationValue>) values) {
+            mirrors.add((AnnotationMirror) value.getValue());
+        }
+        return mirrors;
+    }
+
+    private boolean isContext(TypeMirror type) {
+        Types types = processingEnv.getTypeUtils();
+        Elements elements = processingEnv.getElementUtils();
+        for (String name : new String[]{REQUEST, RESPONSE}) {
+            TypeElement context = elements.getTypeElement(name);
+            if (context != null && types.isSubtype(types.erasure(type), types.erasure(context.asType()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the name of the type as {@link Class#getName()} gives it
+     */
+    private String className(TypeMirror type) {
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        if (erased.getKind() == TypeKind.ARRAY) {
+            return descriptor(erased);
+        }
+        if (erased.getKind() == TypeKind.DECLARED) {
+            return processingEnv.getElementUtils().getBinaryName((TypeElement) ((DeclaredType) erased).asElement()).toString();
+        }
+        return erased.getKind().name().toLowerCase(Locale.ROOT);
+    }
+
+    private String descriptor(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "Z";
+            case BYTE:
+                return "B";
+            case CHAR:
+                return "C";
+            case SHORT:
+                return "S";
+            case INT:
+                return "I";
+            case LONG:
+                return "J";
+            case FLOAT:
+                return "F";
+            case DOUBLE:
+                return "D";
+            case ARRAY:
+                return "[" + descriptor(((ArrayType) type).getComponentType());
+            default:
+                return "L" + className(type) + ";";
+        }
+    }
+}
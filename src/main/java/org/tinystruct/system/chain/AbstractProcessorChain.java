@@ -3,19 +3,42 @@ package org.tinystruct.system.chain;
 import org.tinystruct.AbstractApplication;
 import org.tinystruct.ApplicationException;
 import org.tinystruct.system.Processor;
+import org.tinystruct.system.metrics.MetricsRegistry;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Abstract base class for implementing processor chains.
+ * <p>
+ * A chain processes one input with {@link #process(Object)}, or many with
+ * {@link #process(Iterator, Consumer)}, which runs every processor as a stage
+ * of a pipeline: stages work on different items at the same time, passing
+ * them on through bounded queues, and a stateless processor can be given
+ * several threads with {@link #addProcessor(Processor, int)}.
+ * </p>
  *
  * @param <T> the type of data processed by the chain
  */
 public abstract class AbstractProcessorChain<T> extends AbstractApplication {
 
+    // Marks the end of the inputs in the queues of a pipeline run
+    private static final Outcome<?> END = new Outcome<>(-1, null);
+
     // List to hold processors in the chain
-    private final List<Processor<T>> processors = new ArrayList<>();
+    private final List<Stage<T>> stages = new ArrayList<>();
+    // Items each queue between two stages holds
+    private int capacity = 256;
 
     /**
      * Adds a processor to the chain.
@@ -23,7 +46,38 @@ public abstract class AbstractProcessorChain<T> extends AbstractApplication {
      * @param processor the processor to add
      */
     public void addProcessor(Processor<T> processor) {
-        processors.add(processor);
+        addProcessor(processor, 1);
+    }
+
+    /**
+     * Adds a processor to the chain, run by several threads in a pipeline.
+     * The processor must be stateless, or otherwise safe to call from many
+     * threads at once.
+     *
+     * @param processor   the processor to add
+     * @param parallelism number of threads running the processor in a pipeline
+     */
+    public void addProcessor(Processor<T> processor, int parallelism) {
+        if (processor == null) {
+            throw new IllegalArgumentException("The processor cannot be null.");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must be at least 1: " + parallelism);
+        }
+        stages.add(new Stage<>(processor, parallelism));
+    }
+
+    /**
+     * Sets how many items the queue in front of each stage holds in a
+     * pipeline run; a stage that gets ahead waits for the next one.
+     *
+     * @param capacity the queue capacity, 256 by default
+     */
+    public void setCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be at least 1: " + capacity);
+        }
+        this.capacity = capacity;
     }
 
     /**
@@ -34,9 +88,9 @@ public abstract class AbstractProcessorChain<T> extends AbstractApplication {
      */
     public T process(T input) {
         T currentData = input;
-        for (Processor<T> processor : processors) {
+        for (Stage<T> stage : stages) {
             try {
-                currentData = processor.process(currentData);
+                currentData = stage.processor.process(currentData);
             } catch (ApplicationException e) {
                 throw new RuntimeException(e);
             }
@@ -44,6 +98,176 @@ public abstract class AbstractProcessorChain<T> extends AbstractApplication {
         return currentData;
     }
 
+    /**
+     * Processes a stream of inputs in a pipeline.
+     *
+     * @param inputs the inputs
+     * @param sink   receives the outcome of every input
+     * @return the statistics of each stage
+     * @throws ApplicationException if the inputs could not be read or the run was interrupted
+     * @see #process(Iterator, Consumer)
+     */
+    public List<StageStatistics> process(Stream<? extends T> inputs, Consumer<? super Outcome<T>> sink) throws ApplicationException {
+        return process(inputs.iterator(), sink);
+    }
+
+    /**
+     * Processes many inputs in a pipeline, each processor running as a stage
+     * on its own threads. The call returns once every input went through.
+     * <p>
+     * An input a processor fails on skips the stages after it and reaches the
+     * sink with the error, the other inputs carry on. The sink is called on
+     * the calling thread. Outcomes reach it in input order unless a stage has
+     * more than one thread; {@link Outcome#getIndex()} tells where each input
+     * was.
+     * </p>
+     *
+     * @param inputs the inputs
+     * @param sink   receives the outcome of every input
+     * @return the statistics of each stage
+     * @throws ApplicationException if the inputs could not be read or the run was interrupted
+     */
+    public List<StageStatistics> process(Iterator<? extends T> inputs, Consumer<? super Outcome<T>> sink) throws ApplicationException {
+        List<Stage<T>> stages = new ArrayList<>(this.stages);
+        int count = stages.size();
+        List<BlockingQueue<Outcome<T>>> queues = new ArrayList<>(count + 1);
+        for (int i = 0; i <= count; i++) {
+            queues.add(new ArrayBlockingQueue<>(capacity));
+        }
+
+        Thread caller = Thread.currentThread();
+        AtomicReference<RuntimeException> inputFailure = new AtomicReference<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicInteger threads = new AtomicInteger();
+        String name = getClass().getSimpleName();
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(() -> {
+                try {
+                    runnable.run();
+                } catch (Throwable e) {
+                    // A worker that dies would leave the run waiting for its items
+                    failure.compareAndSet(null, e);
+                    caller.interrupt();
+                    throw e;
+                }
+            }, name + "-pipeline-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<StageStatistics> statistics = new ArrayList<>(count);
+        long start = System.nanoTime();
+        try {
+            executor.execute(() -> feed(inputs, queues.get(0), ends(stages, 0), inputFailure));
+            for (int i = 0; i < count; i++) {
+                Stage<T> stage = stages.get(i);
+                StageStatistics stageStatistics = statistics(i, stage);
+                statistics.add(stageStatistics);
+
+                AtomicInteger running = new AtomicInteger(stage.parallelism);
+                for (int j = 0; j < stage.parallelism; j++) {
+                    final int index = i;
+                    executor.execute(() -> work(index, stage.processor, queues.get(index), queues.get(index + 1),
+                            running, ends(stages, index + 1), stageStatistics, start));
+                }
+            }
+
+            BlockingQueue<Outcome<T>> outcomes = queues.get(count);
+            Outcome<T> outcome;
+            while ((outcome = outcomes.take()) != END) {
+                sink.accept(outcome);
+            }
+        } catch (InterruptedException e) {
+            if (failure.get() != null) {
+                Thread.interrupted();
+                throw new ApplicationException("Pipeline failed: " + failure.get(), failure.get());
+            }
+            Thread.currentThread().interrupt();
+            throw new ApplicationException("Interrupted while processing the inputs.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (inputFailure.get() != null) {
+            throw new ApplicationException("Failed to read the inputs: " + inputFailure.get().getMessage(), inputFailure.get());
+        }
+        return Collections.unmodifiableList(statistics);
+    }
+
+    private void feed(Iterator<? extends T> inputs, BlockingQueue<Outcome<T>> queue, int ends, AtomicReference<RuntimeException> failure) {
+        try {
+            long index = 0;
+            try {
+                while (inputs.hasNext()) {
+                    queue.put(new Outcome<>(index++, inputs.next()));
+                }
+            } catch (RuntimeException e) {
+                // The inputs read so far are still processed
+                failure.set(e);
+            }
+            end(queue, ends);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void work(int index, Processor<T> processor, BlockingQueue<Outcome<T>> in, BlockingQueue<Outcome<T>> out,
+                      AtomicInteger running, int ends, StageStatistics statistics, long start) {
+        try {
+            Outcome<T> item;
+            while ((item = in.take()) != END) {
+                if (!item.isFailed()) {
+                    long begin = System.nanoTime();
+                    try {
+                        item.setValue(processor.process(item.getValue()));
+                        statistics.record(System.nanoTime() - begin, false);
+                    } catch (ApplicationException | RuntimeException e) {
+                        item.fail(index, e);
+                        statistics.record(System.nanoTime() - begin, true);
+                    }
+                }
+                out.put(item);
+            }
+
+            // The last thread of the stage to finish passes the end on
+            if (running.decrementAndGet() == 0) {
+                statistics.finish(System.nanoTime() - start);
+                end(out, ends);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void end(BlockingQueue<Outcome<T>> queue, int ends) throws InterruptedException {
+        for (int i = 0; i < ends; i++) {
+            queue.put((Outcome<T>) END);
+        }
+    }
+
+    /**
+     * @return how many threads take from the queue in front of the stage, one for the sink
+     */
+    private static int ends(List<? extends Stage<?>> stages, int index) {
+        return index < stages.size() ? stages.get(index).parallelism : 1;
+    }
+
+    private StageStatistics statistics(int index, Stage<T> stage) {
+        Class<?> type = stage.processor.getClass();
+        String name = type.isSynthetic() || type.isAnonymousClass() ? "stage" + index : type.getSimpleName();
+        String chain = getClass().getName();
+        String position = String.valueOf(index);
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        return new StageStatistics(index, name, stage.parallelism,
+                metrics.counter("tinystruct_chain_items_total", "Items handled by a stage of a processor chain, per outcome",
+                        "chain", chain, "stage", position, "processor", name, "outcome", "processed"),
+                metrics.counter("tinystruct_chain_items_total", "Items handled by a stage of a processor chain, per outcome",
+                        "chain", chain, "stage", position, "processor", name, "outcome", "failed"),
+                metrics.timer("tinystruct_chain_stage_seconds", "Time a stage of a processor chain spends on an item",
+                        "chain", chain, "stage", position, "processor", name));
+    }
+
     /**
      * Returns the version of the processor chain (empty implementation in this abstract class).
      *
@@ -53,4 +277,14 @@ public abstract class AbstractProcessorChain<T> extends AbstractApplication {
     public String version() {
         return ""; // Version information can be provided in subclasses
     }
+
+    private static final class Stage<T> {
+        final Processor<T> processor;
+        final int parallelism;
+
+        Stage(Processor<T> processor, int parallelism) {
+            this.processor = processor;
+            this.parallelism = parallelism;
+        }
+    }
 }
@@ -0,0 +1,71 @@
+package org.tinystruct.system.chain;
+
+/**
+ * What became of one input of a pipeline run: either the value it was
+ * turned into by every stage, or the error of the stage it failed in.
+ *
+ * @param <T> the type of data processed by the chain
+ */
+public final class Outcome<T> {
+    private final long index;
+    private final T input;
+    private T value;
+    private Exception error;
+    private int stage = -1;
+
+    Outcome(long index, T input) {
+        this.index = index;
+        this.input = input;
+        this.value = input;
+    }
+
+    /**
+     * @return the position of the input in the input stream, from 0
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    public T getInput() {
+        return input;
+    }
+
+    /**
+     * @return the processed value, or the value as the failed stage got it
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * @return the exception thrown by the failed stage, or null
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * @return the index of the failed stage, or -1
+     */
+    public int getStage() {
+        return stage;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    void setValue(T value) {
+        this.value = value;
+    }
+
+    void fail(int stage, Exception error) {
+        this.stage = stage;
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return isFailed() ? "#" + index + " failed at stage " + stage + ": " + error : "#" + index + ": " + value;
+    }
+}
@@ -0,0 +1,95 @@
+package org.tinystruct.system.chain;
+
+import org.tinystruct.system.metrics.Counter;
+import org.tinystruct.system.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Items handled by one stage during a pipeline run. The same counts are
+ * added to the framework metrics, summed over all runs of the chain.
+ */
+public final class StageStatistics {
+    private final int index;
+    private final String name;
+    private final int parallelism;
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LatencyHistogram time = new LatencyHistogram();
+    private final Counter processedTotal;
+    private final Counter failedTotal;
+    private final LatencyHistogram timeTotal;
+    private volatile long elapsed;
+
+    StageStatistics(int index, String name, int parallelism, Counter processedTotal, Counter failedTotal, LatencyHistogram timeTotal) {
+        this.index = index;
+        this.name = name;
+        this.parallelism = parallelism;
+        this.processedTotal = processedTotal;
+        this.failedTotal = failedTotal;
+        this.timeTotal = timeTotal;
+    }
+
+    void record(long nanos, boolean failed) {
+        time.record(nanos);
+        timeTotal.record(nanos);
+        if (failed) {
+            this.failed.increment();
+            failedTotal.increment();
+        } else {
+            processed.increment();
+            processedTotal.increment();
+        }
+    }
+
+    void finish(long elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return items the stage processed successfully
+     */
+    public long getProcessed() {
+        return processed.sum();
+    }
+
+    /**
+     * @return items the stage failed on
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return time spent on each item, in nanoseconds
+     */
+    public LatencyHistogram getTime() {
+        return time;
+    }
+
+    /**
+     * @return items handled per second, from the start of the run to the stage finishing
+     */
+    public double getThroughput() {
+        long elapsed = this.elapsed;
+        return elapsed > 0 ? (processed.sum() + failed.sum()) * 1e9 / elapsed : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d %s x%d: %d processed, %d failed, %.1f/s, p99 %.3f ms", index, name, parallelism,
+                getProcessed(), getFailed(), getThroughput(), time.percentile(99) / 1e6);
+    }
+}
@@ -0,0 +1,370 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2026 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.system.logging;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A {@link Handler} that moves formatting and I/O off the logging thread.
+ * <p>
+ * {@link #publish(LogRecord)} only captures the thread name (and the caller
+ * location for levels at or above {@link #setLocationLevel(Level)}) and puts
+ * the record into a lock-free ring buffer. A single writer thread drains the
+ * buffer in batches, formats the records with a reused {@link LogFormatter}
+ * buffer and writes each batch to a {@link FileChannel} with one call. Log
+ * files are rolled by size and/or time. When the buffer is full, records are
+ * either dropped or the caller waits, depending on the {@link OverflowPolicy}.
+ * </p>
+ */
+public class AsyncLogHandler extends Handler {
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final int MAX_BATCH = 512;
+    private static final int MAX_BATCH_CHARS = 64 * 1024;
+
+    /**
+     * What to do when a record is published while the buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Discard the record and count it in {@link #getDroppedCount()}.
+         */
+        DROP,
+        /**
+         * Wait until the writer thread has made room.
+         */
+        BLOCK
+    }
+
+    private final LogRingBuffer<Event> buffer;
+    private final OverflowPolicy policy;
+    private final Path path;
+    private final Thread writer;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private volatile long completed;
+    private final StringBuilder text = new StringBuilder(MAX_BATCH_CHARS + 1024);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private ByteBuffer bytes = ByteBuffer.allocateDirect(MAX_BATCH_CHARS * 2);
+
+    private volatile boolean running = true;
+    private volatile boolean waiting;
+    private volatile int locationLevel = Level.WARNING.intValue();
+    private volatile long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(200);
+    private volatile long maxFileSize;
+    private volatile long rollingIntervalMillis;
+
+    private FileChannel channel;
+    private long written;
+    private volatile long nextRollAt = Long.MAX_VALUE;
+
+    /**
+     * Create a handler that appends to the given file.
+     *
+     * @param path     log file, or null for standard error
+     * @param capacity ring buffer capacity
+     * @param policy   overflow policy
+     * @throws IOException if the file cannot be opened
+     */
+    public AsyncLogHandler(Path path, int capacity, OverflowPolicy policy) throws IOException {
+        this.path = path;
+        this.buffer = new LogRingBuffer<>(capacity);
+        this.policy = policy != null ? policy : OverflowPolicy.DROP;
+        this.setFormatter(new LogFormatter(path == null));
+        this.open();
+
+        this.writer = new Thread(this::drain, "async-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Capture the caller location (class, method, file and line) only for
+     * records at or above this level. Walking the stack is the most expensive
+     * part of publishing a record, so it defaults to {@link Level#WARNING}.
+     *
+     * @param level minimum level for caller location capture
+     */
+    public void setLocationLevel(Level level) {
+        this.locationLevel = level.intValue();
+    }
+
+    /**
+     * Maximum time a record may sit in the buffer before it is written.
+     *
+     * @param interval flush interval
+     */
+    public void setFlushInterval(Duration interval) {
+        this.flushIntervalNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), interval.toNanos());
+    }
+
+    /**
+     * Roll the log file once it reaches this size. Zero disables size rolling.
+     *
+     * @param bytes maximum size in bytes
+     */
+    public void setMaxFileSize(long bytes) {
+        this.maxFileSize = Math.max(0, bytes);
+    }
+
+    /**
+     * Roll the log file at this interval. A zero or null interval disables time rolling.
+     *
+     * @param interval rolling interval
+     */
+    public void setRollingInterval(Duration interval) {
+        this.rollingIntervalMillis = interval != null ? Math.max(0, interval.toMillis()) : 0;
+        this.nextRollAt = this.rollingIntervalMillis > 0 ? System.currentTimeMillis() + this.rollingIntervalMillis : Long.MAX_VALUE;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public int getPendingCount() {
+        return buffer.size();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!running || !isLoggable(record)) {
+            return;
+        }
+
+        // Below the location level the record must not infer its caller on the writer thread either;
+        // the record is shared with the other handlers, so that is noted on the event.
+        boolean located = record.getLevel().intValue() >= locationLevel;
+        LogFormatter.LogSourceInfo sourceInfo = located ? LogFormatter.locate() : null;
+
+        Event event = new Event(record, Thread.currentThread().getName(), sourceInfo, located);
+        if (!buffer.offer(event)) {
+            if (policy == OverflowPolicy.DROP) {
+                dropped.incrementAndGet();
+                return;
+            }
+
+            while (!buffer.offer(event)) {
+                if (!running) return;
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            }
+        }
+
+        accepted.incrementAndGet();
+        if (waiting) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    @Override
+    public void flush() {
+        // Wait until everything published so far has been written.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        long target = accepted.get();
+        while (running && completed < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    @Override
+    public void close() throws SecurityException {
+        if (!running) return;
+
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        try {
+            while (running) {
+                if (!writeBatch()) {
+                    waiting = true;
+                    if (buffer.isEmpty() && running) {
+                        LockSupport.parkNanos(this, flushIntervalNanos);
+                    }
+                    waiting = false;
+                }
+            }
+
+            // Write whatever is left before shutting down.
+            while (writeBatch()) {
+                // keep draining
+            }
+        } finally {
+            try {
+                if (channel != null && path != null) {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                reportError(e.getMessage(), e, ErrorManager.CLOSE_FAILURE);
+            }
+        }
+    }
+
+    /**
+     * Format up to one batch of records and write it with a single channel write.
+     *
+     * @return false if there was nothing to write
+     */
+    private boolean writeBatch() {
+        Formatter formatter = getFormatter();
+        text.setLength(0);
+
+        int count = 0;
+        Event event;
+        while (count < MAX_BATCH && text.length() < MAX_BATCH_CHARS && (event = buffer.poll()) != null) {
+            try {
+                if (formatter instanceof LogFormatter) {
+                    ((LogFormatter) formatter).format(text, event.record, event.threadName, event.sourceInfo, event.located);
+                } else {
+                    text.append(formatter.format(event.record));
+                }
+            } catch (RuntimeException e) {
+                reportError(e.getMessage(), e, ErrorManager.FORMAT_FAILURE);
+            }
+            count++;
+        }
+
+        if (count == 0) {
+            return false;
+        }
+
+        try {
+            rollIfNeeded();
+        } catch (IOException e) {
+            reportError(e.getMessage(), e, ErrorManager.OPEN_FAILURE);
+        }
+        try {
+            write(text);
+        } catch (IOException e) {
+            reportError(e.getMessage(), e, ErrorManager.WRITE_FAILURE);
+        }
+        completed += count;
+        return true;
+    }
+
+    private void write(CharSequence chars) throws IOException {
+        CharBuffer in = CharBuffer.wrap(chars);
+        encoder.reset();
+        bytes.clear();
+        for (; ; ) {
+            CoderResult result = encoder.encode(in, bytes, true);
+            if (result.isOverflow()) {
+                if (bytes.position() == 0) {
+                    bytes = ByteBuffer.allocateDirect(bytes.capacity() * 2);
+                    continue;
+                }
+                flushBytes();
+                continue;
+            }
+            encoder.flush(bytes);
+            break;
+        }
+        flushBytes();
+    }
+
+    private void flushBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            written += channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    private void open() throws IOException {
+        if (path == null) {
+            channel = new FileOutputStream(FileDescriptor.err).getChannel();
+            return;
+        }
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        written = channel.size();
+    }
+
+    private void rollIfNeeded() throws IOException {
+        if (path == null) return;
+        if (!channel.isOpen()) {
+            // The file could not be opened after the last roll
+            open();
+        }
+
+        long now = System.currentTimeMillis();
+        boolean bySize = maxFileSize > 0 && written >= maxFileSize;
+        boolean byTime = now >= nextRollAt;
+        if (!bySize && !byTime) return;
+
+        channel.close();
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(now));
+        Path target = path.resolveSibling(path.getFileName() + "." + stamp);
+        for (int i = 1; Files.exists(target); i++) {
+            target = path.resolveSibling(path.getFileName() + "." + stamp + "." + i);
+        }
+        try {
+            Files.move(path, target);
+        } finally {
+            // Carry on in a new file, or in the old one if it could not be moved
+            open();
+        }
+
+        if (rollingIntervalMillis > 0) {
+            nextRollAt = now + rollingIntervalMillis;
+        }
+    }
+
+    private static final class Event {
+        final LogRecord record;
+        final String threadName;
+        final LogFormatter.LogSourceInfo sourceInfo;
+        final boolean located;
+
+        Event(LogRecord record, String threadName, LogFormatter.LogSourceInfo sourceInfo, boolean located) {
+            this.record = record;
+            this.threadName = threadName;
+            this.sourceInfo = sourceInfo;
+            this.located = located;
+        }
+    }
+}
@@ -47,8 +47,25 @@ public class LogFormatter extends Formatter {
 
     @Override
     public String format(LogRecord record) {
-        StringBuilder builder = new StringBuilder();
+        StringBuilder builder = new StringBuilder(128);
+        format(builder, record, Thread.currentThread().getName(), locate(), true);
+        return builder.toString();
+    }
 
+    /**
+     * Append the formatted record to the given builder. This allows callers that
+     * format on another thread, such as {@link AsyncLogHandler}, to pass the
+     * thread name and source location captured when the record was published,
+     * and to reuse one builder for many records.
+     *
+     * @param builder    target builder
+     * @param record     the log record
+     * @param threadName name of the thread that published the record
+     * @param sourceInfo caller location, or null to fall back to the record's source
+     * @param inferSource whether the record's source may be used, which the record infers from the
+     *                    current stack if it was not given; otherwise the logger name is shown
+     */
+    void format(StringBuilder builder, LogRecord record, String threadName, LogSourceInfo sourceInfo, boolean inferSource) {
         // 1. Colorized level and timestamp
         if (useColor) {
             builder.append(getColorForLevel(record.getLevel()));
@@ -57,14 +74,16 @@ public class LogFormatter extends Formatter {
         // Timestamp
         builder.append(dateFormat.format(new Date(record.getMillis())));
         builder.append(" [");
-        builder.append(Thread.currentThread().getName());
+        builder.append(threadName);
         builder.append("] ");
 
         // Level
-        builder.append(String.format("%-7s", record.getLevel().getLocalizedName()));
+        String levelName = record.getLevel().getLocalizedName();
+        builder.append(levelName);
+        for (int i = levelName.length(); i < 7; i++) {
+            builder.append(' ');
+        }
 
-        // Resolve caller source info using StackWalker
-        LogSourceInfo sourceInfo = getSourceInfo();
         if (sourceInfo != null) {
             String className = sourceInfo.className;
             if (className.startsWith("org.tinystruct.")) {
@@ -77,7 +96,7 @@ public class LogFormatter extends Formatter {
             builder.append("]");
         } else {
             // Fallback to LogRecord's source if StackWalker didn't find anything
-            if (record.getSourceClassName() != null) {
+            if (inferSource && record.getSourceClassName() != null) {
                 String className = record.getSourceClassName();
                 if (className.startsWith("org.tinystruct.")) {
                     className = className.substring("org.tinystruct.".length());
@@ -107,19 +126,23 @@ public class LogFormatter extends Formatter {
             StringWriter sw = new StringWriter();
             PrintWriter pw = new PrintWriter(sw);
             record.getThrown().printStackTrace(pw);
-            builder.append(sw.toString());
+            builder.append(sw);
         }
-
-        return builder.toString();
     }
 
-    private LogSourceInfo getSourceInfo() {
+    /**
+     * Resolve the caller source info using StackWalker.
+     *
+     * @return the first frame outside the logging framework, or null
+     */
+    static LogSourceInfo locate() {
         try {
             return StackWalker.getInstance()
                     .walk(frames -> frames
                             .filter(f -> !f.getClassName().startsWith("java.util.logging.") &&
                                          !f.getClassName().equals("org.tinystruct.system.logging.LogFormatter") &&
-                                         !f.getClassName().equals("org.tinystruct.system.logging.LoggerConfigurer"))
+                                         !f.getClassName().equals("org.tinystruct.system.logging.LoggerConfigurer") &&
+                                         !f.getClassName().equals("org.tinystruct.system.logging.AsyncLogHandler"))
                             .findFirst()
                             .map(f -> new LogSourceInfo(f.getFileName(), f.getClassName(), f.getMethodName(), f.getLineNumber()))
                             .orElse(null));
@@ -143,7 +166,7 @@ public class LogFormatter extends Formatter {
         return ANSI_WHITE;
     }
 
-    private static class LogSourceInfo {
+    static class LogSourceInfo {
         final String fileName;
         final String className;
         final String methodName;
@@ -16,6 +16,10 @@
 package org.tinystruct.system.logging;
 
 import org.tinystruct.system.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.logging.*;
 
 public final class LoggerConfigurer {
@@ -44,6 +48,10 @@ public final class LoggerConfigurer {
         Handler[] handlers = rootLogger.getHandlers();
         for (Handler handler : handlers) {
             rootLogger.removeHandler(handler);
+            // Async handlers own a writer thread and an open file
+            if (handler instanceof AsyncLogHandler) {
+                handler.close();
+            }
         }
 
         if (!enabled) {
@@ -57,12 +65,19 @@ public final class LoggerConfigurer {
         Level level = parseLevel(levelStr, Level.INFO);
         rootLogger.setLevel(level);
 
-        // 3. Create our custom LogFormatter and ConsoleHandler
-        LogFormatter formatter = new LogFormatter();
-        ConsoleHandler consoleHandler = new ConsoleHandler();
-        consoleHandler.setFormatter(formatter);
-        consoleHandler.setLevel(Level.ALL); // Let the individual loggers/root logger control level filtering
-        rootLogger.addHandler(consoleHandler);
+        // 3. Create our custom LogFormatter and ConsoleHandler, or the asynchronous handler if enabled
+        Handler handler = null;
+        if ("TRUE".equalsIgnoreCase(config.get("logging.async.enabled").trim())) {
+            handler = createAsyncHandler(config);
+        }
+
+        if (handler == null) {
+            LogFormatter formatter = new LogFormatter();
+            handler = new ConsoleHandler();
+            handler.setFormatter(formatter);
+        }
+        handler.setLevel(Level.ALL); // Let the individual loggers/root logger control level filtering
+        rootLogger.addHandler(handler);
 
         // 4. Look for individual logger level overrides in the configuration
         for (String propertyName : config.propertyNames()) {
@@ -77,6 +92,74 @@ public final class LoggerConfigurer {
         }
     }
 
+    /**
+     * Create an {@link AsyncLogHandler} from the following properties:
+     * <ul>
+     *     <li>logging.file - log file path, standard error if empty</li>
+     *     <li>logging.file.max_size - roll the file at this size, e.g. 100MB</li>
+     *     <li>logging.file.rolling - roll the file HOURLY or DAILY</li>
+     *     <li>logging.async.capacity - ring buffer capacity (default 8192)</li>
+     *     <li>logging.async.overflow - DROP or BLOCK when the buffer is full (default DROP)</li>
+     *     <li>logging.async.location_level - capture caller location from this level (default WARNING)</li>
+     *     <li>logging.async.flush_interval - maximum write delay in milliseconds (default 200)</li>
+     * </ul>
+     *
+     * @return the handler, or null if the log file cannot be opened
+     */
+    private static Handler createAsyncHandler(Configuration<String> config) {
+        String file = config.get("logging.file").trim();
+        int capacity = (int) parseSize(config.get("logging.async.capacity"), AsyncLogHandler.DEFAULT_CAPACITY);
+        AsyncLogHandler.OverflowPolicy policy = "BLOCK".equalsIgnoreCase(config.get("logging.async.overflow").trim())
+                ? AsyncLogHandler.OverflowPolicy.BLOCK : AsyncLogHandler.OverflowPolicy.DROP;
+
+        AsyncLogHandler handler;
+        try {
+            handler = new AsyncLogHandler(file.isEmpty() ? null : Paths.get(file), capacity, policy);
+        } catch (IOException e) {
+            System.err.println("Unable to open log file " + file + ": " + e.getMessage());
+            return null;
+        }
+
+        handler.setLocationLevel(parseLevel(config.get("logging.async.location_level"), Level.WARNING));
+        handler.setFlushInterval(Duration.ofMillis(parseSize(config.get("logging.async.flush_interval"), 200)));
+        handler.setMaxFileSize(parseSize(config.get("logging.file.max_size"), 0));
+
+        String rolling = config.get("logging.file.rolling").trim().toUpperCase();
+        if ("HOURLY".equals(rolling)) {
+            handler.setRollingInterval(Duration.ofHours(1));
+        } else if ("DAILY".equals(rolling)) {
+            handler.setRollingInterval(Duration.ofDays(1));
+        }
+
+        return handler;
+    }
+
+    /**
+     * Parse a number with an optional KB, MB or GB suffix.
+     */
+    private static long parseSize(String value, long defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        value = value.trim().toUpperCase();
+        long multiplier = 1;
+        if (value.endsWith("KB")) {
+            multiplier = 1024L;
+        } else if (value.endsWith("MB")) {
+            multiplier = 1024L * 1024;
+        } else if (value.endsWith("GB")) {
+            multiplier = 1024L * 1024 * 1024;
+        }
+        if (multiplier > 1) {
+            value = value.substring(0, value.length() - 2).trim();
+        }
+        try {
+            return Long.parseLong(value) * multiplier;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     /**
      * Map common logging level string patterns to JUL Level instances.
      */
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.system.metrics;
+
+import org.tinystruct.system.annotation.Action.Mode;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Invocation time and failures of the actions behind one route, kept apart
+ * for each mode the route is called in. The metrics of a mode are registered
+ * on its first call, and looked up by the mode's ordinal afterwards.
+ */
+public final class ActionMetrics {
+    private static final String DURATION = "tinystruct_action_duration_seconds";
+    private static final String ERRORS = "tinystruct_action_errors_total";
+    private static final Mode[] MODES = Mode.values();
+    private static final ConcurrentHashMap<String, ActionMetrics> routes = new ConcurrentHashMap<>();
+
+    private final String route;
+    private final AtomicReferenceArray<LatencyHistogram> durations = new AtomicReferenceArray<>(MODES.length);
+    private final AtomicReferenceArray<Counter> errors = new AtomicReferenceArray<>(MODES.length);
+
+    private ActionMetrics(String route) {
+        this.route = route;
+    }
+
+    /**
+     * @param route the path rule of the route
+     * @return the metrics of the route
+     */
+    public static ActionMetrics of(String route) {
+        ActionMetrics metrics = routes.get(route);
+        return metrics != null ? metrics : routes.computeIfAbsent(route, ActionMetrics::new);
+    }
+
+    /**
+     * Record one invocation.
+     *
+     * @param mode   the mode the action was called in
+     * @param nanos  time taken by the action
+     * @param failed true if the action threw
+     */
+    public void record(Mode mode, long nanos, boolean failed) {
+        int i = mode.ordinal();
+        LatencyHistogram duration = durations.get(i);
+        if (duration == null) {
+            duration = MetricsRegistry.getInstance().timer(DURATION, "Time taken by actions, per route and mode", "route", route, "mode", mode.name());
+            durations.set(i, duration);
+        }
+        duration.record(nanos);
+
+        if (failed) {
+            Counter counter = errors.get(i);
+            if (counter == null) {
+                counter = MetricsRegistry.getInstance().counter(ERRORS, "Actions that threw, per route and mode", "route", route, "mode", mode.name());
+                errors.set(i, counter);
+            }
+            counter.increment();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.system.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonic counter. Increments from many threads land on striped cells
+ * and are only summed when the counter is read, so counting on a hot path
+ * costs no more than an uncontended atomic add.
+ */
+public final class Counter {
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * @param amount a non-negative amount
+     */
+    public void add(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("A counter only goes up: " + amount);
+        }
+        count.add(amount);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.system.metrics;
+
+/**
+ * A value sampled when the metrics are read, such as a queue depth or the
+ * number of open sessions. Implementations must be cheap and must not block.
+ */
+@FunctionalInterface
+public interface Gauge {
+
+    /**
+     * @return the current value
+     */
+    long value();
+}
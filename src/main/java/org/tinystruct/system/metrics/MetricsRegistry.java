@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.system.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * The metrics of the running framework, written out in the Prometheus text
+ * format by the <code>metrics</code> action.
+ * <p>
+ * A metric is registered once, under a name and an optional list of label
+ * pairs, and the returned {@link Counter} or {@link LatencyHistogram} is kept
+ * by the caller: recording on a hot path then touches no map and allocates
+ * nothing. Registering the same name and labels again returns the same
+ * instance.
+ * </p>
+ *
+ * <pre>
+ * private static final LatencyHistogram RENDER_TIME = MetricsRegistry.getInstance()
+ *         .timer("tinystruct_template_render_seconds", "Time to render a template", "template", "default");
+ * </pre>
+ * <p>
+ * Histograms are exported as summaries with the 50th, 90th and 99th
+ * percentiles. A timer is a histogram of nanoseconds, exported in seconds.
+ * </p>
+ */
+public final class MetricsRegistry {
+    private static final Logger logger = Logger.getLogger(MetricsRegistry.class.getName());
+    private static final Pattern NAME = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+    private static final Pattern LABEL = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    /**
+     * The content type of {@link #scrape()}.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final ConcurrentSkipListMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+    MetricsRegistry() {
+    }
+
+    public static MetricsRegistry getInstance() {
+        return SingletonHolder.registry;
+    }
+
+    /**
+     * Get or register a counter.
+     *
+     * @param name   metric name, e.g. <code>tinystruct_http_requests_total</code>
+     * @param help   description of the metric
+     * @param labels label names and values, alternately
+     * @return the counter
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, Type.COUNTER).metrics.computeIfAbsent(labels(labels), k -> new Counter());
+    }
+
+    /**
+     * Get or register a histogram of durations, recorded in nanoseconds and
+     * exported in seconds.
+     *
+     * @param name   metric name, ending with <code>_seconds</code>
+     * @param help   description of the metric
+     * @param labels label names and values, alternately
+     * @return the histogram
+     */
+    public LatencyHistogram timer(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, Type.TIMER).metrics.computeIfAbsent(labels(labels), k -> new LatencyHistogram());
+    }
+
+    /**
+     * Get or register a histogram of values exported as they are recorded,
+     * such as sizes in bytes.
+     *
+     * @param name   metric name
+     * @param help   description of the metric
+     * @param labels label names and values, alternately
+     * @return the histogram
+     */
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, Type.SUMMARY).metrics.computeIfAbsent(labels(labels), k -> new LatencyHistogram());
+    }
+
+    /**
+     * Register a gauge, replacing any gauge registered under the same name
+     * and labels.
+     *
+     * @param name   metric name
+     * @param help   description of the metric
+     * @param gauge  the gauge
+     * @param labels label names and values, alternately
+     */
+    public void gauge(String name, String help, Gauge gauge, String... labels) {
+        if (gauge == null) {
+            throw new IllegalArgumentException("The gauge cannot be null.");
+        }
+        family(name, help, Type.GAUGE).metrics.put(labels(labels), gauge);
+    }
+
+    /**
+     * Remove a metric.
+     *
+     * @param name   metric name
+     * @param labels label names and values, alternately
+     * @return true if the metric was registered
+     */
+    public boolean remove(String name, String... labels) {
+        Family family = families.get(name);
+        return family != null && family.metrics.remove(labels(labels)) != null;
+    }
+
+    /**
+     * Write all metrics in the Prometheus text exposition format.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public void write(Appendable out) throws IOException {
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            if (family.metrics.isEmpty()) continue;
+
+            out.append("# HELP ").append(name).append(' ').append(escape(family.help, false)).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type.text).append('\n');
+            for (Map.Entry<String, Object> metric : family.metrics.entrySet()) {
+                String labels = metric.getKey();
+                Object value = metric.getValue();
+                switch (family.type) {
+                    case COUNTER:
+                        sample(out, name, labels, null, Long.toString(((Counter) value).count()));
+                        break;
+                    case GAUGE:
+                        long sampled;
+                        try {
+                            sampled = ((Gauge) value).value();
+                        } catch (RuntimeException e) {
+                            logger.log(Level.FINE, "Gauge " + name + " failed: " + e.getMessage(), e);
+                            continue;
+                        }
+                        sample(out, name, labels, null, Long.toString(sampled));
+                        break;
+                    default:
+                        summary(out, name, labels, (LatencyHistogram) value, family.type == Type.TIMER ? 1e9 : 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return all metrics in the Prometheus text exposition format
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        try {
+            write(out);
+        } catch (IOException e) {
+            // Not thrown by a StringBuilder
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private static void summary(Appendable out, String name, String labels, LatencyHistogram histogram, double unit) throws IOException {
+        // Read the count first: percentiles and sum then cover at least these values
+        long count = histogram.count();
+        for (double quantile : QUANTILES) {
+            sample(out, name, labels, "quantile=\"" + quantile + "\"", format(histogram.percentile(quantile * 100), unit));
+        }
+        sample(out, name + "_sum", labels, null, format(histogram.sum(), unit));
+        sample(out, name + "_count", labels, null, Long.toString(count));
+    }
+
+    private static void sample(Appendable out, String name, String labels, String extra, String value) throws IOException {
+        out.append(name);
+        if (!labels.isEmpty() || extra != null) {
+            out.append('{').append(labels);
+            if (extra != null) {
+                if (!labels.isEmpty()) out.append(',');
+                out.append(extra);
+            }
+            out.append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String format(long value, double unit) {
+        return unit == 1 ? Long.toString(value) : Double.toString(value / unit);
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.get(name);
+        if (family == null) {
+            if (name == null || !NAME.matcher(name).matches()) {
+                throw new IllegalArgumentException("Invalid metric name: " + name);
+            }
+            family = families.computeIfAbsent(name, k -> new Family(type, help));
+        }
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type.name().toLowerCase());
+        }
+        return family;
+    }
+
+    /**
+     * Render label pairs as they appear in a sample, which is also the key
+     * of the metric within its family.
+     */
+    private static String labels(String... labels) {
+        if (labels == null || labels.length == 0) return "";
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as name and value pairs.");
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (labels[i] == null || !LABEL.matcher(labels[i]).matches() || labels[i].startsWith("__") || "quantile".equals(labels[i])) {
+                throw new IllegalArgumentException("Invalid label name: " + labels[i]);
+            }
+            if (i > 0) text.append(',');
+            text.append(labels[i]).append("=\"").append(escape(labels[i + 1] != null ? labels[i + 1] : "", true)).append('"');
+        }
+        return text.toString();
+    }
+
+    private static String escape(String value, boolean quotes) {
+        if (value == null) return "";
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement = c == '\\' ? "\\\\" : c == '\n' ? "\\n" : c == '"' && quotes ? "\\\"" : null;
+            if (replacement != null) {
+                if (escaped == null) escaped = new StringBuilder(value.length() + 8).append(value, 0, i);
+                escaped.append(replacement);
+            } else if (escaped != null) {
+                escaped.append(c);
+            }
+        }
+        return escaped != null ? escaped.toString() : value;
+    }
+
+    private enum Type {
+        COUNTER("counter"), GAUGE("gauge"), SUMMARY("summary"), TIMER("summary");
+
+        final String text;
+
+        Type(String text) {
+            this.text = text;
+        }
+    }
+
+    private static final class Family {
+        final Type type;
+        final String help;
+        final ConcurrentSkipListMap<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+        Family(Type type, String help) {
+            this.type = type;
+            this.help = help != null ? help : "";
+        }
+    }
+
+    private static final class SingletonHolder {
+        static final MetricsRegistry registry = new MetricsRegistry();
+    }
+}
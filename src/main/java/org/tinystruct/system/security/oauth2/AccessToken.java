@@ -0,0 +1,73 @@
+package org.tinystruct.system.security.oauth2;
+
+import java.time.Instant;
+
+/**
+ * An access token issued by an OAuth2 token endpoint.
+ */
+public final class AccessToken {
+    private final String value;
+    private final String type;
+    private final String scope;
+    private final Instant issuedAt;
+    private final Instant expiresAt;
+
+    public AccessToken(String value, String type, String scope, Instant issuedAt, Instant expiresAt) {
+        this.value = value;
+        this.type = type == null || type.isEmpty() ? "Bearer" : type;
+        this.scope = scope;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @return the token
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return the token type, Bearer unless the server said otherwise
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return the scope granted, or null if the server did not report it
+     */
+    public String getScope() {
+        return scope;
+    }
+
+    public Instant getIssuedAt() {
+        return issuedAt;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * @param now the current time
+     * @return true if the token has expired
+     */
+    public boolean isExpired(Instant now) {
+        return !now.isBefore(expiresAt);
+    }
+
+    /**
+     * @return the value of an Authorization header carrying the token
+     */
+    public String authorization() {
+        // RFC 6750 schemes are case-insensitive, but not every server treats "bearer" so
+        return ("bearer".equalsIgnoreCase(type) ? "Bearer" : type) + " " + value;
+    }
+
+    @Override
+    public String toString() {
+        // The token itself is a secret
+        return "AccessToken{type=" + type + ", scope=" + scope + ", expiresAt=" + expiresAt + "}";
+    }
+}
@@ -0,0 +1,76 @@
+package org.tinystruct.system.security.oauth2;
+
+import org.tinystruct.ApplicationException;
+import org.tinystruct.system.security.Credential;
+
+import java.net.URI;
+import java.util.Objects;
+
+/**
+ * The token endpoint, id and secret of an OAuth2 client, read once from a
+ * {@link Credential} so they are not looked up on every token request.
+ */
+public final class ClientCredentials {
+    private final URI tokenUri;
+    private final String clientId;
+    private final String clientSecret;
+
+    public ClientCredentials(URI tokenUri, String clientId, String clientSecret) {
+        this.tokenUri = Objects.requireNonNull(tokenUri, "Token URI cannot be null");
+        this.clientId = Objects.requireNonNull(clientId, "Client id cannot be null");
+        this.clientSecret = Objects.requireNonNull(clientSecret, "Client secret cannot be null");
+    }
+
+    /**
+     * Read the token_uri, client_id and client_secret of a credential.
+     *
+     * @param credential credential
+     * @return client credentials
+     * @throws ApplicationException if the credential is incomplete
+     */
+    public static ClientCredentials of(Credential credential) throws ApplicationException {
+        Objects.requireNonNull(credential, "Credential cannot be null");
+        String tokenUri = credential.get("token_uri");
+        String clientId = credential.get("client_id");
+        String clientSecret = credential.get("client_secret");
+
+        if (tokenUri == null || clientId == null || clientSecret == null) {
+            throw new ApplicationException("Missing required OAuth2 credentials");
+        }
+        try {
+            return new ClientCredentials(URI.create(tokenUri), clientId, clientSecret);
+        } catch (IllegalArgumentException e) {
+            throw new ApplicationException("Invalid token URI: " + tokenUri, e);
+        }
+    }
+
+    public URI getTokenUri() {
+        return tokenUri;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getClientSecret() {
+        return clientSecret;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ClientCredentials)) return false;
+        ClientCredentials that = (ClientCredentials) o;
+        return tokenUri.equals(that.tokenUri) && clientId.equals(that.clientId) && clientSecret.equals(that.clientSecret);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(tokenUri, clientId);
+    }
+
+    @Override
+    public String toString() {
+        return "ClientCredentials{tokenUri=" + tokenUri + ", clientId=" + clientId + "}";
+    }
+}
@@ -0,0 +1,400 @@
+package org.tinystruct.system.security.oauth2;
+
+import org.tinystruct.ApplicationException;
+import org.tinystruct.data.component.Builder;
+import org.tinystruct.net.handlers.HTTPHandler;
+
+import java.io.Closeable;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Caches OAuth2 access tokens obtained with the client credentials flow, per
+ * client and scope, and keeps them fresh.
+ * <p>
+ * A token is served from the cache until shortly before it expires. Once a
+ * share of its lifetime has passed ({@link #setRefreshRatio(double)}), it is
+ * refreshed in the background while the current one is still served, either
+ * when it is next asked for or on a timer if it was asked for since the last
+ * refresh. Concurrent requests for a token that is not in the cache wait on a
+ * single request to the token endpoint. Token requests go through the shared,
+ * asynchronous {@link HTTPHandler#sharedClient()}, so no thread is held while
+ * the endpoint answers, and connections to it are reused.
+ * </p>
+ *
+ * <pre>
+ * ClientCredentials client = ClientCredentials.of(credential);
+ * request.setHeader("Authorization", tokens.getToken(client, "read").authorization());
+ * </pre>
+ */
+public class TokenManager implements Closeable {
+    private static final Logger logger = Logger.getLogger(TokenManager.class.getName());
+    private static final String CONTENT_TYPE = "application/x-www-form-urlencoded";
+    private static final String BASIC_AUTH_PREFIX = "Basic ";
+    // Lifetime assumed when the token endpoint leaves out expires_in
+    private static final long DEFAULT_LIFETIME = TimeUnit.MINUTES.toMillis(5);
+
+    private final HttpClient client;
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private volatile long expiryMargin = TimeUnit.SECONDS.toMillis(30);
+    private volatile double refreshRatio = 0.8;
+    private volatile long retryDelay = TimeUnit.SECONDS.toMillis(5);
+    private volatile Duration timeout = Duration.ofSeconds(30);
+
+    /**
+     * Create a token manager using the shared HTTP client.
+     */
+    public TokenManager() {
+        this(HTTPHandler.sharedClient());
+    }
+
+    /**
+     * @param client HTTP client for the token requests
+     */
+    public TokenManager(HttpClient client) {
+        this.client = client;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "oauth2-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stop serving a token this long before it expires, so it is not sent
+     * about to expire. At most half of the lifetime of a token. Default 30
+     * seconds.
+     *
+     * @param margin margin
+     * @param unit   unit of the margin
+     * @return this manager
+     */
+    public TokenManager setExpiryMargin(long margin, TimeUnit unit) {
+        this.expiryMargin = unit.toMillis(margin);
+        return this;
+    }
+
+    /**
+     * Refresh a token in the background once this share of its lifetime has
+     * passed. Default 0.8.
+     *
+     * @param refreshRatio share of the lifetime, between 0 and 1
+     * @return this manager
+     */
+    public TokenManager setRefreshRatio(double refreshRatio) {
+        if (refreshRatio <= 0 || refreshRatio > 1) {
+            throw new IllegalArgumentException("Refresh ratio must be in (0, 1]: " + refreshRatio);
+        }
+        this.refreshRatio = refreshRatio;
+        return this;
+    }
+
+    /**
+     * Wait this long before trying again after a background refresh failed,
+     * while the current token is still served. Default 5 seconds.
+     *
+     * @param delay delay
+     * @param unit  unit of the delay
+     * @return this manager
+     */
+    public TokenManager setRetryDelay(long delay, TimeUnit unit) {
+        this.retryDelay = unit.toMillis(delay);
+        return this;
+    }
+
+    /**
+     * @param timeout timeout of a token request, 30 seconds by default
+     * @return this manager
+     */
+    public TokenManager setTimeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Get a token for a client and scope without blocking. The future is
+     * complete at once if a token is cached.
+     *
+     * @param client client
+     * @param scope  scope, space separated, or null for the default scope of the client
+     * @return the token, or the failure of the token request
+     */
+    public CompletableFuture<AccessToken> token(ClientCredentials client, String scope) {
+        Objects.requireNonNull(client, "Client cannot be null");
+        String normalized = normalize(scope);
+        Entry entry = this.entries.computeIfAbsent(new Key(client, normalized), key -> new Entry(client, normalized));
+        entry.used = true;
+
+        AccessToken token = entry.token;
+        long now = System.currentTimeMillis();
+        if (token != null && now < entry.usableUntil) {
+            if (now >= entry.refreshAt && now >= entry.retryAt) {
+                this.refresh(entry);
+            }
+            return CompletableFuture.completedFuture(token);
+        }
+        return this.refresh(entry);
+    }
+
+    /**
+     * Get a token for a client and scope, waiting for the token endpoint if no
+     * token is cached.
+     *
+     * @param client client
+     * @param scope  scope, space separated, or null for the default scope of the client
+     * @return the token
+     * @throws ApplicationException if the token request fails
+     */
+    public AccessToken getToken(ClientCredentials client, String scope) throws ApplicationException {
+        CompletableFuture<AccessToken> future = this.token(client, scope);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApplicationException("Interrupted while waiting for an access token", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ApplicationException) {
+                throw (ApplicationException) cause;
+            }
+            throw new ApplicationException("Failed to obtain access token: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Drop the cached token of a client and scope, for example after a resource
+     * server rejected it, so the next request gets a new one.
+     *
+     * @param client client
+     * @param scope  scope
+     */
+    public void invalidate(ClientCredentials client, String scope) {
+        Entry entry = this.entries.get(new Key(client, normalize(scope)));
+        if (entry != null) {
+            entry.token = null;
+        }
+    }
+
+    /**
+     * Stop refreshing tokens in the background. Tokens are still served, and
+     * requested when they are missing.
+     */
+    @Override
+    public void close() {
+        this.scheduler.shutdownNow();
+    }
+
+    /**
+     * Start a token request unless one is in flight for the entry.
+     *
+     * @return the token the request in flight obtains
+     */
+    private CompletableFuture<AccessToken> refresh(Entry entry) {
+        CompletableFuture<AccessToken> future;
+        synchronized (entry) {
+            if (entry.pending != null) {
+                return entry.pending.copy();
+            }
+            future = entry.pending = new CompletableFuture<>();
+        }
+        entry.used = false;
+
+        CompletableFuture<AccessToken> request;
+        try {
+            request = this.request(entry.client, entry.scope);
+        } catch (RuntimeException e) {
+            request = CompletableFuture.failedFuture(e);
+        }
+        request.whenComplete((token, error) -> {
+            if (error == null) {
+                entry.update(token);
+                this.schedule(entry, entry.refreshAt);
+            } else {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                logger.log(Level.WARNING, "Failed to obtain access token for " + entry.client + ": " + cause.getMessage());
+                entry.retryAt = System.currentTimeMillis() + this.retryDelay;
+                if (entry.token != null) {
+                    this.schedule(entry, Math.min(entry.retryAt, entry.usableUntil));
+                }
+                error = cause;
+            }
+
+            synchronized (entry) {
+                entry.pending = null;
+            }
+            if (error == null) {
+                future.complete(token);
+            } else {
+                future.completeExceptionally(error);
+            }
+        });
+        return future.copy();
+    }
+
+    /**
+     * Refresh the token of the entry at a time, if it was asked for since the last refresh.
+     */
+    private void schedule(Entry entry, long time) {
+        try {
+            this.scheduler.schedule(() -> {
+                if (entry.used && entry.token != null) {
+                    this.refresh(entry);
+                }
+            }, Math.max(0, time - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed: tokens are refreshed when they are asked for
+        }
+    }
+
+    private CompletableFuture<AccessToken> request(ClientCredentials client, String scope) {
+        StringBuilder body = new StringBuilder("grant_type=").append(OAuth2Client.GRANT_TYPE.client_credentials.name());
+        if (!scope.isEmpty()) {
+            body.append("&scope=").append(URLEncoder.encode(scope, StandardCharsets.UTF_8));
+        }
+        String credentials = client.getClientId() + ":" + client.getClientSecret();
+
+        HttpRequest request = HttpRequest.newBuilder(client.getTokenUri())
+                .timeout(this.timeout)
+                .header("Content-Type", CONTENT_TYPE)
+                .header("Accept", "application/json")
+                .header("Authorization", BASIC_AUTH_PREFIX + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)))
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+
+        Instant issuedAt = Instant.now();
+        return this.client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    try {
+                        return parse(response, issuedAt);
+                    } catch (ApplicationException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    static AccessToken parse(HttpResponse<String> response, Instant issuedAt) throws ApplicationException {
+        String body = response.body();
+        Builder struct = new Builder();
+        if (body != null && !body.trim().isEmpty()) {
+            try {
+                struct.parse(body);
+            } catch (ApplicationException e) {
+                if (response.statusCode() == 200) {
+                    throw new ApplicationException("Invalid response from OAuth2 server: " + e.getMessage(), e);
+                }
+            }
+        }
+
+        if (response.statusCode() != 200) {
+            Object error = struct.get("error_description") != null ? struct.get("error_description") : struct.get("error");
+            throw new ApplicationException("OAuth2 server responded with status " + response.statusCode()
+                    + (error != null ? ": " + error : ""));
+        }
+
+        Object value = struct.get("access_token");
+        if (value == null) {
+            throw new ApplicationException("Failed to obtain access token from OAuth2 server");
+        }
+
+        long lifetime = DEFAULT_LIFETIME;
+        Object expiresIn = struct.get("expires_in");
+        if (expiresIn instanceof Number) {
+            lifetime = TimeUnit.SECONDS.toMillis(((Number) expiresIn).longValue());
+        } else if (expiresIn != null) {
+            try {
+                lifetime = TimeUnit.SECONDS.toMillis(Long.parseLong(expiresIn.toString().trim()));
+            } catch (NumberFormatException e) {
+                logger.log(Level.FINE, "Invalid expires_in: " + expiresIn);
+            }
+        }
+
+        Object type = struct.get("token_type");
+        Object scope = struct.get("scope");
+        return new AccessToken(value.toString(), type != null ? type.toString() : null,
+                scope != null ? scope.toString() : null, issuedAt, issuedAt.plusMillis(lifetime));
+    }
+
+    /**
+     * The same scopes in another order are the same scope.
+     */
+    private static String normalize(String scope) {
+        if (scope == null || scope.trim().isEmpty()) {
+            return "";
+        }
+        return Arrays.stream(scope.trim().split("\\s+")).distinct().sorted().collect(Collectors.joining(" "));
+    }
+
+    private static final class Key {
+        private final ClientCredentials client;
+        private final String scope;
+
+        Key(ClientCredentials client, String scope) {
+            this.client = client;
+            this.scope = scope;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return client.equals(key.client) && scope.equals(key.scope);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * client.hashCode() + scope.hashCode();
+        }
+    }
+
+    /**
+     * The token of a client and scope, and its refresh.
+     */
+    private final class Entry {
+        final ClientCredentials client;
+        final String scope;
+        volatile AccessToken token;
+        volatile long usableUntil;
+        volatile long refreshAt;
+        volatile long retryAt;
+        // Asked for since the last refresh started
+        volatile boolean used;
+        // Guarded by the entry
+        CompletableFuture<AccessToken> pending;
+
+        Entry(ClientCredentials client, String scope) {
+            this.client = client;
+            this.scope = scope;
+        }
+
+        void update(AccessToken token) {
+            long issuedAt = token.getIssuedAt().toEpochMilli();
+            long lifetime = Math.max(0, token.getExpiresAt().toEpochMilli() - issuedAt);
+            long margin = Math.min(expiryMargin, lifetime / 2);
+            this.usableUntil = issuedAt + lifetime - margin;
+            this.refreshAt = Math.min(issuedAt + (long) (lifetime * refreshRatio), this.usableUntil);
+            this.retryAt = 0;
+            this.token = token;
+        }
+    }
+}
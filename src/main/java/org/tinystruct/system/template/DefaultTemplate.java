@@ -21,8 +21,10 @@ import org.tinystruct.ApplicationRuntimeException;
 import org.tinystruct.application.ActionRegistry;
 import org.tinystruct.application.SharedVariables;
 import org.tinystruct.application.Template;
+import org.tinystruct.dom.XMLPool;
 import org.tinystruct.system.Configuration;
-import org.tinystruct.system.template.variable.DataType;
+import org.tinystruct.system.metrics.LatencyHistogram;
+import org.tinystruct.system.metrics.MetricsRegistry;
 import org.tinystruct.system.template.variable.Variable;
 import org.tinystruct.system.util.TextFileLoader;
 import org.w3c.dom.Document;
@@ -35,20 +37,16 @@ import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
-import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.Map.Entry;
 
 import static org.tinystruct.Application.DEFAULT_BASE_URL;
 
@@ -78,6 +76,8 @@ public class DefaultTemplate implements Template {
     // create a script engine manager
     // create a JavaScript engine
     private static final String engineName = "JavaScript";
+    private static final LatencyHistogram RENDER_TIME = MetricsRegistry.getInstance()
+            .timer("tinystruct_template_render_seconds", "Time to render a template, per kind", "template", "default");
     private final ScriptEngine engine;
     final Application app;
     final ActionRegistry registry = ActionRegistry.getInstance();
@@ -145,14 +145,9 @@ public class DefaultTemplate implements Template {
     }
 
     private Document parseDocument(String content) throws ApplicationException {
-        try (InputStream in = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))) {
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, ""); // Compliant
-            dbf.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, ""); // compliant
-            dbf.setValidating(false);
-            DocumentBuilder builder = dbf.newDocumentBuilder();
-
-            Document doc = builder.parse(in);
+        try (InputStream in = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+             XMLPool.Lease<DocumentBuilder> builder = XMLPool.documentBuilder()) {
+            Document doc = builder.get().parse(in);
             stripEmptyTextNode(doc);
             return doc;
         } catch (ParserConfigurationException | SAXException | IOException e) {
@@ -195,6 +190,15 @@ public class DefaultTemplate implements Template {
 
     @Override
     public String parse() throws ApplicationException {
+        long start = System.nanoTime();
+        try {
+            return render();
+        } finally {
+            RENDER_TIME.record(System.nanoTime() - start);
+        }
+    }
+
+    private String render() throws ApplicationException {
         Configuration<String> config = app.getConfiguration();
         if (config == null) {
             throw new ApplicationException("The configuration for the app has not been set.");
@@ -221,11 +225,8 @@ public class DefaultTemplate implements Template {
                 StringWriter writer = new StringWriter();
                 writer.write("<!DOCTYPE html>\r\n");
                 StreamResult result = new StreamResult(writer);
-                TransformerFactory tf = TransformerFactory.newInstance();
-                tf.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
-                tf.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, ""); // Compliant
-                try {
-                    Transformer transformer = tf.newTransformer();
+                try (XMLPool.Lease<Transformer> lease = XMLPool.transformer()) {
+                    Transformer transformer = lease.get();
                     transformer.setOutputProperty(OutputKeys.INDENT, "no");
                     transformer.setOutputProperty(OutputKeys.MEDIA_TYPE, "xml");
                     transformer.setOutputProperty(OutputKeys.CDATA_SECTION_ELEMENTS, "script");
@@ -240,19 +241,7 @@ public class DefaultTemplate implements Template {
                 this.view = view;
             }
 
-            Set<Entry<String, Variable<?>>> sets = variables.entrySet();
-            for (Entry<String, Variable<?>> v : sets) {
-                Variable<?> variable = v.getValue();
-                if (variable.getType() != DataType.ARRAY) {
-                    String value = variable.getValue().toString().replace("&", "&amp;");
-                    this.view = this.view.replace(v.getKey(), value);
-                }
-            }
-
-            registry.paths().forEach(path -> {
-                final String v = this.generateLink(path);
-                this.view = this.view.replace("[%LINK:" + path + "%]", v);
-            });
+            this.view = new Substitution(this.variables, this::link).apply(this.view);
 
             return this.view;
         }
@@ -260,6 +249,10 @@ public class DefaultTemplate implements Template {
         return this.view;
     }
 
+    private String link(String path) {
+        return registry.paths().contains(path) ? this.generateLink(path) : null;
+    }
+
     /**
      * Get a link.
      *
@@ -18,26 +18,25 @@ package org.tinystruct.system.template;
 import org.tinystruct.Application;
 import org.tinystruct.ApplicationException;
 import org.tinystruct.application.ActionRegistry;
-import org.tinystruct.application.Context;
 import org.tinystruct.application.SharedVariables;
 import org.tinystruct.application.Template;
 import org.tinystruct.system.Configuration;
-import org.tinystruct.system.template.variable.DataType;
+import org.tinystruct.system.metrics.LatencyHistogram;
+import org.tinystruct.system.metrics.MetricsRegistry;
 import org.tinystruct.system.template.variable.Variable;
 import org.tinystruct.system.util.TextFileLoader;
 
 import java.io.InputStream;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
 
 import static org.tinystruct.Application.DEFAULT_BASE_URL;
 import static org.tinystruct.http.Constants.HTTP_HOST;
 
 public class PlainText implements Template {
 
+    private static final LatencyHistogram RENDER_TIME = MetricsRegistry.getInstance()
+            .timer("tinystruct_template_render_seconds", "Time to render a template, per kind", "template", "plain");
     private final Application app;
     private Map<String, Variable<?>> variables;
     private InputStream in;
@@ -82,9 +81,17 @@ public class PlainText implements Template {
 
     @Override
     public String parse() throws ApplicationException {
+        long start = System.nanoTime();
+        try {
+            return render();
+        } finally {
+            RENDER_TIME.record(System.nanoTime() - start);
+        }
+    }
+
+    private String render() throws ApplicationException {
 
         Configuration<String> config = app.getConfiguration();
-        String value;
 
         if (this.text == null) {
             TextFileLoader loader = new TextFileLoader(in);
@@ -97,34 +104,15 @@ public class PlainText implements Template {
             }
         }
 
-        Set<Entry<String, Variable<?>>> sets = variables.entrySet();
-        Iterator<Entry<String, Variable<?>>> iterator = sets
-                .iterator();
-
-        Variable<?> variable;
-        Context ctx = app.getContext();
-
-        while (iterator.hasNext()) {
-            Entry<String, Variable<?>> v = iterator.next();
-            variable = v.getValue();
-
-            if (variable.getType() == DataType.ARRAY) {
-                // TODO
-            } else {
-                value = variable.getValue().toString();
-                value = value.replaceAll("&", "&amp;");
-                this.text = this.text.replace(v.getKey(), value);
-            }
-        }
-
-        registry.paths().forEach(path -> {
-            final String v = this.generateLink(path);
-            this.text = this.text.replace("[%LINK:" + path + "%]", v);
-        });
+        this.text = new Substitution(this.variables, this::link).apply(this.text);
 
         return this.text;
     }
 
+    private String link(String path) {
+        return registry.paths().contains(path) ? this.generateLink(path) : null;
+    }
+
     /**
      * Generate a link.
      *
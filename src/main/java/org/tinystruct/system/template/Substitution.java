@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright  (c) 2013, 2025 James M. ZHOU
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.tinystruct.system.template;
+
+import org.tinystruct.ApplicationRuntimeException;
+import org.tinystruct.system.template.variable.DataType;
+import org.tinystruct.system.template.variable.Variable;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Replaces the variable markers of a template, <code>[%name%]</code> for
+ * shared variables and <code>{%name%}</code> for the variables of an
+ * application, and the links <code>[%LINK:path%]</code>.
+ * <p>
+ * The text is scanned once: every marker found is looked up as it is, so only
+ * the variables and links the text refers to are read, however many there are.
+ * Values are written with <code>&amp;</code> escaped on the way, and a marker
+ * of no variable or link is left as it is. Values are not scanned for markers
+ * in turn.
+ * </p>
+ * <p>
+ * Variables set under a name that is not a marker are replaced wherever the
+ * name occurs, after the markers, as templates always did.
+ * </p>
+ */
+public final class Substitution {
+    private static final String LINK = "[%LINK:";
+
+    private final Map<String, Variable<?>> variables;
+    private final Function<String, String> links;
+
+    /**
+     * @param variables variables by marker
+     * @param links     the link of a path, or null if the path is no action
+     */
+    public Substitution(Map<String, Variable<?>> variables, Function<String, String> links) {
+        this.variables = variables;
+        this.links = links;
+    }
+
+    /**
+     * Replace the markers of a text.
+     *
+     * @param text text
+     * @return the text with its markers replaced
+     */
+    public String apply(String text) {
+        StringBuilder builder = new StringBuilder(text.length() + (text.length() >> 3) + 16);
+        try {
+            this.substitute(text, builder);
+        } catch (IOException e) {
+            // A StringBuilder does not throw
+            throw new ApplicationRuntimeException(e.getMessage(), e);
+        }
+
+        String result = builder.toString();
+        List<String> names = this.names();
+        return names.isEmpty() ? result : this.replace(result, names);
+    }
+
+    /**
+     * Replace the markers of a text, writing it out as it is scanned.
+     *
+     * @param text text
+     * @param out  writer
+     * @throws IOException if the text can not be written
+     */
+    public void apply(String text, Writer out) throws IOException {
+        List<String> names = this.names();
+        if (names.isEmpty()) {
+            this.substitute(text, out);
+        } else {
+            StringWriter writer = new StringWriter(text.length() + (text.length() >> 3) + 16);
+            this.substitute(text, writer);
+            out.write(this.replace(writer.toString(), names));
+        }
+    }
+
+    private void substitute(String text, Appendable out) throws IOException {
+        int length = text.length();
+        int position = 0;
+        int copied = 0;
+        // Where the next %] and %} are, so unclosed markers do not make the scan quadratic
+        int bracket = -2;
+        int brace = -2;
+
+        while ((position = text.indexOf('%', position)) >= 0) {
+            if (position == 0 || position + 1 >= length) {
+                position++;
+                continue;
+            }
+
+            char open = text.charAt(position - 1);
+            int close;
+            if (open == '[') {
+                if (bracket != -1 && bracket < position + 1) {
+                    bracket = text.indexOf("%]", position + 1);
+                }
+                close = bracket;
+            } else if (open == '{') {
+                if (brace != -1 && brace < position + 1) {
+                    brace = text.indexOf("%}", position + 1);
+                }
+                close = brace;
+            } else {
+                position++;
+                continue;
+            }
+
+            if (close < 0) {
+                position++;
+                continue;
+            }
+
+            int start = position - 1;
+            int end = close + 2;
+            String marker = text.substring(start, end);
+            if (this.resolve(marker, text, copied, start, out)) {
+                copied = end;
+                position = end;
+            } else {
+                position++;
+            }
+        }
+
+        copy(text, copied, length, out);
+    }
+
+    /**
+     * Write out the text before a marker and the value of the marker.
+     *
+     * @return false if the marker is of no variable or link
+     */
+    private boolean resolve(String marker, String text, int copied, int start, Appendable out) throws IOException {
+        Variable<?> variable = this.variables.get(marker);
+        if (variable != null) {
+            if (variable.getType() == DataType.ARRAY) {
+                return false;
+            }
+            copy(text, copied, start, out);
+            escape(String.valueOf(variable.getValue()), out);
+            return true;
+        }
+
+        if (marker.startsWith(LINK) && marker.charAt(marker.length() - 1) == ']') {
+            String link = this.links.apply(marker.substring(LINK.length(), marker.length() - 2));
+            if (link != null) {
+                copy(text, copied, start, out);
+                out.append(link);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void escape(String value, Appendable out) throws IOException {
+        int copied = 0;
+        int position;
+        while ((position = value.indexOf('&', copied)) >= 0) {
+            copy(value, copied, position, out);
+            out.append("&amp;");
+            copied = position + 1;
+        }
+        copy(value, copied, value.length(), out);
+    }
+
+    private static void copy(String text, int start, int end, Appendable out) throws IOException {
+        if (start >= end) {
+            return;
+        }
+        if (out instanceof Writer) {
+            // Writer.append would copy the range into a string first
+            ((Writer) out).write(text, start, end - start);
+        } else {
+            out.append(text, start, end);
+        }
+    }
+
+    /**
+     * @return the names of the variables that are not markers
+     */
+    private List<String> names() {
+        List<String> names = new ArrayList<>(0);
+        for (Map.Entry<String, Variable<?>> entry : this.variables.entrySet()) {
+            String name = entry.getKey();
+            if (!isMarker(name) && !name.isEmpty() && entry.getValue().getType() != DataType.ARRAY) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    private String replace(String text, List<String> names) {
+        for (String name : names) {
+            Variable<?> variable = this.variables.get(name);
+            if (variable != null) {
+                text = text.replace(name, String.valueOf(variable.getValue()).replace("&", "&amp;"));
+            }
+        }
+        return text;
+    }
+
+    private static boolean isMarker(String name) {
+        int length = name.length();
+        if (length < 4 || name.charAt(1) != '%' || name.charAt(length - 2) != '%') {
+            return false;
+        }
+        char open = name.charAt(0);
+        char close = name.charAt(length - 1);
+        return (open == '[' && close == ']') || (open == '{' && close == '}');
+    }
+}
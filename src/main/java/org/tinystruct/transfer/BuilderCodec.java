@@ -0,0 +1,308 @@
+package org.tinystruct.transfer;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+import org.tinystruct.data.component.Builder;
+import org.tinystruct.data.component.Builders;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of a {@link Builder}, to send messages without
+ * formatting and parsing JSON on each side.
+ * <p>
+ * Every value is a one-byte type tag followed by its data: integers as
+ * zigzag varints, doubles as eight bytes, strings as a varint length and
+ * UTF-8, builders and arrays as a varint count and their entries. Values of
+ * other types are written as their string form, as {@link Builder#toString()}
+ * does.
+ * </p>
+ */
+public final class BuilderCodec implements Serde<Builder> {
+    private static final byte VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte DECIMAL = 7;
+    private static final byte INTEGER = 8;
+    private static final byte STRING = 9;
+    private static final byte BUILDER = 10;
+    private static final byte BUILDERS = 11;
+    private static final byte ARRAY = 12;
+    private static final byte VALUE = 13;
+
+    @Override
+    public Serializer<Builder> serializer() {
+        return (topic, data) -> data == null ? null : encode(data);
+    }
+
+    @Override
+    public Deserializer<Builder> deserializer() {
+        return (topic, data) -> data == null ? null : decode(data);
+    }
+
+    /**
+     * Encode a builder.
+     *
+     * @param builder builder
+     * @return encoded builder
+     */
+    public static byte[] encode(Builder builder) {
+        Output out = new Output();
+        out.write(VERSION);
+        if (builder.isSingleValue()) {
+            out.write(VALUE);
+            writeValue(out, builder.getValue());
+        } else {
+            out.write(BUILDER);
+            writeBuilder(out, builder);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a builder.
+     *
+     * @param data encoded builder
+     * @return builder
+     * @throws SerializationException if the data is not an encoded builder
+     */
+    public static Builder decode(byte[] data) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        try {
+            if (in.get() != VERSION) {
+                throw new SerializationException("Unknown builder encoding version " + data[0]);
+            }
+            byte tag = in.get();
+            if (tag == VALUE) {
+                Object value = readValue(in);
+                if (value instanceof Number) return new Builder((Number) value);
+                if (value instanceof Object[]) return new Builder((Object[]) value);
+                return new Builder(String.valueOf(value));
+            }
+            if (tag != BUILDER) {
+                throw new SerializationException("Unknown builder type " + tag);
+            }
+            return readBuilder(in);
+        } catch (RuntimeException e) {
+            if (e instanceof SerializationException) throw e;
+            throw new SerializationException("Invalid builder encoding: " + e.getMessage(), e);
+        }
+    }
+
+    private static void writeBuilder(Output out, Builder builder) {
+        out.writeVarint(builder.size());
+        for (Map.Entry<String, Object> entry : builder.entrySet()) {
+            out.writeString(entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private static void writeValue(Output out, Object value) {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof String) {
+            out.write(STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.write(INT);
+            out.writeVarlong(zigzag(((Number) value).intValue()));
+        } else if (value instanceof Long) {
+            out.write(LONG);
+            out.writeVarlong(zigzag((Long) value));
+        } else if (value instanceof Double) {
+            out.write(DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof Float) {
+            out.write(FLOAT);
+            out.writeInt(Float.floatToRawIntBits((Float) value));
+        } else if (value instanceof BigDecimal) {
+            out.write(DECIMAL);
+            out.writeString(value.toString());
+        } else if (value instanceof BigInteger) {
+            out.write(INTEGER);
+            out.writeString(value.toString());
+        } else if (value instanceof Builder) {
+            out.write(BUILDER);
+            writeBuilder(out, (Builder) value);
+        } else if (value instanceof Builders) {
+            Builders builders = (Builders) value;
+            out.write(BUILDERS);
+            out.writeVarint(builders.size());
+            for (Builder builder : builders) {
+                writeBuilder(out, builder);
+            }
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            out.write(ARRAY);
+            out.writeVarint(array.length);
+            for (Object element : array) {
+                writeValue(out, element);
+            }
+        } else {
+            out.write(STRING);
+            out.writeString(value.toString());
+        }
+    }
+
+    private static Builder readBuilder(ByteBuffer in) {
+        int size = readVarint(in);
+        Builder builder = new Builder();
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            builder.put(key, readValue(in));
+        }
+        return builder;
+    }
+
+    private static Object readValue(ByteBuffer in) {
+        byte tag = in.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case INT:
+                return (int) unzigzag(readVarlong(in));
+            case LONG:
+                return unzigzag(readVarlong(in));
+            case DOUBLE:
+                return Double.longBitsToDouble(in.getLong());
+            case FLOAT:
+                return Float.intBitsToFloat(in.getInt());
+            case DECIMAL:
+                return new BigDecimal(readString(in));
+            case INTEGER:
+                return new BigInteger(readString(in));
+            case STRING:
+                return readString(in);
+            case BUILDER:
+                return readBuilder(in);
+            case BUILDERS:
+                int count = readVarint(in);
+                Builders builders = new Builders();
+                for (int i = 0; i < count; i++) {
+                    builders.add(readBuilder(in));
+                }
+                return builders;
+            case ARRAY:
+                Object[] array = new Object[readVarint(in)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = readValue(in);
+                }
+                return array;
+            default:
+                throw new SerializationException("Unknown value type " + tag);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarint(in);
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        long value = readVarlong(in);
+        // Every byte, entry or element takes at least a byte
+        if (value < 0 || value > in.remaining()) {
+            throw new SerializationException("Invalid length " + value);
+        }
+        return (int) value;
+    }
+
+    private static long readVarlong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Varint is too long");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * A growable byte array, without the synchronization of ByteArrayOutputStream.
+     */
+    private static final class Output {
+        private byte[] buffer = new byte[128];
+        private int count;
+
+        void write(byte b) {
+            ensure(1);
+            buffer[count++] = b;
+        }
+
+        void writeVarint(int value) {
+            writeVarlong(value);
+        }
+
+        void writeVarlong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[count++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[count++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buffer[count++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[count++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, count, bytes.length);
+            count += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, count);
+        }
+
+        private void ensure(int length) {
+            if (count + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + length));
+            }
+        }
+    }
+}
@@ -5,10 +5,9 @@ import org.tinystruct.ApplicationException;
 import org.tinystruct.data.component.Builder;
 import org.tinystruct.system.ApplicationManager;
 import org.tinystruct.system.annotation.Action;
-import org.tinystruct.valve.Lock;
-import org.tinystruct.valve.Watcher;
 
-import java.util.ArrayDeque;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
@@ -16,14 +15,40 @@ import java.util.concurrent.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Group messaging on top of a {@link MessageLog}: each message is appended once to
+ * the log of its group, and every session of the group reads it through its own
+ * cursor. Messages survive a restart and a session can be replayed from an earlier
+ * offset. The log is configured with these properties:
+ * <ul>
+ *     <li>message.log.path: directory of the log, .messages by default</li>
+ *     <li>message.log.retention.hours: how long messages are kept, 24 by default</li>
+ *     <li>message.log.flush.interval: milliseconds between forcing messages to disk, 200 by default</li>
+ * </ul>
+ */
 public class DistributedMessageQueue extends AbstractApplication implements MessageQueue<String> {
 
+    /**
+     * @deprecated messages are kept in the {@link MessageLog} and no longer pooled;
+     * unused, and to be removed in the next release.
+     */
+    @Deprecated
     protected static final int DEFAULT_MESSAGE_POOL_SIZE = 10;
     private static final long TIMEOUT = 100;
+    /**
+     * @deprecated messages are appended to the {@link MessageLog} of their group;
+     * always empty, and to be removed in the next release.
+     */
+    @Deprecated
     protected final Map<String, BlockingQueue<Builder>> groups = Maps.GROUPS;
+    /**
+     * @deprecated sessions read messages through their cursor in the {@link MessageLog};
+     * always empty, and to be removed in the next release.
+     */
+    @Deprecated
     protected final Map<String, Queue<Builder>> list = Maps.LIST;
     protected final Map<String, Set<String>> sessions = Maps.SESSIONS;
-    private final Lock lock = Watcher.getInstance().acquire();
+    private volatile MessageLog log;
     private ExecutorService service;
     private static final Logger logger = Logger.getLogger(DistributedMessageQueue.class.getName());
 
@@ -42,9 +67,82 @@ public class DistributedMessageQueue extends AbstractApplication implements Mess
                     logger.log(Level.SEVERE, "Service shutdown interrupted", e);
                 }
             }
+            if (log != null) {
+                log.flush();
+            }
         }));
     }
 
+    /**
+     * Use a message log of its own instead of the shared one configured with message.log.path.
+     *
+     * @param log message log
+     */
+    public void setMessageLog(MessageLog log) {
+        this.log = log;
+    }
+
+    /**
+     * Get the message log, opening the shared one on first use.
+     *
+     * @return message log
+     * @throws ApplicationException if the log cannot be opened
+     */
+    public MessageLog getMessageLog() throws ApplicationException {
+        if (this.log == null) {
+            synchronized (this) {
+                if (this.log == null) {
+                    String path = setting("message.log.path", ".messages");
+                    this.log = MessageLog.of(Paths.get(path))
+                            .setRetention(Long.parseLong(setting("message.log.retention.hours", "24")), TimeUnit.HOURS)
+                            .setFlushInterval(Long.parseLong(setting("message.log.flush.interval", "200")), TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        return this.log;
+    }
+
+    private String setting(String name, String defaultValue) {
+        String value = this.getConfiguration() != null ? this.getConfiguration(name) : null;
+        return value != null && !value.trim().isEmpty() ? value.trim() : defaultValue;
+    }
+
+    /**
+     * Subscribe a session to a group. The session receives the messages saved from now on.
+     *
+     * @param groupId   group id
+     * @param sessionId session id
+     * @throws ApplicationException if the message log cannot be opened
+     */
+    public final void subscribe(final Object groupId, final String sessionId) throws ApplicationException {
+        String group = groupId.toString();
+        this.sessions.compute(group, (key, members) -> {
+            Set<String> set = ConcurrentHashMap.newKeySet();
+            if (members != null) set.addAll(members);
+            set.add(sessionId);
+            return set;
+        });
+        this.getMessageLog().subscribe(group, sessionId);
+    }
+
+    /**
+     * Unsubscribe a session from a group.
+     *
+     * @param groupId   group id
+     * @param sessionId session id
+     * @throws ApplicationException if the message log cannot be opened
+     */
+    public final void unsubscribe(final Object groupId, final String sessionId) throws ApplicationException {
+        String group = groupId.toString();
+        this.sessions.computeIfPresent(group, (key, members) -> {
+            Set<String> set = ConcurrentHashMap.newKeySet();
+            set.addAll(members);
+            set.remove(sessionId);
+            return set.isEmpty() ? null : set;
+        });
+        this.getMessageLog().unsubscribe(group, sessionId);
+    }
+
     /**
      * To be used for testing.
      *
@@ -70,8 +168,7 @@ public class DistributedMessageQueue extends AbstractApplication implements Mess
     }
 
     /**
-     * Save message and create a thread for copying it to message list of each
-     * session.
+     * Save message to the log of the group, where every session of the group reads it.
      *
      * @param groupId group id
      * @param builder message
@@ -82,42 +179,37 @@ public class DistributedMessageQueue extends AbstractApplication implements Mess
     }
 
     /**
-     * Save message and create a thread for copying it to message list of each
-     * session.
+     * Save message to the log of the group, where every session of the group reads it.
      *
      * @param groupId  group id
      * @param builder  message
-     * @param listener listener
+     * @param listener listener, run once the message is saved
      * @return builder
      */
     public final String save(final Object groupId, final Builder builder, Runnable listener) {
         String group = groupId.toString();
-        this.groups.computeIfAbsent(group, k -> new ArrayBlockingQueue<Builder>(DEFAULT_MESSAGE_POOL_SIZE));
-
+        String message = builder.toString();
         try {
-            this.groups.get(group).put(builder);
-
-            final BlockingQueue<Builder> messages = this.groups.get(groupId.toString());
-            this.getService().execute(new Runnable() {
-                @Override
-                public void run() {
-                    Builder message;
-                    if ((message = messages.poll()) == null) {
-                        return;
+            MessageLog log = this.getMessageLog();
+            // Sessions added to the group directly rather than subscribed get their cursor here
+            Set<String> members = this.sessions.get(group);
+            if (members != null) {
+                for (String sessionId : members) {
+                    if (log.position(group, sessionId) < 0) {
+                        log.subscribe(group, sessionId);
                     }
-                    copy(groupId, message);
-
-                    if (listener != null)
-                        getService().execute(listener);
                 }
-            });
-
-            return builder.toString();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            logger.log(Level.SEVERE, "Message save interrupted", e);
+            }
+            log.append(group, message.getBytes(StandardCharsets.UTF_8));
+        } catch (ApplicationException e) {
+            logger.log(Level.SEVERE, "Message save failed", e);
             return "{}";
         }
+
+        if (listener != null)
+            this.getService().execute(listener);
+
+        return message;
     }
 
     private ExecutorService getService() {
@@ -126,7 +218,8 @@ public class DistributedMessageQueue extends AbstractApplication implements Mess
     }
 
     /**
-     * Poll message from the messages of the session specified sessionId.
+     * Take the next message for the session specified sessionId, waiting a while
+     * for one if there is none.
      *
      * @param sessionId session id
      * @return message
@@ -135,52 +228,8 @@ public class DistributedMessageQueue extends AbstractApplication implements Mess
     @Action("message/take")
     @Override
     public final String take(final String sessionId) throws ApplicationException {
-        Builder message;
-        Queue<Builder> messages = this.list.get(sessionId);
-        // If there is a new message, then return it directly
-        if ((message = messages.poll()) != null)
-            return message.toString();
-
-        long startTime = System.currentTimeMillis();
-        // Wait for new messages within the timeout period
-        try {
-            lock.tryLock(TIMEOUT, TimeUnit.MILLISECONDS);
-            while ((message = messages.poll()) == null && (System.currentTimeMillis() - startTime) <= TIMEOUT) {
-                // Allow for other threads to execute while waiting
-            }
-        } finally {
-            lock.unlock();
-        }
-
-        return message != null ? message.toString() : "{}";
-    }
-
-    /**
-     * Copy message to the list of each session.
-     *
-     * @param groupId group ID
-     * @param builder message
-     */
-    private void copy(final Object groupId, final Builder builder) {
-        Set<String> groupSessions = sessions.get(groupId.toString());
-        if (groupSessions == null || groupSessions.isEmpty()) {
-            return;
-        }
-
-        // Pre-filter sessions that should receive the message
-        for (String sessionId : groupSessions) {
-            Queue<Builder> sessionQueue = list.get(sessionId);
-            if (sessionQueue != null) {
-                try {
-                    lock.lock();
-                    if (!sessionQueue.offer(builder)) {
-                        logger.warning("Failed to copy message to session: " + sessionId);
-                    }
-                } finally {
-                    lock.unlock();
-                }
-            }
-        }
+        MessageLog.Record message = this.getMessageLog().poll(sessionId, TIMEOUT, TimeUnit.MILLISECONDS);
+        return message != null ? message.getText() : "{}";
     }
 
     /**
@@ -215,10 +264,8 @@ public class DistributedMessageQueue extends AbstractApplication implements Mess
      */
     @Action("message/testing")
     public boolean testing(final int n) throws ApplicationException {
-        this.sessions.put("[M001]", Set.of("{A}", "{B}"));
-        this.groups.put("[M001]", new ArrayBlockingQueue<Builder>(DEFAULT_MESSAGE_POOL_SIZE));
-        this.list.put("{A}", new ArrayDeque<Builder>());
-        this.list.put("{B}", new ArrayDeque<Builder>());
+        this.subscribe("[M001]", "{A}");
+        this.subscribe("[M001]", "{B}");
 
         this.getService().execute(new Runnable() {
             int i = 0;
@@ -300,7 +347,15 @@ public class DistributedMessageQueue extends AbstractApplication implements Mess
 }
 
 class Maps {
+    /**
+     * @deprecated unused, see {@link DistributedMessageQueue#groups}
+     */
+    @Deprecated
     public static final Map<String, BlockingQueue<Builder>> GROUPS = new ConcurrentHashMap<String, BlockingQueue<Builder>>();
+    /**
+     * @deprecated unused, see {@link DistributedMessageQueue#list}
+     */
+    @Deprecated
     public static final Map<String, Queue<Builder>> LIST = new ConcurrentHashMap<String, Queue<Builder>>();
     public static final Map<String, Set<String>> SESSIONS = new ConcurrentHashMap<String, Set<String>>();
 }
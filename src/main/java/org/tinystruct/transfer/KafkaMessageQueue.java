@@ -0,0 +1,503 @@
+package org.tinystruct.transfer;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.tinystruct.ApplicationException;
+import org.tinystruct.data.component.Builder;
+import org.tinystruct.system.Configuration;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Message queue on Kafka, to fan group messages out across nodes.
+ * <p>
+ * Messages are published to one topic, keyed by group so the messages of a group
+ * keep their order, and encoded with {@link BuilderCodec}. The producer sends
+ * asynchronously and batches: {@link #put(Object, String, String)} returns once the
+ * message is handed to it. A poll loop reads the topic with a consumer group and
+ * delivers each message to the sessions of its group on this node, either into a
+ * queue per session read with {@link #take(String)}, or straight to a
+ * {@link Delivery} such as {@code SSEPushManager.getInstance()::push}.
+ * </p>
+ * <p>
+ * Nodes that should each see every message, as for chat, use a consumer group of
+ * their own, which is the default; nodes sharing a consumer group divide the
+ * messages between them. Offsets are committed according to the
+ * {@link CommitStrategy}.
+ * </p>
+ *
+ * <pre>
+ * KafkaMessageQueue queue = new KafkaMessageQueue(settings)
+ *         .setDelivery(SSEPushManager.getInstance()::push)
+ *         .start();
+ * queue.subscribe("room", sessionId);
+ * queue.put("room", sessionId, "Hello");
+ * </pre>
+ */
+public class KafkaMessageQueue implements MessageQueue<String>, Closeable {
+    private static final Logger logger = Logger.getLogger(KafkaMessageQueue.class.getName());
+    private static final long TIMEOUT = 100;
+    private static final String DEFAULT_TOPIC = "tinystruct-messages";
+
+    private final Producer<String, Builder> producer;
+    private final Consumer<String, Builder> consumer;
+    private final String topic;
+    private final Map<String, Set<String>> sessions = new ConcurrentHashMap<>();
+    private final Map<String, BlockingQueue<Builder>> inboxes = new ConcurrentHashMap<>();
+    private final AtomicLong failures = new AtomicLong();
+
+    private volatile Delivery delivery = this::enqueue;
+    private volatile CommitStrategy commitStrategy = CommitStrategy.ASYNC;
+    private volatile Duration pollTimeout = Duration.ofMillis(500);
+    private volatile int inboxCapacity = 1000;
+    private volatile boolean running;
+    private boolean closed;
+    private Thread poller;
+
+    /**
+     * How consumed offsets are committed.
+     */
+    public enum CommitStrategy {
+        /**
+         * Commit a batch before delivering it: a message is never delivered twice,
+         * but may be lost if the node fails while delivering.
+         */
+        AT_MOST_ONCE,
+        /**
+         * Commit a batch once it is delivered, waiting for the commit: a message is
+         * never lost, but may be delivered again after a failure.
+         */
+        SYNC,
+        /**
+         * Commit a batch once it is delivered, without waiting for the commit. When
+         * partitions are revoked and on close the commit is waited for.
+         */
+        ASYNC
+    }
+
+    /**
+     * Hands a message to a session on this node.
+     */
+    @FunctionalInterface
+    public interface Delivery {
+        void deliver(String sessionId, Builder message);
+    }
+
+    /**
+     * Create a queue on the Kafka cluster of the kafka.* settings:
+     * <ul>
+     *     <li>kafka.bootstrap.servers: the cluster, required</li>
+     *     <li>kafka.topic: the topic, tinystruct-messages by default</li>
+     *     <li>kafka.group.id: the consumer group, one per host by default</li>
+     *     <li>kafka.producer.* and kafka.consumer.*: passed to the producer and the consumer</li>
+     * </ul>
+     *
+     * @param config configuration
+     * @throws ApplicationException if kafka.bootstrap.servers is missing
+     */
+    public KafkaMessageQueue(Configuration<String> config) throws ApplicationException {
+        this(new KafkaProducer<>(producerProperties(config), new StringSerializer(), new BuilderCodec().serializer()),
+                new KafkaConsumer<>(consumerProperties(config), new StringDeserializer(), new BuilderCodec().deserializer()),
+                setting(config, "kafka.topic", DEFAULT_TOPIC));
+    }
+
+    /**
+     * Create a queue on a producer and a consumer of its own.
+     *
+     * @param producer producer, closed with the queue
+     * @param consumer consumer, closed with the queue
+     * @param topic    topic
+     */
+    public KafkaMessageQueue(Producer<String, Builder> producer, Consumer<String, Builder> consumer, String topic) {
+        this.producer = producer;
+        this.consumer = consumer;
+        this.topic = topic;
+    }
+
+    /**
+     * Producer settings tuned for throughput: batches of up to 128KB, held for up to
+     * 10ms to fill, compressed with zstd, idempotent and acknowledged by all replicas.
+     *
+     * @param config configuration
+     * @return producer properties
+     * @throws ApplicationException if kafka.bootstrap.servers is missing
+     */
+    static Properties producerProperties(Configuration<String> config) throws ApplicationException {
+        Properties properties = new Properties();
+        properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, servers(config));
+        properties.put(ProducerConfig.ACKS_CONFIG, "all");
+        properties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
+        properties.put(ProducerConfig.LINGER_MS_CONFIG, "10");
+        properties.put(ProducerConfig.BATCH_SIZE_CONFIG, String.valueOf(128 * 1024));
+        properties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "zstd");
+        properties.putAll(prefixed(config, "kafka.producer."));
+        return properties;
+    }
+
+    /**
+     * Consumer settings: offsets committed by the queue, new groups starting at the
+     * latest messages, and fetches of at least 1KB or 50ms.
+     *
+     * @param config configuration
+     * @return consumer properties
+     * @throws ApplicationException if kafka.bootstrap.servers is missing
+     */
+    static Properties consumerProperties(Configuration<String> config) throws ApplicationException {
+        Properties properties = new Properties();
+        properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, servers(config));
+        properties.put(ConsumerConfig.GROUP_ID_CONFIG, setting(config, "kafka.group.id", "tinystruct-" + host()));
+        properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        properties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        properties.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, "1024");
+        properties.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, "50");
+        properties.putAll(prefixed(config, "kafka.consumer."));
+        return properties;
+    }
+
+    private static String servers(Configuration<String> config) throws ApplicationException {
+        String servers = setting(config, "kafka.bootstrap.servers", null);
+        if (servers == null) {
+            throw new ApplicationException("kafka.bootstrap.servers is not set");
+        }
+        return servers;
+    }
+
+    private static String setting(Configuration<String> config, String name, String defaultValue) {
+        String value = config.get(name);
+        return value != null && !value.trim().isEmpty() ? value.trim() : defaultValue;
+    }
+
+    private static Properties prefixed(Configuration<String> config, String prefix) {
+        Properties properties = new Properties();
+        for (String name : config.propertyNames()) {
+            if (name.startsWith(prefix)) {
+                properties.put(name.substring(prefix.length()), config.get(name));
+            }
+        }
+        return properties;
+    }
+
+    private static String host() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+    /**
+     * Set how messages are handed to the sessions on this node. By default they are
+     * queued for {@link #take(String)}.
+     *
+     * @param delivery delivery
+     * @return this queue
+     */
+    public KafkaMessageQueue setDelivery(Delivery delivery) {
+        this.delivery = delivery;
+        return this;
+    }
+
+    /**
+     * Set how consumed offsets are committed, {@link CommitStrategy#ASYNC} by default.
+     *
+     * @param commitStrategy commit strategy
+     * @return this queue
+     */
+    public KafkaMessageQueue setCommitStrategy(CommitStrategy commitStrategy) {
+        this.commitStrategy = commitStrategy;
+        return this;
+    }
+
+    /**
+     * Set how long a poll of the consumer waits for messages.
+     *
+     * @param timeout poll timeout
+     * @param unit    time unit
+     * @return this queue
+     */
+    public KafkaMessageQueue setPollTimeout(long timeout, TimeUnit unit) {
+        this.pollTimeout = Duration.ofMillis(unit.toMillis(timeout));
+        return this;
+    }
+
+    /**
+     * Set how many messages are queued for a session at most before the oldest are dropped.
+     *
+     * @param capacity messages per session
+     * @return this queue
+     */
+    public KafkaMessageQueue setInboxCapacity(int capacity) {
+        this.inboxCapacity = capacity;
+        return this;
+    }
+
+    /**
+     * Subscribe the topic and start delivering messages.
+     *
+     * @return this queue
+     */
+    public synchronized KafkaMessageQueue start() {
+        if (poller == null && !closed) {
+            running = true;
+            poller = new Thread(this::poll, "kafka-message-queue");
+            poller.setDaemon(true);
+            poller.start();
+        }
+        return this;
+    }
+
+    /**
+     * Subscribe a session on this node to a group.
+     *
+     * @param groupId   group id
+     * @param sessionId session id
+     */
+    public void subscribe(Object groupId, String sessionId) {
+        sessions.compute(groupId.toString(), (key, members) -> {
+            if (members == null) members = ConcurrentHashMap.newKeySet();
+            members.add(sessionId);
+            return members;
+        });
+        inboxes.computeIfAbsent(sessionId, key -> new LinkedBlockingQueue<>(inboxCapacity));
+    }
+
+    /**
+     * Unsubscribe a session on this node from a group.
+     *
+     * @param groupId   group id
+     * @param sessionId session id
+     */
+    public void unsubscribe(Object groupId, String sessionId) {
+        sessions.computeIfPresent(groupId.toString(), (key, members) -> {
+            members.remove(sessionId);
+            return members.isEmpty() ? null : members;
+        });
+        if (sessions.values().stream().noneMatch(members -> members.contains(sessionId))) {
+            inboxes.remove(sessionId);
+        }
+    }
+
+    @Override
+    public String put(Object groupId, String sessionId, String message) {
+        if (groupId == null || message == null || message.isEmpty()) {
+            return "{}";
+        }
+
+        final Builder builder = new Builder();
+        builder.put("user", "user_" + sessionId);
+        builder.put("time", System.nanoTime());
+        builder.put("message", message);
+        builder.put("session_id", sessionId);
+
+        return this.save(groupId, builder);
+    }
+
+    /**
+     * Publish a message to a group. The message is sent in the background, with the
+     * other messages batched with it.
+     *
+     * @param groupId group id
+     * @param builder message
+     * @return message
+     */
+    public String save(Object groupId, Builder builder) {
+        String group = groupId.toString();
+        producer.send(new ProducerRecord<>(topic, group, builder), (metadata, exception) -> {
+            if (exception != null) {
+                failures.incrementAndGet();
+                logger.log(Level.WARNING, "Could not publish a message to " + group + ": " + exception.getMessage(), exception);
+            }
+        });
+        return builder.toString();
+    }
+
+    /**
+     * Take the next message queued for a subscribed session, waiting a while for one
+     * if there is none.
+     *
+     * @param sessionId session id
+     * @return message
+     * @throws ApplicationException if interrupted
+     */
+    @Override
+    public String take(String sessionId) throws ApplicationException {
+        BlockingQueue<Builder> inbox = inboxes.get(sessionId);
+        if (inbox == null) {
+            return "{}";
+        }
+        try {
+            Builder message = inbox.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+            return message != null ? message.toString() : "{}";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApplicationException("Interrupted while taking a message", e);
+        }
+    }
+
+    /**
+     * Send the messages batched so far now.
+     */
+    public void flush() {
+        producer.flush();
+    }
+
+    /**
+     * @return number of messages that could not be published
+     */
+    public long failures() {
+        return failures.get();
+    }
+
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            running = false;
+            thread = poller;
+        }
+        if (thread != null) {
+            consumer.wakeup();
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            consumer.close();
+        }
+        producer.close(Duration.ofSeconds(5));
+    }
+
+    private void enqueue(String sessionId, Builder message) {
+        BlockingQueue<Builder> inbox = inboxes.computeIfAbsent(sessionId, key -> new LinkedBlockingQueue<>(inboxCapacity));
+        while (!inbox.offer(message)) {
+            // A session that stopped reading loses its oldest messages
+            inbox.poll();
+        }
+    }
+
+    private void poll() {
+        try {
+            consumer.subscribe(Collections.singletonList(topic), new ConsumerRebalanceListener() {
+                @Override
+                public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                    if (commitStrategy != CommitStrategy.AT_MOST_ONCE) {
+                        commit();
+                    }
+                }
+
+                @Override
+                public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                }
+            });
+
+            while (running) {
+                ConsumerRecords<String, Builder> records;
+                try {
+                    records = consumer.poll(pollTimeout);
+                } catch (WakeupException e) {
+                    break;
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Could not poll " + topic + ": " + e.getMessage(), e);
+                    pause();
+                    continue;
+                }
+                if (records.isEmpty()) {
+                    continue;
+                }
+
+                CommitStrategy strategy = commitStrategy;
+                if (strategy == CommitStrategy.AT_MOST_ONCE) {
+                    commit();
+                }
+                for (ConsumerRecord<String, Builder> record : records) {
+                    dispatch(record);
+                }
+                if (strategy == CommitStrategy.SYNC) {
+                    commit();
+                } else if (strategy == CommitStrategy.ASYNC) {
+                    consumer.commitAsync((offsets, exception) -> {
+                        if (exception != null) {
+                            logger.log(Level.WARNING, "Could not commit " + offsets + ": " + exception.getMessage());
+                        }
+                    });
+                }
+            }
+        } finally {
+            if (commitStrategy != CommitStrategy.AT_MOST_ONCE) {
+                commit();
+            }
+            consumer.close();
+        }
+    }
+
+    private void dispatch(ConsumerRecord<String, Builder> record) {
+        if (record.key() == null || record.value() == null) {
+            return;
+        }
+        Set<String> members = sessions.get(record.key());
+        if (members == null) {
+            return;
+        }
+        Delivery delivery = this.delivery;
+        for (String sessionId : members) {
+            try {
+                delivery.deliver(sessionId, record.value());
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Could not deliver a message to " + sessionId + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void commit() {
+        try {
+            consumer.commitSync();
+        } catch (WakeupException e) {
+            // Closing; the final commit follows
+            running = false;
+            commit();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Could not commit offsets of " + topic + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(pollTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
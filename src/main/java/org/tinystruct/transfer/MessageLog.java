@@ -0,0 +1,853 @@
+package org.tinystruct.transfer;
+
+import org.tinystruct.ApplicationException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Durable, append-only message log, partitioned by group.
+ * <p>
+ * Each group is a directory of segment files, each named after the offset of its
+ * first record. Appends are written without being forced to disk; a background
+ * flusher forces them in batches, every flush interval or as soon as enough records
+ * are pending, so an append never waits for the disk on its own. Closed segments
+ * are deleted once they are older than the retention time, or while the group is
+ * larger than its retention size.
+ * </p>
+ * <p>
+ * Readers either read from an offset, waiting for new records when they are at the
+ * end of the log, or poll through a cursor kept for them per group, which is saved
+ * along with the flushes. A record is stored once however many consumers read it.
+ * </p>
+ *
+ * <pre>
+ * MessageLog log = new MessageLog(Paths.get("messages"));
+ * log.subscribe("room", "alice");
+ * log.append("room", "Hello".getBytes(StandardCharsets.UTF_8));
+ * MessageLog.Record record = log.poll("alice", 1, TimeUnit.SECONDS);
+ * </pre>
+ */
+public final class MessageLog implements Closeable {
+    private static final Logger logger = Logger.getLogger(MessageLog.class.getName());
+    private static final Map<Path, MessageLog> logs = new ConcurrentHashMap<>();
+
+    private static final String SEGMENT = ".log";
+    private static final String CURSORS = "cursors";
+    // Record length, CRC32 of timestamp and payload, timestamp
+    private static final int HEADER = 4 + 4 + 8;
+
+    private final Path directory;
+    private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> subscriptions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private ScheduledFuture<?> flushing;
+
+    private volatile long segmentSize = 8L * 1024 * 1024;
+    private volatile long retention = TimeUnit.DAYS.toMillis(1);
+    private volatile long retentionSize = -1;
+    private volatile long flushInterval = 200;
+    private volatile int flushMessages = 1000;
+    private volatile boolean closed;
+
+    /**
+     * Open a message log, recovering the groups already stored in the directory.
+     *
+     * @param directory directory of the log, created if missing
+     * @throws ApplicationException if the log cannot be opened
+     */
+    public MessageLog(Path directory) throws ApplicationException {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, Files::isDirectory)) {
+                for (Path path : stream) {
+                    String group = decode(path.getFileName().toString());
+                    partitions.put(group, new Partition(group, path));
+                }
+            }
+        } catch (IOException e) {
+            throw new ApplicationException("Could not open the message log in " + directory + ": " + e.getMessage(), e);
+        }
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-log-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.schedule();
+    }
+
+    /**
+     * Get the log shared by everyone using the same directory.
+     *
+     * @param directory directory of the log
+     * @return log
+     * @throws ApplicationException if the log cannot be opened
+     */
+    public static MessageLog of(Path directory) throws ApplicationException {
+        Path key = directory.toAbsolutePath().normalize();
+        MessageLog log = logs.get(key);
+        if (log == null) {
+            synchronized (logs) {
+                if ((log = logs.get(key)) == null) {
+                    logs.put(key, log = new MessageLog(key));
+                }
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Set the size at which the active segment of a group is closed and a new one started.
+     *
+     * @param bytes segment size
+     * @return this log
+     */
+    public MessageLog setSegmentSize(long bytes) {
+        this.segmentSize = Math.max(HEADER, Math.min(Integer.MAX_VALUE, bytes));
+        return this;
+    }
+
+    /**
+     * Set how long records are kept. Zero or less keeps them regardless of age.
+     *
+     * @param time retention time
+     * @param unit time unit
+     * @return this log
+     */
+    public MessageLog setRetention(long time, TimeUnit unit) {
+        this.retention = unit.toMillis(time);
+        return this;
+    }
+
+    /**
+     * Set how many bytes a group keeps at most. Zero or less keeps them regardless of size.
+     *
+     * @param bytes retention size
+     * @return this log
+     */
+    public MessageLog setRetentionSize(long bytes) {
+        this.retentionSize = bytes;
+        return this;
+    }
+
+    /**
+     * Set how often appended records and cursors are forced to disk and old segments removed.
+     *
+     * @param interval flush interval
+     * @param unit     time unit
+     * @return this log
+     */
+    public MessageLog setFlushInterval(long interval, TimeUnit unit) {
+        this.flushInterval = Math.max(1, unit.toMillis(interval));
+        this.schedule();
+        return this;
+    }
+
+    /**
+     * Set how many records may be pending in a group before an append forces them to
+     * disk without waiting for the flusher. Zero or less leaves it to the flusher.
+     *
+     * @param messages pending records
+     * @return this log
+     */
+    public MessageLog setFlushMessages(int messages) {
+        this.flushMessages = messages;
+        return this;
+    }
+
+    /**
+     * Append a record to the log of a group.
+     *
+     * @param group   group
+     * @param payload record
+     * @return offset of the record
+     * @throws ApplicationException if the record cannot be written
+     */
+    public long append(String group, byte[] payload) throws ApplicationException {
+        Partition partition = partition(group);
+        long offset;
+        try {
+            offset = partition.append(payload, System.currentTimeMillis());
+        } catch (IOException e) {
+            throw new ApplicationException("Could not append to the message log of " + group + ": " + e.getMessage(), e);
+        }
+        partition.wake();
+        return offset;
+    }
+
+    /**
+     * Read records of a group from an offset, waiting for the first one if there is
+     * none yet. Reading from before the oldest record kept starts at the oldest.
+     *
+     * @param group   group
+     * @param offset  offset of the first record
+     * @param max     most records to read
+     * @param timeout how long to wait for a record
+     * @param unit    time unit
+     * @return records, empty if none arrived in time
+     * @throws ApplicationException if the log cannot be read
+     */
+    public List<Record> read(String group, long offset, int max, long timeout, TimeUnit unit) throws ApplicationException {
+        Partition partition = partition(group);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        Thread current = Thread.currentThread();
+        partition.waiters.add(current);
+        try {
+            while (true) {
+                List<Record> records = partition.read(offset, max);
+                long remaining = deadline - System.nanoTime();
+                if (!records.isEmpty() || remaining <= 0 || closed || current.isInterrupted()) {
+                    return records;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+        } catch (IOException e) {
+            throw new ApplicationException("Could not read the message log of " + group + ": " + e.getMessage(), e);
+        } finally {
+            partition.waiters.remove(current);
+        }
+    }
+
+    /**
+     * Give a consumer a cursor on a group, starting after the last record appended so far.
+     * A consumer already subscribed keeps its position.
+     *
+     * @param group    group
+     * @param consumer consumer
+     * @return offset of the next record for the consumer
+     * @throws ApplicationException if the group cannot be opened
+     */
+    public long subscribe(String group, String consumer) throws ApplicationException {
+        Partition partition = partition(group);
+        long position = partition.cursors.computeIfAbsent(consumer, key -> {
+            partition.changed = true;
+            return partition.end;
+        });
+        subscriptions.computeIfAbsent(consumer, key -> ConcurrentHashMap.newKeySet()).add(group);
+        return position;
+    }
+
+    /**
+     * Remove the cursor of a consumer on a group.
+     *
+     * @param group    group
+     * @param consumer consumer
+     */
+    public void unsubscribe(String group, String consumer) {
+        Partition partition = partitions.get(group);
+        if (partition != null && partition.cursors.remove(consumer) != null) {
+            partition.changed = true;
+        }
+        subscriptions.computeIfPresent(consumer, (key, groups) -> {
+            groups.remove(group);
+            return groups.isEmpty() ? null : groups;
+        });
+    }
+
+    /**
+     * Move the cursor of a consumer, to replay a group from an earlier offset or to skip ahead.
+     *
+     * @param group    group
+     * @param consumer consumer
+     * @param offset   offset of the next record for the consumer
+     * @throws ApplicationException if the group cannot be opened
+     */
+    public void seek(String group, String consumer, long offset) throws ApplicationException {
+        Partition partition = partition(group);
+        partition.cursors.put(consumer, Math.max(0, offset));
+        partition.changed = true;
+        subscriptions.computeIfAbsent(consumer, key -> ConcurrentHashMap.newKeySet()).add(group);
+        partition.wake();
+    }
+
+    /**
+     * Get the cursor of a consumer on a group.
+     *
+     * @param group    group
+     * @param consumer consumer
+     * @return offset of the next record for the consumer, or -1 if it is not subscribed
+     */
+    public long position(String group, String consumer) {
+        Partition partition = partitions.get(group);
+        return partition != null ? partition.cursors.getOrDefault(consumer, -1L) : -1;
+    }
+
+    /**
+     * Take the next record for a consumer from any group it is subscribed to, and
+     * advance its cursor past it. Waits for a record if there is none yet.
+     *
+     * @param consumer consumer
+     * @param timeout  how long to wait for a record
+     * @param unit     time unit
+     * @return record, or null if none arrived in time
+     * @throws ApplicationException if the log cannot be read
+     */
+    public Record poll(String consumer, long timeout, TimeUnit unit) throws ApplicationException {
+        Set<String> groups = subscriptions.get(consumer);
+        if (groups == null) {
+            return null;
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        Thread current = Thread.currentThread();
+        List<Partition> watched = new ArrayList<>(groups.size());
+        for (String group : groups) {
+            Partition partition = partitions.get(group);
+            if (partition != null) {
+                watched.add(partition);
+                partition.waiters.add(current);
+            }
+        }
+        try {
+            while (true) {
+                for (Partition partition : watched) {
+                    Record record = partition.take(consumer);
+                    if (record != null) {
+                        return record;
+                    }
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || closed || current.isInterrupted()) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+        } catch (IOException e) {
+            throw new ApplicationException("Could not read the message log for " + consumer + ": " + e.getMessage(), e);
+        } finally {
+            for (Partition partition : watched) {
+                partition.waiters.remove(current);
+            }
+        }
+    }
+
+    /**
+     * Get the offset of the oldest record kept for a group.
+     *
+     * @param group group
+     * @return offset
+     */
+    public long startOffset(String group) {
+        Partition partition = partitions.get(group);
+        return partition != null ? partition.start() : 0;
+    }
+
+    /**
+     * Get the offset the next record appended to a group will have.
+     *
+     * @param group group
+     * @return offset
+     */
+    public long endOffset(String group) {
+        Partition partition = partitions.get(group);
+        return partition != null ? partition.end : 0;
+    }
+
+    /**
+     * Force pending records and cursors of every group to disk now.
+     */
+    public void flush() {
+        for (Partition partition : partitions.values()) {
+            try {
+                partition.flush();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not flush the message log of " + partition.group, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        logs.remove(directory.toAbsolutePath().normalize(), this);
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Partition partition : partitions.values()) {
+            partition.wake();
+        }
+        flush();
+        for (Partition partition : partitions.values()) {
+            partition.close();
+        }
+    }
+
+    private synchronized void schedule() {
+        if (closed) {
+            return;
+        }
+        if (flushing != null) {
+            flushing.cancel(false);
+        }
+        flushing = flusher.scheduleWithFixedDelay(() -> {
+            flush();
+            long now = System.currentTimeMillis();
+            for (Partition partition : partitions.values()) {
+                try {
+                    partition.retain(now);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Could not remove old segments of " + partition.group, e);
+                }
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private Partition partition(String group) throws ApplicationException {
+        if (closed) {
+            throw new ApplicationException("The message log in " + directory + " is closed");
+        }
+        Partition partition = partitions.get(group);
+        if (partition == null) {
+            synchronized (partitions) {
+                if ((partition = partitions.get(group)) == null) {
+                    try {
+                        partition = new Partition(group, directory.resolve(encode(group)));
+                    } catch (IOException e) {
+                        throw new ApplicationException("Could not create the message log of " + group + ": " + e.getMessage(), e);
+                    }
+                    partitions.put(group, partition);
+                }
+            }
+        }
+        return partition;
+    }
+
+    private static String encode(String group) {
+        String name = URLEncoder.encode(group, StandardCharsets.UTF_8);
+        // Keep "." and ".." from naming the directory itself or its parent
+        return name.startsWith(".") ? "%2E" + name.substring(1) : name;
+    }
+
+    private static String decode(String name) {
+        return URLDecoder.decode(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A record read from the log.
+     */
+    public static final class Record {
+        private final String group;
+        private final long offset;
+        private final long timestamp;
+        private final byte[] payload;
+
+        Record(String group, long offset, long timestamp, byte[] payload) {
+            this.group = group;
+            this.offset = offset;
+            this.timestamp = timestamp;
+            this.payload = payload;
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        public String getText() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * The log of one group: its segments, the cursors of its consumers and the
+     * threads waiting for it to grow.
+     */
+    private final class Partition {
+        final String group;
+        final Path directory;
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        // Segments by the offset of their first record, guarded by lock
+        final NavigableMap<Long, Segment> segments = new TreeMap<>();
+        final Map<String, Long> cursors = new ConcurrentHashMap<>();
+        final Set<Thread> waiters = ConcurrentHashMap.newKeySet();
+        Segment active;
+        // Records appended since the last flush, guarded by lock
+        int pending;
+        volatile long end;
+        volatile boolean changed;
+
+        Partition(String group, Path directory) throws IOException {
+            this.group = group;
+            this.directory = directory;
+            Files.createDirectories(directory);
+
+            List<Long> bases = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT)) {
+                for (Path path : stream) {
+                    String name = path.getFileName().toString();
+                    try {
+                        bases.add(Long.parseLong(name.substring(0, name.length() - SEGMENT.length())));
+                    } catch (NumberFormatException e) {
+                        logger.warning("Ignoring " + path + " in the message log");
+                    }
+                }
+            }
+            Collections.sort(bases);
+            for (long base : bases) {
+                Segment segment = new Segment(segmentPath(base), base);
+                segments.put(base, segment);
+                active = segment;
+            }
+            if (active == null) {
+                active = new Segment(segmentPath(0), 0);
+                segments.put(0L, active);
+            }
+            end = active.end();
+
+            Path file = directory.resolve(CURSORS);
+            if (Files.exists(file)) {
+                Properties properties = new Properties();
+                properties.load(new StringReader(Files.readString(file, StandardCharsets.UTF_8)));
+                for (String consumer : properties.stringPropertyNames()) {
+                    // Records past the end may have been lost with a torn tail
+                    cursors.put(consumer, Math.min(end, Long.parseLong(properties.getProperty(consumer))));
+                    subscriptions.computeIfAbsent(consumer, key -> ConcurrentHashMap.newKeySet()).add(group);
+                }
+            }
+        }
+
+        long start() {
+            lock.readLock().lock();
+            try {
+                return segments.firstKey();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        long append(byte[] payload, long timestamp) throws IOException {
+            lock.writeLock().lock();
+            try {
+                if (active.size >= segmentSize && active.count > 0) {
+                    // The closed segment is never written again
+                    active.force();
+                    active = new Segment(segmentPath(end), end);
+                    segments.put(active.base, active);
+                }
+                active.append(payload, timestamp);
+                long offset = end++;
+                if (flushMessages > 0 && ++pending >= flushMessages) {
+                    active.force();
+                    pending = 0;
+                }
+                return offset;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        List<Record> read(long offset, int max) throws IOException {
+            lock.readLock().lock();
+            try {
+                long from = Math.max(offset, segments.firstKey());
+                if (from >= end || max <= 0) {
+                    return Collections.emptyList();
+                }
+                List<Record> records = new ArrayList<>((int) Math.min(max, end - from));
+                while (from < end && records.size() < max) {
+                    records.add(segments.floorEntry(from).getValue().read(group, from));
+                    from++;
+                }
+                return records;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        Record take(String consumer) throws IOException {
+            while (true) {
+                Long cursor = cursors.get(consumer);
+                if (cursor == null) {
+                    return null;
+                }
+                List<Record> records = read(cursor, 1);
+                if (records.isEmpty()) {
+                    return null;
+                }
+                Record record = records.get(0);
+                // Another thread polling for the same consumer may have taken it
+                if (cursors.replace(consumer, cursor, record.offset + 1)) {
+                    changed = true;
+                    return record;
+                }
+            }
+        }
+
+        void wake() {
+            for (Thread waiter : waiters) {
+                LockSupport.unpark(waiter);
+            }
+        }
+
+        void flush() throws IOException {
+            Segment segment;
+            lock.writeLock().lock();
+            try {
+                segment = pending > 0 ? active : null;
+                pending = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (segment != null) {
+                segment.force();
+            }
+
+            if (changed) {
+                changed = false;
+                Properties properties = new Properties();
+                cursors.forEach((consumer, cursor) -> properties.setProperty(consumer, String.valueOf(cursor)));
+                StringWriter writer = new StringWriter();
+                properties.store(writer, null);
+                write(directory.resolve(CURSORS), writer.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        void retain(long now) throws IOException {
+            lock.writeLock().lock();
+            try {
+                long size = 0;
+                for (Segment segment : segments.values()) {
+                    size += segment.size;
+                }
+                // Oldest first, never the active segment
+                while (segments.size() > 1) {
+                    Segment oldest = segments.firstEntry().getValue();
+                    boolean expired = retention > 0 && oldest.lastTimestamp < now - retention;
+                    boolean oversized = retentionSize > 0 && size > retentionSize;
+                    if (!expired && !oversized) {
+                        break;
+                    }
+                    segments.remove(oldest.base);
+                    size -= oldest.size;
+                    oldest.release(true);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void close() {
+            lock.writeLock().lock();
+            try {
+                for (Segment segment : segments.values()) {
+                    try {
+                        segment.release(false);
+                    } catch (IOException e) {
+                        logger.log(Level.WARNING, "Could not close " + segment.path, e);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private Path segmentPath(long base) {
+            return directory.resolve(String.format("%020d%s", base, SEGMENT));
+        }
+    }
+
+    /**
+     * A segment file and the position of each of its records.
+     */
+    private static final class Segment {
+        final long base;
+        final Path path;
+        private volatile FileChannel channel;
+        private volatile boolean released;
+        int[] positions = new int[64];
+        int count;
+        long size;
+        long lastTimestamp;
+
+        Segment(Path path, long base) throws IOException {
+            this.base = base;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.recover();
+        }
+
+        /**
+         * Index the records of the segment, cutting off a tail that was not completely written.
+         */
+        private void recover() throws IOException {
+            long length = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            long position = 0;
+            while (position + HEADER <= length) {
+                header.clear();
+                readFully(header, position);
+                header.flip();
+                int size = header.getInt();
+                int checksum = header.getInt();
+                long timestamp = header.getLong();
+                if (size < 0 || position + HEADER + size > length) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(size);
+                readFully(payload, position + HEADER);
+                if (checksum(timestamp, payload.array()) != checksum) {
+                    break;
+                }
+                index((int) position);
+                lastTimestamp = timestamp;
+                position += HEADER + size;
+            }
+            if (position < length) {
+                logger.warning("Truncating " + (length - position) + " bytes of an incomplete record in " + path);
+                channel.truncate(position);
+            }
+            size = position;
+        }
+
+        long end() {
+            return base + count;
+        }
+
+        /**
+         * Get the channel of the segment. An interrupt during I/O closes a file
+         * channel for every thread using it, so it is opened again if that happened.
+         */
+        FileChannel channel() throws IOException {
+            FileChannel current = channel;
+            if (!current.isOpen() && !released) {
+                synchronized (this) {
+                    if (!(current = channel).isOpen()) {
+                        channel = current = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    }
+                }
+            }
+            return current;
+        }
+
+        void force() throws IOException {
+            channel().force(false);
+        }
+
+        void release(boolean delete) throws IOException {
+            released = true;
+            channel.close();
+            if (delete) {
+                Files.deleteIfExists(path);
+            }
+        }
+
+        void append(byte[] payload, long timestamp) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER + payload.length);
+            buffer.putInt(payload.length).putInt(checksum(timestamp, payload)).putLong(timestamp).put(payload).flip();
+            long position = size;
+            FileChannel channel = channel();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            index((int) size);
+            size = position;
+            lastTimestamp = timestamp;
+        }
+
+        Record read(String group, long offset) throws IOException {
+            long position = positions[(int) (offset - base)];
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            readFully(header, position);
+            header.flip();
+            int size = header.getInt();
+            header.getInt();
+            long timestamp = header.getLong();
+            ByteBuffer payload = ByteBuffer.allocate(size);
+            readFully(payload, position + HEADER);
+            return new Record(group, offset, timestamp, payload.array());
+        }
+
+        private void index(int position) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = position;
+        }
+
+        private void readFully(ByteBuffer buffer, long position) throws IOException {
+            FileChannel channel = channel();
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of " + path);
+                }
+                position += read;
+            }
+        }
+
+        private static int checksum(long timestamp, byte[] payload) {
+            CRC32 crc = new CRC32();
+            crc.update(ByteBuffer.allocate(8).putLong(0, timestamp));
+            crc.update(payload);
+            return (int) crc.getValue();
+        }
+    }
+
+    /**
+     * Write a file durably: to a temporary file first, forced to disk, then moved in place.
+     */
+    private static void write(Path target, byte[] data) throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
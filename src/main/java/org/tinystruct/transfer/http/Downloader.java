@@ -0,0 +1,678 @@
+package org.tinystruct.transfer.http;
+
+import org.tinystruct.ApplicationException;
+import org.tinystruct.net.handlers.HTTPHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Downloads a resource over HTTP(S) into a file without holding a thread per
+ * transfer.
+ * <p>
+ * The response body is written straight from the HTTP client's buffers into a
+ * {@link FileChannel} with positional writes. When the server accepts byte
+ * ranges and the resource is at least {@link #setSegmentThreshold(long)} bytes,
+ * the file is preallocated and fetched in parallel segments. Progress is
+ * checkpointed next to the target ({@code name.part.state}), so an interrupted
+ * download resumes with {@code Range} requests where it stopped, within the
+ * same call after a retry or in a later call. The completed file is optionally
+ * verified against a checksum before it is moved to its destination.
+ * </p>
+ */
+public class Downloader {
+    private static final Logger logger = Logger.getLogger(Downloader.class.getName());
+
+    public static final int DEFAULT_SEGMENTS = 4;
+    public static final long DEFAULT_SEGMENT_THRESHOLD = 8L * 1024 * 1024;
+    private static final long CHECKPOINT_INTERVAL = 4L * 1024 * 1024;
+    private static final String PART_SUFFIX = ".part";
+    private static final String STATE_SUFFIX = ".part.state";
+
+    private final HttpClient client;
+    private int segments = DEFAULT_SEGMENTS;
+    private long segmentThreshold = DEFAULT_SEGMENT_THRESHOLD;
+    private int retries = 3;
+    private Duration timeout = Duration.ofSeconds(60);
+    private String checksumAlgorithm;
+    private String checksum;
+    private ProgressListener listener;
+
+    /**
+     * Receives the progress of a download. May be called from several threads
+     * at once when a file is fetched in segments.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * @param received bytes received so far, including bytes resumed from an earlier attempt
+         * @param total    total size, or -1 if the server did not report it
+         */
+        void progress(long received, long total);
+    }
+
+    /**
+     * Create a downloader using the shared HTTP client.
+     */
+    public Downloader() {
+        this(HTTPHandler.sharedClient());
+    }
+
+    public Downloader(HttpClient client) {
+        this.client = Objects.requireNonNull(client);
+    }
+
+    /**
+     * Set the maximum number of segments fetched in parallel.
+     *
+     * @param segments number of segments
+     * @return this downloader
+     */
+    public Downloader setSegments(int segments) {
+        this.segments = Math.max(1, segments);
+        return this;
+    }
+
+    /**
+     * Set the size from which a resource is fetched in segments.
+     *
+     * @param bytes minimum size in bytes
+     * @return this downloader
+     */
+    public Downloader setSegmentThreshold(long bytes) {
+        this.segmentThreshold = Math.max(1, bytes);
+        return this;
+    }
+
+    /**
+     * Set how many times a failed segment is retried, resuming where it stopped.
+     *
+     * @param retries number of retries
+     * @return this downloader
+     */
+    public Downloader setRetries(int retries) {
+        this.retries = Math.max(0, retries);
+        return this;
+    }
+
+    /**
+     * Set the time to wait for the response headers of each request, and the
+     * longest pause in a response body before the segment is retried.
+     *
+     * @param timeout request timeout
+     * @return this downloader
+     */
+    public Downloader setTimeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Verify the downloaded file before moving it to the destination.
+     *
+     * @param algorithm digest algorithm, e.g. {@code SHA-256}
+     * @param expected  expected digest in hexadecimal
+     * @return this downloader
+     * @throws IllegalArgumentException if the algorithm is not available
+     */
+    public Downloader setChecksum(String algorithm, String expected) {
+        try {
+            MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unsupported checksum algorithm: " + algorithm, e);
+        }
+        this.checksumAlgorithm = algorithm;
+        this.checksum = expected.trim().toLowerCase(Locale.ROOT);
+        return this;
+    }
+
+    public Downloader setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Download the resource and wait for it to complete.
+     *
+     * @param source resource to download
+     * @param target destination file
+     * @return the destination file
+     * @throws ApplicationException if the download fails or the checksum does not match
+     */
+    public Path download(URI source, Path target) throws ApplicationException {
+        try {
+            return downloadAsync(source, target).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                    ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof ApplicationException) {
+                throw (ApplicationException) cause;
+            }
+            throw new ApplicationException("Could not be downloaded: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApplicationException("Download interrupted: " + source, e);
+        }
+    }
+
+    /**
+     * Start downloading the resource.
+     *
+     * @param source resource to download
+     * @param target destination file
+     * @return a future completed with the destination file
+     */
+    public CompletableFuture<Path> downloadAsync(URI source, Path target) {
+        return probe(source).thenCompose(resource -> {
+            try {
+                return new Transfer(source, target, resource).start();
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+    }
+
+    /**
+     * Ask the server for the size of the resource and whether it accepts byte ranges.
+     */
+    private CompletableFuture<Resource> probe(URI source) {
+        HttpRequest request = HttpRequest.newBuilder(source)
+                .timeout(timeout)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    if (error != null || response.statusCode() >= 400) {
+                        // Not all servers answer HEAD; the GET will tell
+                        return new Resource(-1, false, null);
+                    }
+                    long length = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+                    boolean ranges = response.headers().firstValue("Accept-Ranges")
+                            .map(value -> value.equalsIgnoreCase("bytes")).orElse(false);
+                    String validator = response.headers().firstValue("ETag")
+                            .orElse(response.headers().firstValue("Last-Modified").orElse(null));
+                    return new Resource(length, ranges, validator);
+                });
+    }
+
+    private static final class Resource {
+        final long length;
+        final boolean ranges;
+        final String validator;
+
+        Resource(long length, boolean ranges, String validator) {
+            this.length = length;
+            this.ranges = ranges;
+            this.validator = validator;
+        }
+
+        boolean resumable() {
+            return ranges && length > 0;
+        }
+    }
+
+    /**
+     * A byte range of the file; {@code end} is inclusive, or -1 if the size is unknown.
+     */
+    private static final class Segment {
+        final long start;
+        final long end;
+        volatile long position;
+
+        Segment(long start, long end, long position) {
+            this.start = start;
+            this.end = end;
+            this.position = position;
+        }
+
+        boolean isDone() {
+            return end >= 0 && position > end;
+        }
+    }
+
+    /**
+     * Thrown for HTTP errors that a retry cannot fix.
+     */
+    private static final class HttpStatusException extends IOException {
+        final int status;
+
+        HttpStatusException(int status, URI source) {
+            super("HTTP " + status + " for " + source);
+            this.status = status;
+        }
+
+        boolean retriable() {
+            return status >= 500 || status == 408 || status == 429;
+        }
+    }
+
+    private final class Transfer {
+        private final URI source;
+        private final Path target;
+        private final Path part;
+        private final Path state;
+        private final Resource resource;
+        private final AtomicLong received = new AtomicLong();
+        private final AtomicLong checkpointed = new AtomicLong();
+        private List<Segment> plan;
+        private FileChannel channel;
+
+        Transfer(URI source, Path target, Resource resource) {
+            this.source = source;
+            this.target = target.toAbsolutePath();
+            this.part = this.target.resolveSibling(this.target.getFileName() + PART_SUFFIX);
+            this.state = this.target.resolveSibling(this.target.getFileName() + STATE_SUFFIX);
+            this.resource = resource;
+        }
+
+        CompletableFuture<Path> start() throws IOException {
+            Path parent = target.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+
+            plan = resource.resumable() ? loadState() : null;
+            boolean resuming = plan != null;
+            if (!resuming) {
+                plan = plan();
+            }
+
+            channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (!resuming) {
+                channel.truncate(0);
+            }
+            if (resource.length > 0 && channel.size() < resource.length) {
+                // Preallocate, so that segments can be written at their positions in any order
+                channel.write(ByteBuffer.wrap(new byte[1]), resource.length - 1);
+            }
+
+            long done = 0;
+            for (Segment segment : plan) {
+                done += segment.position - segment.start;
+            }
+            received.set(done);
+            checkpointed.set(done);
+            if (resuming) {
+                logger.info("Resuming download of " + source + " at " + done + " of " + resource.length + " bytes");
+            }
+
+            CompletableFuture<?>[] fetches = new CompletableFuture<?>[plan.size()];
+            for (int i = 0; i < fetches.length; i++) {
+                fetches[i] = fetch(plan.get(i), 0);
+            }
+
+            return CompletableFuture.allOf(fetches)
+                    .thenApply(ignored -> {
+                        try {
+                            return finish();
+                        } catch (IOException | ApplicationException e) {
+                            throw new CompletionException(e);
+                        }
+                    })
+                    .whenComplete((path, error) -> {
+                        if (error != null) {
+                            abort();
+                        }
+                    });
+        }
+
+        private List<Segment> plan() {
+            List<Segment> segments = new ArrayList<>();
+            long length = resource.length;
+            if (!resource.resumable() || length < segmentThreshold || Downloader.this.segments == 1) {
+                segments.add(new Segment(0, length > 0 ? length - 1 : -1, 0));
+                return segments;
+            }
+
+            int count = (int) Math.min(Downloader.this.segments, length);
+            long size = length / count;
+            for (int i = 0; i < count; i++) {
+                long start = i * size;
+                long end = i == count - 1 ? length - 1 : start + size - 1;
+                segments.add(new Segment(start, end, start));
+            }
+            return segments;
+        }
+
+        private CompletableFuture<Void> fetch(Segment segment, int attempt) {
+            if (segment.isDone()) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            HttpRequest.Builder builder = HttpRequest.newBuilder(source).timeout(timeout).GET();
+            boolean ranged = resource.resumable() && segment.end >= 0;
+            if (ranged) {
+                builder.header("Range", "bytes=" + segment.position + "-" + segment.end);
+                if (resource.validator != null) {
+                    // If the resource changed, get it whole instead of mixing two versions
+                    builder.header("If-Range", resource.validator);
+                }
+            } else {
+                // Without ranges a retry has to start over
+                segment.position = segment.start;
+            }
+
+            return client.sendAsync(builder.build(), info -> subscriberFor(info, segment, ranged))
+                    .thenCompose(response -> response.body())
+                    .handle((ignored, error) -> {
+                        if (error == null) {
+                            return CompletableFuture.<Void>completedFuture(null);
+                        }
+
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        boolean retriable = !(cause instanceof HttpStatusException) || ((HttpStatusException) cause).retriable();
+                        if (!retriable || attempt >= retries) {
+                            return CompletableFuture.<Void>failedFuture(cause);
+                        }
+
+                        logger.log(Level.WARNING, "Segment " + segment.start + "-" + segment.end + " of " + source
+                                + " failed at " + segment.position + ", retrying: " + cause.getMessage());
+                        checkpoint();
+                        Executor delayed = CompletableFuture.delayedExecutor(200L << attempt, TimeUnit.MILLISECONDS);
+                        return CompletableFuture.runAsync(() -> {
+                        }, delayed).thenCompose(v -> fetch(segment, attempt + 1));
+                    })
+                    .thenCompose(future -> future);
+        }
+
+        private HttpResponse.BodySubscriber<CompletableFuture<Void>> subscriberFor(HttpResponse.ResponseInfo info,
+                                                                                 Segment segment, boolean ranged) {
+            int status = info.statusCode();
+            if (status == 206 && ranged) {
+                long offset = info.headers().firstValue("Content-Range").map(Transfer::rangeStart).orElse(-1L);
+                if (offset == segment.position) {
+                    return new SegmentWriter(segment);
+                }
+                return failing(new IOException("Unexpected Content-Range for " + source + ": "
+                        + info.headers().firstValue("Content-Range").orElse("none")));
+            }
+
+            if (status == 200) {
+                if (plan.size() == 1) {
+                    // The whole resource: either no range was asked for or it changed since the last attempt
+                    received.addAndGet(segment.start - segment.position);
+                    segment.position = segment.start;
+                    return new SegmentWriter(segment);
+                }
+                return failing(new IOException("Server ignored the range request for " + source));
+            }
+
+            return failing(new HttpStatusException(status, source));
+        }
+
+        private HttpResponse.BodySubscriber<CompletableFuture<Void>> failing(IOException error) {
+            return HttpResponse.BodySubscribers.replacing(CompletableFuture.failedFuture(error));
+        }
+
+        /**
+         * Writes the response body of one segment at its position in the file.
+         */
+        private final class SegmentWriter implements HttpResponse.BodySubscriber<CompletableFuture<Void>> {
+            private final Segment segment;
+            private final CompletableFuture<Void> written = new CompletableFuture<>();
+            private Flow.Subscription subscription;
+            private volatile long lastActivity = System.nanoTime();
+
+            SegmentWriter(Segment segment) {
+                this.segment = segment;
+            }
+
+            /**
+             * The request timeout only covers the headers, so give up on a
+             * body that stops arriving; the retry resumes from here.
+             */
+            private void watch() {
+                CompletableFuture.delayedExecutor(timeout.toMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+                    if (written.isDone()) {
+                        return;
+                    }
+                    if (System.nanoTime() - lastActivity >= timeout.toNanos()) {
+                        subscription.cancel();
+                        written.completeExceptionally(new IOException("No data received for " + timeout.toMillis() + " ms"));
+                    } else {
+                        watch();
+                    }
+                });
+            }
+
+            @Override
+            public CompletionStage<CompletableFuture<Void>> getBody() {
+                return CompletableFuture.completedFuture(written);
+            }
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                watch();
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(List<ByteBuffer> buffers) {
+                lastActivity = System.nanoTime();
+                try {
+                    long count = 0;
+                    for (ByteBuffer buffer : buffers) {
+                        if (segment.end >= 0) {
+                            long room = segment.end + 1 - segment.position;
+                            if (buffer.remaining() > room) {
+                                buffer.limit(buffer.position() + (int) Math.max(0, room));
+                            }
+                        }
+                        while (buffer.hasRemaining()) {
+                            int n = channel.write(buffer, segment.position);
+                            segment.position += n;
+                            count += n;
+                        }
+                    }
+                    advance(count);
+                    subscription.request(1);
+                } catch (IOException e) {
+                    subscription.cancel();
+                    written.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                written.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                if (segment.end >= 0 && segment.position <= segment.end) {
+                    written.completeExceptionally(new IOException("Connection closed at " + segment.position
+                            + ", expected up to " + segment.end));
+                } else {
+                    written.complete(null);
+                }
+            }
+        }
+
+        private void advance(long count) {
+            long total = received.addAndGet(count);
+            if (listener != null) {
+                listener.progress(total, resource.length);
+            }
+            long last = checkpointed.get();
+            if (total - last >= CHECKPOINT_INTERVAL && checkpointed.compareAndSet(last, total)) {
+                checkpoint();
+            }
+        }
+
+        private Path finish() throws IOException, ApplicationException {
+            try {
+                if (resource.length < 0) {
+                    channel.truncate(plan.get(0).position);
+                }
+                channel.force(true);
+
+                if (checksum != null) {
+                    String actual = digest();
+                    if (!actual.equals(checksum)) {
+                        channel.close();
+                        Files.deleteIfExists(part);
+                        Files.deleteIfExists(state);
+                        throw new ApplicationException("Checksum mismatch for " + source + ": expected " + checksum
+                                + " (" + checksumAlgorithm + "), got " + actual);
+                    }
+                }
+            } finally {
+                channel.close();
+            }
+
+            try {
+                Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.deleteIfExists(state);
+            return target;
+        }
+
+        private String digest() throws IOException {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance(checksumAlgorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            long position = 0;
+            int n;
+            while ((n = channel.read(buffer, position)) > 0) {
+                position += n;
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        }
+
+        /**
+         * Keep what has been written so far, so the next attempt can resume.
+         */
+        private void abort() {
+            try {
+                if (channel.isOpen()) {
+                    if (resource.resumable()) {
+                        checkpoint();
+                    }
+                    channel.close();
+                }
+                if (!resource.resumable()) {
+                    Files.deleteIfExists(part);
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not clean up " + part, e);
+            }
+        }
+
+        /**
+         * Record the position of every segment. The positions are taken
+         * before the data is forced to disk, while the writers carry on, so
+         * the state never claims bytes that could still be lost.
+         */
+        private synchronized void checkpoint() {
+            if (!resource.resumable() || !channel.isOpen()) {
+                return;
+            }
+
+            try {
+                // A position only moves once its bytes are written, so all of them are forced below
+                StringJoiner ranges = new StringJoiner(",");
+                for (Segment segment : plan) {
+                    ranges.add(segment.start + "-" + segment.end + ":" + segment.position);
+                }
+                channel.force(false);
+
+                Properties properties = new Properties();
+                properties.setProperty("source", source.toString());
+                properties.setProperty("length", String.valueOf(resource.length));
+                properties.setProperty("validator", resource.validator != null ? resource.validator : "");
+                properties.setProperty("segments", ranges.toString());
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                properties.store(out, null);
+                Files.write(state, out.toByteArray());
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not save download state " + state, e);
+            }
+        }
+
+        /**
+         * Load the segments of an earlier attempt at the same resource.
+         *
+         * @return the segments, or null if there is nothing to resume
+         */
+        private List<Segment> loadState() {
+            if (!Files.exists(part) || !Files.exists(state)) {
+                return null;
+            }
+
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(state)) {
+                properties.load(in);
+            } catch (IOException e) {
+                return null;
+            }
+
+            String validator = resource.validator != null ? resource.validator : "";
+            if (!source.toString().equals(properties.getProperty("source"))
+                    || !String.valueOf(resource.length).equals(properties.getProperty("length"))
+                    || validator.isEmpty()
+                    || !validator.equals(properties.getProperty("validator"))) {
+                return null;
+            }
+
+            try {
+                List<Segment> segments = new ArrayList<>();
+                for (String range : properties.getProperty("segments", "").split(",")) {
+                    int dash = range.indexOf('-');
+                    int colon = range.indexOf(':');
+                    segments.add(new Segment(Long.parseLong(range.substring(0, dash)),
+                            Long.parseLong(range.substring(dash + 1, colon)),
+                            Long.parseLong(range.substring(colon + 1))));
+                }
+                return segments.isEmpty() ? null : segments;
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        private static long rangeStart(String contentRange) {
+            // bytes 100-199/1000
+            try {
+                String value = contentRange.trim();
+                int space = value.indexOf(' ');
+                int dash = value.indexOf('-', space + 1);
+                return Long.parseLong(value.substring(space + 1, dash).trim());
+            } catch (RuntimeException e) {
+                return -1;
+            }
+        }
+    }
+}
@@ -10,7 +10,9 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Distributed lock implementation based on the File system.
+ * Distributed lock implementation based on the File system. Locks are
+ * coordinated through the memory-mapped lock table of the {@link Watcher},
+ * so they exclude threads of this process and of other processes alike.
  * Usage:
  * 
  * <pre>
@@ -44,8 +46,6 @@ public class DistributedLock implements Lock {
     public DistributedLock() {
         this.id = UUID.randomUUID().toString();
         this.watcher = Watcher.getInstance();
-        // Set event listener.
-        this.watcher.addListener(new Watcher.LockEventListener(this));
     }
 
     /**
@@ -57,8 +57,6 @@ public class DistributedLock implements Lock {
     public DistributedLock(byte[] idb) {
         this.id = new LockKey(idb).value();
         this.watcher = Watcher.getInstance();
-        // Set event listener.
-        this.watcher.addListener(new Watcher.LockEventListener(this));
     }
 
     public DistributedLock(String lockId) {
@@ -78,13 +76,25 @@ public class DistributedLock implements Lock {
             return;
         }
 
+        boolean interrupted = false;
         try {
-            while (!tryLock(1, TimeUnit.SECONDS)) {
-                logger.log(Level.FINE, "Waiting for lock to be released...");
+            while (true) {
+                try {
+                    if (watcher.lock(this, 0, -1)) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    logger.log(Level.FINE, "Interrupted while waiting for lock, still waiting...");
+                }
+            }
+        } finally {
+            if (interrupted) {
+                current.interrupt();
             }
-        } catch (ApplicationException e) {
-            throw new ApplicationRuntimeException("Failed to acquire lock", e);
         }
+        this.holdCount = 1;
+        this.owner = current;
     }
 
     /**
@@ -113,54 +123,24 @@ public class DistributedLock implements Lock {
     @Override
     public boolean tryLock(long timeout, TimeUnit unit) throws ApplicationException {
         Thread current = Thread.currentThread();
-        long deadline = timeout > 0 ? System.nanoTime() + unit.toNanos(timeout) : 0;
-
-        while (true) {
-            // Check deadline before attempting to acquire
-            if (timeout > 0) {
-                long remaining = deadline - System.nanoTime();
-                if (remaining <= 0) {
-                    return false;
-                }
-            }
-
-            synchronized (this.id.intern()) {
-                // Check for reentrant lock
-                if (current == owner) {
-                    holdCount++;
-                    return true;
-                }
-
-                // If the lock is not currently held by anyone, acquire it
-                if (!watcher.watch(this)) {
-                    this.watcher.register(this);
-                    this.owner = current;
-                    this.holdCount = 1;
-                    return true;
-                }
-            }
-
-            // Lock is held by another thread - wait outside the synchronized block
-            if (timeout <= 0) {
-                return false;
-            }
+        // Check for reentrant lock
+        if (current == owner) {
+            holdCount++;
+            return true;
+        }
 
-            long remaining = deadline - System.nanoTime();
-            if (remaining <= 0) {
+        try {
+            if (!watcher.lock(this, 0, Math.max(0, unit.toNanos(timeout)))) {
                 return false;
             }
-
-            try {
-                if (!watcher.waitFor(this.id, remaining, TimeUnit.NANOSECONDS)) {
-                    return false;
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                logger.severe("Error while waiting for lock: " + e.getMessage());
-                throw new ApplicationException(e.getMessage(), e.getCause());
-            }
-            // Loop back to try acquiring the lock again
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.severe("Error while waiting for lock: " + e.getMessage());
+            throw new ApplicationException(e.getMessage(), e);
         }
+        this.holdCount = 1;
+        this.owner = current;
+        return true;
     }
 
     /**
@@ -169,24 +149,18 @@ public class DistributedLock implements Lock {
     @Override
     public void unlock() {
         Thread current = Thread.currentThread();
-        synchronized (this.id.intern()) {
-            if (owner == null)
-                return;
-            if (current != owner) {
-                throw new IllegalMonitorStateException(
-                        "Thread " + current.getName() +
-                                " attempting to unlock while not holding the lock");
-            }
+        if (owner == null)
+            return;
+        if (current != owner) {
+            throw new IllegalMonitorStateException(
+                    "Thread " + current.getName() +
+                            " attempting to unlock while not holding the lock");
+        }
 
-            if (--holdCount == 0) {
-                try {
-                    watcher.unregister(this);
-                    owner = null;
-                } catch (ApplicationException e) {
-                    logger.severe("Error while unlocking: " + e);
-                    throw new ApplicationRuntimeException(e.getMessage(), e.getCause());
-                }
-            }
+        if (--holdCount == 0) {
+            // Clear the owner first, another thread may take the lock as soon as it is released
+            owner = null;
+            watcher.unlock(this);
         }
     }
 
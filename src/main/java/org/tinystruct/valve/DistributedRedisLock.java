@@ -1,19 +1,13 @@
 package org.tinystruct.valve;
 
-import io.lettuce.core.*;
-import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.RedisCredentialsProvider;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.StaticCredentialsProvider;
 import org.tinystruct.ApplicationException;
 import org.tinystruct.ApplicationRuntimeException;
 import org.tinystruct.system.Configuration;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
-import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -21,96 +15,156 @@ import java.util.logging.Logger;
 
 /**
  * Distributed lock depends on Redis.
+ * <p>
+ * Waiting is event driven: a waiter parks until the holder's unlock is
+ * published, and a held lock keeps its lease alive in the background, see
+ * {@link RedisLockEngine}. The lock is reentrant for the thread that holds it.
  *
  * @author James Zhou
  */
 public class DistributedRedisLock implements Lock {
     private static final Logger logger = Logger.getLogger(DistributedRedisLock.class.getName());
-    private static String lockScript;
-    private static String unlockScript;
-
-    static {
-        ByteBuffer buff;
-        try (InputStream stream = Objects.requireNonNull(DistributedRedisLock.class.getResource("/lock.lua")).openStream(); ReadableByteChannel channel = Channels.newChannel(stream)) {
-            buff = ByteBuffer.allocate(800);
-            channel.read(buff);
-            lockScript = new String(buff.array(), StandardCharsets.UTF_8).trim();
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "Load lock.lua error.", e);
-        }
-
-        try (InputStream stream = Objects.requireNonNull(DistributedRedisLock.class.getResource("/unlock.lua")).openStream(); ReadableByteChannel channel = Channels.newChannel(stream)) {
-            buff = ByteBuffer.allocate(1024);
-            channel.read(buff);
-            unlockScript = new String(buff.array(), StandardCharsets.UTF_8).trim();
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "Load unlock.lua error.", e);
-        }
-    }
 
-    private final RedisURI uri;
-    private final StatefulRedisConnection<String, String> redisClient;
-    private String id;
-    private final String value;
+    private final RedisLockEngine engine;
+    private final String id;
+    private volatile Thread owner;
+    private volatile String ownerName;
+    private int holdCount;
 
     public DistributedRedisLock() {
         this(UUID.randomUUID().toString());
     }
 
     public DistributedRedisLock(String id) {
-        this.uri = RedisURI.Builder.redis("127.0.0.1", 6379)
+        this(RedisLockEngine.of(RedisURI.Builder.redis("127.0.0.1", 6379)
                 .withDatabase(0)
                 .withTimeout(Duration.ofSeconds(60))
-                .build();
-        this.redisClient = RedisClient.create(this.uri).connect();
-        this.id = id;
-        this.value = "1";
+                .build()), id);
     }
 
     public DistributedRedisLock(Configuration<String> settings) {
-        this.uri = RedisURI.Builder.redis(settings.get("redis.host"), Integer.parseInt(settings.get("redis.port")))
+        this(settings, UUID.randomUUID().toString());
+    }
+
+    public DistributedRedisLock(Configuration<String> settings, String id) {
+        RedisURI uri = RedisURI.Builder.redis(settings.get("redis.host"), Integer.parseInt(settings.get("redis.port")))
                 .withDatabase(1)
                 .withTimeout(Duration.ofSeconds(60)).build();
 
         if (settings.get("redis.password") != null) {
             RedisCredentialsProvider credentialsProvider = new StaticCredentialsProvider("redis", settings.get("redis.password").toCharArray());
-            this.uri.setCredentialsProvider(credentialsProvider);
+            uri.setCredentialsProvider(credentialsProvider);
         }
 
-        this.redisClient = RedisClient.create(this.uri).connect();
-        this.id = UUID.randomUUID().toString();
-        this.value = "1";
+        this.engine = RedisLockEngine.of(uri);
+        this.id = id;
     }
 
-    public DistributedRedisLock(Configuration<String> settings, String id) {
-        this(settings);
+    /**
+     * Create a lock on an engine, to choose its lease, polling and fairness.
+     *
+     * @param engine lock engine
+     * @param id     lock id
+     */
+    public DistributedRedisLock(RedisLockEngine engine, String id) {
+        this.engine = engine;
         this.id = id;
     }
 
+    /**
+     * Acquires the lock, waiting as long as it takes.
+     */
     @Override
     public void lock() {
-        while ((Long) (this.redisClient.sync().eval(lockScript, ScriptOutputType.INTEGER, new String[]{this.id, this.value}, "1000")) == 0) {
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                throw new ApplicationRuntimeException(e.getMessage(), e.getCause());
+        Thread current = Thread.currentThread();
+        if (current == owner) {
+            holdCount++;
+            return;
+        }
+
+        String name = engine.owner();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    if (engine.acquire(this.id, name, -1)) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    logger.log(Level.FINE, "Interrupted while waiting for lock, still waiting...");
+                }
+            }
+        } finally {
+            if (interrupted) {
+                current.interrupt();
             }
         }
+        granted(current, name);
     }
 
     @Override
     public boolean tryLock() {
-        return this.redisClient.sync().eval(lockScript, ScriptOutputType.INTEGER, new String[]{this.id, this.value}, "1000");
+        try {
+            return tryLock(0L, TimeUnit.MILLISECONDS);
+        } catch (ApplicationException e) {
+            throw new ApplicationRuntimeException(e.getMessage(), e.getCause());
+        }
     }
 
+    /**
+     * Attempts to acquire the lock within the specified waiting time.
+     *
+     * @param timeout The maximum time to wait for the lock.
+     * @param unit    The time unit of the timeout parameter.
+     * @return True if the lock was acquired within the specified time, false otherwise.
+     * @throws ApplicationException If interrupted while waiting.
+     */
     @Override
-    public boolean tryLock(long l, TimeUnit timeUnit) throws ApplicationException {
-        return this.redisClient.sync().eval(lockScript, ScriptOutputType.INTEGER, new String[]{this.id, this.value}, timeUnit.toString());
+    public boolean tryLock(long timeout, TimeUnit unit) throws ApplicationException {
+        Thread current = Thread.currentThread();
+        if (current == owner) {
+            holdCount++;
+            return true;
+        }
+
+        String name = engine.owner();
+        try {
+            if (!engine.acquire(this.id, name, Math.max(0, unit.toNanos(timeout)))) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApplicationException(e.getMessage(), e);
+        }
+        granted(current, name);
+        return true;
     }
 
     @Override
     public void unlock() {
-        this.redisClient.sync().eval(unlockScript, ScriptOutputType.INTEGER, this.id, this.value);
+        Thread current = Thread.currentThread();
+        if (owner == null)
+            return;
+        if (current != owner) {
+            throw new IllegalMonitorStateException(
+                    "Thread " + current.getName() + " attempting to unlock while not holding the lock");
+        }
+
+        if (--holdCount == 0) {
+            String name = this.ownerName;
+            owner = null;
+            ownerName = null;
+            if (engine.release(this.id, name) < 0) {
+                logger.warning("Lock " + this.id + " had expired before it was released");
+            }
+        }
+    }
+
+    private void granted(Thread current, String name) {
+        this.holdCount = 1;
+        this.ownerName = name;
+        this.owner = current;
     }
 
     @Override
@@ -0,0 +1,500 @@
+package org.tinystruct.valve;
+
+import org.tinystruct.ApplicationRuntimeException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * A table of cross-process locks in a memory-mapped file.
+ * <p>
+ * Lock ids are hashed to slots of a fixed-size, open-addressing index. Every
+ * slot is one cache-line-aligned record; its words are updated with
+ * compare-and-set through a {@link VarHandle} on the mapped buffer, so
+ * locking and unlocking do not take a monitor or make a system call. Only
+ * binding a new id to a free slot is serialized, by a file lock on the header.
+ * </p>
+ * <p>
+ * The owner word of a held slot carries the owner's PID, and a lease carries
+ * an optional expiry, so a lock left behind by a crashed process, or held past
+ * its lease, is taken over by the next process that wants it. Threads waiting
+ * for a slot park on a queue of that slot and are woken by a release in the
+ * same process; releases by other processes are seen by polling with
+ * exponential backoff.
+ * </p>
+ */
+final class LockTable implements Closeable {
+    private static final Logger logger = Logger.getLogger(LockTable.class.getName());
+
+    static final int DEFAULT_SLOTS = 4096;
+    static final int MAX_ID_LENGTH = 64;
+
+    private static final int MAGIC = 0x544c4f4b;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 128;
+    private static final int SLOT_SIZE = 128;
+    private static final int MAX_PROBES = 64;
+
+    // Slot layout
+    private static final int BINDING = 0;
+    private static final int OWNER = 8;
+    private static final int LEASE = 16;
+    private static final int RELEASES = 24;
+    private static final int ID_LENGTH = 32;
+    private static final int ID = 36;
+
+    /**
+     * A binding is the 48-bit hash of the id and a 16-bit count of the
+     * threads using the slot. A bound slot nobody uses stays bound, so the
+     * next lock of the same id finds it, until its space is needed.
+     */
+    private static final long EMPTY = 0L;
+    private static final long TOMBSTONE = -1L;
+    private static final long REFS_MASK = 0xFFFFL;
+    private static final long LEASE_EPOCH = 1577836800000L; // 2020-01-01T00:00:00Z
+    private static final long LEASE_MASK = (1L << 40) - 1;
+
+    private static final int SPINS = 64;
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int slots;
+    private static final long PID = ProcessHandle.current().pid();
+    private static final AtomicInteger TOKENS = new AtomicInteger();
+    private final ReentrantLock binding = new ReentrantLock();
+    private final AtomicReferenceArray<Queue<Thread>> waiters;
+
+    /**
+     * Open the lock table in the given file, creating it if it does not exist.
+     *
+     * @param path  lock table file
+     * @param slots number of slots, if the table is created
+     * @throws IOException if the file cannot be opened or is not a lock table
+     */
+    LockTable(Path path, int slots) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try (FileLock ignored = channel.lock()) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (header.getInt(0) == 0) {
+                header.putInt(8, slots);
+                header.putInt(4, VERSION);
+                header.putInt(0, MAGIC);
+                header.force();
+            } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                channel.close();
+                throw new IOException(path + " is not a lock table");
+            }
+            this.slots = header.getInt(8);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) this.slots * SLOT_SIZE);
+        }
+        this.waiters = new AtomicReferenceArray<>(this.slots);
+    }
+
+    int slots() {
+        return slots;
+    }
+
+    /**
+     * Create an owner token, unique among all processes, for one acquisition.
+     *
+     * @return owner token
+     */
+    long newToken() {
+        int token;
+        do {
+            token = TOKENS.incrementAndGet();
+        } while (token == 0);
+        return (PID << 32) | (token & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Find or create the slot of a lock id, and count the caller as one of its users.
+     *
+     * @param id lock id
+     * @return slot index
+     */
+    int bind(String id) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        if (key.length > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException("Lock id is longer than " + MAX_ID_LENGTH + " bytes: " + id);
+        }
+        long hash = hash(key);
+
+        int slot = find(hash, key, true);
+        if (slot >= 0) {
+            return slot;
+        }
+
+        binding.lock();
+        try (FileLock ignored = channel.lock(0, HEADER_SIZE, false)) {
+            for (; ; ) {
+                // Another process may have bound it meanwhile
+                slot = find(hash, key, true);
+                if (slot >= 0) {
+                    return slot;
+                }
+                slot = claim(hash, key);
+                if (slot >= 0) {
+                    return slot;
+                }
+            }
+        } catch (IOException e) {
+            throw new ApplicationRuntimeException("Could not lock the lock table: " + e.getMessage(), e);
+        } finally {
+            binding.unlock();
+        }
+    }
+
+    /**
+     * Stop counting the caller as a user of the slot.
+     *
+     * @param slot slot index
+     */
+    void unbind(int slot) {
+        int offset = offset(slot) + BINDING;
+        for (; ; ) {
+            long value = (long) LONG.getVolatile(buffer, offset);
+            if (value == EMPTY || value == TOMBSTONE || (value & REFS_MASK) == 0
+                    || LONG.compareAndSet(buffer, offset, value, value - 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Find the slot of a lock id without binding it.
+     *
+     * @param id lock id
+     * @return slot index, or -1 if the id has no slot
+     */
+    int lookup(String id) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        return key.length > MAX_ID_LENGTH ? -1 : find(hash(key), key, false);
+    }
+
+    /**
+     * Acquire a slot, waiting up to the given time.
+     *
+     * @param slot         slot index
+     * @param token        owner token from {@link #newToken()}
+     * @param leaseMillis  lease, or 0 to hold the lock until released or the process exits
+     * @param timeoutNanos maximum time to wait, 0 to not wait, negative to wait forever
+     * @return true if acquired
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean acquire(int slot, long token, long leaseMillis, long timeoutNanos) throws InterruptedException {
+        if (tryAcquire(slot, token, leaseMillis)) {
+            return true;
+        }
+        if (timeoutNanos == 0) {
+            return false;
+        }
+
+        for (int i = 0; i < SPINS; i++) {
+            Thread.onSpinWait();
+            if (tryAcquire(slot, token, leaseMillis)) {
+                return true;
+            }
+        }
+
+        long deadline = System.nanoTime() + timeoutNanos;
+        Queue<Thread> queue = waitersOf(slot);
+        Thread current = Thread.currentThread();
+        queue.add(current);
+        try {
+            long park = MIN_PARK_NANOS;
+            for (; ; ) {
+                if (tryAcquire(slot, token, leaseMillis)) {
+                    return true;
+                }
+
+                long wait = park;
+                if (timeoutNanos > 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    wait = Math.min(park, remaining);
+                }
+                LockSupport.parkNanos(this, wait);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                park = Math.min(park * 2, MAX_PARK_NANOS);
+            }
+        } finally {
+            queue.remove(current);
+        }
+    }
+
+    /**
+     * Acquire a slot if it is free, or if its owner has crashed or outlived its lease.
+     */
+    boolean tryAcquire(int slot, long token, long leaseMillis) {
+        int base = offset(slot);
+        long owner = (long) LONG.getVolatile(buffer, base + OWNER);
+        if (owner == 0) {
+            if (!LONG.compareAndSet(buffer, base + OWNER, 0L, token)) {
+                return false;
+            }
+        } else if (owner == token) {
+            return true;
+        } else if (abandoned(base, owner)) {
+            if (!LONG.compareAndSet(buffer, base + OWNER, owner, token)) {
+                return false;
+            }
+            logger.warning("Recovered lock " + id(base) + " from process " + (owner >>> 32));
+        } else {
+            return false;
+        }
+
+        LONG.setVolatile(buffer, base + LEASE, lease(token, leaseMillis));
+        return true;
+    }
+
+    /**
+     * Release a slot held with the given token.
+     *
+     * @return false if the slot is not held with this token, e.g. because its lease expired
+     */
+    boolean release(int slot, long token) {
+        int base = offset(slot);
+        if (!LONG.compareAndSet(buffer, base + OWNER, token, 0L)) {
+            return false;
+        }
+        LONG.getAndAdd(buffer, base + RELEASES, 1L);
+
+        Queue<Thread> queue = waiters.get(slot);
+        Thread next;
+        if (queue != null && (next = queue.peek()) != null) {
+            LockSupport.unpark(next);
+        }
+        return true;
+    }
+
+    /**
+     * Extend the lease of a slot held with the given token.
+     *
+     * @return false if the slot is no longer held with this token
+     */
+    boolean renew(int slot, long token, long leaseMillis) {
+        int base = offset(slot);
+        if ((long) LONG.getVolatile(buffer, base + OWNER) != token) {
+            return false;
+        }
+        LONG.setVolatile(buffer, base + LEASE, lease(token, leaseMillis));
+        return (long) LONG.getVolatile(buffer, base + OWNER) == token;
+    }
+
+    boolean isHeld(int slot) {
+        int base = offset(slot);
+        long owner = (long) LONG.getVolatile(buffer, base + OWNER);
+        return owner != 0 && !abandoned(base, owner);
+    }
+
+    /**
+     * @return number of times the slot has been released, to notice releases by other processes
+     */
+    long releases(int slot) {
+        return (long) LONG.getVolatile(buffer, offset(slot) + RELEASES);
+    }
+
+    /**
+     * Wait until a slot is not held.
+     *
+     * @return false if it is still held after the timeout
+     */
+    boolean awaitRelease(int slot, long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        Queue<Thread> queue = waitersOf(slot);
+        Thread current = Thread.currentThread();
+        queue.add(current);
+        try {
+            long park = MIN_PARK_NANOS;
+            while (isHeld(slot)) {
+                long wait = park;
+                if (timeoutNanos >= 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    wait = Math.min(park, remaining);
+                }
+                LockSupport.parkNanos(this, wait);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                park = Math.min(park * 2, MAX_PARK_NANOS);
+            }
+            return true;
+        } finally {
+            queue.remove(current);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean abandoned(int base, long owner) {
+        long lease = (long) LONG.getVolatile(buffer, base + LEASE);
+        // A lease written by an earlier owner does not count
+        if (lease != 0 && (lease >>> 40) == (owner & 0xFFFFFFL)) {
+            long expiry = lease & LEASE_MASK;
+            if (expiry != 0 && System.currentTimeMillis() - LEASE_EPOCH > expiry) {
+                return true;
+            }
+        }
+
+        long process = owner >>> 32;
+        return process != PID && !ProcessHandle.of(process).map(ProcessHandle::isAlive).orElse(false);
+    }
+
+    private static long lease(long token, long leaseMillis) {
+        long expiry = leaseMillis > 0 ? (System.currentTimeMillis() - LEASE_EPOCH + leaseMillis) & LEASE_MASK : 0;
+        return ((token & 0xFFFFFFL) << 40) | expiry;
+    }
+
+    private int find(long hash, byte[] key, boolean use) {
+        int home = home(hash);
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int slot = (home + i) % slots;
+            int offset = offset(slot) + BINDING;
+            long value = (long) LONG.getVolatile(buffer, offset);
+            while (value != EMPTY && value != TOMBSTONE && (value >>> 16) == hash && matches(slot, key)) {
+                if (!use) {
+                    return slot;
+                }
+                if ((value & REFS_MASK) == REFS_MASK) {
+                    throw new ApplicationRuntimeException("Too many users of lock " + new String(key, StandardCharsets.UTF_8));
+                }
+                if (LONG.compareAndSet(buffer, offset, value, value + 1)) {
+                    return slot;
+                }
+                value = (long) LONG.getVolatile(buffer, offset);
+            }
+            if (value == EMPTY) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Bind a free slot to the id. Must be called with the binding lock held.
+     *
+     * @return slot index, or -1 if the slot was taken meanwhile and the caller should look again
+     */
+    private int claim(long hash, byte[] key) {
+        int home = home(hash);
+        int free = -1;
+        int idle = -1;
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int slot = (home + i) % slots;
+            long value = (long) LONG.getVolatile(buffer, offset(slot) + BINDING);
+            if (value == EMPTY || value == TOMBSTONE) {
+                free = slot;
+                break;
+            }
+            if (idle < 0 && (value & REFS_MASK) == 0
+                    && (long) LONG.getVolatile(buffer, offset(slot) + OWNER) == 0) {
+                idle = slot;
+            }
+        }
+
+        long expected;
+        if (free >= 0) {
+            expected = (long) LONG.getVolatile(buffer, offset(free) + BINDING);
+        } else if (idle >= 0) {
+            // Take over a slot nobody uses; a thread that starts using it first wins
+            long value = (long) LONG.getVolatile(buffer, offset(idle) + BINDING);
+            if ((value & REFS_MASK) != 0 || !LONG.compareAndSet(buffer, offset(idle) + BINDING, value, TOMBSTONE)) {
+                return -1;
+            }
+            free = idle;
+            expected = TOMBSTONE;
+        } else {
+            throw new ApplicationRuntimeException("Lock table is full, no free slot for lock " + new String(key, StandardCharsets.UTF_8));
+        }
+
+        int base = offset(free);
+        buffer.putInt(base + ID_LENGTH, key.length);
+        buffer.put(base + ID, key);
+        LONG.setVolatile(buffer, base + LEASE, 0L);
+        LONG.setVolatile(buffer, base + OWNER, 0L);
+        return LONG.compareAndSet(buffer, base + BINDING, expected, (hash << 16) | 1L) ? free : -1;
+    }
+
+    private boolean matches(int slot, byte[] key) {
+        int base = offset(slot);
+        if (buffer.getInt(base + ID_LENGTH) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(base + ID + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String id(int base) {
+        int length = Math.min(MAX_ID_LENGTH, Math.max(0, buffer.getInt(base + ID_LENGTH)));
+        byte[] id = new byte[length];
+        buffer.get(base + ID, id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private Queue<Thread> waitersOf(int slot) {
+        Queue<Thread> queue = waiters.get(slot);
+        if (queue == null) {
+            waiters.compareAndSet(slot, null, new ConcurrentLinkedQueue<>());
+            queue = waiters.get(slot);
+        }
+        return queue;
+    }
+
+    private int home(long hash) {
+        return (int) Long.remainderUnsigned(hash, slots);
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    /**
+     * 48-bit FNV-1a hash of the id, never 0 and never all ones.
+     */
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 48)) & 0xFFFFFFFFFFFFL;
+        return hash == 0 || hash == 0xFFFFFFFFFFFFL ? 1 : hash;
+    }
+}
@@ -0,0 +1,380 @@
+package org.tinystruct.valve;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import org.tinystruct.ApplicationRuntimeException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Redis side of {@link DistributedRedisLock}, shared by all locks of one Redis server.
+ * <p>
+ * A lock is a hash of owner to hold count with a lease (pexpire), so the same
+ * owner may enter it again. Waiters do not poll: they subscribe to the lock's
+ * release channel and park until the holder publishes on unlock, falling back
+ * to a bounded poll in case a message is lost or a holder dies. While a lock is
+ * held its lease is renewed in the background, so a critical section may run
+ * longer than the lease while a crashed client still loses its locks after one
+ * lease. In fair mode waiters take a ticket in a sorted set and the lock is
+ * handed over in ticket order.
+ *
+ * @author James Zhou
+ */
+public final class RedisLockEngine implements Closeable {
+    private static final Logger logger = Logger.getLogger(RedisLockEngine.class.getName());
+    private static final Map<String, RedisLockEngine> engines = new ConcurrentHashMap<>();
+
+    private static final long DEFAULT_LEASE_MILLIS = 30_000;
+    private static final long DEFAULT_POLL_MILLIS = 250;
+
+    private final RedisClient client;
+    private final boolean shared;
+    private final StatefulRedisConnection<String, String> connection;
+    private final String clientId = UUID.randomUUID().toString();
+    private final Script lockScript = new Script("/lock.lua");
+    private final Script unlockScript = new Script("/unlock.lua");
+    private final Script renewScript = new Script("/renew.lua");
+    private final Map<String, Waiters> waiters = new ConcurrentHashMap<>();
+    private final Map<String, ScheduledFuture<?>> renewals = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private volatile StatefulRedisPubSubConnection<String, String> subscriber;
+
+    private volatile long leaseMillis = DEFAULT_LEASE_MILLIS;
+    private volatile long pollMillis = DEFAULT_POLL_MILLIS;
+    private volatile boolean fair = false;
+
+    /**
+     * Create an engine on a client; the client stays owned by the caller.
+     *
+     * @param client Redis client
+     */
+    public RedisLockEngine(RedisClient client) {
+        this(client, false);
+    }
+
+    private RedisLockEngine(RedisClient client, boolean shared) {
+        this.client = client;
+        this.shared = shared;
+        this.connection = client.connect();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-lock-renewal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the engine shared by all locks of a Redis server.
+     *
+     * @param uri Redis URI
+     * @return engine
+     */
+    public static RedisLockEngine of(RedisURI uri) {
+        return engines.computeIfAbsent(uri.toString(), key -> new RedisLockEngine(RedisClient.create(uri), true));
+    }
+
+    /**
+     * Set the lease of a lock: how long it survives a holder that stops renewing it.
+     *
+     * @param lease lease
+     * @param unit  time unit
+     * @return this engine
+     */
+    public RedisLockEngine setLeaseTime(long lease, TimeUnit unit) {
+        if (lease <= 0) {
+            throw new IllegalArgumentException("Lease must be positive");
+        }
+        this.leaseMillis = unit.toMillis(lease);
+        return this;
+    }
+
+    /**
+     * Set the longest time a waiter parks without checking the lock, in case a
+     * release notification is lost.
+     *
+     * @param interval poll interval
+     * @param unit     time unit
+     * @return this engine
+     */
+    public RedisLockEngine setPollInterval(long interval, TimeUnit unit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Poll interval must be positive");
+        }
+        this.pollMillis = unit.toMillis(interval);
+        return this;
+    }
+
+    /**
+     * Hand locks over to waiters in the order they started waiting.
+     *
+     * @param fair true for first come, first served
+     * @return this engine
+     */
+    public RedisLockEngine setFair(boolean fair) {
+        this.fair = fair;
+        return this;
+    }
+
+    /**
+     * @return owner name of the calling thread
+     */
+    String owner() {
+        return clientId + ":" + Thread.currentThread().getId();
+    }
+
+    /**
+     * Acquire a lock for an owner.
+     *
+     * @param name         lock id
+     * @param owner        owner, see {@link #owner()}
+     * @param timeoutNanos maximum time to wait, 0 to not wait, negative to wait forever
+     * @return true if acquired
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean acquire(String name, String owner, long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        // A fair waiter takes its ticket right away, the queue order is the order of arrival
+        Long remaining = attempt(name, owner, timeoutNanos != 0);
+        if (remaining == null) {
+            return true;
+        }
+        if (timeoutNanos == 0) {
+            return false;
+        }
+
+        Waiters waiters = join(channelOf(name));
+        boolean acquired = false;
+        try {
+            while ((remaining = attempt(name, owner, true)) != null) {
+                long wait = TimeUnit.MILLISECONDS.toNanos(pollMillis);
+                if (remaining >= 0) {
+                    // Nobody renews a lease past its end, so look again when it runs out
+                    wait = Math.min(wait, TimeUnit.MILLISECONDS.toNanos(Math.max(1, remaining)));
+                }
+                if (timeoutNanos > 0) {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) {
+                        return false;
+                    }
+                    wait = Math.min(wait, left);
+                }
+                LockSupport.parkNanos(this, wait);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            acquired = true;
+            return true;
+        } finally {
+            leave(waiters);
+            if (!acquired && this.fair) {
+                dequeue(name, owner);
+            }
+        }
+    }
+
+    /**
+     * Release one hold of a lock.
+     *
+     * @param name  lock id
+     * @param owner owner, see {@link #owner()}
+     * @return remaining holds of the owner, or -1 if it did not hold the lock
+     */
+    long release(String name, String owner) {
+        Long count = unlockScript.eval(new String[]{keyOf(name)}, owner, String.valueOf(leaseMillis), channelOf(name));
+        if (count == null || count <= 0) {
+            ScheduledFuture<?> renewal = renewals.remove(name + '|' + owner);
+            if (renewal != null) {
+                renewal.cancel(false);
+            }
+        }
+        return count == null ? -1 : count;
+    }
+
+    private Long attempt(String name, String owner, boolean waiting) {
+        long ttl = waiting && this.fair ? Math.max(4 * pollMillis, 1000) : 0;
+        String key = keyOf(name);
+        Long remaining = lockScript.eval(new String[]{key, key + ":queue", key + ":alive"},
+                owner, String.valueOf(leaseMillis), String.valueOf(ttl), this.fair ? "1" : "0");
+        if (remaining == null) {
+            renewals.computeIfAbsent(name + '|' + owner, k -> {
+                long period = Math.max(1, leaseMillis / 3);
+                return scheduler.scheduleAtFixedRate(() -> renew(name, owner), period, period, TimeUnit.MILLISECONDS);
+            });
+        }
+        return remaining;
+    }
+
+    private void renew(String name, String owner) {
+        try {
+            Long renewed = renewScript.eval(new String[]{keyOf(name)}, owner, String.valueOf(leaseMillis));
+            if (renewed == null || renewed == 0) {
+                ScheduledFuture<?> renewal = renewals.remove(name + '|' + owner);
+                if (renewal != null) {
+                    renewal.cancel(false);
+                    logger.warning("Lock " + name + " was lost by " + owner + " before it was released");
+                }
+            }
+        } catch (RedisException e) {
+            logger.log(Level.WARNING, "Could not renew lock " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void dequeue(String name, String owner) {
+        String key = keyOf(name);
+        try {
+            connection.sync().zrem(key + ":queue", owner);
+            connection.sync().zrem(key + ":alive", owner);
+            // The next waiter may be free to go now
+            connection.sync().publish(channelOf(name), owner);
+        } catch (RedisException e) {
+            logger.log(Level.FINE, "Could not leave the queue of " + name + ", it will time out", e);
+        }
+    }
+
+    private Waiters join(String channel) {
+        Thread current = Thread.currentThread();
+        while (true) {
+            Waiters group = waiters.computeIfAbsent(channel, Waiters::new);
+            synchronized (group) {
+                if (group.closed) {
+                    continue;
+                }
+                if (!group.subscribed) {
+                    try {
+                        subscriber().sync().subscribe(channel);
+                        group.subscribed = true;
+                    } catch (RedisException e) {
+                        logger.log(Level.FINE, "Could not subscribe to " + channel + ", polling instead", e);
+                    }
+                }
+                group.threads.add(current);
+                return group;
+            }
+        }
+    }
+
+    private void leave(Waiters group) {
+        synchronized (group) {
+            group.threads.remove(Thread.currentThread());
+            if (group.threads.isEmpty()) {
+                group.closed = true;
+                waiters.remove(group.channel, group);
+                if (group.subscribed) {
+                    subscriber().async().unsubscribe(group.channel);
+                }
+            }
+        }
+    }
+
+    private StatefulRedisPubSubConnection<String, String> subscriber() {
+        StatefulRedisPubSubConnection<String, String> subscriber = this.subscriber;
+        if (subscriber == null) {
+            synchronized (this) {
+                if ((subscriber = this.subscriber) == null) {
+                    subscriber = client.connectPubSub();
+                    subscriber.addListener(new RedisPubSubAdapter<String, String>() {
+                        @Override
+                        public void message(String channel, String message) {
+                            Waiters group = waiters.get(channel);
+                            if (group != null) {
+                                for (Thread thread : group.threads) {
+                                    LockSupport.unpark(thread);
+                                }
+                            }
+                        }
+                    });
+                    this.subscriber = subscriber;
+                }
+            }
+        }
+        return subscriber;
+    }
+
+    private static String keyOf(String name) {
+        // Hash tag keeps the lock and its queue in one cluster slot
+        return "{" + name + "}";
+    }
+
+    private static String channelOf(String name) {
+        return "{" + name + "}:released";
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        renewals.clear();
+        if (subscriber != null) {
+            subscriber.close();
+        }
+        connection.close();
+        if (shared) {
+            engines.values().remove(this);
+            client.shutdown();
+        }
+    }
+
+    /**
+     * Threads waiting on one release channel.
+     */
+    private static final class Waiters {
+        final String channel;
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        boolean subscribed;
+        boolean closed;
+
+        Waiters(String channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Lua script run by its SHA1, loaded on first use or after the server lost it.
+     */
+    private final class Script {
+        private final String source;
+        private volatile String sha;
+
+        Script(String resource) {
+            try (InputStream stream = Objects.requireNonNull(RedisLockEngine.class.getResourceAsStream(resource), resource)) {
+                this.source = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new ApplicationRuntimeException("Could not load " + resource + ": " + e.getMessage(), e);
+            }
+        }
+
+        Long eval(String[] keys, String... args) {
+            String sha = this.sha;
+            if (sha != null) {
+                try {
+                    return connection.sync().evalsha(sha, ScriptOutputType.INTEGER, keys, args);
+                } catch (RedisNoScriptException e) {
+                    logger.fine("Reloading script after a server restart");
+                }
+            }
+            this.sha = connection.sync().scriptLoad(source);
+            return connection.sync().evalsha(this.sha, ScriptOutputType.INTEGER, keys, args);
+        }
+    }
+}
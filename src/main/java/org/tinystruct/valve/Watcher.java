@@ -1,10 +1,8 @@
 package org.tinystruct.valve;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.channels.FileLock;
-import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.nio.file.Paths;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -12,13 +10,16 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.tinystruct.ApplicationException;
+import org.tinystruct.ApplicationRuntimeException;
 
 /**
  * Create a watcher to monitor the lock.
  * <p>
  * The Watcher class is responsible for monitoring and managing distributed
  * locks.
- * It reads and synchronizes locks with a lock file in the file system.
+ * Locks are held in a {@link LockTable}, a memory-mapped file shared by all
+ * processes on the host, so acquiring and releasing a lock is a few atomic
+ * operations on the mapped file rather than a synchronized file rewrite.
  * Lock events trigger corresponding listeners.
  * This class implements the Singleton pattern to ensure a single instance.
  *
@@ -28,35 +29,36 @@ public final class Watcher implements Runnable {
     private static final Logger logger = Logger.getLogger(Watcher.class.getName());
 
     /**
-     * Empty bytes array.
+     * Lock table file name.
      */
-    private final static byte[] EMPTY_BYTES = new byte[36];
+    private static final String LOCK = ".locks";
     /**
-     * Lock size.
+     * How often listened locks are checked for changes made by other processes.
      */
-    private static final int FIXED_LOCK_DATA_SIZE = 44;
-    /**
-     * Lock file name.
-     */
-    private static final String LOCK = ".lock";
+    private static final long MONITOR_INTERVAL_MILLIS = 50;
     /**
      * Lock event listeners.
      */
     private final ConcurrentHashMap<String, java.util.List<EventListener>> listeners = new ConcurrentHashMap<>(8);
     /**
-     * Lock collection.
+     * Locks held by this process.
      */
     private final ConcurrentHashMap<String, Lock> locks;
-    private int[] interspace;
+    /**
+     * Slot and owner token of every lock held by this process.
+     */
+    private final ConcurrentHashMap<String, Grant> grants;
+    private final LockTable table;
     private volatile boolean started = false;
     private volatile boolean stopped = false;
 
     private Watcher() {
         this.locks = new ConcurrentHashMap<>(16);
-        try (RandomAccessFile lockFile = new RandomAccessFile(LOCK, "r")) {
-            this.interspace = new int[(int) (lockFile.length() / FIXED_LOCK_DATA_SIZE + 1)];
+        this.grants = new ConcurrentHashMap<>(16);
+        try {
+            this.table = new LockTable(Paths.get(LOCK), LockTable.DEFAULT_SLOTS);
         } catch (IOException e) {
-            logger.warning(e.getMessage());
+            throw new ApplicationRuntimeException("Could not open lock table " + LOCK + ": " + e.getMessage(), e);
         }
     }
 
@@ -70,290 +72,234 @@ public final class Watcher implements Runnable {
     }
 
     /**
-     * Wait for the specified lock ID.
+     * Wait for the specified lock ID to be released.
      *
      * @param lockId The ID of the lock to wait for.
      * @throws InterruptedException If the thread is interrupted while waiting.
      */
     public void waitFor(String lockId) throws InterruptedException {
-        java.util.List<EventListener> list = this.listeners.get(lockId);
-        if (list != null) {
-            for (EventListener listener : list) {
-                listener.waitFor();
-            }
+        int slot = table.bind(lockId);
+        try {
+            table.awaitRelease(slot, -1);
+        } finally {
+            table.unbind(slot);
         }
     }
 
     /**
-     * Wait for the specified lock ID with a timeout.
+     * Wait for the specified lock ID to be released, with a timeout.
      *
      * @param lockId  The ID of the lock to wait for.
      * @param timeout The maximum time to wait.
      * @param unit    The time unit of the timeout argument.
+     * @return false if the lock is still held after the timeout
      * @throws InterruptedException If the thread is interrupted while waiting.
      */
     public boolean waitFor(String lockId, long timeout, TimeUnit unit) throws InterruptedException {
-        java.util.List<EventListener> list = this.listeners.get(lockId);
-        if (list != null) {
-            for (EventListener listener : list) {
-                if (!listener.waitFor(timeout, unit))
-                    return false;
-            }
+        int slot = table.bind(lockId);
+        try {
+            return table.awaitRelease(slot, Math.max(0, unit.toNanos(timeout)));
+        } finally {
+            table.unbind(slot);
         }
-        return true;
     }
 
     /**
-     * Read the .lock file and transform the information to the hash map in memory.
+     * Check the listened locks and report the ones created or deleted by other processes.
      */
     @Override
     public void run() {
         this.started = true;
 
+        Map<String, Boolean> known = new ConcurrentHashMap<>();
         while (!this.stopped) {
-            synchronized (Watcher.class) {
-                try {
-                    Watcher.class.wait();
-                } catch (InterruptedException e) {
-                    logger.severe(e.getMessage());
-                }
-                // Synchronize the locks map with Lock file.
-                synchronizeLocks();
-            }
-        }
-    }
-
-    /**
-     * Synchronize locks by reading the lock file and updating the locks map
-     * accordingly.
-     */
-    private void synchronizeLocks() {
-        try (RandomAccessFile lockFile = new RandomAccessFile(LOCK, "rwd")) {
-            int size;
-            if (lockFile.length() >= FIXED_LOCK_DATA_SIZE) {
-                size = (int) lockFile.length() / FIXED_LOCK_DATA_SIZE;
-                try (FileLock fileLock = lockFile.getChannel().tryLock()) {
-                    if (fileLock != null) {
-                        updateLocksFromFile(lockFile, size);
+            for (String lockId : this.listeners.keySet()) {
+                int slot = table.lookup(lockId);
+                boolean held = slot >= 0 && table.isHeld(slot);
+                Boolean previous = known.put(lockId, held);
+                if (previous != null && previous != held && !this.locks.containsKey(lockId)) {
+                    if (held) {
+                        fireCreate(lockId);
+                    } else {
+                        fireDelete(lockId);
                     }
                 }
-            } else if (lockFile.length() > 0) {
-                lockFile.setLength(0);
             }
+            known.keySet().retainAll(this.listeners.keySet());
 
-            // Notify the other thread to work on.
-            synchronized (Watcher.class) {
-                Watcher.class.notifyAll();
-            }
-        } catch (IOException e) {
-            this.stop();
-            logger.severe(e.getMessage());
-        }
-    }
-
-    /**
-     * Update locks map based on the content of the lock file.
-     */
-    private void updateLocksFromFile(RandomAccessFile lockFile, int size) throws IOException {
-        if (size > 0) {
-            lockFile.seek(0);
-            String lockId;
-            for (int i = 0; i < size; i++) {
-                byte[] id = new byte[36];
-                boolean condition = lockFile.read(id) != -1 && lockFile.readLong() == 1L;
-                if (condition) {
-                    lockId = new String(id, StandardCharsets.UTF_8);
-                    if (!this.locks.containsKey(lockId)) {
-                        this.locks.putIfAbsent(lockId, new DistributedLock(id));
-                        java.util.List<EventListener> list = this.listeners.get(lockId);
-                        if (list != null) {
-                            for (EventListener listener : list) {
-                                listener.onCreate(lockId);
-                            }
-                        }
-                    }
-                }
+            try {
+                Thread.sleep(MONITOR_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             }
         }
+        this.started = false;
     }
 
     public void addListener(EventListener listener) {
         this.listeners.computeIfAbsent(listener.id(), k -> new java.util.concurrent.CopyOnWriteArrayList<>())
                 .add(listener);
+        this.start();
     }
 
-    private void start() {
-        Thread monitor = new Thread(this);
+    private synchronized void start() {
+        if (this.started && !this.stopped) {
+            return;
+        }
+        this.stopped = false;
+        this.started = true;
+        Thread monitor = new Thread(this, "lock-watcher");
         monitor.setDaemon(true);
         monitor.start();
     }
 
+    /**
+     * Check whether a lock is held by any process.
+     *
+     * @param lock lock
+     * @return true if the lock is held
+     * @throws ApplicationException never; kept for compatibility
+     */
     public boolean watch(final Lock lock) throws ApplicationException {
-        synchronized (Watcher.class) {
-            if (!this.started || this.stopped) {
-                this.stopped = false;
-                this.start();
-            }
-            return locks.containsKey(lock.id());
-        }
+        int slot = table.lookup(lock.id());
+        return slot >= 0 && table.isHeld(slot);
     }
 
     public void register(Lock lock) throws ApplicationException {
         this.register(lock, 0L, TimeUnit.SECONDS);
     }
 
+    /**
+     * Mark the lock as held by this process, if no one holds it.
+     *
+     * @param lock       lock
+     * @param expiration lease after which other processes may take the lock over, or 0 for none
+     * @param tu         time unit of the lease
+     * @throws ApplicationException if the lock table cannot be updated
+     */
     public void register(Lock lock, long expiration, TimeUnit tu) throws ApplicationException {
-        synchronized (Watcher.class) {
-            String lockId = lock.id();
-            if (!locks.containsKey(lockId)) {
-                try (RandomAccessFile lockFile = new RandomAccessFile(LOCK, "rw");
-                        FileLock fileLock = lockFile.getChannel().lock()) {
-                    long length = lockFile.length();
-                    byte[] emptyBuffer = new byte[36];
-
-                    int size = (length >= FIXED_LOCK_DATA_SIZE) ? (int) (length / FIXED_LOCK_DATA_SIZE) : 0;
-                    this.interspace = new int[size];
-
-                    boolean required = true, registered = false;
-                    if (size > 0) {
-                        for (int i = 0; i < size; i++) {
-                            int position = i * FIXED_LOCK_DATA_SIZE;
-                            lockFile.seek(position);
-                            if (lockFile.read(emptyBuffer) != -1) {
-                                if (Arrays.equals(lockId.getBytes(StandardCharsets.UTF_8), emptyBuffer)) {
-                                    if (lockFile.readLong() == 0L) {
-                                        lockFile.seek(position + emptyBuffer.length);
-                                        lockFile.writeLong(1L);
-                                    }
-                                    required = false;
-                                    registered = true;
-                                    break;
-                                }
-                                if (lockFile.readLong() == 0L) {
-                                    this.interspace[i] = 1;
-                                    required = false;
-                                }
-                            }
-                        }
-
-                        if (!registered) {
-                            for (int i = 0; i < size; i++) {
-                                if (this.interspace[i] == 1) {
-                                    lockFile.seek((long) i * FIXED_LOCK_DATA_SIZE);
-                                    lockFile.writeBytes(lockId);
-                                    lockFile.writeLong(1L);
-                                    required = false;
-                                    break;
-                                }
-                            }
-                        }
-                    }
+        try {
+            this.lock(lock, tu.toMillis(expiration), 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApplicationException(e.getMessage(), e);
+        } catch (ApplicationRuntimeException e) {
+            throw new ApplicationException(e.getMessage(), e);
+        }
+    }
 
-                    if (required) {
-                        lockFile.seek((long) size * FIXED_LOCK_DATA_SIZE);
-                        lockFile.writeBytes(lockId);
-                        lockFile.writeLong(1L);
-                    }
+    public void unregister(Lock lock) throws ApplicationException {
+        this.unlock(lock);
+    }
 
-                    this.locks.putIfAbsent(lockId, lock);
-                    java.util.List<EventListener> list = this.listeners.get(lockId);
-                    if (list != null) {
-                        for (EventListener listener : list) {
-                            listener.onCreate(lockId);
-                        }
-                    }
+    /**
+     * Extend the lease of a lock held by this process.
+     *
+     * @param lock       lock
+     * @param expiration new lease from now
+     * @param tu         time unit of the lease
+     * @return false if the lock is no longer held by this process
+     */
+    public boolean renew(Lock lock, long expiration, TimeUnit tu) {
+        Grant grant = this.grants.get(lock.id());
+        return grant != null && table.renew(grant.slot, grant.token, tu.toMillis(expiration));
+    }
 
-                    Watcher.class.notifyAll();
-                } catch (IOException e) {
-                    throw new ApplicationException(e.getMessage(), e.getCause());
-                }
+    /**
+     * Acquire a lock for this process.
+     *
+     * @param lock         lock
+     * @param leaseMillis  lease, or 0 for none
+     * @param timeoutNanos maximum time to wait, 0 to not wait, negative to wait forever
+     * @return true if acquired
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean lock(Lock lock, long leaseMillis, long timeoutNanos) throws InterruptedException {
+        String lockId = lock.id();
+        int slot = table.bind(lockId);
+        long token = table.newToken();
+        boolean acquired = false;
+        try {
+            acquired = table.acquire(slot, token, leaseMillis, timeoutNanos);
+        } finally {
+            if (!acquired) {
+                table.unbind(slot);
             }
         }
+        if (!acquired) {
+            return false;
+        }
+
+        this.grants.put(lockId, new Grant(slot, token));
+        this.locks.put(lockId, lock);
+        fireCreate(lockId);
+        return true;
     }
 
-    public void unregister(Lock lock) throws ApplicationException {
-        synchronized (Watcher.class) {
-            String lockId = lock.id();
-            if (locks.containsKey(lockId)) {
-                try (RandomAccessFile lockFile = new RandomAccessFile(LOCK, "rw")) {
-                    long length = lockFile.length();
-                    if (length < FIXED_LOCK_DATA_SIZE)
-                        return;
-                    try (FileLock fileLock = lockFile.getChannel().lock()) {
-                        byte[] empty = EMPTY_BYTES;
-
-                        int size = (int) (length / FIXED_LOCK_DATA_SIZE);
-                        this.interspace = new int[size];
-
-                        int position;
-                        for (int i = 0; i < size; i++) {
-                            position = i * FIXED_LOCK_DATA_SIZE;
-                            lockFile.seek(position);
-                            boolean condition = lockFile.read(empty) != -1 && Arrays.equals(lockId.getBytes(), empty);
-                            if (condition) {
-                                lockFile.seek(position + EMPTY_BYTES.length); // The pointer should be resumed.
-                                lockFile.writeLong(0L);
-                                this.locks.remove(lockId);
-                                java.util.List<EventListener> list = this.listeners.get(lockId);
-                                if (list != null) {
-                                    for (EventListener listener : list) {
-                                        listener.onDelete(lockId);
-                                    }
-                                }
-
-                                // If all locks are not available, then remove them all and set the lockFile to
-                                // be empty.
-                                if (isAllLocksAvailable(lockFile)) {
-                                    if (!this.locks.isEmpty())
-                                        this.locks.clear();
-
-                                    lockFile.setLength(0);
-                                }
-
-                                break;
-                            }
-                        }
-                        Watcher.class.notifyAll();
-                    }
-                } catch (IOException e) {
-                    throw new ApplicationException(e.getMessage(), e.getCause());
-                }
-            }
+    /**
+     * Release a lock held by this process.
+     *
+     * @param lock lock
+     * @return false if the lock was not held, or was taken over after its lease expired
+     */
+    boolean unlock(Lock lock) {
+        String lockId = lock.id();
+        Grant grant = this.grants.remove(lockId);
+        if (grant == null) {
+            return false;
         }
+        this.locks.remove(lockId);
+
+        boolean released = table.release(grant.slot, grant.token);
+        table.unbind(grant.slot);
+        if (!released) {
+            logger.warning("Lock " + lockId + " had been taken over before it was released");
+        }
+        fireDelete(lockId);
+        return released;
     }
 
-    private boolean isAllLocksAvailable(RandomAccessFile lockFile) throws IOException {
-        long length = lockFile.length();
-        if (length == 0)
-            return true;
-
-        lockFile.seek(0);
-        int size = (int) (length / FIXED_LOCK_DATA_SIZE);
-        for (int i = 0; i < size; i++) {
-            lockFile.skipBytes(36);
-            if (lockFile.readLong() == 1L) {
-                return false;
+    private void fireCreate(String lockId) {
+        java.util.List<EventListener> list = this.listeners.get(lockId);
+        if (list != null) {
+            for (EventListener listener : list) {
+                listener.onCreate(lockId);
             }
         }
-        return true;
     }
 
-    public Lock acquire() {
-        synchronized (Watcher.class) {
-            Lock lock;
-            if (null != this.locks && !this.locks.isEmpty()
-                    && null != (lock = this.locks.values().toArray(new Lock[] {})[0])) {
-                return lock;
+    private void fireDelete(String lockId) {
+        java.util.List<EventListener> list = this.listeners.get(lockId);
+        if (list != null) {
+            for (EventListener listener : list) {
+                listener.onDelete(lockId);
             }
+        }
+    }
 
-            return new DistributedLock();
+    public Lock acquire() {
+        for (Lock lock : this.locks.values()) {
+            return lock;
         }
+
+        return new DistributedLock();
     }
 
     public void stop() {
         this.stopped = this.locks.isEmpty();
     }
 
+    private static final class Grant {
+        final int slot;
+        final long token;
+
+        Grant(int slot, long token) {
+            this.slot = slot;
+            this.token = token;
+        }
+    }
+
     public interface EventListener {
         /**
          * To be triggered when a lock created.
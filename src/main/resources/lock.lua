@@ -1,13 +1,59 @@
-local key = KEYS[1]
-local content = KEYS[2]
-local ttl = ARGV[1]
-local lock_set = redis.call('setnx', key, content)
-if lock_set == 1 then
-    redis.call('pexpire', key, ttl)
-else
-    local value = redis.call('get', key)
-    if(value == content) then
-        lock_set = 1; redis.call('pexpire', key, ttl)
+-- KEYS[1] lock hash (owner -> hold count), KEYS[2] waiting queue (owner by ticket),
+-- KEYS[3] waiter deadlines (owner by time)
+-- ARGV[1] owner, ARGV[2] lease in ms, ARGV[3] how long a waiter stays queued without asking again in ms,
+-- ARGV[4] '1' to queue waiters fairly
+-- Returns nil when the lock is acquired, otherwise the remaining lease of the holder in ms (-2 if free but promised)
+local lock, queue, alive = KEYS[1], KEYS[2], KEYS[3]
+local owner, lease, ttl, fair = ARGV[1], tonumber(ARGV[2]), tonumber(ARGV[3]), ARGV[4] == '1'
+
+if redis.call('hexists', lock, owner) == 1 then
+    redis.call('hincrby', lock, owner, 1)
+    redis.call('pexpire', lock, lease)
+    return nil
+end
+
+local clock = redis.call('time')
+local now = tonumber(clock[1]) * 1000 + math.floor(tonumber(clock[2]) / 1000)
+if fair then
+    -- forget waiters that stopped asking
+    while true do
+        local head = redis.call('zrange', queue, 0, 0)[1]
+        if not head then
+            break
+        end
+        local deadline = redis.call('zscore', alive, head)
+        if deadline and tonumber(deadline) > now then
+            break
+        end
+        redis.call('zrem', queue, head)
+        redis.call('zrem', alive, head)
+    end
+end
+
+if redis.call('exists', lock) == 0 then
+    local head = fair and redis.call('zrange', queue, 0, 0)[1]
+    if not head or head == owner then
+        if head then
+            redis.call('zrem', queue, owner)
+            redis.call('zrem', alive, owner)
+        end
+        redis.call('hset', lock, owner, 1)
+        redis.call('pexpire', lock, lease)
+        return nil
+    end
+end
+
+if fair and ttl > 0 then
+    if not redis.call('zscore', queue, owner) then
+        local tail = redis.call('zrange', queue, -1, -1, 'withscores')
+        local ticket = 1
+        if tail[2] then
+            ticket = tonumber(tail[2]) + 1
+        end
+        redis.call('zadd', queue, ticket, owner)
     end
+    redis.call('zadd', alive, now + ttl, owner)
+    redis.call('pexpire', queue, ttl)
+    redis.call('pexpire', alive, ttl)
 end
-return lock_set;
\ No newline at end of file
+return redis.call('pttl', lock)
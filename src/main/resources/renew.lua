@@ -0,0 +1,8 @@
+-- KEYS[1] lock hash (owner -> hold count)
+-- ARGV[1] owner, ARGV[2] lease in ms
+-- Returns 1 if the lease was extended, 0 if the owner no longer holds the lock
+if redis.call('hexists', KEYS[1], ARGV[1]) == 1 then
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    return 1
+end
+return 0
@@ -1,7 +1,15 @@
-local key = KEYS[1]
-local content = KEYS[2]
-local value = redis.call('get', key)
-if value == content then
-    return redis.call('del', key);
+-- KEYS[1] lock hash (owner -> hold count)
+-- ARGV[1] owner, ARGV[2] lease in ms, ARGV[3] channel notified when the lock is free
+-- Returns the remaining hold count, or -1 if the owner does not hold the lock
+local lock, owner = KEYS[1], ARGV[1]
+if redis.call('hexists', lock, owner) == 0 then
+    return -1
 end
-return 0;
\ No newline at end of file
+local count = redis.call('hincrby', lock, owner, -1)
+if count > 0 then
+    redis.call('pexpire', lock, ARGV[2])
+    return count
+end
+redis.call('del', lock)
+redis.call('publish', ARGV[3], owner)
+return 0
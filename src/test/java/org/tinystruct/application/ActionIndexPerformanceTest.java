@@ -0,0 +1,151 @@
+package org.tinystruct.application;
+
+import org.junit.jupiter.api.Test;
+import org.tinystruct.AbstractApplication;
+import org.tinystruct.ApplicationException;
+import org.tinystruct.system.Settings;
+import org.tinystruct.system.annotation.Action.Mode;
+import org.tinystruct.system.annotation.Argument;
+import org.tinystruct.system.metrics.MetricsRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Compares registering an application from its action index with
+ * registering it by reflection over its annotations, for the first instance
+ * of a class and for instances after warm-up, and shows what resolving the
+ * method handle costs on the first call of an indexed action.
+ * <p>
+ * Both classes are loaded before timing, so the cold figures leave out class
+ * loading and only count the first registration in this JVM.
+ * </p>
+ */
+public class ActionIndexPerformanceTest {
+
+    private static final int ITERATIONS = 200;
+    private static final int WARMUP_ITERATIONS = 50;
+
+    @Test
+    public void testRegistrationPerformance() throws ApplicationException {
+        // Settings are shared, so the index is switched off for the reflection runs only
+        Settings settings = new Settings();
+
+        // Load both classes up front
+        new ReflectedRoutes();
+        new IndexedRoutes();
+
+        System.out.println("=== Action Index Performance Test ===");
+
+        settings.set("action.index.enabled", "false");
+        long coldReflection, reflectionTime;
+        try {
+            long start = System.nanoTime();
+            new ReflectedRoutes().setConfiguration(settings);
+            coldReflection = System.nanoTime() - start;
+
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                new ReflectedRoutes().setConfiguration(settings);
+            }
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                new ReflectedRoutes().setConfiguration(settings);
+            }
+            reflectionTime = System.nanoTime() - start;
+        } finally {
+            settings.remove("action.index.enabled");
+        }
+
+        long start = System.nanoTime();
+        new IndexedRoutes().setConfiguration(settings);
+        long coldIndex = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        Action action = ActionRegistry.getInstance().getAction("index-perf/item/3/size/4");
+        assertNotNull(action);
+        assertEquals(12, action.execute());
+        long firstCall = System.nanoTime() - start;
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            new IndexedRoutes().setConfiguration(settings);
+        }
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            new IndexedRoutes().setConfiguration(settings);
+        }
+        long indexTime = System.nanoTime() - start;
+
+        System.out.printf("First registration, reflection:  %d us%n", coldReflection / 1000);
+        System.out.printf("First registration, index:       %d us%n", coldIndex / 1000);
+        System.out.printf("First call of an indexed action: %d us%n", firstCall / 1000);
+        System.out.printf("Registration, reflection:        %d us/app%n", reflectionTime / ITERATIONS / 1000);
+        System.out.printf("Registration, index:             %d us/app%n", indexTime / ITERATIONS / 1000);
+
+        String metrics = MetricsRegistry.getInstance().scrape();
+        metrics.lines().filter(line -> line.startsWith("tinystruct_action_registration_seconds_count"))
+                .forEach(System.out::println);
+    }
+
+    @org.tinystruct.system.annotation.Action(value = "index-perf", description = "Routes to register",
+            options = {@Argument(key = "verbose", description = "Print more")})
+    public static class IndexedRoutes extends AbstractApplication {
+        @Override
+        public void init() {
+            this.setTemplateRequired(false);
+        }
+
+        @org.tinystruct.system.annotation.Action(value = "index-perf/item/{id}/size/{size}", description = "Item size",
+                arguments = {@Argument(key = "id", description = "Item"), @Argument(key = "size", description = "Size")})
+        public int item(int id, int size) {
+            return id * size;
+        }
+
+        @org.tinystruct.system.annotation.Action(value = "index-perf/list", description = "List items", mode = Mode.HTTP_GET)
+        public String list() {
+            return "list";
+        }
+
+        @org.tinystruct.system.annotation.Action(value = "index-perf/list", description = "Add an item", mode = Mode.HTTP_POST)
+        public String add(String name) {
+            return name;
+        }
+
+        @org.tinystruct.system.annotation.Action(value = "index-perf/price", description = "Price of an item")
+        public double price(long id, double rate) {
+            return id * rate;
+        }
+
+        @org.tinystruct.system.annotation.Action(value = "index-perf/enabled", description = "Switch")
+        public boolean enabled(boolean on) {
+            return on;
+        }
+
+        @org.tinystruct.system.annotation.Action(value = "index-perf/user/{name}/role/{role}", description = "Role of a user")
+        public String role(String name, String role) {
+            return name + ":" + role;
+        }
+
+        @org.tinystruct.system.annotation.Action(value = "index-perf/report", description = "Report", mode = Mode.CLI,
+                options = {@Argument(key = "from", description = "Start date"), @Argument(key = "to", description = "End date")})
+        public String report() {
+            return "report";
+        }
+
+        @org.tinystruct.system.annotation.Action(value = "index-perf/grade", description = "Grade")
+        public char grade(char value) {
+            return value;
+        }
+
+        @Override
+        public String version() {
+            return "1.0";
+        }
+    }
+
+    @org.tinystruct.system.annotation.Action(value = "index-perf", description = "Routes to register",
+            options = {@Argument(key = "verbose", description = "Print more")})
+    public static class ReflectedRoutes extends IndexedRoutes {
+    }
+}
@@ -0,0 +1,201 @@
+package org.tinystruct.application;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.tinystruct.AbstractApplication;
+import org.tinystruct.ApplicationException;
+import org.tinystruct.http.Request;
+import org.tinystruct.system.Settings;
+import org.tinystruct.system.annotation.Action.Mode;
+import org.tinystruct.system.annotation.Argument;
+import org.tinystruct.system.cli.CommandLine;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The action index is written by the annotation processor while the tests
+ * compile; registering from it must give the same routes and help as
+ * registering by reflection.
+ */
+public class ActionIndexTest {
+
+    private static IndexedApp indexed;
+    private static ReflectedApp reflected;
+
+    @BeforeAll
+    public static void setup() {
+        indexed = new IndexedApp();
+        indexed.setConfiguration(new Settings());
+
+        // Settings are shared, so the switch is only off while the other application registers
+        Settings settings = new Settings();
+        settings.set("action.index.enabled", "false");
+        try {
+            reflected = new ReflectedApp();
+            reflected.setConfiguration(settings);
+        } finally {
+            settings.remove("action.index.enabled");
+        }
+    }
+
+    @Test
+    public void testIndexIsGenerated() throws IOException {
+        ActionIndex index = ActionIndex.load(IndexedApp.class);
+        assertNotNull(index, "The annotation processor should have indexed the application");
+        // The command of the class, six actions and the inherited --help
+        assertEquals(8, index.size());
+        assertNull(ActionIndex.load(ActionIndexTest.class));
+    }
+
+    @Test
+    public void testOutOfDateIndexIsRefused() {
+        // The index in the test resources was written for a method StaleRoutes no longer has
+        IOException e = assertThrows(IOException.class, () -> ActionIndex.load(StaleRoutes.class));
+        assertTrue(e.getMessage().startsWith("Out of date action index"), e.getMessage());
+    }
+
+    @Test
+    public void testRoutesMatchReflection() {
+        List<Action> fromIndex = actions(IndexedApp.class);
+        List<Action> fromReflection = actions(ReflectedApp.class);
+        assertEquals(7, fromIndex.size());
+        assertEquals(fromReflection.size(), fromIndex.size());
+
+        for (Action action : fromIndex) {
+            Action expected = fromReflection.stream()
+                    .filter(a -> a.getMethod().equals(action.getMethod()) && a.getMode() == action.getMode())
+                    .findFirst().orElseThrow(() -> new AssertionError("Not registered by reflection: " + action.getMethod()));
+            assertEquals(expected.getPathRule(), action.getPathRule(), action.getMethod());
+            assertEquals(expected.getPriority(), action.getPriority(), action.getMethod());
+        }
+    }
+
+    @Test
+    public void testHelpMatchesReflection() {
+        Map<String, Map<Mode, CommandLine>> fromIndex = indexed.getCommandLines();
+        Map<String, Map<Mode, CommandLine>> fromReflection = reflected.getCommandLines();
+        assertEquals(fromReflection.keySet(), fromIndex.keySet());
+
+        for (Map.Entry<String, Map<Mode, CommandLine>> entry : fromIndex.entrySet()) {
+            Map<Mode, CommandLine> expected = fromReflection.get(entry.getKey());
+            assertEquals(expected.keySet(), entry.getValue().keySet(), entry.getKey());
+            for (Map.Entry<Mode, CommandLine> command : entry.getValue().entrySet()) {
+                assertEquals(describe(expected.get(command.getKey())), describe(command.getValue()));
+            }
+        }
+        assertTrue(indexed.getCommandLines().get("index-test/sum").get(Mode.DEFAULT).help().contains("bin/dispatcher index-test/sum/1/2"));
+    }
+
+    @Test
+    public void testIndexedActionsAreCalled() throws ApplicationException {
+        ActionRegistry registry = ActionRegistry.getInstance();
+
+        Action sum = registry.getAction("index-test/sum/2/3");
+        assertNotNull(sum);
+        assertEquals(5, sum.execute());
+
+        Action posts = registry.getAction("index-test/user/42/posts/7");
+        assertNotNull(posts);
+        assertEquals("42:7", posts.execute());
+
+        Action flag = registry.getAction("index-test/flag/true");
+        assertNotNull(flag);
+        assertEquals(Boolean.TRUE, flag.execute());
+        assertNotNull(flag.getMethodHandle());
+    }
+
+    @Test
+    public void testPlaceholdersOutOfOrderMatchReflection() throws ApplicationException {
+        Action fromIndex = swap(IndexedApp.class);
+        Action fromReflection = swap(ReflectedApp.class);
+        assertEquals(fromReflection.getPathRule(), fromIndex.getPathRule());
+        assertEquals(fromReflection.getPriority(), fromIndex.getPriority());
+
+        // Without @Argument keys the placeholders take the parameters in order, whatever their names
+        Action swap = ActionRegistry.getInstance().getAction("index-test/swap/5/x");
+        assertNotNull(swap);
+        assertEquals("5:x", swap.execute());
+    }
+
+    private static Action swap(Class<?> type) {
+        return actions(type).stream().filter(action -> action.getPathRule().contains("swap")).findFirst()
+                .orElseThrow(() -> new AssertionError("Not registered: " + type.getSimpleName()));
+    }
+
+    // Arguments are kept in a hash set, so the help lists them in no particular order
+    private static String describe(CommandLine command) {
+        return command.getCommand() + " " + command.getMode() + " " + command.getDescription() + " " + command.getExample() + " "
+                + command.getArguments().stream().map(a -> a.getKey() + "=" + a.getDescription()).sorted().collect(Collectors.toList()) + " "
+                + command.getOptions().stream().map(o -> o.getKey() + "=" + o.getDescription()).collect(Collectors.toList());
+    }
+
+    private static List<Action> actions(Class<?> type) {
+        return ActionRegistry.getInstance().list().stream()
+                .filter(action -> action.getApplicationName().equals(type.getName()))
+                .collect(Collectors.toList());
+    }
+
+    @org.tinystruct.system.annotation.Action(value = "index-test", description = "An application registered from its action index",
+            options = {@Argument(key = "verbose", description = "Print more")})
+    public static class IndexedApp extends AbstractApplication {
+        @Override
+        public void init() {
+            this.setTemplateRequired(false);
+        }
+
+        @org.tinystruct.system.annotation.Action(value = "index-test/sum", description = "Add two numbers",
+                arguments = {@Argument(key = "a", description = "A number"), @Argument(key = "b", description = "Another number")},
+                options = {@Argument(key = "format", description = "Output format")},
+                example = "bin/dispatcher index-test/sum/1/2")
+        public int sum(int a, int b) {
+            return a + b;
+        }
+
+        @org.tinystruct.system.annotation.Action(value = "index-test/user/{id}/posts/{page}", description = "Posts of a user")
+        public String posts(long id, int page) {
+            return id + ":" + page;
+        }
+
+        @org.tinystruct.system.annotation.Action(value = "index-test/echo", description = "Echo\tthe words", mode = Mode.HTTP_POST)
+        public String echo(Request<?, ?> request, String words) {
+            return words;
+        }
+
+        @org.tinystruct.system.annotation.Action(value = "index-test/tags", description = "Tags", mode = Mode.CLI)
+        public String[] tags(String... tags) {
+            return tags;
+        }
+
+        @org.tinystruct.system.annotation.Action(value = "index-test/swap/{b}/{a}", description = "Placeholders out of order")
+        public String swap(int a, String b) {
+            return a + ":" + b;
+        }
+
+        @org.tinystruct.system.annotation.Action(value = "index-test/flag")
+        public boolean flag(boolean on) {
+            return on;
+        }
+
+        @Override
+        public String version() {
+            return "1.0";
+        }
+    }
+
+    @org.tinystruct.system.annotation.Action(value = "index-test", description = "An application registered from its action index",
+            options = {@Argument(key = "verbose", description = "Print more")})
+    public static class ReflectedApp extends IndexedApp {
+    }
+
+    public static class StaleRoutes {
+        @org.tinystruct.system.annotation.Action(value = "index-test/stale/{id}")
+        public String stale(long id) {
+            return String.valueOf(id);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.tinystruct.data;
+
+import org.junit.jupiter.api.Test;
+import org.tinystruct.data.tools.SQLInjectionDetector;
+import org.tinystruct.data.tools.SQLInjectionException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the one-pass scanner of {@link SQLInjectionDetector}, with and
+ * without its verdict cache, against the regular expressions it replaced, on
+ * statements as the repositories and {@link org.tinystruct.data.component.Condition}
+ * generate them.
+ */
+public class SQLInjectionDetectorPerformanceTest {
+
+    private static final int ITERATIONS = 5000;
+    private static final int WARMUP_ITERATIONS = 1000;
+
+    // The patterns checked before the scanner
+    private static final Pattern[] REGEX_PATTERNS = new Pattern[]{
+            Pattern.compile("(?i)\\sOR\\s+1=1"),
+            Pattern.compile("(?i)\\sOR\\s+'1'='1'"),
+            Pattern.compile("(?i)--[^\r\n]*"),
+            Pattern.compile(";"),
+            Pattern.compile("(?i)\\bUNION\\b\\s+SELECT"),
+            Pattern.compile("(?i)\\bSELECT\\b\\s+\\*\\s+\\bFROM\\b"),
+            Pattern.compile("(?i)\\bSLEEP\\b\\s*\\(|\\bBENCHMARK\\b\\s*\\(|\\bWAITFOR\\b\\s+DELAY"),
+            Pattern.compile("(?i)@@\\w+|\\bDATABASE\\b\\s*\\(|\\bUSER\\b\\s*\\("),
+            Pattern.compile("(?i)\\b0x[0-9A-Fa-f]+\\b|\\b0b[01]+\\b"),
+            Pattern.compile("(?i)\\bLIKE\\b\\s+['\"].*[%_].*['\"]"),
+            Pattern.compile("(?i)\\bCAST\\b\\s*\\(|\\bCONVERT\\b\\s*\\("),
+            Pattern.compile("(?i)\\bAND\\b\\s+['\"]?.*['\"]?\\b=\\b|\\bOR\\b\\s+['\"]?.*['\"]?\\b=\\b"),
+            Pattern.compile("(?i)\\b(DROP|ALTER|CREATE|TRUNCATE|RENAME|INSERT|UPDATE|DELETE)\\b\\s+TABLE")
+    };
+
+    @Test
+    public void testScanPerformance() {
+        List<String> statements = createStatements();
+        System.out.println("=== SQLInjectionDetector Performance Test ===");
+        System.out.println("Statements: " + statements.size() + ", iterations: " + ITERATIONS);
+
+        int regexFlagged = 0, scannerFlagged = 0;
+        for (String sql : statements) {
+            if (regex(sql)) regexFlagged++;
+            if (!SQLInjectionDetector.findUnsafeConstructs(sql).isEmpty()) scannerFlagged++;
+        }
+        System.out.println("Flagged by regular expressions: " + regexFlagged + ", by the scanner: " + scannerFlagged);
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            for (String sql : statements) {
+                regex(sql);
+                SQLInjectionDetector.findUnsafeConstructs(sql);
+                cached(sql);
+            }
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (String sql : statements) {
+                regex(sql);
+            }
+        }
+        long regexTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (String sql : statements) {
+                SQLInjectionDetector.findUnsafeConstructs(sql);
+            }
+        }
+        long scanTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (String sql : statements) {
+                cached(sql);
+            }
+        }
+        long cachedTime = System.nanoTime() - start;
+
+        long checks = (long) ITERATIONS * statements.size();
+        System.out.printf("Regular expressions: %d ns/statement%n", regexTime / checks);
+        System.out.printf("Scanner:             %d ns/statement%n", scanTime / checks);
+        System.out.printf("Scanner, cached:     %d ns/statement%n", cachedTime / checks);
+        assertTrue(scannerFlagged < regexFlagged);
+    }
+
+    private static List<String> createStatements() {
+        List<String> statements = new ArrayList<>();
+        String[] tables = {"`users`", "`orders`", "`order_items`", "`products`"};
+        for (String table : tables) {
+            statements.add("INSERT INTO " + table + " (`id`,`name`,`email`,`status`,`created_at`,`updated_at`) VALUES(?,?,?,?,?,?)");
+            statements.add("UPDATE " + table + " SET `name`=?,`email`=?,`status`=?,`updated_at`=? WHERE id=?");
+            statements.add("SELECT * FROM " + table + " WHERE id=?");
+            statements.add("SELECT * FROM " + table + " WHERE status=? AND created_at>=? ORDER BY created_at DESC LIMIT 0,20");
+            statements.add("SELECT id,name,email FROM " + table + " WHERE name LIKE ? OR email LIKE ? ORDER BY id");
+            statements.add("DELETE FROM " + table + " WHERE id=?");
+            statements.add("SELECT COUNT(*) AS size FROM " + table + " WHERE status=?");
+        }
+        statements.add("SELECT o.id, o.total, u.name FROM `orders` o INNER JOIN `users` u ON o.user_id=u.id WHERE o.status IN (?,?,?) AND o.total>? ORDER BY o.created_at DESC");
+        return statements;
+    }
+
+    private static boolean regex(String sql) {
+        boolean found = false;
+        for (Pattern pattern : REGEX_PATTERNS) {
+            if (pattern.matcher(sql).find()) {
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    private static boolean cached(String sql) {
+        try {
+            SQLInjectionDetector.checkForUnsafeSQL(sql);
+            return false;
+        } catch (SQLInjectionException e) {
+            return true;
+        }
+    }
+}
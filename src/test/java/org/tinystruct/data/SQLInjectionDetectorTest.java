@@ -4,8 +4,9 @@ import org.junit.jupiter.api.Test;
 import org.tinystruct.data.tools.SQLInjectionDetector;
 import org.tinystruct.data.tools.SQLInjectionException;
 
-import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class SQLInjectionDetectorTest {
 
@@ -30,4 +31,53 @@ public class SQLInjectionDetectorTest {
         assertDoesNotThrow(() -> SQLInjectionDetector.checkForUnsafeSQL(safeSql1));
         assertDoesNotThrow(() -> SQLInjectionDetector.checkForUnsafeSQL(safeSql2));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testConstructsFound() {
+        assertEquals(List.of("OR 1=1"), SQLInjectionDetector.findUnsafeConstructs("SELECT * FROM t WHERE id = 5 OR 1=1"));
+        assertEquals(List.of("or \"a\" = \"a\""), SQLInjectionDetector.findUnsafeConstructs("SELECT * FROM t WHERE name = '' or \"a\" = \"a\""));
+        assertEquals(List.of("AND name=NAME"), SQLInjectionDetector.findUnsafeConstructs("SELECT * FROM t WHERE id = ? AND name=NAME"));
+        assertEquals(List.of("UNION ALL SELECT"), SQLInjectionDetector.findUnsafeConstructs("SELECT a FROM t WHERE id = 1 UNION ALL SELECT password FROM users"));
+        assertEquals(List.of("/* x */"), SQLInjectionDetector.findUnsafeConstructs("SELECT a FROM t /* x */ WHERE id = ?"));
+        assertEquals(List.of("#'"), SQLInjectionDetector.findUnsafeConstructs("SELECT a FROM t WHERE name = 'x' #'"));
+        assertEquals(List.of("#and 1=1"), SQLInjectionDetector.findUnsafeConstructs("SELECT a FROM t WHERE id=1 #and 1=1"));
+        assertEquals(List.of("#x"), SQLInjectionDetector.findUnsafeConstructs("SELECT * FROM #temp WHERE id = 1 #x"));
+        assertEquals(List.of("; DELETE"), SQLInjectionDetector.findUnsafeConstructs("UPDATE t SET a = 1; DELETE FROM t"));
+        assertEquals(List.of("SLEEP(", "@@version", "0x41"), SQLInjectionDetector.findUnsafeConstructs("SELECT SLEEP(5), @@version, 0x41"));
+        assertEquals(List.of("WAITFOR DELAY"), SQLInjectionDetector.findUnsafeConstructs("SELECT 1 WAITFOR DELAY '0:0:5'"));
+        assertEquals(List.of("INTO OUTFILE"), SQLInjectionDetector.findUnsafeConstructs("SELECT * FROM t INTO OUTFILE '/tmp/x'"));
+        assertEquals(List.of("unterminated string literal '1"), SQLInjectionDetector.findUnsafeConstructs("SELECT * FROM t WHERE a = 'x' OR '1'='1"));
+        assertEquals(List.of("database("), SQLInjectionDetector.findUnsafeConstructs("SELECT database()"));
+    }
+
+    @Test
+    public void testFewerFalsePositives() {
+        // Separators, comment markers and keywords inside literals and identifiers are data
+        String[] safe = {
+                "SELECT * FROM users WHERE id = ?",
+                "SELECT * FROM `order` WHERE `union` = ? AND note = 'a; b -- c /* d */ OR 1=1'",
+                "SELECT name FROM products WHERE name LIKE '%phone_'",
+                "SELECT CAST(price AS DECIMAL(10, 2)) FROM products WHERE id = ?",
+                "INSERT INTO user (name, email) VALUES (?, ?)",
+                "UPDATE users SET name = 'O''Brien', email = ? WHERE id = ?",
+                "SELECT * FROM #temp WHERE [select] = ?",
+                "INSERT INTO #staging SELECT t.a FROM t JOIN #lookup l ON t.id = l.id",
+                "SELECT a.id, b.id FROM a JOIN b ON a.id = b.id WHERE a.flag = 1 AND b.flag = 0",
+                "SELECT user_id, created_at FROM sessions WHERE expires > ? ORDER BY created_at DESC LIMIT 10;",
+                "SELECT 1.5e3, -2, .5 FROM dual WHERE x <> ? AND y >= ?"
+        };
+        for (String sql : safe) {
+            assertEquals(List.of(), SQLInjectionDetector.findUnsafeConstructs(sql), sql);
+            assertDoesNotThrow(() -> SQLInjectionDetector.checkForUnsafeSQL(sql));
+        }
+    }
+
+    @Test
+    public void testVerdictsAreCached() {
+        String sql = "SELECT * FROM t WHERE id = 1 OR 1=1";
+        SQLInjectionException first = assertThrows(SQLInjectionException.class, () -> SQLInjectionDetector.checkForUnsafeSQL(sql));
+        SQLInjectionException second = assertThrows(SQLInjectionException.class, () -> SQLInjectionDetector.checkForUnsafeSQL(new String(sql)));
+        assertEquals("Potential SQL injection detected: OR 1=1\n", first.getMessage());
+        assertEquals(first.getMessage(), second.getMessage());
+    }
+}
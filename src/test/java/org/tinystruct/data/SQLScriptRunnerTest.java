@@ -0,0 +1,237 @@
+package org.tinystruct.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.tinystruct.ApplicationException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SQLScriptRunnerTest {
+    private static int databases;
+    private String url;
+    private Connection keeper;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        url = "jdbc:h2:mem:script" + (++databases) + ";DB_CLOSE_DELAY=-1";
+        keeper = DriverManager.getConnection(url);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        keeper.createStatement().execute("SHUTDOWN");
+        keeper.close();
+    }
+
+    @Test
+    void testSplitsStatements() throws IOException {
+        String script = "-- header comment\n"
+                + "CREATE TABLE t (id INT, name VARCHAR(50));\n"
+                + "INSERT INTO t VALUES (1, 'a;b');  # trailing\n"
+                + "/* block ; comment */ INSERT INTO `t` VALUES (2, 'it''s');\n"
+                + "INSERT INTO t VALUES (3, 'back\\'slash;');\n"
+                + "/*!40101 SET NAMES utf8 */;\n"
+                + "DELIMITER $$\n"
+                + "CREATE PROCEDURE p() BEGIN SELECT 1; SELECT 2; END$$\n"
+                + "DELIMITER ;\n"
+                + "CREATE FUNCTION f() RETURNS int AS $body$ SELECT 1; $body$ LANGUAGE sql;\n"
+                + "UPDATE t SET name = \"x;y\" WHERE id = 1";
+
+        List<SQLScriptReader.Statement> statements = new ArrayList<>();
+        try (SQLScriptReader reader = new SQLScriptReader(new StringReader(script))) {
+            SQLScriptReader.Statement statement;
+            while ((statement = reader.next()) != null) {
+                statements.add(statement);
+            }
+        }
+
+        assertEquals(8, statements.size());
+        assertEquals("CREATE TABLE t (id INT, name VARCHAR(50))", statements.get(0).getSql());
+        assertEquals(2, statements.get(0).getLine());
+        assertEquals(SQLScriptReader.Statement.Kind.OTHER, statements.get(0).getKind());
+
+        assertEquals("INSERT INTO t VALUES (1, 'a;b')", statements.get(1).getSql());
+        assertEquals(SQLScriptReader.Statement.Kind.DML, statements.get(1).getKind());
+        assertEquals("t", statements.get(1).getTable());
+
+        assertEquals("INSERT INTO `t` VALUES (2, 'it''s')", statements.get(2).getSql());
+        assertEquals(4, statements.get(2).getLine());
+        assertEquals("t", statements.get(2).getTable());
+
+        assertEquals("INSERT INTO t VALUES (3, 'back\\'slash;')", statements.get(3).getSql());
+        assertEquals("/*!40101 SET NAMES utf8 */", statements.get(4).getSql());
+        assertEquals(SQLScriptReader.Statement.Kind.SESSION, statements.get(4).getKind());
+        assertEquals("CREATE PROCEDURE p() BEGIN SELECT 1; SELECT 2; END", statements.get(5).getSql());
+        assertEquals("CREATE FUNCTION f() RETURNS int AS $body$ SELECT 1; $body$ LANGUAGE sql", statements.get(6).getSql());
+        assertEquals("UPDATE t SET name = \"x;y\" WHERE id = 1", statements.get(7).getSql());
+        assertEquals("t", statements.get(7).getTable());
+        assertEquals(8, statements.get(7).getIndex());
+    }
+
+    @Test
+    void testSkipsDoubleSlashComments() throws IOException {
+        String script = "// generated\n"
+                + "CREATE TABLE t (id INT);\n"
+                + "  // rows\n"
+                + "INSERT INTO t VALUES (1);\n"
+                + "SELECT 'http://example.com' FROM t";
+
+        List<String> statements = new ArrayList<>();
+        try (SQLScriptReader reader = new SQLScriptReader(new StringReader(script))) {
+            SQLScriptReader.Statement statement;
+            while ((statement = reader.next()) != null) {
+                statements.add(statement.getSql());
+            }
+        }
+
+        assertEquals(List.of("CREATE TABLE t (id INT)", "INSERT INTO t VALUES (1)", "SELECT 'http://example.com' FROM t"), statements);
+    }
+
+    @Test
+    void testRunsScriptInBatches() throws Exception {
+        Path file = Files.createTempFile("script", ".sql");
+        Files.write(file, script(2000, -1).getBytes(StandardCharsets.UTF_8));
+
+        List<SQLScriptRunner.Progress> reports = new ArrayList<>();
+        SQLScriptRunner.Progress result = runner()
+                .setBatchSize(100)
+                .setCommitInterval(500)
+                .setBackslashEscapes(false)
+                .setProgressListener(reports::add)
+                .run(file);
+
+        assertEquals(2001, result.getExecuted());
+        assertEquals(2001, result.getCommitted());
+        assertEquals(Files.size(file), result.getBytes());
+        assertEquals(100.0, result.getPercent(), 0.001);
+        assertFalse(reports.isEmpty());
+        assertEquals(2000, count("items"));
+        assertEquals("item;7", string("SELECT name FROM items WHERE id = 7"));
+    }
+
+    @Test
+    void testFailureReportsResumePointAndResumes() throws Exception {
+        SQLScriptException error = assertThrows(SQLScriptException.class, () -> runner()
+                .setBatchSize(10)
+                .setCommitInterval(20)
+                .setBackslashEscapes(false)
+                .run(new StringReader(script(100, 55))));
+
+        // Statement 1 creates the table, rows start at statement 2
+        assertEquals(57, error.getStatement());
+        assertEquals(42, error.getResumeFrom());
+        assertEquals(40, count("items"));
+
+        SQLScriptRunner.Progress result = runner()
+                .setBatchSize(10)
+                .setCommitInterval(20)
+                .setBackslashEscapes(false)
+                .setResumeFrom(error.getResumeFrom())
+                .run(new StringReader(script(100, -1)));
+
+        assertEquals(41, result.getSkipped());
+        assertEquals(60, result.getExecuted());
+        assertEquals(100, count("items"));
+    }
+
+    @Test
+    void testParallelTables() throws Exception {
+        StringBuilder script = new StringBuilder();
+        script.append("SET SCHEMA PUBLIC;\n");
+        script.append("CREATE TABLE a (id INT PRIMARY KEY);\n");
+        script.append("CREATE TABLE b (id INT PRIMARY KEY);\n");
+        script.append("CREATE TABLE c (id INT PRIMARY KEY);\n");
+        for (int i = 0; i < 3000; i++) {
+            script.append("INSERT INTO ").append("abc".charAt(i % 3)).append(" VALUES (").append(i).append(");\n");
+            if (i == 1500) {
+                script.append("CREATE TABLE d (id INT);\n");
+                script.append("INSERT INTO d VALUES (1);\n");
+            }
+        }
+        script.append("DELETE FROM a WHERE id < 30;\n");
+
+        SQLScriptRunner.Progress result = runner()
+                .setParallelism(3)
+                .setBatchSize(50)
+                .setCommitInterval(700)
+                .run(new StringReader(script.toString()));
+
+        assertEquals(3007, result.getExecuted());
+        assertEquals(990, count("a"));
+        assertEquals(1000, count("b"));
+        assertEquals(1000, count("c"));
+        assertEquals(1, count("d"));
+    }
+
+    @Test
+    void testParallelFailureCommitsNoConnection() throws Exception {
+        StringBuilder script = new StringBuilder();
+        script.append("CREATE TABLE a (id INT PRIMARY KEY);\n");
+        script.append("CREATE TABLE b (id INT PRIMARY KEY);\n");
+        for (int i = 0; i < 200; i++) {
+            // Table a fails at its last row, table b has nothing wrong
+            int id = i == 198 ? 196 : i;
+            script.append("INSERT INTO ").append(i % 2 == 0 ? 'a' : 'b').append(" VALUES (").append(id).append(");\n");
+        }
+
+        SQLScriptException error = assertThrows(SQLScriptException.class, () -> runner()
+                .setParallelism(2)
+                .setBatchSize(10)
+                .setCommitInterval(1000)
+                .run(new StringReader(script.toString())));
+
+        assertEquals(3, error.getResumeFrom());
+        assertEquals(0, count("a"));
+        assertEquals(0, count("b"), "The other connection committed past the resume point");
+    }
+
+    private SQLScriptRunner runner() {
+        return new SQLScriptRunner(() -> {
+            try {
+                return new DatabaseOperator(DriverManager.getConnection(url));
+            } catch (SQLException e) {
+                throw new ApplicationException(e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * A table and one insert per row; the row at {@code duplicate} repeats the previous id.
+     */
+    private static String script(int rows, int duplicate) {
+        StringBuilder script = new StringBuilder("CREATE TABLE IF NOT EXISTS items (id INT PRIMARY KEY, name VARCHAR(50));\n");
+        for (int i = 0; i < rows; i++) {
+            int id = i == duplicate ? i - 1 : i;
+            script.append("-- row ").append(i).append('\n');
+            script.append("INSERT INTO items VALUES (").append(id).append(", 'item;").append(id).append("');\n");
+        }
+        return script.toString();
+    }
+
+    private int count(String table) throws SQLException {
+        try (ResultSet set = keeper.createStatement().executeQuery("SELECT COUNT(*) FROM " + table)) {
+            set.next();
+            return set.getInt(1);
+        }
+    }
+
+    private String string(String sql) throws SQLException {
+        try (ResultSet set = keeper.createStatement().executeQuery(sql)) {
+            set.next();
+            return set.getString(1);
+        }
+    }
+}
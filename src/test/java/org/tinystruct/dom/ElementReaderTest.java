@@ -0,0 +1,163 @@
+package org.tinystruct.dom;
+
+import org.junit.jupiter.api.Test;
+import org.tinystruct.ApplicationRuntimeException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ElementReaderTest {
+    private static final String FEED = "<?xml version=\"1.0\"?>"
+            + "<feed xmlns=\"http://www.w3.org/2005/Atom\">"
+            + "<title>News</title>"
+            + "<entry id=\"1\"><title>  First\n  entry </title><link href=\"/1\"/></entry>"
+            + "<archive><entry id=\"2\"><title><![CDATA[a < b]]></title></entry></archive>"
+            + "<entry id=\"3\"><title>Third &amp; last</title><entry id=\"nested\"/></entry>"
+            + "</feed>";
+
+    private static List<Element> read(String path) throws Exception {
+        List<Element> elements = new ArrayList<>();
+        try (ElementReader reader = new ElementReader(new StringReader(FEED), path)) {
+            reader.forEachRemaining(elements::add);
+        }
+        return elements;
+    }
+
+    private static List<String> ids(List<Element> elements) {
+        return elements.stream().map(element -> element.getAttribute("id")).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testPaths() throws Exception {
+        assertEquals(List.of("1", "3"), ids(read("/feed/entry")));
+        assertEquals(List.of("1", "2", "3"), ids(read("entry")));
+        assertEquals(List.of("1", "2", "3"), ids(read("//ENTRY")));
+        assertEquals(List.of("2"), ids(read("archive/entry")));
+        assertEquals(List.of("1", "3"), ids(read("/*/entry")));
+        assertEquals(List.of("nested"), ids(read("entry/entry")));
+        assertEquals(1, read("/feed").size());
+        assertTrue(read("/entry").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> read("/feed//entry"));
+    }
+
+    @Test
+    public void testSubtrees() throws Exception {
+        List<Element> entries = read("entry");
+        Element first = entries.get(0);
+        assertNull(first.getParent());
+        assertEquals("First entry", first.getElementsByTagName("title").get(0).getData());
+        assertEquals("/1", first.getElementsByTagName("link").get(0).getAttribute("href"));
+        assertEquals("a < b", entries.get(1).getElementsByTagName("title").get(0).getData());
+        assertEquals("Third & last", entries.get(2).getElementsByTagName("title").get(0).getData());
+        // A matching element inside another is read with it
+        assertEquals(1, entries.get(2).getElementsByTagName("entry").size());
+
+        // The same elements as loading the whole document
+        Document document = new Document();
+        assertTrue(document.load(new ByteArrayInputStream(FEED.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(document.getRoot().getElementsByTagName("title").get(1).toString().trim(),
+                first.getElementsByTagName("title").get(0).toString().trim());
+    }
+
+    @Test
+    public void testPreserveWhitespace() throws Exception {
+        Document document = new Document();
+        document.setPreserveWhitespace(true);
+        try (ElementReader reader = document.iterate(new ByteArrayInputStream(FEED.getBytes(StandardCharsets.UTF_8)), "entry/title")) {
+            assertEquals("  First\n  entry ", reader.next().getData());
+        }
+    }
+
+    @Test
+    public void testStreamClosesInput() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        InputStream input = new ByteArrayInputStream(FEED.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        try (Stream<Element> entries = new ElementReader(input, "/feed/entry").stream()) {
+            assertEquals("1", entries.findFirst().get().getAttribute("id"));
+        }
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void testMalformedDocument() throws Exception {
+        try (ElementReader reader = new ElementReader(new StringReader("<feed><entry id=\"1\"/><entry></feed>"), "entry")) {
+            assertEquals("1", reader.next().getAttribute("id"));
+            assertThrows(ApplicationRuntimeException.class, reader::hasNext);
+        }
+    }
+
+    @Test
+    public void testLargeDocumentInConstantMemory() throws Exception {
+        int entries = 200_000;
+        long count;
+        long start = System.nanoTime();
+        try (ElementReader reader = new ElementReader(new FeedInputStream(entries), "/feed/entry")) {
+            count = reader.stream().filter(entry -> entry.getElementsByTagName("title").size() == 1).count();
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Read " + entries + " entries (" + (FeedInputStream.size(entries) >> 20) + " MB) in " + elapsed + " ms");
+        assertEquals(entries, count);
+    }
+
+    /**
+     * A feed generated as it is read, so it is never in memory as a whole.
+     */
+    private static final class FeedInputStream extends InputStream {
+        private static final byte[] HEAD = "<feed>".getBytes(StandardCharsets.UTF_8);
+        private static final byte[] TAIL = "</feed>".getBytes(StandardCharsets.UTF_8);
+        private final int entries;
+        private int index = -1;
+        private byte[] chunk = HEAD;
+        private int position;
+
+        FeedInputStream(int entries) {
+            this.entries = entries;
+        }
+
+        static long size(int entries) {
+            return (long) entry(0).length * entries;
+        }
+
+        private static byte[] entry(int i) {
+            return ("<entry id=\"" + i + "\"><title>Entry " + i + "</title><summary>"
+                    + "A summary of the entry, long enough to make the feed a large one. ".repeat(3)
+                    + "</summary></entry>").getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int read() {
+            byte[] one = new byte[1];
+            return this.read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (this.position == this.chunk.length) {
+                if (this.index == this.entries) {
+                    return -1;
+                }
+                this.index++;
+                this.chunk = this.index < this.entries ? entry(this.index) : TAIL;
+                this.position = 0;
+            }
+            int n = Math.min(length, this.chunk.length - this.position);
+            System.arraycopy(this.chunk, this.position, buffer, offset, n);
+            this.position += n;
+            return n;
+        }
+    }
+}
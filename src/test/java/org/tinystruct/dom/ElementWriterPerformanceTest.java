@@ -0,0 +1,125 @@
+package org.tinystruct.dom;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Serializes a document of about 50 MB with {@link ElementWriter}, in both
+ * layouts, and with the recursive serialization {@link Element#toString()}
+ * used before, which built every subtree as a string of its own.
+ */
+public class ElementWriterPerformanceTest {
+
+    private static final long TARGET_SIZE = 50L * 1024 * 1024;
+    private static final int ROUNDS = 3;
+
+    @Test
+    public void testWriteLargeDocument() throws IOException {
+        System.out.println("=== ElementWriter Performance Test ===");
+        Element root = createDocument();
+        Path file = Files.createTempFile("element-writer", ".xml");
+        try {
+            // Warm up
+            writeStream(root, file, false);
+            writeLegacy(root, file);
+
+            long size = 0;
+            long pretty = 0, compact = 0, legacy = 0;
+            for (int i = 0; i < ROUNDS; i++) {
+                long start = System.nanoTime();
+                writeStream(root, file, false);
+                pretty += System.nanoTime() - start;
+                size = Files.size(file);
+
+                start = System.nanoTime();
+                writeStream(root, file, true);
+                compact += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                writeLegacy(root, file);
+                legacy += System.nanoTime() - start;
+            }
+
+            System.out.printf("Document size:          %.1f MB%n", size / (1024.0 * 1024));
+            System.out.printf("ElementWriter:          %d ms%n", pretty / ROUNDS / 1_000_000);
+            System.out.printf("ElementWriter, compact: %d ms%n", compact / ROUNDS / 1_000_000);
+            System.out.printf("Recursive toString():   %d ms%n", legacy / ROUNDS / 1_000_000);
+            assertTrue(size >= TARGET_SIZE);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static Element createDocument() {
+        Element root = new Element("orders");
+        long size = 0;
+        for (int i = 0; size < TARGET_SIZE; i++) {
+            Element order = root.addElement("order");
+            order.setAttribute("id", String.valueOf(i));
+            order.setAttribute("status", i % 3 == 0 ? "shipped" : "pending");
+            order.addElement("customer").setData("Customer " + i + " & Sons");
+            Element items = order.addElement("items");
+            for (int j = 0; j < 4; j++) {
+                Element item = items.addElement("item");
+                item.setAttribute("sku", "SKU-" + (i * 4 + j));
+                item.setAttribute("quantity", String.valueOf(j + 1));
+                item.setData("Product <" + j + "> description for order " + i);
+            }
+            order.addElement("note");
+            // Roughly what the order takes in the document
+            size += 500;
+        }
+        return root;
+    }
+
+    private static void writeStream(Element root, Path file, boolean compact) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            new ElementWriter(out).setCompact(compact).write(root).flush();
+        }
+    }
+
+    private static void writeLegacy(Element root, Path file) throws IOException {
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            writer.write(legacy(root));
+        }
+    }
+
+    /**
+     * The serialization of {@link Element#toString()} before {@link ElementWriter}.
+     */
+    private static String legacy(Element element) {
+        if (element.getElementType() == ElementType.TEXT) {
+            return element.getName();
+        }
+        StringBuffer buffer = new StringBuffer();
+        StringBuffer nodes = new StringBuffer();
+        buffer.append(element.getSpace()).append("<").append(element.getName());
+        for (Attribute attribute : element.getAttributes()) {
+            buffer.append(" ").append(attribute.name).append("=\"").append(attribute.value).append("\"");
+        }
+        if (element.getData() != null) {
+            nodes.append(element.getData());
+        }
+        if (!element.getChildNodes().isEmpty()) {
+            for (Element child : element.getChildNodes()) {
+                nodes.append(legacy(child));
+            }
+            nodes.append(element.getSpace());
+        }
+        if (element.hasData() || nodes.length() > 0) {
+            buffer.append(">").append(nodes).append("</").append(element.getName()).append(">");
+        } else {
+            buffer.append("/>");
+        }
+        return buffer.toString();
+    }
+}
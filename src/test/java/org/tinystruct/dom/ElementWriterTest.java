@@ -0,0 +1,93 @@
+package org.tinystruct.dom;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ElementWriterTest {
+
+    private static Element sample() {
+        Element root = new Element("catalog");
+        root.setAttribute("version", "1");
+        Element book = root.addElement("book");
+        book.setAttribute("id", "b1");
+        book.addElement("title").setData("Walden");
+        book.addElement("price").setData("");
+        root.addElement("empty");
+        return root;
+    }
+
+    private static String write(Element element, boolean compact, boolean escaping) throws Exception {
+        StringWriter writer = new StringWriter();
+        new ElementWriter(writer).setCompact(compact).setEscaping(escaping).write(element).flush();
+        return writer.toString();
+    }
+
+    @Test
+    public void testLayoutMatchesToString() throws Exception {
+        String expected = "\r\n<catalog version=\"1\">"
+                + "\r\n <book id=\"b1\">"
+                + "\r\n  <title>Walden</title>"
+                + "\r\n  <price></price>"
+                + "\r\n </book>"
+                + "\r\n <empty/>"
+                + "\r\n</catalog>";
+        assertEquals(expected, sample().toString());
+        assertEquals(expected, write(sample(), false, true));
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        assertEquals("<catalog version=\"1\"><book id=\"b1\"><title>Walden</title><price></price></book><empty/></catalog>",
+                write(sample(), true, true));
+    }
+
+    @Test
+    public void testEscaping() throws Exception {
+        Element element = new Element("note");
+        element.setAttribute("title", "\"Tom\" & <Jerry>");
+        element.setData("a < b && c ]]> d");
+
+        assertEquals("<note title=\"&quot;Tom&quot; &amp; &lt;Jerry>\">a &lt; b &amp;&amp; c ]]&gt; d</note>",
+                write(element, true, true));
+        // toString() keeps writing the content as it is
+        assertEquals("\r\n<note title=\"\"Tom\" & <Jerry>\">a < b && c ]]> d</note>", element.toString());
+    }
+
+    @Test
+    public void testDeepTree() throws Exception {
+        Element root = new Element("level");
+        Element current = root;
+        int depth = 100_000;
+        for (int i = 1; i < depth; i++) {
+            current = current.addElement("level");
+        }
+        current.setData("bottom");
+
+        String xml = write(root, true, true);
+        assertEquals(depth * ("<level>".length() + "</level>".length()) + "bottom".length(), xml.length());
+        assertTrue(xml.contains("<level>bottom</level></level>"));
+    }
+
+    @Test
+    public void testRoundTripThroughOutputStream() throws Exception {
+        Element root = new Element("messages");
+        root.addElement("message").setData("héllo & 世界 <ok>");
+        root.addElement("message").setAttribute("lang", "\"zh\"");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ElementWriter(out).write(root).flush();
+
+        Document document = new Document();
+        assertTrue(document.load(new ByteArrayInputStream(out.toByteArray())));
+        List<Element> messages = document.getRoot().getElementsByTagName("message");
+        assertEquals(2, messages.size());
+        assertEquals("héllo & 世界 <ok>", messages.get(0).getData());
+        assertEquals("\"zh\"", messages.get(1).getAttribute("lang"));
+    }
+}
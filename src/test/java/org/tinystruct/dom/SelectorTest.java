@@ -0,0 +1,129 @@
+package org.tinystruct.dom;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SelectorTest {
+    private Document document;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        document = new Document();
+        document.read("<mapping>"
+                + "<class name=\"User\" table=\"users\">"
+                + "<id name=\"Id\" column=\"id\"/>"
+                + "<property name=\"username\" type=\"varchar\"/>"
+                + "<property name=\"email\" type=\"varchar\"/>"
+                + "</class>"
+                + "<class name=\"Order\" table=\"orders\" id=\"orders\">"
+                + "<property name=\"total\" type=\"decimal\"/>"
+                + "<group id=\"Totals\"><property name=\"tax\" type=\"decimal\"/></group>"
+                + "</class>"
+                + "</mapping>");
+    }
+
+    private static List<String> names(List<Element> elements) {
+        return elements.stream().map(element -> element.getAttribute("name")).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testIndexedLookups() {
+        assertEquals(List.of("User", "Order"), names(document.getElementsByTagName("class")));
+        assertEquals(List.of("User", "Order"), names(document.getElementsByTagName("CLASS")));
+        assertEquals(1, document.getElementsByTagName("mapping").size());
+        assertTrue(document.getElementsByTagName("none").isEmpty());
+
+        assertEquals("group", document.getElementById("totals").getName());
+        assertEquals("Order", document.getElementById("orders").getAttribute("name"));
+        assertNull(document.getElementById("missing"));
+        assertNull(new Document().getElementById("orders"));
+    }
+
+    @Test
+    public void testElementLookupsFindTheFirstMatch() {
+        Element root = document.getRoot();
+        // The element in the first class, before the last one, is found
+        Element user = root.getElementsByTagName("class").get(0);
+        user.addElement("note").setAttribute("id", "first");
+        root.getElementsByTagName("class").get(1).addElement("note").setAttribute("id", "second");
+
+        assertEquals(user, root.getElementById("FIRST").getParent());
+        assertEquals("group", root.getElementById("Totals").getName());
+        assertEquals(4, root.getElementsByTagName("property").size());
+    }
+
+    @Test
+    public void testDeepTree() {
+        Element root = new Element("level");
+        Element current = root;
+        for (int i = 0; i < 100_000; i++) {
+            current = current.addElement("level");
+        }
+        current.setAttribute("id", "bottom");
+
+        Document deep = new Document(root);
+        assertEquals(100_001, deep.getElementsByTagName("level").size());
+        assertSame(current, deep.getElementById("bottom"));
+        assertEquals(100_000, deep.select("level level").size());
+
+        // A subtree added to the tree counts its changes with it
+        Element branch = new Element("branch");
+        Element leaf = branch.addElement("leaf");
+        root.addElement(branch);
+        assertEquals(1, deep.getElementsByTagName("leaf").size());
+        leaf.setAttribute("id", "leaf");
+        assertSame(leaf, deep.getElementById("leaf"));
+    }
+
+    @Test
+    public void testIndexesFollowChanges() {
+        List<Element> before = document.getElementsByTagName("property");
+        assertEquals(4, before.size());
+        assertSame(before, document.getElementsByTagName("property"));
+
+        Element user = document.getElementsByTagName("class").get(0);
+        user.addElement("property").setAttribute("name", "created");
+        assertEquals(5, document.getElementsByTagName("property").size());
+
+        user.removeElement(user.getElementsByTagName("property").get(0));
+        assertEquals(List.of("email", "created", "total", "tax"), names(document.getElementsByTagName("property")));
+
+        Element group = document.getElementById("totals");
+        group.setName("section");
+        assertTrue(document.getElementsByTagName("group").isEmpty());
+        group.removeAttribute("id");
+        assertNull(document.getElementById("totals"));
+        group.setAttribute("id", "sums");
+        assertSame(group, document.getElementById("sums"));
+    }
+
+    @Test
+    public void testSelect() {
+        assertEquals(List.of("username", "email", "total", "tax"), names(document.select("property")));
+        assertEquals(List.of("username", "email"), names(document.select("class[name=User] property")));
+        assertEquals(List.of("tax"), names(document.select("mapping #orders group property")));
+        assertEquals(List.of("total", "tax"), names(document.select("#orders [type='decimal']")));
+        assertEquals(List.of("total", "tax"), names(document.select("[ type = \"decimal\" ]")));
+        assertEquals(List.of("Order"), names(document.select("class#ORDERS[table]")));
+        assertEquals(List.of("User", "Order"), names(document.select("* class")));
+        assertTrue(document.select("class[name=user]").isEmpty());
+        assertTrue(document.select("group class").isEmpty());
+
+        Selector selector = Selector.compile("class property[type=varchar]");
+        assertEquals("username", selector.selectFirst(document).getAttribute("name"));
+        assertTrue(selector.matches(document.getElementsByTagName("property").get(1)));
+        assertFalse(selector.matches(document.getElementsByTagName("property").get(2)));
+    }
+
+    @Test
+    public void testInvalidSelectors() {
+        for (String selector : new String[]{"", "  ", "class[name", "class[name='x]", "class > id", "#a#b", "[=x]"}) {
+            assertThrows(IllegalArgumentException.class, () -> Selector.compile(selector), selector);
+        }
+    }
+}
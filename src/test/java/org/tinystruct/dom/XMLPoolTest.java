@@ -0,0 +1,118 @@
+package org.tinystruct.dom;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.SAXParser;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class XMLPoolTest {
+
+    @Test
+    public void testInstancesAreReused() throws Exception {
+        SAXParser first;
+        try (XMLPool.Lease<SAXParser> parser = XMLPool.saxParser(XMLPool.SAXProfile.NAMESPACE_AWARE)) {
+            first = parser.get();
+            assertTrue(first.isNamespaceAware());
+        }
+        try (XMLPool.Lease<SAXParser> parser = XMLPool.saxParser(XMLPool.SAXProfile.NAMESPACE_AWARE)) {
+            assertSame(first, parser.get());
+            // Borrowed twice at once, two parsers
+            try (XMLPool.Lease<SAXParser> other = XMLPool.saxParser(XMLPool.SAXProfile.NAMESPACE_AWARE)) {
+                assertNotSame(parser.get(), other.get());
+            }
+        }
+        try (XMLPool.Lease<SAXParser> parser = XMLPool.saxParser(XMLPool.SAXProfile.DEFAULT)) {
+            assertFalse(parser.get().isNamespaceAware());
+        }
+    }
+
+    @Test
+    public void testLastReturnedIsLentFirst() throws Exception {
+        // Leave more than one idle parser in the shared pool, as other users of it may
+        XMLPool.Lease<SAXParser> one = XMLPool.saxParser(XMLPool.SAXProfile.NAMESPACE_AWARE);
+        XMLPool.Lease<SAXParser> two = XMLPool.saxParser(XMLPool.SAXProfile.NAMESPACE_AWARE);
+        SAXParser last = two.get();
+        one.close();
+        two.close();
+        try (XMLPool.Lease<SAXParser> parser = XMLPool.saxParser(XMLPool.SAXProfile.NAMESPACE_AWARE)) {
+            assertSame(last, parser.get());
+        }
+    }
+
+    @Test
+    public void testTransformersAreReset() throws Exception {
+        try (XMLPool.Lease<Transformer> transformer = XMLPool.transformer()) {
+            transformer.get().setOutputProperty(OutputKeys.INDENT, "yes");
+        }
+        try (XMLPool.Lease<Transformer> transformer = XMLPool.transformer()) {
+            assertNotEquals("yes", transformer.get().getOutputProperties().getProperty(OutputKeys.INDENT));
+        }
+    }
+
+    @Test
+    public void testClosedLease() throws Exception {
+        XMLPool.Lease<DocumentBuilder> builder = XMLPool.documentBuilder();
+        builder.close();
+        builder.close();
+        assertThrows(IllegalStateException.class, builder::get);
+    }
+
+    @Test
+    public void testParsersAfterFailures() throws Exception {
+        byte[] malformed = "<a><b></a>".getBytes(StandardCharsets.UTF_8);
+        byte[] wellFormed = "<a><b>text</b></a>".getBytes(StandardCharsets.UTF_8);
+
+        try (XMLPool.Lease<DocumentBuilder> builder = XMLPool.documentBuilder()) {
+            DocumentBuilder documentBuilder = builder.get();
+            assertThrows(Exception.class, () -> documentBuilder.parse(new ByteArrayInputStream(malformed)));
+        }
+        try (XMLPool.Lease<DocumentBuilder> builder = XMLPool.documentBuilder()) {
+            assertEquals("text", builder.get().parse(new ByteArrayInputStream(wellFormed)).getDocumentElement().getTextContent());
+        }
+        try (XMLPool.Lease<SAXParser> parser = XMLPool.saxParser(XMLPool.SAXProfile.DEFAULT)) {
+            SAXParser saxParser = parser.get();
+            assertThrows(Exception.class, () -> saxParser.parse(new ByteArrayInputStream(malformed), new DefaultHandler()));
+        }
+        Document document = new Document();
+        assertTrue(document.read("<a><b>text</b></a>"));
+        assertEquals("text", document.getRoot().getElementsByTagName("b").get(0).getData());
+    }
+
+    @Test
+    public void testConcurrentLoads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                final int n = i;
+                futures.add(executor.submit(() -> {
+                    StringBuilder xml = new StringBuilder("<list>");
+                    for (int j = 0; j < n; j++) {
+                        xml.append("<item id=\"").append(j).append("\"/>");
+                    }
+                    xml.append("</list>");
+                    Document document = new Document();
+                    assertTrue(document.load(new ByteArrayInputStream(xml.toString().getBytes(StandardCharsets.UTF_8))));
+                    return document.getRoot().getChildNodes().size();
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(i, futures.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
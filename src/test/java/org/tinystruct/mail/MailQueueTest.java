@@ -0,0 +1,211 @@
+package org.tinystruct.mail;
+
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MailQueueTest {
+    private SMTPStandIn server;
+    private Path spool;
+    private Session session;
+    private final List<MailQueue> queues = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = new SMTPStandIn();
+        spool = Files.createTempDirectory("mail-spool");
+        Properties properties = new Properties();
+        properties.setProperty("mail.smtp.host", "127.0.0.1");
+        properties.setProperty("mail.smtp.port", String.valueOf(server.port()));
+        properties.setProperty("mail.smtp.from", "noreply@tinystruct.org");
+        session = Session.getInstance(properties);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (MailQueue queue : queues) {
+            queue.close();
+        }
+        server.close();
+        try (Stream<Path> files = Files.walk(spool)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private MailQueue queue() {
+        MailQueue queue = new MailQueue(session, spool).setBackoff(20, 200, TimeUnit.MILLISECONDS);
+        queues.add(queue);
+        return queue;
+    }
+
+    private MimeMessage message(String subject, String... to) throws Exception {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress("noreply@tinystruct.org"));
+        for (String recipient : to) {
+            message.addRecipient(Message.RecipientType.TO, new InternetAddress(recipient));
+        }
+        message.setSubject(subject);
+        message.setText("Hello");
+        return message;
+    }
+
+    private static CountDownLatch counting(MailQueue queue, int messages, List<String> failures) {
+        CountDownLatch latch = new CountDownLatch(messages);
+        queue.setListener(new MailQueue.Listener() {
+            @Override
+            public void sent(String id, Address[] recipients) {
+                latch.countDown();
+            }
+
+            @Override
+            public void failed(String id, Address[] recipients, Exception cause) {
+                failures.add(InternetAddress.toString(recipients));
+                latch.countDown();
+            }
+        });
+        return latch;
+    }
+
+    private long spooled() throws IOException {
+        try (Stream<Path> files = Files.list(spool)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    public void testSendsManyMessagesPerSession() throws Exception {
+        MailQueue queue = queue().setSenders(2);
+        List<String> failures = new ArrayList<>();
+        CountDownLatch latch = counting(queue, 20, failures);
+        queue.start();
+
+        for (int i = 0; i < 20; i++) {
+            queue.enqueue(message("Message " + i, "user" + i + "@example.com"));
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        assertTrue(failures.isEmpty());
+        assertEquals(20, server.messages().size());
+        assertTrue(server.sessions() <= 2, server.sessions() + " sessions for 20 messages");
+        assertEquals(0, queue.size());
+        assertEquals(0, spooled());
+    }
+
+    @Test
+    public void testRetriesTemporaryFailures() throws Exception {
+        server.failTemporarily(2);
+        MailQueue queue = queue().setSenders(1);
+        List<String> failures = new ArrayList<>();
+        CountDownLatch latch = counting(queue, 1, failures);
+        queue.start();
+
+        queue.enqueue(message("Retry", "someone@example.com"));
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertTrue(failures.isEmpty());
+        assertEquals(1, server.messages().size());
+    }
+
+    @Test
+    public void testRefusedRecipientIsGivenUp() throws Exception {
+        server.refuse("nobody@example.com");
+        MailQueue queue = queue().setSenders(1);
+        List<String> failures = new ArrayList<>();
+        CountDownLatch latch = counting(queue, 2, failures);
+        queue.start();
+
+        queue.enqueue(message("Partly refused", "nobody@example.com", "somebody@example.com"));
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        assertEquals(List.of("nobody@example.com"), failures);
+        assertEquals(1, server.messages().size());
+        assertEquals(List.of("somebody@example.com"), server.messages().get(0).recipients);
+        assertEquals(0, spooled());
+    }
+
+    @Test
+    public void testGivesUpAfterMaxAttempts() throws Exception {
+        server.failTemporarily(100);
+        MailQueue queue = queue().setSenders(1).setMaxAttempts(3);
+        List<String> failures = new ArrayList<>();
+        CountDownLatch latch = counting(queue, 1, failures);
+        queue.start();
+
+        queue.enqueue(message("Never", "someone@example.com"));
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of("someone@example.com"), failures);
+        try (Stream<Path> files = Files.list(spool.resolve("failed"))) {
+            assertEquals(2, files.count(), "Message and envelope kept for inspection");
+        }
+    }
+
+    @Test
+    public void testSpooledMailSurvivesRestart() throws Exception {
+        MailQueue stopped = queue();
+        for (int i = 0; i < 3; i++) {
+            stopped.enqueue(message("Spooled " + i, "a" + i + "@example.com", "b" + i + "@example.org"));
+        }
+        // One copy per recipient domain, each a message and an envelope
+        assertEquals(12, spooled());
+        stopped.close();
+
+        MailQueue queue = queue();
+        List<String> failures = new ArrayList<>();
+        CountDownLatch latch = counting(queue, 6, failures);
+        queue.start();
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        assertEquals(6, server.messages().size());
+        List<String> subjects = server.messages().stream()
+                .map(received -> received.data.lines().filter(line -> line.startsWith("Subject:")).findFirst().orElse(""))
+                .distinct().sorted().collect(Collectors.toList());
+        assertEquals(List.of("Subject: Spooled 0", "Subject: Spooled 1", "Subject: Spooled 2"), subjects);
+        assertEquals(0, spooled());
+    }
+
+    @Test
+    public void testRateLimitPerDomain() throws Exception {
+        MailQueue queue = queue().setSenders(2).setRateLimit("slow.example", 2, 400, TimeUnit.MILLISECONDS);
+        List<String> failures = new ArrayList<>();
+        CountDownLatch latch = counting(queue, 12, failures);
+        queue.start();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            queue.enqueue(message("Slow " + i, "user" + i + "@slow.example"));
+            queue.enqueue(message("Fast " + i, "user" + i + "@fast.example"));
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        long fast = 0, slow = 0;
+        for (SMTPStandIn.Received received : server.messages()) {
+            long at = TimeUnit.NANOSECONDS.toMillis(received.time - start);
+            if (received.recipients.get(0).endsWith("@fast.example")) {
+                fast = Math.max(fast, at);
+            } else {
+                slow = Math.max(slow, at);
+            }
+        }
+        // Two at once, then one every 200ms
+        assertTrue(slow >= 750, "Slow domain finished after " + slow + "ms");
+        assertTrue(fast < slow, "Fast domain finished after " + fast + "ms");
+    }
+}
@@ -0,0 +1,155 @@
+package org.tinystruct.mail;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal SMTP server for tests: accepts every message, except for recipients
+ * it is told to refuse and a number of transactions it is told to fail
+ * temporarily, and records what it received.
+ */
+final class SMTPStandIn implements Closeable {
+    private final ServerSocket server;
+    private final List<Received> messages = new CopyOnWriteArrayList<>();
+    private final Set<String> refused = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger temporaryFailures = new AtomicInteger();
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    SMTPStandIn() throws IOException {
+        this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    sessions.incrementAndGet();
+                    Thread thread = new Thread(() -> serve(socket), "smtp-stand-in-session");
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }, "smtp-stand-in");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Refuse a recipient permanently (550).
+     */
+    void refuse(String address) {
+        refused.add(address.toLowerCase());
+    }
+
+    /**
+     * Fail the next transactions temporarily (451) after their data was sent.
+     */
+    void failTemporarily(int transactions) {
+        temporaryFailures.set(transactions);
+    }
+
+    List<Received> messages() {
+        return messages;
+    }
+
+    int sessions() {
+        return sessions.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    private void serve(Socket socket) {
+        try (Socket ignored = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            reply(out, "220 stand-in ESMTP");
+            List<String> recipients = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (command) {
+                    case "EHLO":
+                        reply(out, "250-stand-in\r\n250 8BITMIME");
+                        break;
+                    case "HELO":
+                    case "NOOP":
+                        reply(out, "250 OK");
+                        break;
+                    case "MAIL":
+                    case "RSET":
+                        recipients.clear();
+                        reply(out, "250 OK");
+                        break;
+                    case "RCPT":
+                        String address = line.substring(line.indexOf('<') + 1, line.lastIndexOf('>'));
+                        if (refused.contains(address.toLowerCase())) {
+                            reply(out, "550 5.1.1 No such user");
+                        } else {
+                            recipients.add(address);
+                            reply(out, "250 OK");
+                        }
+                        break;
+                    case "DATA":
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        StringBuilder data = new StringBuilder();
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            data.append(line.startsWith("..") ? line.substring(1) : line).append("\r\n");
+                        }
+                        if (temporaryFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                            reply(out, "451 4.3.0 Try again later");
+                        } else {
+                            messages.add(new Received(new ArrayList<>(recipients), data.toString(), System.nanoTime()));
+                            reply(out, "250 OK queued");
+                        }
+                        recipients.clear();
+                        break;
+                    case "QUIT":
+                        reply(out, "221 Bye");
+                        return;
+                    default:
+                        reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException ignored) {
+            // Client went away
+        }
+    }
+
+    private static void reply(Writer out, String text) throws IOException {
+        out.write(text + "\r\n");
+        out.flush();
+    }
+
+    static final class Received {
+        final List<String> recipients;
+        final String data;
+        final long time;
+
+        Received(List<String> recipients, String data, long time) {
+            this.recipients = recipients;
+            this.data = data;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package org.tinystruct.mcp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.tinystruct.data.component.Builder;
+import org.tinystruct.data.component.Builders;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonRpcHandlerTest {
+    private final JsonRpcHandler handler = new JsonRpcHandler(8, 2000);
+
+    @AfterEach
+    public void tearDown() {
+        handler.shutdown();
+    }
+
+    @Test
+    public void testBatchRunsConcurrentlyAndKeepsOrder() throws Exception {
+        StringBuilder batch = new StringBuilder("[");
+        for (int i = 0; i < 8; i++) {
+            if (i > 0) batch.append(',');
+            batch.append("{\"jsonrpc\":\"2.0\",\"id\":").append(i)
+                    .append(",\"method\":\"tools/call\",\"params\":{\"delay\":").append(200 - i * 20).append("}}");
+        }
+        batch.append(']');
+
+        long start = System.currentTimeMillis();
+        String result = handler.handleBatchRequest(batch.toString(), (request, response) -> {
+            try {
+                Thread.sleep(Long.parseLong(request.getParams().get("delay").toString()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.setId(request.getId());
+            response.setResult(new Builder().put("id", request.getId()));
+        });
+        long elapsed = System.currentTimeMillis() - start;
+
+        Builders responses = new Builders();
+        responses.parse(result);
+        assertEquals(8, responses.size());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(String.valueOf(i), responses.get(i).get("id").toString());
+        }
+        assertTrue(elapsed < 1000, "Batch should not run sequentially, took " + elapsed + " ms");
+    }
+
+    @Test
+    public void testBatchTimeoutAndNotifications() throws Exception {
+        JsonRpcHandler fast = new JsonRpcHandler(4, 100);
+        try {
+            String batch = "[{\"jsonrpc\":\"2.0\",\"id\":\"slow\",\"method\":\"slow\"}," +
+                    "{\"jsonrpc\":\"2.0\",\"method\":\"notifications/cancelled\"}," +
+                    "{\"jsonrpc\":\"2.0\",\"id\":\"ok\",\"method\":\"ping\"}]";
+            String result = fast.handleBatchRequest(batch, (request, response) -> {
+                if ("slow".equals(request.getMethod())) {
+                    try {
+                        Thread.sleep(5000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                response.setResult(new Builder());
+            });
+
+            Builders responses = new Builders();
+            responses.parse(result);
+            assertEquals(2, responses.size(), "Notifications must not be answered");
+            assertEquals("slow", responses.get(0).get("id").toString());
+            assertNotNull(responses.get(0).get("error"), "Slow request should time out");
+            assertEquals("ok", responses.get(1).get("id").toString());
+            assertNotNull(responses.get(1).get("result"));
+        } finally {
+            fast.shutdown();
+        }
+    }
+
+    @Test
+    public void testQueuedRequestsGetTheirFullTimeout() throws Exception {
+        JsonRpcHandler single = new JsonRpcHandler(1, 300);
+        try {
+            String batch = "[{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"work\"}," +
+                    "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"work\"}," +
+                    "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"work\"}]";
+            // Together longer than one timeout, each well within it
+            String result = single.handleBatchRequest(batch, (request, response) -> {
+                try {
+                    Thread.sleep(150);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                response.setResult(new Builder());
+            });
+
+            Builders responses = new Builders();
+            responses.parse(result);
+            assertEquals(3, responses.size());
+            for (int i = 0; i < 3; i++) {
+                assertNotNull(responses.get(i).get("result"), "Request " + (i + 1) + " timed out in the queue");
+            }
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test
+    public void testInvalidBatchEntries() throws Exception {
+        AtomicInteger handled = new AtomicInteger();
+        String batch = "[{\"jsonrpc\":\"1.0\",\"id\":1,\"method\":\"ping\"}," +
+                "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"ping\",\"params\":\"text\"}," +
+                "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"ping\"}]";
+        String result = handler.handleBatchRequest(batch, (request, response) -> {
+            handled.incrementAndGet();
+            response.setResult(new Builder());
+        });
+
+        Builders responses = new Builders();
+        responses.parse(result);
+        assertEquals(3, responses.size());
+        assertNotNull(responses.get(0).get("error"));
+        assertNotNull(responses.get(1).get("error"));
+        assertNotNull(responses.get(2).get("result"));
+        assertEquals(1, handled.get(), "Only the valid request is handled");
+    }
+
+    @Test
+    public void testListResultsAreCachedUntilInvalidated() {
+        AtomicInteger calls = new AtomicInteger();
+        JsonRpcHandler.MethodHandler methodHandler = (request, response) -> {
+            calls.incrementAndGet();
+            response.setId(request.getId());
+            response.setResult(new Builder().put("tools", new Builders()));
+        };
+
+        JsonRpcRequest request = new JsonRpcRequest();
+        request.setId("1");
+        request.setMethod(MCPSpecification.Methods.LIST_TOOLS);
+        handler.handle(request, methodHandler);
+
+        request.setId("2");
+        JsonRpcResponse response = handler.handle(request, methodHandler);
+        assertEquals(1, calls.get());
+        assertEquals("2", response.getId());
+
+        JsonRpcHandler.invalidateCache();
+        handler.handle(request, methodHandler);
+        assertEquals(2, calls.get());
+
+        JsonRpcRequest call = new JsonRpcRequest();
+        call.setId("3");
+        call.setMethod(MCPSpecification.Methods.CALL_TOOL);
+        handler.handle(call, methodHandler);
+        handler.handle(call, methodHandler);
+        assertEquals(4, calls.get(), "tools/call must never be cached");
+    }
+}
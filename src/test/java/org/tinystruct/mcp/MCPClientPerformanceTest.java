@@ -0,0 +1,185 @@
+package org.tinystruct.mcp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.tinystruct.data.component.Builder;
+import org.tinystruct.data.component.Builders;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures tool calls per second of {@link MCPClient} against a local
+ * stand-in MCP server, comparing blocking calls one at a time with the
+ * pipelined and batched async API.
+ */
+public class MCPClientPerformanceTest {
+    private static final int CALLS = 5000;
+    private static final int LATENCY_MILLIS = 1;
+
+    private final JsonRpcHandler handler = new JsonRpcHandler(16, 5000);
+    private final AtomicInteger posts = new AtomicInteger();
+    private HttpServer server;
+    private ExecutorService executor;
+    private String url;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        // Without TCP_NODELAY the stand-in server adds delayed-ACK stalls to every exchange
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        executor = Executors.newFixedThreadPool(8);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::serve);
+        server.setExecutor(executor);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+        handler.shutdown();
+    }
+
+    @Test
+    public void testAsyncCallsAreCorrelatedAndBatched() throws Exception {
+        MCPClient client = connect();
+        List<CompletableFuture<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            futures.add(client.callToolAsync("add", new Builder().put("a", i).put("b", 1)));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(String.valueOf(i + 1), String.valueOf(futures.get(i).get()));
+        }
+        assertTrue(posts.get() < futures.size(), "Calls should be batched, posts: " + posts.get());
+        client.disconnect();
+    }
+
+    @Test
+    public void testCallsPerSecond() throws Exception {
+        MCPClient client = connect();
+
+        // Warm up connections and JIT
+        for (int i = 0; i < 200; i++) {
+            client.callTool("add", new Builder().put("a", i).put("b", 0));
+        }
+
+        int blockingCalls = CALLS / 10;
+        long start = System.nanoTime();
+        for (int i = 0; i < blockingCalls; i++) {
+            assertEquals(String.valueOf(i), String.valueOf(client.callTool("add", new Builder().put("a", i).put("b", 0))));
+        }
+        long blocking = System.nanoTime() - start;
+
+        int before = posts.get();
+        start = System.nanoTime();
+        List<CompletableFuture<Object>> futures = new ArrayList<>(CALLS);
+        for (int i = 0; i < CALLS; i++) {
+            futures.add(client.callToolAsync("add", new Builder().put("a", i).put("b", 0)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        long async = System.nanoTime() - start;
+        int batches = posts.get() - before;
+
+        for (int i = 0; i < CALLS; i++) {
+            assertEquals(String.valueOf(i), String.valueOf(futures.get(i).join()));
+        }
+
+        double blockingRate = blockingCalls / (blocking / 1e9);
+        double asyncRate = CALLS / (async / 1e9);
+        System.out.printf("Blocking callTool:   %8.0f calls/sec (%d calls)%n", blockingRate, blockingCalls);
+        System.out.printf("callToolAsync:       %8.0f calls/sec (%d calls in %d requests)%n", asyncRate, CALLS, batches);
+        System.out.printf("Speedup: %.1fx%n", asyncRate / blockingRate);
+
+        assertTrue(asyncRate > blockingRate, "Pipelined calls should outperform blocking calls");
+        client.disconnect();
+    }
+
+    private MCPClient connect() throws IOException {
+        MCPClient client = new MCPClient(url, "Bearer test", 512);
+        client.setBatchWindow(Duration.ofMillis(1));
+        client.connect();
+        assertEquals(MCPSpecification.SessionState.READY, client.getSessionState());
+        return client;
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String response = "";
+        if ("POST".equals(exchange.getRequestMethod())) {
+            posts.incrementAndGet();
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            // Simulate a small amount of server-side latency per request
+            sleep();
+            if (body.trim().startsWith("[")) {
+                response = handler.handleBatchRequest(body, this::dispatch);
+            } else {
+                JsonRpcRequest request = new JsonRpcRequest();
+                try {
+                    request.parse(body);
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+                response = handler.handle(request, this::dispatch).toString();
+            }
+            exchange.getResponseHeaders().set(MCPSpecification.Http.SESSION_ID, "stand-in");
+        }
+
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void dispatch(JsonRpcRequest request, JsonRpcResponse response) {
+        response.setId(request.getId());
+        Builder result = new Builder();
+        switch (request.getMethod()) {
+            case MCPSpecification.Methods.INITIALIZE:
+                result.put("instructions", "stand-in");
+                break;
+            case MCPSpecification.Methods.LIST_TOOLS:
+                result.put("tools", new Builders());
+                break;
+            case MCPSpecification.Methods.LIST_RESOURCES:
+                result.put("resources", new Builders());
+                break;
+            case MCPSpecification.Methods.LIST_PROMPTS:
+                result.put("prompts", new Builders());
+                break;
+            case MCPSpecification.Methods.CALL_TOOL:
+                Builder arguments = (Builder) request.getParams().get("arguments");
+                long sum = Long.parseLong(arguments.get("a").toString()) + Long.parseLong(arguments.get("b").toString());
+                Builders content = new Builders();
+                content.add(new Builder().put("type", "text").put("text", String.valueOf(sum)));
+                result.put("content", content);
+                break;
+            default:
+                break;
+        }
+        response.setResult(result);
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(LATENCY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
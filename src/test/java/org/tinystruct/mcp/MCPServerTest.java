@@ -151,6 +151,102 @@ public class MCPServerTest {
         assertEquals("Hello, POJO!", contentItem.get("text").toString());
     }
 
+    @Test
+    public void testListToolsIsVersioned() throws Exception {
+        JsonRpcRequest req = new JsonRpcRequest();
+        req.setId("7");
+        JsonRpcResponse resp = new JsonRpcResponse();
+        app.handleListTools(req, resp);
+
+        Builder meta = (Builder) resp.getResult().get("_meta");
+        assertNotNull(meta, "List should carry a version");
+        String version = meta.get("version").toString();
+
+        // The pre-serialized payload must describe the same result
+        JsonRpcResponse parsed = new JsonRpcResponse();
+        parsed.parse(resp.toString());
+        assertEquals(((Builders) resp.getResult().get("tools")).size(), ((Builders) parsed.getResult().get("tools")).size());
+        assertEquals(version, ((Builder) parsed.getResult().get("_meta")).get("version"));
+
+        // A client holding the current version still gets the full list
+        JsonRpcRequest conditional = new JsonRpcRequest();
+        conditional.setId("8");
+        conditional.setParams(new Builder().put("_meta", new Builder().put("version", version)));
+        JsonRpcResponse unchanged = new JsonRpcResponse();
+        app.handleListTools(conditional, unchanged);
+        assertTrue(unchanged.getResult().containsKey("tools"));
+        assertEquals(version, ((Builder) unchanged.getResult().get("_meta")).get("version"));
+
+        // Registering a new tool changes the version
+        app.registerTool(new MCPTool("versioned-tool-" + System.nanoTime(), "Changes the tool list"));
+        JsonRpcResponse changed = new JsonRpcResponse();
+        app.handleListTools(req, changed);
+        assertTrue(changed.getResult().containsKey("tools"));
+        assertNotEquals(version, ((Builder) changed.getResult().get("_meta")).get("version"));
+    }
+
+    @Test
+    public void testToolMetricsAreNotPublishedByDefault() {
+        assertFalse(listResources(app).contains(MCPServer.METRICS_RESOURCE));
+
+        JsonRpcRequest read = new JsonRpcRequest();
+        read.setId("10");
+        read.setParams(new Builder().put("uri", MCPServer.METRICS_RESOURCE));
+        JsonRpcResponse resp = new JsonRpcResponse();
+        app.handleReadResource(read, resp);
+        assertNotNull(resp.getError());
+
+        Settings settings = new Settings();
+        settings.set(MCPSpecification.Config.METRICS_ENABLED, "true");
+        try {
+            MCPServer enabled = new MCPServer();
+            enabled.setConfiguration(settings);
+            enabled.init();
+            assertTrue(listResources(enabled).contains(MCPServer.METRICS_RESOURCE));
+        } finally {
+            settings.remove(MCPSpecification.Config.METRICS_ENABLED);
+        }
+    }
+
+    private static String listResources(MCPServer server) {
+        JsonRpcRequest list = new JsonRpcRequest();
+        list.setId("11");
+        JsonRpcResponse resp = new JsonRpcResponse();
+        server.handleListResources(list, resp);
+        return resp.getResult().get("resources").toString();
+    }
+
+    @Test
+    public void testToolMetricsResource() {
+        app.enableToolMetrics();
+        for (int i = 0; i < 3; i++) {
+            JsonRpcRequest req = new JsonRpcRequest();
+            req.setId("m" + i);
+            req.setParams(new Builder().put("name", "mock-tool").put("arguments", new Builder()));
+            app.handleCallTool(req, new JsonRpcResponse());
+        }
+
+        JsonRpcRequest read = new JsonRpcRequest();
+        read.setId("9");
+        read.setParams(new Builder().put("uri", MCPServer.METRICS_RESOURCE));
+        JsonRpcResponse resp = new JsonRpcResponse();
+        app.handleReadResource(read, resp);
+        assertNull(resp.getError());
+
+        Builders contents = (Builders) resp.getResult().get("contents");
+        String text = contents.get(0).get("text").toString();
+        assertTrue(text.contains("\"mock-tool\""), text);
+
+        Builders metrics = (Builders) app.getToolMetrics().get("tools");
+        Builder mock = null;
+        for (Builder tool : metrics) {
+            if ("mock-tool".equals(tool.get("name"))) mock = tool;
+        }
+        assertNotNull(mock);
+        assertTrue(((Number) mock.get("calls")).longValue() >= 3);
+        assertTrue(mock.containsKey("p99_ms"));
+    }
+
     // Simple mock tool for testing
     static class MockTool extends MCPTool {
         public MockTool(String name, String description, MCPClient client) {
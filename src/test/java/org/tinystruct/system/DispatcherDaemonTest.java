@@ -0,0 +1,155 @@
+package org.tinystruct.system;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DispatcherDaemonTest {
+
+    private Path directory;
+    private Path socket;
+    private DispatcherDaemon daemon;
+    private Thread thread;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("tsd");
+        socket = directory.resolve("dispatcher.sock");
+        start(Duration.ofSeconds(30));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        daemon.stop();
+        thread.join(5000);
+        Files.deleteIfExists(socket);
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void testCommandOutputIsStreamedBack() {
+        DispatcherClient client = new DispatcherClient(socket);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        assertEquals(0, client.run(List.of("say/Hello"), null, out, err, false));
+        assertEquals("Hello", out.toString(StandardCharsets.UTF_8).trim());
+        assertTrue(client.getElapsed() > 0);
+
+        // The second command finds everything installed
+        out.reset();
+        assertEquals(0, client.run(List.of("say/Again"), null, out, err, false));
+        assertEquals("Again", out.toString(StandardCharsets.UTF_8).trim());
+    }
+
+    @Test
+    public void testStandardInputIsForwarded() {
+        DispatcherClient client = new DispatcherClient(socket);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(0, client.run(List.of("say"), "piped".getBytes(StandardCharsets.UTF_8), out, new ByteArrayOutputStream(), false));
+        assertEquals("piped", out.toString(StandardCharsets.UTF_8).trim());
+    }
+
+    @Test
+    public void testErrorsAreLoggedToTheClient() {
+        DispatcherClient client = new DispatcherClient(socket);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream systemOut = System.out;
+
+        client.run(List.of("no-such-command"), null, out, err, false);
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("no-such-command"));
+        assertSame(systemOut, System.out, "The output of the process is restored");
+    }
+
+    @Test
+    public void testStatusAndStop() throws Exception {
+        DispatcherClient client = new DispatcherClient(socket);
+        client.run(List.of("say/Hello"), null, new ByteArrayOutputStream(), new ByteArrayOutputStream(), false);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, client.status(out, new ByteArrayOutputStream()));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("1 commands"), out.toString(StandardCharsets.UTF_8));
+
+        assertEquals(0, client.stop());
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertFalse(Files.exists(socket));
+        assertEquals(DispatcherClient.RUN_DIRECTLY,
+                client.run(List.of("say/Hello"), null, new ByteArrayOutputStream(), new ByteArrayOutputStream(), false));
+    }
+
+    @Test
+    public void testIdleShutdown() throws Exception {
+        daemon.stop();
+        thread.join(5000);
+
+        start(Duration.ofMillis(300));
+        thread.join(10000);
+        assertFalse(thread.isAlive(), "The daemon should stop once idle");
+        assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    public void testSocketIsClosedToOtherUsers() throws Exception {
+        assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(directory));
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(socket));
+    }
+
+    @Test
+    public void testOpenDirectoryIsRefused() throws Exception {
+        Path open = Files.createTempDirectory("tsd");
+        try {
+            Files.setPosixFilePermissions(open, PosixFilePermissions.fromString("rwxr-xr-x"));
+            Path socket = open.resolve("dispatcher.sock");
+            assertThrows(IOException.class, () -> new DispatcherDaemon(socket, Duration.ofSeconds(1)).serve());
+            assertFalse(Files.exists(socket));
+
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            assertEquals(DispatcherClient.RUN_DIRECTLY,
+                    new DispatcherClient(socket).run(List.of("say/Hello"), null, new ByteArrayOutputStream(), err, true));
+            assertTrue(err.toString(StandardCharsets.UTF_8).contains("rwx------"));
+        } finally {
+            Files.deleteIfExists(open);
+        }
+    }
+
+    @Test
+    public void testCommandsNeedingTheirOwnProcess() {
+        assertTrue(DispatcherClient.requiresOwnProcess(List.of("start", "--import", "org.tinystruct.system.HttpServer")));
+        assertTrue(DispatcherClient.requiresOwnProcess(List.of("say/Hello", "--host=192.168.0.2")));
+        assertTrue(DispatcherClient.requiresOwnProcess(List.of("--allow-remote-access")));
+        assertFalse(DispatcherClient.requiresOwnProcess(List.of("say/Hello", "--import", "org.tinystruct.system.HttpServer")));
+    }
+
+    private void start(Duration idleTimeout) throws IOException, InterruptedException {
+        daemon = new DispatcherDaemon(socket, idleTimeout);
+        thread = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!DispatcherDaemon.isListening(socket) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(DispatcherDaemon.isListening(socket));
+    }
+}
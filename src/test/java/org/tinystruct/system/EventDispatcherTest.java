@@ -3,11 +3,15 @@ package org.tinystruct.system;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.*;
 
 // Test class for EventDispatcher
 class EventDispatcherTest {
@@ -99,4 +103,99 @@ class EventDispatcherTest {
         // Verify both handlers were invoked
         assertEquals(2, counter.get(), "Both handlers should be called once");
     }
+
+    // A subtype of TestEvent, with a sequence number
+    static class NumberedEvent extends TestEvent {
+        private final int number;
+
+        public NumberedEvent(int number) {
+            super("Numbered Event", String.valueOf(number));
+            this.number = number;
+        }
+    }
+
+    @Test
+    void testSupertypeHandlers() {
+        List<String> handled = new ArrayList<>();
+        Consumer<NumberedEvent> numbered = event -> handled.add("numbered " + event.number);
+        Consumer<TestEvent> test = event -> handled.add("test " + event.getPayload());
+        @SuppressWarnings("rawtypes")
+        Consumer<Event> any = event -> handled.add("any " + event.getName());
+
+        eventDispatcher.registerHandler(NumberedEvent.class, numbered);
+        eventDispatcher.registerHandler(TestEvent.class, test);
+        eventDispatcher.registerHandler(Event.class, any);
+        try {
+            eventDispatcher.dispatch(new NumberedEvent(7));
+            assertEquals(List.of("numbered 7", "test 7", "any Numbered Event"), handled);
+
+            handled.clear();
+            assertTrue(eventDispatcher.unregisterHandler(TestEvent.class, test));
+            assertFalse(eventDispatcher.unregisterHandler(TestEvent.class, test));
+            eventDispatcher.dispatch(new NumberedEvent(8));
+            assertEquals(List.of("numbered 8", "any Numbered Event"), handled);
+        } finally {
+            eventDispatcher.unregisterHandler(NumberedEvent.class, numbered);
+            eventDispatcher.unregisterHandler(Event.class, any);
+        }
+    }
+
+    @Test
+    void testAsyncHandlersKeepOrder() throws InterruptedException {
+        int events = 5000;
+        CountDownLatch done = new CountDownLatch(events);
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        Thread caller = Thread.currentThread();
+        AtomicInteger onCaller = new AtomicInteger();
+        Consumer<NumberedEvent> handler = event -> {
+            if (Thread.currentThread() == caller) onCaller.incrementAndGet();
+            handled.add(event.number);
+            done.countDown();
+        };
+
+        eventDispatcher.registerAsyncHandler(NumberedEvent.class, handler);
+        try {
+            for (int i = 0; i < events; i++) {
+                eventDispatcher.dispatch(new NumberedEvent(i));
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            assertEquals(0, onCaller.get());
+            for (int i = 0; i < events; i++) {
+                assertEquals(i, handled.get(i));
+            }
+        } finally {
+            eventDispatcher.unregisterHandler(NumberedEvent.class, handler);
+        }
+    }
+
+    @Test
+    void testBatchHandler() throws InterruptedException {
+        int events = 2000;
+        CountDownLatch done = new CountDownLatch(events);
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger batches = new AtomicInteger();
+        Consumer<List<NumberedEvent>> handler = batch -> {
+            assertTrue(batch.size() <= 256);
+            batches.incrementAndGet();
+            for (NumberedEvent event : batch) {
+                handled.add(event.number);
+                done.countDown();
+            }
+            if (batches.get() == 1) throw new IllegalStateException("A failing batch does not stop the next ones");
+        };
+
+        eventDispatcher.registerBatchHandler(NumberedEvent.class, handler);
+        try {
+            for (int i = 0; i < events; i++) {
+                eventDispatcher.dispatch(new NumberedEvent(i));
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            assertTrue(batches.get() >= events / 256);
+            for (int i = 0; i < events; i++) {
+                assertEquals(i, handled.get(i));
+            }
+        } finally {
+            eventDispatcher.unregisterHandler(NumberedEvent.class, handler);
+        }
+    }
 }
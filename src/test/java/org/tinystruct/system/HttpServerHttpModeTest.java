@@ -152,6 +152,26 @@ public class HttpServerHttpModeTest {
         assertTrue(response.contains("POST users"), "POST request should match POST handler, not GET");
     }
 
+    @Test
+    public void testMetricsAreOnlyServedWhenEnabled() throws Exception {
+        HTTPHandler handler = new HTTPHandler();
+        URLRequest request = new URLRequest(URI.create(BASE_URL + "/?q=metrics").toURL());
+        URLResponse response = handler.handleRequest(request);
+        assertEquals(404, response.getStatusCode());
+        assertFalse(response.getBody().contains("# TYPE"));
+
+        // Settings are shared, so the switch is only on for this request
+        Settings settings = new Settings();
+        settings.set("metrics.http.enabled", "true");
+        try {
+            response = handler.handleRequest(new URLRequest(URI.create(BASE_URL + "/?q=metrics").toURL()));
+            assertEquals(200, response.getStatusCode());
+            assertTrue(response.getBody().contains("# TYPE"));
+        } finally {
+            settings.remove("metrics.http.enabled");
+        }
+    }
+
     /**
      * Helper method to send HTTP requests
      */
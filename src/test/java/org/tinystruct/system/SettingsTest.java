@@ -5,10 +5,13 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.*;
 
 class SettingsTest {
     @Test
@@ -69,5 +72,54 @@ class SettingsTest {
 
         (new Settings("foo.properties")).remove("Key");
     }
-}
 
+    @Test
+    void testSnapshotTypedAccessors() {
+        Properties properties = new Properties();
+        properties.setProperty("port", " 8080 ");
+        properties.setProperty("size", "9000000000");
+        properties.setProperty("enabled", "true");
+        properties.setProperty("timeout", "30s");
+        properties.setProperty("interval", "PT2M");
+        properties.setProperty("delay", "250");
+        properties.setProperty("origins", "a.com, b.com,,c.com ");
+        properties.setProperty("invalid", "abc");
+
+        ConfigurationSnapshot snapshot = ConfigurationSnapshot.of(properties, 1);
+        assertEquals("8080", snapshot.get("port"));
+        assertEquals(8080, snapshot.getInt("port", 0));
+        assertEquals(9000000000L, snapshot.getLong("size", 0));
+        assertTrue(snapshot.getBoolean("enabled", false));
+        assertEquals(Duration.ofSeconds(30), snapshot.getDuration("timeout", null));
+        assertEquals(Duration.ofMinutes(2), snapshot.getDuration("interval", null));
+        assertEquals(Duration.ofMillis(250), snapshot.getDuration("delay", null));
+        assertEquals(Arrays.asList("a.com", "b.com", "c.com"), snapshot.getList("origins"));
+        assertEquals(42, snapshot.getInt("invalid", 42));
+        assertEquals(42, snapshot.getInt("missing", 42));
+        assertEquals(Collections.emptyList(), snapshot.getList("missing"));
+        assertEquals("", snapshot.get("missing"));
+        assertEquals("fallback", snapshot.getOrDefault("missing", "fallback"));
+    }
+
+    @Test
+    void testSetPublishesSnapshot() {
+        Settings settings = new Settings("foo.properties");
+        ConfigurationSnapshot before = settings.snapshot();
+        AtomicReference<ConfigurationSnapshot> published = new AtomicReference<>();
+        ConfigurationListener listener = (previous, current) -> published.set(current);
+        settings.addListener(listener);
+        try {
+            settings.set("snapshot.test.value", "17");
+            assertNotNull(published.get());
+            assertSame(published.get(), settings.snapshot());
+            assertTrue(published.get().version() > before.version());
+            assertEquals("", before.get("snapshot.test.value"));
+            assertEquals(17, settings.getInt("snapshot.test.value", 0));
+
+            settings.remove("snapshot.test.value");
+            assertEquals("", settings.get("snapshot.test.value"));
+        } finally {
+            settings.removeListener(listener);
+        }
+    }
+}
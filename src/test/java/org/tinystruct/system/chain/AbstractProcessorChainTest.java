@@ -0,0 +1,141 @@
+package org.tinystruct.system.chain;
+
+import org.junit.jupiter.api.Test;
+import org.tinystruct.ApplicationException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AbstractProcessorChainTest {
+
+    @Test
+    public void testSingleInput() {
+        TextChain chain = new TextChain();
+        chain.addProcessor(String::trim);
+        chain.addProcessor(text -> text.toUpperCase());
+        assertEquals("HELLO", chain.process("  hello "));
+    }
+
+    @Test
+    public void testPipelineKeepsOrderAndCountsItems() throws ApplicationException {
+        TextChain chain = new TextChain();
+        chain.setCapacity(8);
+        chain.addProcessor(String::trim);
+        chain.addProcessor(text -> text + "!");
+
+        List<Outcome<String>> outcomes = new ArrayList<>();
+        List<StageStatistics> statistics = chain.process(IntStream.range(0, 1000).mapToObj(i -> " " + i + " "), outcomes::add);
+
+        assertEquals(1000, outcomes.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, outcomes.get(i).getIndex());
+            assertEquals(i + "!", outcomes.get(i).getValue());
+            assertFalse(outcomes.get(i).isFailed());
+        }
+        assertEquals(2, statistics.size());
+        assertEquals(1000, statistics.get(0).getProcessed());
+        assertEquals(1000, statistics.get(1).getProcessed());
+        assertTrue(statistics.get(1).getThroughput() > 0);
+    }
+
+    @Test
+    public void testErrorsStayWithTheirItem() throws ApplicationException {
+        TextChain chain = new TextChain();
+        chain.addProcessor(text -> {
+            if (text.startsWith("bad")) throw new ApplicationException("Cannot process " + text);
+            return text;
+        });
+        chain.addProcessor(text -> {
+            if (text.equals("worse")) throw new IllegalStateException("Broken");
+            return text + ".";
+        });
+
+        List<Outcome<String>> outcomes = new ArrayList<>();
+        List<StageStatistics> statistics = chain.process(Stream.of("good", "bad one", "worse", "fine"), outcomes::add);
+
+        assertEquals(4, outcomes.size());
+        assertEquals("good.", outcomes.get(0).getValue());
+        assertEquals(0, outcomes.get(1).getStage());
+        assertEquals("Cannot process bad one", outcomes.get(1).getError().getMessage());
+        assertEquals(1, outcomes.get(2).getStage());
+        assertInstanceOf(IllegalStateException.class, outcomes.get(2).getError());
+        assertEquals("fine.", outcomes.get(3).getValue());
+        assertEquals(1, statistics.get(0).getFailed());
+        assertEquals(3, statistics.get(0).getProcessed());
+        assertEquals(1, statistics.get(1).getFailed());
+        assertEquals(2, statistics.get(1).getProcessed());
+    }
+
+    @Test
+    public void testParallelStage() throws ApplicationException {
+        TextChain chain = new TextChain();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        chain.addProcessor(text -> {
+            threads.add(Thread.currentThread().getName());
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return text.toUpperCase();
+        }, 4);
+
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        List<StageStatistics> statistics = chain.process(IntStream.range(0, 200).mapToObj(i -> "item" + i), outcome -> {
+            assertEquals("ITEM" + outcome.getIndex(), outcome.getValue());
+            assertTrue(seen.add(outcome.getIndex()));
+        });
+
+        assertEquals(200, seen.size());
+        assertTrue(threads.size() > 1, "Expected the stage to run on several threads: " + threads);
+        assertEquals(4, statistics.get(0).getParallelism());
+        assertEquals(200, statistics.get(0).getProcessed());
+    }
+
+    @Test
+    public void testFailingInputs() {
+        TextChain chain = new TextChain();
+        chain.addProcessor(String::trim);
+        List<Outcome<String>> outcomes = new ArrayList<>();
+        Iterator<String> inputs = new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public String next() {
+                if (next == 3) throw new IllegalStateException("Source closed");
+                return "input" + next++;
+            }
+        };
+
+        ApplicationException exception = assertThrows(ApplicationException.class, () -> chain.process(inputs, outcomes::add));
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        // The inputs read before the failure are still processed
+        assertEquals(3, outcomes.size());
+    }
+
+    @Test
+    public void testEmptyChain() throws ApplicationException {
+        TextChain chain = new TextChain();
+        List<Outcome<String>> outcomes = new ArrayList<>();
+        assertTrue(chain.process(Stream.of("a", "b"), outcomes::add).isEmpty());
+        assertEquals("b", outcomes.get(1).getValue());
+    }
+
+    private static class TextChain extends AbstractProcessorChain<String> {
+        @Override
+        public void init() {
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.tinystruct.system.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.StreamHandler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Throughput comparison between the synchronous {@link LogFormatter} on a
+ * {@link StreamHandler} and the {@link AsyncLogHandler}, with several threads
+ * logging concurrently as they would on a busy server.
+ */
+public class AsyncLogHandlerPerformanceTest {
+
+    private static final int THREADS = 8;
+    private static final int RECORDS_PER_THREAD = 50_000;
+
+    @Test
+    public void testThroughput() throws Exception {
+        System.out.println("=== Logging Throughput Test ===");
+        System.out.println("Threads: " + THREADS + ", records per thread: " + RECORDS_PER_THREAD);
+
+        Path dir = Files.createTempDirectory("log-benchmark");
+
+        StreamHandler sync = new StreamHandler(Files.newOutputStream(dir.resolve("sync.log")), new LogFormatter(false));
+        run("Warmup (sync)", sync, RECORDS_PER_THREAD / 10);
+        long syncTime = run("StreamHandler + LogFormatter", sync, RECORDS_PER_THREAD);
+        sync.close();
+
+        AsyncLogHandler async = new AsyncLogHandler(dir.resolve("async.log"), AsyncLogHandler.DEFAULT_CAPACITY, AsyncLogHandler.OverflowPolicy.BLOCK);
+        run("Warmup (async)", async, RECORDS_PER_THREAD / 10);
+        long asyncTime = run("AsyncLogHandler", async, RECORDS_PER_THREAD);
+        async.close();
+        assertEquals(0, async.getDroppedCount());
+
+        System.out.printf("Speedup: %.2fx%n", (double) syncTime / Math.max(1, asyncTime));
+    }
+
+    private long run(String name, Handler handler, int records) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < records; i++) {
+                        LogRecord record = new LogRecord(Level.INFO, "SELECT * FROM user WHERE id = ?");
+                        record.setLoggerName("org.tinystruct.data.DatabaseOperator");
+                        handler.publish(record);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        handler.flush();
+        long elapsed = System.nanoTime() - startTime;
+
+        long total = (long) THREADS * records;
+        System.out.printf("%-30s %8d ms  %12.0f records/s%n", name, elapsed / 1_000_000, total / (elapsed / 1e9));
+        return elapsed;
+    }
+}
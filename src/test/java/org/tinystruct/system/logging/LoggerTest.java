@@ -18,9 +18,13 @@ package org.tinystruct.system.logging;
 import org.junit.jupiter.api.Test;
 import org.tinystruct.system.Configuration;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.Properties;
 import java.util.Set;
+import java.util.stream.Stream;
 import java.util.logging.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -151,4 +155,110 @@ class LoggerTest {
         Logger specificLogger = Logger.getLogger("org.tinystruct.test");
         assertEquals(Level.WARNING, specificLogger.getLevel(), "Specific logger should have WARNING level applied");
     }
+
+    @Test
+    void testAsyncLogHandlerWritesRecords() throws Exception {
+        Path dir = Files.createTempDirectory("async-log");
+        Path file = dir.resolve("app.log");
+        AsyncLogHandler handler = new AsyncLogHandler(file, 1024, AsyncLogHandler.OverflowPolicy.BLOCK);
+        try {
+            LogRecord info = new LogRecord(Level.INFO, "First message");
+            info.setLoggerName("org.tinystruct.async");
+            handler.publish(info);
+            handler.publish(new LogRecord(Level.SEVERE, "Second message"));
+            handler.flush();
+
+            String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            assertTrue(content.contains("First message"));
+            assertTrue(content.contains("[org.tinystruct.async]"), "Location should not be captured below WARNING");
+            assertTrue(content.contains("Second message"));
+            assertTrue(content.contains("[" + Thread.currentThread().getName() + "]"), "Thread name should be the publisher's");
+            assertTrue(content.contains("LoggerTest.testAsyncLogHandlerWritesRecords"), "Location should be captured for SEVERE");
+        } finally {
+            handler.close();
+        }
+    }
+
+    @Test
+    void testAsyncLogHandlerRollsBySize() throws Exception {
+        Path dir = Files.createTempDirectory("async-log");
+        Path file = dir.resolve("app.log");
+        AsyncLogHandler handler = new AsyncLogHandler(file, 1024, AsyncLogHandler.OverflowPolicy.BLOCK);
+        handler.setMaxFileSize(256);
+        try {
+            for (int i = 0; i < 20; i++) {
+                handler.publish(new LogRecord(Level.INFO, "Rolling message " + i));
+                handler.flush();
+            }
+        } finally {
+            handler.close();
+        }
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.count() > 1, "Log file should have been rolled");
+        }
+    }
+
+    @Test
+    void testAsyncLogHandlerLeavesRecordsAlone() throws Exception {
+        Path file = Files.createTempDirectory("async-log").resolve("app.log");
+        AsyncLogHandler handler = new AsyncLogHandler(file, 1024, AsyncLogHandler.OverflowPolicy.BLOCK);
+        try {
+            LogRecord record = new LogRecord(Level.INFO, "Shared record");
+            record.setSourceClassName("org.tinystruct.Shared");
+            handler.publish(record);
+            handler.flush();
+            // Other handlers of the logger see the same record
+            assertEquals("org.tinystruct.Shared", record.getSourceClassName());
+        } finally {
+            handler.close();
+        }
+    }
+
+    @Test
+    void testAsyncLogHandlerKeepsWritingAfterFailedRoll() throws Exception {
+        Path dir = Files.createTempDirectory("async-log");
+        Path file = dir.resolve("app.log");
+        AsyncLogHandler handler = new AsyncLogHandler(file, 1024, AsyncLogHandler.OverflowPolicy.BLOCK);
+        handler.setErrorManager(new ErrorManager() {
+            @Override
+            public synchronized void error(String msg, Exception ex, int code) {
+                // Expected once
+            }
+        });
+        try {
+            handler.publish(new LogRecord(Level.INFO, "Before"));
+            handler.flush();
+            // The next roll can not move the file away
+            Files.delete(file);
+            handler.setMaxFileSize(1);
+            handler.publish(new LogRecord(Level.INFO, "After"));
+            handler.flush();
+            handler.setMaxFileSize(0);
+            handler.publish(new LogRecord(Level.INFO, "Later"));
+            handler.flush();
+        } finally {
+            handler.close();
+        }
+
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        assertTrue(content.contains("After"));
+        assertTrue(content.contains("Later"));
+    }
+
+    @Test
+    void testAsyncLogHandlerDropsWhenFull() throws Exception {
+        Path file = Files.createTempDirectory("async-log").resolve("app.log");
+        AsyncLogHandler handler = new AsyncLogHandler(file, 4, AsyncLogHandler.OverflowPolicy.DROP);
+        try {
+            for (int i = 0; i < 10_000; i++) {
+                handler.publish(new LogRecord(Level.INFO, "Burst " + i));
+            }
+            handler.flush();
+            assertTrue(handler.getDroppedCount() > 0, "Records should be dropped when the buffer is full");
+            assertEquals(0, handler.getPendingCount());
+        } finally {
+            handler.close();
+        }
+    }
 }
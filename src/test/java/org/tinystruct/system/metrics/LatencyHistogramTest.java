@@ -0,0 +1,41 @@
+package org.tinystruct.system.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 100, 1_000, 123_456_789L, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.upperBoundOf(index) >= value, "upper bound of " + value);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.upperBoundOf(index - 1) < value, "previous bucket of " + value);
+            }
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(1000, histogram.count());
+        assertEquals(1_000_000L, histogram.max());
+        assertEquals(500_500.0, histogram.mean(), 0.001);
+
+        // Buckets are at most 12.5% wide
+        assertEquals(500_000, histogram.percentile(50), 500_000 * 0.125);
+        assertEquals(990_000, histogram.percentile(99), 990_000 * 0.125);
+        assertEquals(1_000_000L, histogram.percentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+    }
+}
@@ -0,0 +1,113 @@
+package org.tinystruct.system.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.tinystruct.AbstractApplication;
+import org.tinystruct.ApplicationException;
+import org.tinystruct.application.ActionRegistry;
+import org.tinystruct.system.ApplicationManager;
+import org.tinystruct.system.Settings;
+import org.tinystruct.system.annotation.Action;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void testSameNameAndLabelsSameMetric() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter counter = registry.counter("test_requests_total", "Requests", "method", "GET");
+        assertSame(counter, registry.counter("test_requests_total", "Requests", "method", "GET"));
+        assertNotSame(counter, registry.counter("test_requests_total", "Requests", "method", "POST"));
+        assertThrows(IllegalArgumentException.class, () -> registry.timer("test_requests_total", "Requests"));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("test-invalid", "Invalid name"));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("test_total", "Odd labels", "method"));
+        assertThrows(IllegalArgumentException.class, () -> counter.add(-1));
+    }
+
+    @Test
+    public void testPrometheusTextFormat() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("test_requests_total", "Requests served", "method", "GET", "status", "200").add(3);
+        registry.gauge("test_queue_depth", "Queued \\ messages", () -> 7);
+        registry.gauge("test_broken", "Broken gauge", () -> {
+            throw new IllegalStateException("closed");
+        });
+        LatencyHistogram timer = registry.timer("test_duration_seconds", "Duration", "route", "say/\"{words}\"\n");
+        timer.record(2_000_000);
+        timer.record(4_000_000);
+        registry.histogram("test_size_bytes", "Size").record(100);
+
+        String text = registry.scrape();
+        assertTrue(text.contains("# HELP test_requests_total Requests served\n# TYPE test_requests_total counter\n"
+                + "test_requests_total{method=\"GET\",status=\"200\"} 3\n"), text);
+        assertTrue(text.contains("# HELP test_queue_depth Queued \\\\ messages\n# TYPE test_queue_depth gauge\ntest_queue_depth 7\n"), text);
+        assertFalse(text.contains("\ntest_broken "), text);
+        assertTrue(text.contains("# TYPE test_duration_seconds summary\n"), text);
+        assertTrue(text.contains("test_duration_seconds{route=\"say/\\\"{words}\\\"\\n\",quantile=\"0.5\"} "), text);
+        assertTrue(text.contains("test_duration_seconds_sum{route=\"say/\\\"{words}\\\"\\n\"} 0.006\n"), text);
+        assertTrue(text.contains("test_duration_seconds_count{route=\"say/\\\"{words}\\\"\\n\"} 2\n"), text);
+        assertTrue(text.contains("test_size_bytes{quantile=\"0.99\"} 100\n"), text);
+        assertTrue(text.contains("test_size_bytes_sum 100\ntest_size_bytes_count 1\n"), text);
+
+        assertTrue(registry.remove("test_queue_depth"));
+        assertFalse(registry.scrape().contains("test_queue_depth"));
+    }
+
+    @Test
+    public void testConcurrentCounting() throws InterruptedException {
+        MetricsRegistry registry = new MetricsRegistry();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    registry.counter("test_events_total", "Events").increment();
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(80_000, registry.counter("test_events_total", "Events").count());
+    }
+
+    @Test
+    public void testActionsAreTimedPerRouteAndMode() throws ApplicationException {
+        ApplicationManager.install(new MetricsApplication(), new Settings());
+
+        ApplicationManager.call("metrics-test/hello", null, Action.Mode.CLI);
+        ApplicationManager.call("metrics-test/hello", null, Action.Mode.CLI);
+        assertThrows(ApplicationException.class, () -> ApplicationManager.call("metrics-test/fail", null, Action.Mode.HTTP_GET));
+
+        String route = ActionRegistry.getInstance().getAction("metrics-test/hello").getPathRule();
+        String text = MetricsRegistry.getInstance().scrape();
+        assertTrue(text.contains("tinystruct_action_duration_seconds_count{route=\"" + route + "\",mode=\"CLI\"} 2\n"), text);
+        assertTrue(text.contains("tinystruct_action_errors_total{route=\"" + ActionRegistry.getInstance().getAction("metrics-test/fail").getPathRule()
+                + "\",mode=\"HTTP_GET\"} 1\n"), text);
+    }
+
+    public static class MetricsApplication extends AbstractApplication {
+
+        @Override
+        public void init() {
+            this.setTemplateRequired(false);
+        }
+
+        @Action("metrics-test/hello")
+        public String hello() {
+            return "hello";
+        }
+
+        @Action("metrics-test/fail")
+        public String fail() throws ApplicationException {
+            throw new ApplicationException("failed");
+        }
+
+        @Override
+        public String version() {
+            return "1.0";
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.tinystruct.system.security.oauth2;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.tinystruct.ApplicationException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenManagerTest {
+    private HttpServer server;
+    private TokenManager manager;
+    private ClientCredentials client;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final Set<String> scopes = ConcurrentHashMap.newKeySet();
+    private volatile int status = 200;
+    private volatile int expiresIn = 3600;
+    private volatile long delay;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/token", exchange -> {
+            int n = requests.incrementAndGet();
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            String response;
+            if (status != 200) {
+                response = "{\"error\":\"invalid_client\"}";
+            } else if (!"Basic Y2xpZW50OnNlY3JldA==".equals(exchange.getRequestHeaders().getFirst("Authorization"))
+                    || !body.contains("grant_type=client_credentials")) {
+                status = 400;
+                response = "{\"error\":\"invalid_request\"}";
+            } else {
+                String scope = "";
+                for (String parameter : body.split("&")) {
+                    if (parameter.startsWith("scope=")) {
+                        scope = URLDecoder.decode(parameter.substring(6), StandardCharsets.UTF_8);
+                    }
+                }
+                scopes.add(scope);
+                response = "{\"access_token\":\"token-" + n + "\",\"token_type\":\"bearer\",\"expires_in\":" + expiresIn
+                        + ",\"scope\":\"" + scope + "\"}";
+            }
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+
+        client = new ClientCredentials(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/token"), "client", "secret");
+        manager = new TokenManager();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        manager.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testTokenIsCached() throws Exception {
+        AccessToken token = manager.getToken(client, "read");
+        assertEquals("token-1", token.getValue());
+        assertEquals("Bearer token-1", token.authorization());
+        assertEquals("read", token.getScope());
+        assertFalse(token.toString().contains("token-1"));
+
+        assertSame(token, manager.getToken(client, "read"));
+        assertTrue(manager.token(client, "read").isDone());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testScopesAreCachedApart() throws Exception {
+        AccessToken read = manager.getToken(client, "read");
+        AccessToken both = manager.getToken(client, "write read");
+        assertNotEquals(read.getValue(), both.getValue());
+        assertSame(both, manager.getToken(client, " read  write "));
+        assertEquals(Set.of("read", "read write"), scopes);
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneTokenRequest() throws Exception {
+        delay = 200;
+        int threads = 32;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<AccessToken>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return manager.getToken(client, "read");
+                }));
+            }
+            start.countDown();
+            for (Future<AccessToken> future : futures) {
+                assertEquals("token-1", future.get(5, TimeUnit.SECONDS).getValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testRefreshAheadOfExpiry() throws Exception {
+        expiresIn = 2;
+        manager.setExpiryMargin(200, TimeUnit.MILLISECONDS).setRefreshRatio(0.5);
+        assertEquals("token-1", manager.getToken(client, null).getValue());
+
+        // Asked for again, the token is refreshed on a timer half way through its lifetime
+        Thread.sleep(500);
+        assertEquals("token-1", manager.getToken(client, null).getValue());
+        Thread.sleep(1000);
+        assertEquals(2, requests.get());
+        assertTrue(manager.token(client, null).isDone());
+        assertEquals("token-2", manager.getToken(client, null).getValue());
+
+        // Refreshed once more as it was asked for, and then no longer
+        Thread.sleep(2200);
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    public void testCurrentTokenIsServedWhileRefreshing() throws Exception {
+        expiresIn = 2;
+        manager.setExpiryMargin(200, TimeUnit.MILLISECONDS).setRefreshRatio(0.25);
+        manager.getToken(client, "read");
+        delay = 500;
+        Thread.sleep(600);
+
+        long start = System.nanoTime();
+        assertEquals("token-1", manager.getToken(client, "read").getValue());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 200);
+        Thread.sleep(800);
+        assertEquals("token-2", manager.getToken(client, "read").getValue());
+    }
+
+    @Test
+    public void testFailures() throws Exception {
+        status = 401;
+        ApplicationException error = assertThrows(ApplicationException.class, () -> manager.getToken(client, "read"));
+        assertTrue(error.getMessage().contains("401"), error.getMessage());
+        assertTrue(error.getMessage().contains("invalid_client"), error.getMessage());
+
+        // Without a token the next request tries again
+        status = 200;
+        assertEquals("token-2", manager.getToken(client, "read").getValue());
+
+        // An invalidated token is requested again
+        manager.invalidate(client, "read");
+        assertEquals("token-3", manager.getToken(client, "read").getValue());
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    public void testFailedRefreshKeepsTheToken() throws Exception {
+        expiresIn = 2;
+        manager.setExpiryMargin(200, TimeUnit.MILLISECONDS).setRefreshRatio(0.25).setRetryDelay(5, TimeUnit.SECONDS);
+        manager.getToken(client, "read");
+        status = 500;
+        Thread.sleep(600);
+
+        assertEquals("token-1", manager.getToken(client, "read").getValue());
+        Thread.sleep(200);
+        assertEquals(2, requests.get());
+        // No new attempt on every request until the retry delay passed
+        assertEquals("token-1", manager.getToken(client, "read").getValue());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testCredentialIsReadOnce() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        ClientCredentials credentials = ClientCredentials.of(key -> {
+            lookups.incrementAndGet();
+            switch (key) {
+                case "token_uri":
+                    return client.getTokenUri().toString();
+                case "client_id":
+                    return "client";
+                case "client_secret":
+                    return "secret";
+                default:
+                    return null;
+            }
+        });
+        assertEquals(client, credentials);
+        manager.getToken(credentials, "read");
+        manager.getToken(credentials, "read");
+        assertEquals(3, lookups.get());
+
+        assertThrows(ApplicationException.class, () -> ClientCredentials.of(key -> null));
+    }
+}
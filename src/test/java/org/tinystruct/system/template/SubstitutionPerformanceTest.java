@@ -0,0 +1,105 @@
+package org.tinystruct.system.template;
+
+import org.junit.jupiter.api.Test;
+import org.tinystruct.system.template.variable.DataType;
+import org.tinystruct.system.template.variable.StringVariable;
+import org.tinystruct.system.template.variable.Variable;
+
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares {@link Substitution} against the replacement it took over in
+ * {@link PlainText} and {@link DefaultTemplate}: a pass over the whole text
+ * for every variable and every route, with 500 shared variables and 300 routes.
+ */
+public class SubstitutionPerformanceTest {
+
+    private static final int VARIABLES = 500;
+    private static final int ROUTES = 300;
+    private static final int ITERATIONS = 200;
+    private static final int WARMUP_ITERATIONS = 50;
+
+    @Test
+    public void testSubstitutionPerformance() throws Exception {
+        Map<String, Variable<?>> variables = new HashMap<>();
+        for (int i = 0; i < VARIABLES; i++) {
+            variables.put("[%label." + i + "%]", new StringVariable("label." + i, "Label " + i + " & more"));
+        }
+        Set<String> paths = new LinkedHashSet<>();
+        for (int i = 0; i < ROUTES; i++) {
+            paths.add("module" + (i % 20) + "/action" + i);
+        }
+        Function<String, String> links = path -> paths.contains(path) ? "http://localhost:8080/?q=" + path + "&lang=en-US" : null;
+
+        // A page of 40 sections, each with a heading, a paragraph and a few links
+        StringBuilder page = new StringBuilder("<!DOCTYPE html><html><head><title>[%label.0%]</title></head><body>");
+        for (int i = 0; i < 40; i++) {
+            page.append("<section><h2>[%label.").append(i * 7 % VARIABLES).append("%]</h2><p>")
+                    .append("Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore. ".repeat(4))
+                    .append("[%label.").append(i * 11 % VARIABLES).append("%]</p><ul>");
+            for (int j = 0; j < 3; j++) {
+                page.append("<li><a href=\"[%LINK:module").append((i + j) % 20).append("/action").append(((i + j) % 15) * 20 + (i + j) % 20)
+                        .append("%]\">[%label.").append((i * 3 + j) % VARIABLES).append("%]</a></li>");
+            }
+            page.append("</ul></section>");
+        }
+        page.append("</body></html>");
+        String text = page.toString();
+
+        Substitution substitution = new Substitution(variables, links);
+        String expected = legacy(text, variables, paths, links);
+        assertEquals(expected, substitution.apply(text));
+
+        System.out.println("=== Substitution Performance Test ===");
+        System.out.println("Page: " + text.length() + " chars, variables: " + VARIABLES + ", routes: " + ROUTES);
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            legacy(text, variables, paths, links);
+            substitution.apply(text);
+            substitution.apply(text, Writer.nullWriter());
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            legacy(text, variables, paths, links);
+        }
+        long legacyTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            substitution.apply(text);
+        }
+        long builderTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            substitution.apply(text, Writer.nullWriter());
+        }
+        long writerTime = System.nanoTime() - start;
+
+        System.out.printf("Replace per variable and route: %d us/page%n", legacyTime / ITERATIONS / 1000);
+        System.out.printf("Substitution, builder:          %d us/page%n", builderTime / ITERATIONS / 1000);
+        System.out.printf("Substitution, writer:           %d us/page%n", writerTime / ITERATIONS / 1000);
+    }
+
+    private static String legacy(String text, Map<String, Variable<?>> variables, Set<String> paths, Function<String, String> links) {
+        for (Map.Entry<String, Variable<?>> v : variables.entrySet()) {
+            Variable<?> variable = v.getValue();
+            if (variable.getType() != DataType.ARRAY) {
+                String value = variable.getValue().toString().replace("&", "&amp;");
+                text = text.replace(v.getKey(), value);
+            }
+        }
+        for (String path : paths) {
+            text = text.replace("[%LINK:" + path + "%]", links.apply(path));
+        }
+        return text;
+    }
+}
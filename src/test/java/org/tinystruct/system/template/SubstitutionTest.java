@@ -0,0 +1,83 @@
+package org.tinystruct.system.template;
+
+import org.junit.jupiter.api.Test;
+import org.tinystruct.system.template.variable.ArrayVariable;
+import org.tinystruct.system.template.variable.StringVariable;
+import org.tinystruct.system.template.variable.Variable;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SubstitutionTest {
+
+    private static final Set<String> PATHS = Set.of("user/profile", "say");
+    private static final Function<String, String> LINKS =
+            path -> PATHS.contains(path) ? "http://localhost/?q=" + path + "&lang=en-US" : null;
+
+    private static Map<String, Variable<?>> variables() {
+        Map<String, Variable<?>> variables = new HashMap<>();
+        variables.put("[%title%]", new StringVariable("title", "Tom & Jerry"));
+        variables.put("{%user%}", new StringVariable("user", "James"));
+        variables.put("{%user.email%}", new StringVariable("user.email", "james@example.com"));
+        return variables;
+    }
+
+    @Test
+    public void testVariablesAndLinks() {
+        Substitution substitution = new Substitution(variables(), LINKS);
+        String text = "<h1>[%title%]</h1><p>{%user%} ({%user.email%})</p><a href=\"[%LINK:user/profile%]\">[%title%]</a>";
+
+        assertEquals("<h1>Tom &amp; Jerry</h1><p>James (james@example.com)</p>"
+                + "<a href=\"http://localhost/?q=user/profile&lang=en-US\">Tom &amp; Jerry</a>", substitution.apply(text));
+    }
+
+    @Test
+    public void testUnknownMarkersAreKept() {
+        Substitution substitution = new Substitution(variables(), LINKS);
+
+        assertEquals("[%missing%] {%missing%} [%LINK:nowhere%] 100% [% {% %] %}",
+                substitution.apply("[%missing%] {%missing%} [%LINK:nowhere%] 100% [% {% %] %}"));
+        assertEquals("[% James", substitution.apply("[% {%user%}"));
+        assertEquals("[%Tom &amp; Jerry", substitution.apply("[%[%title%]"));
+        assertEquals("", substitution.apply(""));
+    }
+
+    @Test
+    public void testArraysAreNotReplaced() {
+        Map<String, Variable<?>> variables = variables();
+        variables.put("[%list%]", new ArrayVariable<>("list", new String[]{"a", "b"}));
+
+        assertEquals("[%list%] James", new Substitution(variables, LINKS).apply("[%list%] {%user%}"));
+    }
+
+    @Test
+    public void testValuesAreNotScanned() {
+        Map<String, Variable<?>> variables = variables();
+        variables.put("[%nested%]", new StringVariable("nested", "{%user%}"));
+
+        assertEquals("{%user%}", new Substitution(variables, LINKS).apply("[%nested%]"));
+    }
+
+    @Test
+    public void testNamesThatAreNotMarkers() {
+        Map<String, Variable<?>> variables = variables();
+        variables.put("$footer", new StringVariable("$footer", "A & B"));
+
+        assertEquals("James, A &amp; B", new Substitution(variables, LINKS).apply("{%user%}, $footer"));
+    }
+
+    @Test
+    public void testWriter() throws Exception {
+        Substitution substitution = new Substitution(variables(), LINKS);
+        String text = "[%title%] by {%user%}: [%LINK:say%]";
+        StringWriter writer = new StringWriter();
+        substitution.apply(text, writer);
+
+        assertEquals(substitution.apply(text), writer.toString());
+    }
+}
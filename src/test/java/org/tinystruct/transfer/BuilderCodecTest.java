@@ -0,0 +1,85 @@
+package org.tinystruct.transfer;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+import org.tinystruct.ApplicationException;
+import org.tinystruct.data.component.Builder;
+import org.tinystruct.data.component.Builders;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BuilderCodecTest {
+
+    @Test
+    public void testRoundTrip() {
+        Builder nested = new Builder();
+        nested.put("name", "Ünïcödé ✓");
+        nested.put("empty", "");
+
+        Builders list = new Builders();
+        Builder item = new Builder();
+        item.put("id", 1);
+        list.add(item);
+
+        Builder builder = new Builder();
+        builder.put("int", -42);
+        builder.put("long", System.nanoTime());
+        builder.put("double", 3.25d);
+        builder.put("decimal", new BigDecimal("12345678901234567890.5"));
+        builder.put("yes", true);
+        builder.put("no", false);
+        builder.put("none", null);
+        builder.put("nested", nested);
+        builder.put("list", list);
+        builder.put("array", new Object[]{"a", 2, null});
+
+        Builder decoded = BuilderCodec.decode(BuilderCodec.encode(builder));
+        assertEquals(builder.keySet(), decoded.keySet());
+        assertEquals(-42, decoded.get("int"));
+        assertEquals(builder.get("long"), decoded.get("long"));
+        assertEquals(3.25d, decoded.get("double"));
+        assertEquals(builder.get("decimal"), decoded.get("decimal"));
+        assertEquals(Boolean.TRUE, decoded.get("yes"));
+        assertEquals(Boolean.FALSE, decoded.get("no"));
+        assertNull(decoded.get("none"));
+        assertEquals("Ünïcödé ✓", ((Builder) decoded.get("nested")).get("name"));
+        assertEquals(1, ((Builders) decoded.get("list")).get(0).get("id"));
+        assertArrayEquals(new Object[]{"a", 2, null}, (Object[]) decoded.get("array"));
+        assertEquals(builder.toString().length(), decoded.toString().length());
+    }
+
+    @Test
+    public void testSingleValue() {
+        assertEquals("text", BuilderCodec.decode(BuilderCodec.encode(new Builder("text"))).getValue());
+        assertEquals(7L, BuilderCodec.decode(BuilderCodec.encode(new Builder(7L))).getValue());
+    }
+
+    @Test
+    public void testSmallerThanJson() throws ApplicationException {
+        Builder builder = new Builder();
+        builder.put("user", "user_42");
+        builder.put("time", System.nanoTime());
+        builder.put("message", "Hello, World!");
+        builder.put("session_id", "42");
+
+        byte[] encoded = BuilderCodec.encode(builder);
+        byte[] json = builder.toString().getBytes(StandardCharsets.UTF_8);
+        assertTrue(encoded.length < json.length, encoded.length + " bytes encoded, " + json.length + " as JSON");
+
+        Builder parsed = new Builder();
+        parsed.parse(BuilderCodec.decode(encoded).toString());
+        assertEquals("Hello, World!", parsed.get("message"));
+    }
+
+    @Test
+    public void testRejectsCorruptData() {
+        byte[] encoded = BuilderCodec.encode(new Builder().put("key", "value"));
+        assertThrows(SerializationException.class, () -> BuilderCodec.decode(Arrays.copyOf(encoded, encoded.length - 2)));
+        encoded[0] = 9;
+        assertThrows(SerializationException.class, () -> BuilderCodec.decode(encoded));
+    }
+}
@@ -1,24 +1,43 @@
 package org.tinystruct.transfer;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.tinystruct.ApplicationException;
 
-import java.util.ArrayDeque;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.Set;
 import java.util.concurrent.*;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class DistributedMessageQueueTest {
     private DistributedMessageQueue queue;
+    private MessageLog log;
+    private Path directory;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
+        directory = Files.createTempDirectory("message-log");
+        log = new MessageLog(directory);
         queue = new DistributedMessageQueue();
+        queue.setMessageLog(log);
+        queue.sessions.clear();
         queue.init();
     }
 
+    @AfterEach
+    void tearDown() throws IOException {
+        log.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
     @Test
     void testPutAndTake() throws ApplicationException {
         String groupId = "testGroup";
@@ -27,7 +46,6 @@ class DistributedMessageQueueTest {
 
         // Register session in the group
         queue.sessions.put(groupId, Set.of(sessionId));
-        queue.list.put(sessionId, new ArrayDeque<>());
 
         // Put message in the queue
         String putResult = queue.put(groupId, sessionId, message);
@@ -51,7 +69,7 @@ class DistributedMessageQueueTest {
     @Test
     void testTakeFromEmptyQueue() throws ApplicationException {
         String sessionId = "testSession";
-        queue.list.put(sessionId, new ArrayDeque<>());
+        queue.subscribe("testGroup", sessionId);
 
         String result = queue.take(sessionId);
         assertEquals("{}", result);
@@ -61,8 +79,7 @@ class DistributedMessageQueueTest {
     void testThreadSafety() throws InterruptedException, ApplicationException {
         String groupId = "testGroup";
         String sessionId = "testSession";
-        queue.sessions.put(groupId, Set.of(sessionId));
-        queue.list.put(sessionId, new LinkedBlockingQueue<>());
+        queue.subscribe(groupId, sessionId);
 
         ExecutorService executor = Executors.newFixedThreadPool(10);
         int messageCount = 100;
@@ -80,14 +97,43 @@ class DistributedMessageQueueTest {
 
         executor.shutdown();
         executor.awaitTermination(10, TimeUnit.SECONDS);
-        Thread.sleep(500);
 
         int receivedMessages = 0;
-        while (!queue.list.get(sessionId).isEmpty()) {
-            assertNotEquals("{}", queue.take(sessionId));
+        while (!"{}".equals(queue.take(sessionId))) {
             receivedMessages++;
         }
 
         assertEquals(messageCount, receivedMessages);
     }
+
+    @Test
+    void testEverySessionOfTheGroupGetsEachMessage() throws ApplicationException {
+        queue.subscribe("room", "alice");
+        queue.subscribe("room", "bob");
+        queue.subscribe("other", "carol");
+
+        queue.put("room", "alice", "Hi Bob");
+        queue.put("room", "bob", "Hi Alice");
+
+        for (String sessionId : new String[]{"alice", "bob"}) {
+            assertTrue(queue.take(sessionId).contains("Hi Bob"));
+            assertTrue(queue.take(sessionId).contains("Hi Alice"));
+            assertEquals("{}", queue.take(sessionId));
+        }
+        assertEquals("{}", queue.take("carol"));
+        // Stored once, however many sessions read it
+        assertEquals(2, log.endOffset("room"));
+    }
+
+    @Test
+    void testTakeWaitsForTheNextMessage() throws Exception {
+        queue.subscribe("room", "alice");
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            scheduler.schedule(() -> queue.put("room", "bob", "Late"), 30, TimeUnit.MILLISECONDS);
+            assertTrue(queue.take("alice").contains("Late"));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
 }
@@ -0,0 +1,266 @@
+package org.tinystruct.transfer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.compress.Compression;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.record.internal.MemoryRecords;
+import org.apache.kafka.common.record.internal.MemoryRecordsBuilder;
+import org.apache.kafka.common.record.internal.MutableRecordBatch;
+import org.apache.kafka.common.record.internal.Record;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.tinystruct.ApplicationException;
+import org.tinystruct.data.component.Builder;
+import org.tinystruct.system.Settings;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KafkaMessageQueueTest {
+    private static final String TOPIC = "messages";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+
+    private MockProducer<String, Builder> producer;
+    private MockConsumer<String, Builder> consumer;
+    private KafkaMessageQueue queue;
+    private long offset;
+    private long committedOnClose = -1;
+
+    @BeforeEach
+    public void setUp() {
+        producer = new MockProducer<>(false, null, new StringSerializer(), new BuilderCodec().serializer());
+        consumer = new MockConsumer<>("earliest") {
+            @Override
+            public synchronized void close() {
+                committedOnClose = KafkaMessageQueueTest.this.committed();
+                super.close();
+            }
+        };
+        consumer.schedulePollTask(() -> {
+            consumer.rebalance(Collections.singletonList(PARTITION));
+            consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+        });
+        queue = new KafkaMessageQueue(producer, consumer, TOPIC).setPollTimeout(10, TimeUnit.MILLISECONDS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        queue.close();
+    }
+
+    private static Builder message(String text) {
+        Builder builder = new Builder();
+        builder.put("message", text);
+        return builder;
+    }
+
+    /**
+     * Have the consumer receive messages on its next poll.
+     */
+    private void receive(String group, String... texts) {
+        consumer.schedulePollTask(() -> {
+            for (String text : texts) {
+                consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, offset++, group, message(text)));
+            }
+        });
+    }
+
+    private long committed() {
+        OffsetAndMetadata offset = consumer.committed(Set.of(PARTITION)).get(PARTITION);
+        return offset != null ? offset.offset() : -1;
+    }
+
+    @Test
+    public void testPutPublishesInTheBackground() {
+        String sent = queue.put("room", "alice", "Hello");
+        assertTrue(sent.contains("Hello"));
+        assertEquals("{}", queue.put("room", "alice", ""));
+
+        // Not acknowledged yet, but put has returned
+        List<ProducerRecord<String, Builder>> history = producer.history();
+        assertEquals(1, history.size());
+        assertEquals(TOPIC, history.get(0).topic());
+        assertEquals("room", history.get(0).key());
+        assertEquals("Hello", history.get(0).value().get("message"));
+        assertEquals("user_alice", history.get(0).value().get("user"));
+
+        assertTrue(producer.completeNext());
+        queue.put("room", "alice", "Lost");
+        assertTrue(producer.errorNext(new RuntimeException("broker down")));
+        assertEquals(1, queue.failures());
+    }
+
+    @Test
+    public void testDeliversToSessionsOfTheGroup() throws ApplicationException {
+        queue.subscribe("room", "alice");
+        queue.subscribe("room", "bob");
+        queue.subscribe("lobby", "carol");
+        queue.start();
+        receive("room", "first", "second");
+
+        for (String session : new String[]{"alice", "bob"}) {
+            assertTrue(waitFor(session).contains("first"));
+            assertTrue(queue.take(session).contains("second"));
+        }
+        assertEquals("{}", queue.take("carol"));
+        assertEquals("{}", queue.take("nobody"));
+
+        queue.unsubscribe("room", "bob");
+        receive("room", "third");
+        assertTrue(waitFor("alice").contains("third"));
+        assertEquals("{}", queue.take("bob"));
+    }
+
+    private String waitFor(String session) throws ApplicationException {
+        long deadline = System.currentTimeMillis() + 5000;
+        String message;
+        while ("{}".equals(message = queue.take(session)) && System.currentTimeMillis() < deadline) {
+            // take waits on its own
+        }
+        return message;
+    }
+
+    @Test
+    public void testCustomDelivery() throws InterruptedException {
+        List<String> pushed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(3);
+        queue.setDelivery((sessionId, message) -> {
+            pushed.add(sessionId + ":" + message.get("message"));
+            latch.countDown();
+        });
+        queue.subscribe("room", "alice");
+        queue.subscribe("room", "bob");
+        queue.subscribe("lobby", "carol");
+        queue.start();
+        receive("room", "hi");
+        receive("lobby", "welcome");
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        pushed.sort(null);
+        assertEquals(List.of("alice:hi", "bob:hi", "carol:welcome"), pushed);
+    }
+
+    @Test
+    public void testAtMostOnceCommitsBeforeDelivery() throws InterruptedException {
+        assertEquals(List.of(2L, 2L), committedAtDelivery(KafkaMessageQueue.CommitStrategy.AT_MOST_ONCE));
+    }
+
+    @Test
+    public void testSyncCommitsAfterDelivery() throws InterruptedException {
+        assertEquals(List.of(-1L, -1L), committedAtDelivery(KafkaMessageQueue.CommitStrategy.SYNC));
+        waitForCommit(2);
+    }
+
+    @Test
+    public void testAsyncCommitsAfterDelivery() throws InterruptedException {
+        assertEquals(List.of(-1L, -1L), committedAtDelivery(KafkaMessageQueue.CommitStrategy.ASYNC));
+        waitForCommit(2);
+    }
+
+    private List<Long> committedAtDelivery(KafkaMessageQueue.CommitStrategy strategy) throws InterruptedException {
+        List<Long> committed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(2);
+        // Deliveries run on the poll loop, so the consumer may be asked here
+        queue.setCommitStrategy(strategy).setDelivery((sessionId, message) -> {
+            committed.add(committed());
+            latch.countDown();
+        });
+        queue.subscribe("room", "alice");
+        queue.start();
+        receive("room", "one", "two");
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        return committed;
+    }
+
+    private void waitForCommit(long offset) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (committed() != offset && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(offset, committed());
+    }
+
+    @Test
+    public void testCloseCommitsAndClosesClients() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        queue.setDelivery((sessionId, message) -> latch.countDown());
+        queue.subscribe("room", "alice");
+        queue.start();
+        receive("room", "last");
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        queue.close();
+        assertTrue(consumer.closed());
+        assertTrue(producer.closed());
+        assertEquals(1, committedOnClose);
+    }
+
+    @Test
+    public void testThroughputSettings() throws ApplicationException {
+        Settings settings = new Settings();
+        settings.set("kafka.bootstrap.servers", "broker:9092");
+        settings.set("kafka.group.id", "node-1");
+        settings.set("kafka.producer.linger.ms", "25");
+
+        Properties producer = KafkaMessageQueue.producerProperties(settings);
+        assertEquals("broker:9092", producer.get("bootstrap.servers"));
+        assertEquals("25", producer.get("linger.ms"));
+        assertEquals("zstd", producer.get("compression.type"));
+        assertEquals(String.valueOf(128 * 1024), producer.get("batch.size"));
+
+        Properties consumer = KafkaMessageQueue.consumerProperties(settings);
+        assertEquals("node-1", consumer.get("group.id"));
+        assertEquals("false", consumer.get("enable.auto.commit"));
+
+        settings.remove("kafka.bootstrap.servers");
+        assertThrows(ApplicationException.class, () -> KafkaMessageQueue.producerProperties(settings));
+    }
+
+    @Test
+    public void testDefaultCompressionWritesRecordBatches() throws ApplicationException {
+        Settings settings = new Settings();
+        settings.set("kafka.bootstrap.servers", "broker:9092");
+        String codec;
+        try {
+            codec = (String) KafkaMessageQueue.producerProperties(settings).get("compression.type");
+        } finally {
+            settings.remove("kafka.bootstrap.servers");
+        }
+
+        // The codec's library must be on the classpath, which a MockProducer never needs
+        byte[] value = new BuilderCodec().serializer().serialize(TOPIC, message("hello"));
+        MemoryRecordsBuilder builder = MemoryRecords.builder(ByteBuffer.allocate(64 * 1024), Compression.of(codec).build(),
+                TimestampType.CREATE_TIME, 0L);
+        for (int i = 0; i < 100; i++) {
+            builder.append(i, null, value);
+        }
+        MemoryRecords records = builder.build();
+
+        int count = 0;
+        for (MutableRecordBatch batch : records.batches()) {
+            assertEquals(codec, batch.compressionType().name);
+            for (Record record : batch) {
+                assertEquals(ByteBuffer.wrap(value), record.value());
+                count++;
+            }
+        }
+        assertEquals(100, count);
+        assertTrue(records.sizeInBytes() < 100 * value.length, "The batch was not compressed");
+    }
+}
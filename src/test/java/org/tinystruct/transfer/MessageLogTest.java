@@ -0,0 +1,220 @@
+package org.tinystruct.transfer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageLogTest {
+    private Path directory;
+    private final List<MessageLog> logs = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("message-log");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (MessageLog log : logs) {
+            log.close();
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private MessageLog open() throws Exception {
+        MessageLog log = new MessageLog(directory);
+        logs.add(log);
+        return log;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> texts(List<MessageLog.Record> records) {
+        return records.stream().map(MessageLog.Record::getText).collect(Collectors.toList());
+    }
+
+    private long segments(String group) throws IOException {
+        try (Stream<Path> files = Files.list(directory.resolve(group))) {
+            return files.filter(path -> path.toString().endsWith(".log")).count();
+        }
+    }
+
+    @Test
+    public void testAppendAndReadFromOffset() throws Exception {
+        MessageLog log = open();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, log.append("room", bytes("m" + i)));
+        }
+        assertEquals(0, log.startOffset("room"));
+        assertEquals(5, log.endOffset("room"));
+        assertEquals(0, log.endOffset("other"));
+
+        List<MessageLog.Record> records = log.read("room", 2, 10, 0, TimeUnit.MILLISECONDS);
+        assertEquals(List.of("m2", "m3", "m4"), texts(records));
+        assertEquals(2, records.get(0).getOffset());
+        assertEquals("room", records.get(0).getGroup());
+        assertEquals(List.of("m0", "m1"), texts(log.read("room", 0, 2, 0, TimeUnit.MILLISECONDS)));
+        assertTrue(log.read("room", 5, 10, 0, TimeUnit.MILLISECONDS).isEmpty());
+    }
+
+    @Test
+    public void testReadWaitsForAppend() throws Exception {
+        MessageLog log = open();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            scheduler.schedule(() -> log.append("room", bytes("late")), 100, TimeUnit.MILLISECONDS);
+            long start = System.nanoTime();
+            List<MessageLog.Record> records = log.read("room", 0, 10, 5, TimeUnit.SECONDS);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals(List.of("late"), texts(records));
+            assertTrue(elapsed < 1000, "Woken " + elapsed + "ms after waiting started");
+        } finally {
+            scheduler.shutdown();
+        }
+
+        long start = System.nanoTime();
+        assertTrue(log.read("room", 1, 10, 150, TimeUnit.MILLISECONDS).isEmpty());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+    }
+
+    @Test
+    public void testCursorsFanOut() throws Exception {
+        MessageLog log = open();
+        log.append("room", bytes("before"));
+        assertEquals(1, log.subscribe("room", "alice"));
+        log.subscribe("room", "bob");
+        log.subscribe("lobby", "bob");
+        log.append("room", bytes("hello"));
+        log.append("lobby", bytes("welcome"));
+
+        assertEquals("hello", log.poll("alice", 0, TimeUnit.MILLISECONDS).getText());
+        assertNull(log.poll("alice", 0, TimeUnit.MILLISECONDS));
+        assertEquals(2, log.position("room", "alice"));
+
+        List<String> received = new ArrayList<>();
+        MessageLog.Record record;
+        while ((record = log.poll("bob", 0, TimeUnit.MILLISECONDS)) != null) {
+            received.add(record.getText());
+        }
+        received.sort(null);
+        assertEquals(List.of("hello", "welcome"), received);
+
+        log.seek("room", "alice", 0);
+        assertEquals("before", log.poll("alice", 0, TimeUnit.MILLISECONDS).getText());
+
+        log.unsubscribe("room", "alice");
+        assertEquals(-1, log.position("room", "alice"));
+        log.append("room", bytes("gone"));
+        assertNull(log.poll("alice", 0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testPollWaitsOnEveryGroupOfTheConsumer() throws Exception {
+        MessageLog log = open();
+        log.subscribe("a", "reader");
+        log.subscribe("b", "reader");
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            scheduler.schedule(() -> log.append("b", bytes("from b")), 100, TimeUnit.MILLISECONDS);
+            MessageLog.Record record = log.poll("reader", 5, TimeUnit.SECONDS);
+            assertNotNull(record);
+            assertEquals("b", record.getGroup());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testRecordsAndCursorsSurviveRestart() throws Exception {
+        MessageLog log = open().setSegmentSize(64);
+        log.subscribe("room", "alice");
+        for (int i = 0; i < 10; i++) {
+            log.append("room", bytes("message " + i));
+        }
+        for (int i = 0; i < 4; i++) {
+            log.poll("alice", 0, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(segments("room") > 1);
+        log.close();
+
+        MessageLog reopened = open();
+        assertEquals(10, reopened.endOffset("room"));
+        assertEquals(4, reopened.position("room", "alice"));
+        assertEquals("message 4", reopened.poll("alice", 0, TimeUnit.MILLISECONDS).getText());
+        assertEquals(10, reopened.append("room", bytes("message 10")));
+        assertEquals(List.of("message 9", "message 10"), texts(reopened.read("room", 9, 10, 0, TimeUnit.MILLISECONDS)));
+    }
+
+    @Test
+    public void testIncompleteRecordIsCutOff() throws Exception {
+        MessageLog log = open();
+        log.append("room", bytes("complete"));
+        log.append("room", bytes("torn"));
+        log.close();
+
+        Path segment = directory.resolve("room").resolve(String.format("%020d.log", 0));
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+
+        MessageLog reopened = open();
+        assertEquals(1, reopened.endOffset("room"));
+        assertEquals(1, reopened.append("room", bytes("next")));
+        assertEquals(List.of("complete", "next"), texts(reopened.read("room", 0, 10, 0, TimeUnit.MILLISECONDS)));
+    }
+
+    @Test
+    public void testRetentionRemovesOldSegments() throws Exception {
+        MessageLog log = open().setSegmentSize(100).setRetentionSize(250)
+                .setFlushInterval(20, TimeUnit.MILLISECONDS);
+        log.subscribe("room", "slow");
+        for (int i = 0; i < 50; i++) {
+            log.append("room", bytes("message " + i));
+        }
+        long deadline = System.currentTimeMillis() + 2000;
+        while (segments("room") > 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        long start = log.startOffset("room");
+        assertTrue(segments("room") <= 3, segments("room") + " segments left");
+        assertTrue(start > 0);
+        // A consumer behind the retention continues from the oldest record kept
+        assertEquals(start, log.poll("slow", 0, TimeUnit.MILLISECONDS).getOffset());
+        assertEquals("message " + start, log.read("room", 0, 1, 0, TimeUnit.MILLISECONDS).get(0).getText());
+    }
+
+    @Test
+    public void testRetentionByAge() throws Exception {
+        MessageLog log = open().setSegmentSize(20).setRetention(100, TimeUnit.MILLISECONDS)
+                .setFlushInterval(20, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 5; i++) {
+            log.append("room", bytes("old " + i));
+        }
+        Thread.sleep(400);
+        // Only the active segment, holding the last record, is kept
+        assertEquals(4, log.startOffset("room"));
+        assertEquals(1, segments("room"));
+    }
+}
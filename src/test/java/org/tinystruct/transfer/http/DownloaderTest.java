@@ -0,0 +1,190 @@
+package org.tinystruct.transfer.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.tinystruct.ApplicationException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DownloaderTest {
+    private static final int SIZE = 3 * 1024 * 1024 + 17;
+    private static final String ETAG = "\"v1\"";
+
+    private final byte[] content = new byte[SIZE];
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+    private final AtomicInteger fullRequests = new AtomicInteger();
+    private volatile boolean supportRanges = true;
+    // When positive, the next GET is cut off after this many bytes
+    private final AtomicLong dropAfter = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private HttpClient client;
+    private URI uri;
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        new Random(42).nextBytes(content);
+        directory = Files.createTempDirectory("download");
+        executor = Executors.newFixedThreadPool(8);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/file.bin", this::serve);
+        server.setExecutor(executor);
+        server.start();
+        uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/file.bin");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSegmentedDownloadWithChecksum() throws Exception {
+        AtomicLong last = new AtomicLong();
+        Path target = directory.resolve("out/file.bin");
+        new Downloader(client)
+                .setSegments(4)
+                .setSegmentThreshold(1024 * 1024)
+                .setChecksum("SHA-256", sha256(content))
+                .setProgressListener((received, total) -> {
+                    assertEquals(SIZE, total);
+                    last.accumulateAndGet(received, Math::max);
+                })
+                .download(uri, target);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(4, rangeRequests.get());
+        assertEquals(SIZE, last.get());
+        assertFalse(Files.exists(directory.resolve("out/file.bin.part")));
+        assertFalse(Files.exists(directory.resolve("out/file.bin.part.state")));
+    }
+
+    @Test
+    public void testResumeAfterDroppedConnection() throws Exception {
+        dropAfter.set(SIZE / 3);
+        Path target = directory.resolve("file.bin");
+        new Downloader(client)
+                .setSegments(1)
+                .setRetries(2)
+                .download(uri, target);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        // One cut-off request, then a range request for the rest
+        assertEquals(2, rangeRequests.get());
+    }
+
+    @Test
+    public void testResumeInLaterCall() throws Exception {
+        dropAfter.set(SIZE / 2);
+        Path target = directory.resolve("file.bin");
+        assertThrows(ApplicationException.class, () -> new Downloader(client).setSegments(1).setRetries(0).download(uri, target));
+        assertTrue(Files.exists(directory.resolve("file.bin.part.state")));
+
+        AtomicLong first = new AtomicLong(-1);
+        new Downloader(client).setSegments(1).setProgressListener((received, total) -> first.compareAndSet(-1, received))
+                .download(uri, target);
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertTrue(first.get() > SIZE / 4, "Second call should continue from the checkpoint, started at " + first.get());
+    }
+
+    @Test
+    public void testChecksumMismatch() {
+        Path target = directory.resolve("file.bin");
+        ApplicationException e = assertThrows(ApplicationException.class, () -> new Downloader(client)
+                .setChecksum("SHA-256", "00")
+                .download(uri, target));
+        assertTrue(e.getMessage().contains("Checksum mismatch"));
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(directory.resolve("file.bin.part")));
+    }
+
+    @Test
+    public void testServerWithoutRanges() throws Exception {
+        supportRanges = false;
+        Path target = directory.resolve("file.bin");
+        new Downloader(client).setSegmentThreshold(1024).download(uri, target);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(0, rangeRequests.get());
+        assertEquals(1, fullRequests.get());
+    }
+
+    @Test
+    public void testNotFound() {
+        ApplicationException e = assertThrows(ApplicationException.class, () -> new Downloader(client)
+                .download(uri.resolve("/missing"), directory.resolve("missing")));
+        assertTrue(e.getMessage().contains("404"));
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        if (supportRanges) {
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            exchange.getResponseHeaders().set("ETag", ETAG);
+        }
+
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(SIZE));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+
+        int start = 0;
+        int end = SIZE - 1;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        boolean partial = supportRanges && range != null && (ifRange == null || ETAG.equals(ifRange));
+        if (partial) {
+            rangeRequests.incrementAndGet();
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            start = Integer.parseInt(bounds[0]);
+            if (bounds.length > 1 && !bounds[1].isEmpty()) {
+                end = Math.min(end, Integer.parseInt(bounds[1]));
+            }
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + SIZE);
+            exchange.sendResponseHeaders(206, end - start + 1);
+        } else {
+            fullRequests.incrementAndGet();
+            exchange.sendResponseHeaders(200, SIZE);
+        }
+
+        int length = end - start + 1;
+        long drop = dropAfter.getAndSet(0);
+        OutputStream out = exchange.getResponseBody();
+        if (drop > 0 && drop < length) {
+            out.write(content, start, (int) drop);
+            out.flush();
+            // The server closes the connection when a handler fails mid-response
+            throw new IOException("Connection dropped after " + drop + " bytes");
+        }
+        out.write(content, start, length);
+        out.close();
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+    }
+}
@@ -0,0 +1,124 @@
+package org.tinystruct.valve;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Contention benchmark for {@link DistributedLock}: N processes with M
+ * threads each lock and unlock a small set of shared lock ids. Inside the
+ * critical section every thread increments an unsynchronized counter in a
+ * shared memory-mapped file, so any overlap between two holders shows up as a
+ * lost update.
+ */
+public class DistributedLockPerformanceTest {
+    private static final int PROCESSES = 3;
+    private static final int THREADS = 4;
+    private static final int LOCKS = 4;
+    private static final int ITERATIONS = 500;
+
+    @Test
+    public void testContention() throws Exception {
+        Path counters = Files.createTempFile("lock-counters", ".bin");
+        Files.write(counters, new byte[LOCKS * 8]);
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> processes = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < PROCESSES; i++) {
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    DistributedLockPerformanceTest.class.getName(), counters.toString(),
+                    String.valueOf(THREADS), String.valueOf(ITERATIONS))
+                    .redirectErrorStream(true)
+                    .start());
+        }
+
+        for (Process process : processes) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("child")) System.out.println(line);
+                }
+            }
+            assertTrue(process.waitFor(5, TimeUnit.MINUTES), "Child process did not finish");
+            assertEquals(0, process.exitValue());
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long total = 0;
+        try (RandomAccessFile file = new RandomAccessFile(counters.toFile(), "r")) {
+            for (int i = 0; i < LOCKS; i++) {
+                total += file.readLong();
+            }
+        }
+        Files.deleteIfExists(counters);
+
+        long operations = (long) PROCESSES * THREADS * ITERATIONS;
+        System.out.printf("%d processes x %d threads, %d locks: %d lock/unlock pairs in %d ms, %.0f ops/sec%n",
+                PROCESSES, THREADS, LOCKS, operations, TimeUnit.NANOSECONDS.toMillis(elapsed), operations / (elapsed / 1e9));
+        assertEquals(operations, total, "Lost updates mean two holders overlapped");
+    }
+
+    /**
+     * Child process: THREADS threads, each taking the shared locks in turn.
+     */
+    public static void main(String[] args) throws Exception {
+        Path counters = Path.of(args[0]);
+        int threads = Integer.parseInt(args[1]);
+        int iterations = Integer.parseInt(args[2]);
+
+        MappedByteBuffer shared;
+        try (FileChannel channel = FileChannel.open(counters, java.nio.file.StandardOpenOption.READ, java.nio.file.StandardOpenOption.WRITE)) {
+            shared = channel.map(FileChannel.MapMode.READ_WRITE, 0, LOCKS * 8);
+        }
+
+        String[] ids = new String[LOCKS];
+        for (int i = 0; i < LOCKS; i++) {
+            // Ids are 36 characters, so every process and thread gets the same lock
+            ids[i] = UUID.nameUUIDFromBytes(("benchmark-" + i).getBytes()).toString();
+        }
+
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            new Thread(() -> {
+                Lock[] locks = new Lock[LOCKS];
+                for (int i = 0; i < LOCKS; i++) {
+                    locks[i] = new DistributedLock(ids[i].getBytes());
+                }
+                for (int i = 0; i < iterations; i++) {
+                    int n = (i + offset) % LOCKS;
+                    locks[n].lock();
+                    try {
+                        shared.putLong(n * 8, shared.getLong(n * 8) + 1);
+                    } finally {
+                        locks[n].unlock();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        shared.force();
+        System.out.printf("child %d: %d ops in %d ms%n", ProcessHandle.current().pid(), threads * iterations,
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+        System.exit(0);
+    }
+}
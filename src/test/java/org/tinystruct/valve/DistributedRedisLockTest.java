@@ -0,0 +1,201 @@
+package org.tinystruct.valve;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.protocol.ProtocolVersion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DistributedRedisLockTest {
+    private RedisStandIn redis;
+    private final List<RedisClient> clients = new ArrayList<>();
+    private final List<RedisLockEngine> engines = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        redis = new RedisStandIn();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for (RedisLockEngine engine : engines) {
+            engine.close();
+        }
+        for (RedisClient client : clients) {
+            client.shutdown();
+        }
+        redis.close();
+    }
+
+    /**
+     * An engine with its own connections, standing for another client process.
+     */
+    private RedisLockEngine engine() {
+        RedisClient client = RedisClient.create(RedisURI.create("127.0.0.1", redis.port()));
+        client.setOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build());
+        clients.add(client);
+        RedisLockEngine engine = new RedisLockEngine(client);
+        engines.add(engine);
+        return engine;
+    }
+
+    @Test
+    public void testLockIsReentrant() throws Exception {
+        RedisLockEngine engine = engine();
+        Lock lock = new DistributedRedisLock(engine, "orders");
+        Lock same = new DistributedRedisLock(engine, "orders");
+        Lock other = new DistributedRedisLock(engine(), "orders");
+
+        lock.lock();
+        assertTrue(lock.tryLock());
+        assertTrue(same.tryLock(), "Same thread, same client");
+        assertFalse(other.tryLock(), "Another client");
+
+        same.unlock();
+        lock.unlock();
+        assertFalse(other.tryLock());
+        lock.unlock();
+        assertTrue(other.tryLock());
+        other.unlock();
+    }
+
+    @Test
+    public void testTryLockHonoursTimeout() throws Exception {
+        Lock holder = new DistributedRedisLock(engine(), "busy");
+        RedisLockEngine engine = engine().setPollInterval(50, TimeUnit.MILLISECONDS);
+        Lock waiter = new DistributedRedisLock(engine, "busy");
+        holder.lock();
+        // The first wait opens the subscriber connection
+        assertFalse(new DistributedRedisLock(engine, "busy").tryLock(10, TimeUnit.MILLISECONDS));
+
+        long start = System.nanoTime();
+        assertFalse(waiter.tryLock(300, TimeUnit.MILLISECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed >= 300 && elapsed < 500, "Waited " + elapsed + "ms");
+        holder.unlock();
+    }
+
+    @Test
+    public void testWaiterIsWokenByUnlock() throws Exception {
+        Lock holder = new DistributedRedisLock(engine(), "event");
+        // A long poll interval, so only the release notification can wake the waiter in time
+        Lock waiter = new DistributedRedisLock(engine().setPollInterval(10, TimeUnit.SECONDS), "event");
+        holder.lock();
+
+        AtomicLong acquiredAt = new AtomicLong();
+        Thread thread = new Thread(() -> {
+            waiter.lock();
+            acquiredAt.set(System.nanoTime());
+            waiter.unlock();
+        });
+        thread.start();
+        Thread.sleep(300);
+        long scripts = redis.count("EVALSHA");
+
+        long releasedAt = System.nanoTime();
+        holder.unlock();
+        thread.join(5000);
+        assertTrue(acquiredAt.get() > 0, "Waiter did not get the lock");
+        long latency = TimeUnit.NANOSECONDS.toMillis(acquiredAt.get() - releasedAt);
+        assertTrue(latency < 200, "Woken " + latency + "ms after unlock");
+        // Waiting did not spin on the server
+        assertTrue(scripts < 10, scripts + " scripts while waiting");
+    }
+
+    @Test
+    public void testLeaseIsRenewedWhileHeld() throws Exception {
+        RedisLockEngine engine = engine().setLeaseTime(200, TimeUnit.MILLISECONDS);
+        Lock holder = new DistributedRedisLock(engine, "long");
+        Lock other = new DistributedRedisLock(engine().setPollInterval(50, TimeUnit.MILLISECONDS), "long");
+
+        holder.lock();
+        assertFalse(other.tryLock(800, TimeUnit.MILLISECONDS), "Lease ran out during a long critical section");
+        holder.unlock();
+        assertTrue(other.tryLock());
+        other.unlock();
+    }
+
+    @Test
+    public void testLeaseExpiresWhenHolderIsGone() throws Exception {
+        RedisLockEngine crashed = engine().setLeaseTime(300, TimeUnit.MILLISECONDS);
+        Lock holder = new DistributedRedisLock(crashed, "orphan");
+        Lock other = new DistributedRedisLock(engine().setPollInterval(5, TimeUnit.SECONDS), "orphan");
+
+        holder.lock();
+        crashed.close();
+        engines.remove(crashed);
+
+        long start = System.nanoTime();
+        assertTrue(other.tryLock(3, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // The waiter parks until the lease runs out, not until its next poll
+        assertTrue(elapsed < 1000, "Took " + elapsed + "ms");
+        other.unlock();
+    }
+
+    @Test
+    public void testFairLockGoesToWaitersInOrder() throws Exception {
+        Lock holder = new DistributedRedisLock(engine().setFair(true), "fair");
+        holder.lock();
+
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+        AtomicBoolean failed = new AtomicBoolean();
+        for (int i = 0; i < 3; i++) {
+            final int n = i;
+            Lock waiter = new DistributedRedisLock(engine().setFair(true).setPollInterval(20, TimeUnit.MILLISECONDS), "fair");
+            new Thread(() -> {
+                try {
+                    if (waiter.tryLock(5, TimeUnit.SECONDS)) {
+                        order.add(n);
+                        Thread.sleep(50);
+                        waiter.unlock();
+                    } else {
+                        failed.set(true);
+                    }
+                } catch (Exception e) {
+                    failed.set(true);
+                }
+                done.countDown();
+            }).start();
+            // Let each waiter take its ticket before the next one starts
+            Thread.sleep(150);
+        }
+
+        holder.unlock();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertFalse(failed.get());
+        assertEquals(List.of(0, 1, 2), order);
+    }
+
+    @Test
+    public void testStandInFollowsTheShippedScripts() {
+        RedisStandIn.SCRIPTS.forEach((script, sha) -> assertEquals(sha, RedisStandIn.sha1(RedisStandIn.resource(script)),
+                script + " changed, bring its equivalent in RedisStandIn in line and update the SHA1"));
+    }
+
+    @Test
+    public void testScriptsAreReloadedAfterFlush() throws Exception {
+        Lock lock = new DistributedRedisLock(engine(), "restart");
+        lock.lock();
+        lock.unlock();
+
+        redis.flushScripts();
+        assertTrue(lock.tryLock());
+        lock.unlock();
+        // The lock and unlock scripts, each loaded again after the flush
+        assertEquals(4, redis.count("SCRIPT"));
+    }
+}
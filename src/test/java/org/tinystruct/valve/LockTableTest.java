@@ -0,0 +1,172 @@
+package org.tinystruct.valve;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LockTableTest {
+    private Path file;
+    private LockTable table;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        file = Files.createTempFile("locks", ".table");
+        Files.delete(file);
+        table = new LockTable(file, 16);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        table.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testAcquireAndRelease() throws Exception {
+        int slot = table.bind("orders");
+        assertEquals(slot, table.bind("orders"));
+        assertEquals(slot, table.lookup("orders"));
+        assertEquals(-1, table.lookup("payments"));
+
+        long first = table.newToken();
+        long second = table.newToken();
+        assertTrue(table.tryAcquire(slot, first, 0));
+        assertTrue(table.isHeld(slot));
+        assertFalse(table.tryAcquire(slot, second, 0));
+        assertFalse(table.release(slot, second));
+
+        assertTrue(table.release(slot, first));
+        assertFalse(table.isHeld(slot));
+        assertEquals(1, table.releases(slot));
+        assertTrue(table.tryAcquire(slot, second, 0));
+        assertTrue(table.release(slot, second));
+
+        table.unbind(slot);
+        table.unbind(slot);
+    }
+
+    @Test
+    public void testSharedBetweenTables() throws Exception {
+        try (LockTable other = new LockTable(file, 1024)) {
+            assertEquals(16, other.slots());
+            int slot = table.bind("shared");
+            assertEquals(slot, other.bind("shared"));
+
+            long token = table.newToken();
+            assertTrue(table.tryAcquire(slot, token, 0));
+            assertFalse(other.acquire(slot, other.newToken(), 0, TimeUnit.MILLISECONDS.toNanos(50)));
+            assertTrue(other.isHeld(slot));
+            assertTrue(table.release(slot, token));
+            assertTrue(other.acquire(slot, other.newToken(), 0, 0));
+        }
+    }
+
+    @Test
+    public void testIdleSlotsAreReused() {
+        for (int i = 0; i < 100; i++) {
+            int slot = table.bind("lock-" + i);
+            long token = table.newToken();
+            assertTrue(table.tryAcquire(slot, token, 0));
+            assertTrue(table.release(slot, token));
+            table.unbind(slot);
+        }
+
+        int[] slots = new int[16];
+        for (int i = 0; i < 16; i++) {
+            slots[i] = table.bind("busy-" + i);
+        }
+        assertThrows(org.tinystruct.ApplicationRuntimeException.class, () -> table.bind("one-too-many"));
+        for (int slot : slots) {
+            table.unbind(slot);
+        }
+    }
+
+    @Test
+    public void testWaiterWokenOnRelease() throws Exception {
+        int slot = table.bind("queue");
+        long token = table.newToken();
+        assertTrue(table.tryAcquire(slot, token, 0));
+
+        AtomicBoolean acquired = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            try {
+                acquired.set(table.acquire(slot, table.newToken(), 0, -1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        Thread.sleep(100);
+        assertFalse(acquired.get());
+
+        long released = System.nanoTime();
+        table.release(slot, token);
+        waiter.join(1000);
+        assertTrue(acquired.get());
+        assertTrue(System.nanoTime() - released < TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void testTimeoutAccuracy() throws Exception {
+        int slot = table.bind("busy");
+        assertTrue(table.tryAcquire(slot, table.newToken(), 0));
+
+        long start = System.nanoTime();
+        assertFalse(table.acquire(slot, table.newToken(), 0, TimeUnit.MILLISECONDS.toNanos(300)));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed >= 300 && elapsed < 400, "Waited " + elapsed + "ms");
+    }
+
+    @Test
+    public void testExpiredLeaseIsTakenOver() throws Exception {
+        int slot = table.bind("leased");
+        long token = table.newToken();
+        assertTrue(table.tryAcquire(slot, token, 100));
+        assertTrue(table.renew(slot, token, 100));
+        assertFalse(table.tryAcquire(slot, table.newToken(), 0));
+
+        long next = table.newToken();
+        assertTrue(table.acquire(slot, next, 0, TimeUnit.SECONDS.toNanos(2)));
+        assertFalse(table.release(slot, token));
+        assertFalse(table.renew(slot, token, 100));
+        assertTrue(table.release(slot, next));
+    }
+
+    @Test
+    public void testLockOfCrashedProcessIsTakenOver() throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                LockTableTest.class.getName(), file.toString())
+                .redirectErrorStream(true)
+                .start();
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        assertEquals(3, process.exitValue());
+
+        int slot = table.lookup("crashed");
+        assertTrue(slot >= 0);
+        // The owner is gone, so the lock no longer counts as held
+        assertFalse(table.isHeld(slot));
+        assertTrue(table.acquire(table.bind("crashed"), table.newToken(), 0, TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    /**
+     * Child process: take a lock and die without releasing it.
+     */
+    public static void main(String[] args) throws Exception {
+        LockTable table = new LockTable(Path.of(args[0]), 16);
+        int slot = table.bind("crashed");
+        if (table.tryAcquire(slot, table.newToken(), 0)) {
+            Runtime.getRuntime().halt(3);
+        }
+        Runtime.getRuntime().halt(1);
+    }
+}
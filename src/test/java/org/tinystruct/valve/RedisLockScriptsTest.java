@@ -0,0 +1,136 @@
+package org.tinystruct.valve;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the shipped lock scripts on a real Redis server, which
+ * {@link DistributedRedisLockTest} only covers through the Java equivalents of
+ * {@link RedisStandIn}. Enabled with -Dredis.uri=redis://localhost:6379.
+ */
+@EnabledIfSystemProperty(named = "redis.uri", matches = ".+")
+public class RedisLockScriptsTest {
+    private final List<RedisClient> clients = new ArrayList<>();
+    private final List<RedisLockEngine> engines = new ArrayList<>();
+    private String name;
+
+    @BeforeEach
+    public void setUp() {
+        // Each test on its own keys, so runs never see each other's leftovers
+        name = "tinystruct-test-" + UUID.randomUUID();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        for (RedisLockEngine engine : engines) {
+            engine.close();
+        }
+        for (RedisClient client : clients) {
+            client.shutdown();
+        }
+    }
+
+    private RedisLockEngine engine() {
+        RedisClient client = RedisClient.create(RedisURI.create(System.getProperty("redis.uri")));
+        clients.add(client);
+        RedisLockEngine engine = new RedisLockEngine(client);
+        engines.add(engine);
+        return engine;
+    }
+
+    @Test
+    public void testLockIsReentrantAndExclusive() throws Exception {
+        RedisLockEngine engine = engine();
+        Lock lock = new DistributedRedisLock(engine, name);
+        Lock other = new DistributedRedisLock(engine(), name);
+
+        lock.lock();
+        assertTrue(lock.tryLock());
+        assertFalse(other.tryLock());
+        lock.unlock();
+        assertFalse(other.tryLock(), "One hold is left");
+        lock.unlock();
+        assertTrue(other.tryLock());
+        other.unlock();
+    }
+
+    @Test
+    public void testUnlockWakesTheWaiter() throws Exception {
+        Lock holder = new DistributedRedisLock(engine(), name);
+        Lock waiter = new DistributedRedisLock(engine().setPollInterval(10, TimeUnit.SECONDS), name);
+        holder.lock();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            waiter.lock();
+            acquired.countDown();
+            waiter.unlock();
+        });
+        thread.start();
+        Thread.sleep(300);
+        holder.unlock();
+        assertTrue(acquired.await(2, TimeUnit.SECONDS), "The release was not published");
+    }
+
+    @Test
+    public void testLeaseIsRenewedAndExpires() throws Exception {
+        RedisLockEngine crashed = engine().setLeaseTime(300, TimeUnit.MILLISECONDS);
+        Lock holder = new DistributedRedisLock(crashed, name);
+        Lock other = new DistributedRedisLock(engine().setPollInterval(50, TimeUnit.MILLISECONDS), name);
+
+        holder.lock();
+        assertFalse(other.tryLock(900, TimeUnit.MILLISECONDS), "Lease ran out while renewed");
+        crashed.close();
+        engines.remove(crashed);
+        assertTrue(other.tryLock(2, TimeUnit.SECONDS), "Lease outlived its holder");
+        other.unlock();
+    }
+
+    @Test
+    public void testFairLockGoesToWaitersInOrder() throws Exception {
+        Lock holder = new DistributedRedisLock(engine().setFair(true), name);
+        holder.lock();
+
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+        AtomicBoolean failed = new AtomicBoolean();
+        for (int i = 0; i < 3; i++) {
+            final int n = i;
+            Lock waiter = new DistributedRedisLock(engine().setFair(true).setPollInterval(20, TimeUnit.MILLISECONDS), name);
+            new Thread(() -> {
+                try {
+                    if (waiter.tryLock(5, TimeUnit.SECONDS)) {
+                        order.add(n);
+                        Thread.sleep(50);
+                        waiter.unlock();
+                    } else {
+                        failed.set(true);
+                    }
+                } catch (Exception e) {
+                    failed.set(true);
+                }
+                done.countDown();
+            }).start();
+            Thread.sleep(150);
+        }
+
+        holder.unlock();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertFalse(failed.get());
+        assertEquals(List.of(0, 1, 2), order);
+    }
+}
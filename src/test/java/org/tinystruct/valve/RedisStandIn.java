@@ -0,0 +1,483 @@
+package org.tinystruct.valve;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small in-process server speaking enough of the Redis protocol (RESP2) for
+ * {@link RedisLockEngine}: keys with expiry, hashes, sorted sets, pub/sub and
+ * the lock scripts. It has no Lua interpreter; scripts are recognised by their
+ * SHA1 and run as the Java equivalents below, which follow the Lua source line
+ * by line. {@link #SCRIPTS} pins the version of each script they were written
+ * against, so a change to a script fails the tests until its equivalent here
+ * is brought in line.
+ */
+final class RedisStandIn implements Closeable {
+    /**
+     * SHA1 of the script each Java equivalent follows.
+     */
+    static final Map<String, String> SCRIPTS = Map.of(
+            "/lock.lua", "5c8a899c947efe9c75e109dab1989fc65fa9599f",
+            "/unlock.lua", "4d3ec2bd6b0424f64deb5db9afc223fe03dbda28",
+            "/renew.lua", "3de1bab12c3d80859f95535c1e5965c7666645fa");
+
+    private final ServerSocket server;
+    private final Map<String, Object> data = new HashMap<>();
+    private final Map<String, Long> expiries = new HashMap<>();
+    private final Map<String, String> scripts = new HashMap<>();
+    private final Map<String, Set<Client>> channels = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> counts = new ConcurrentHashMap<>();
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+
+    RedisStandIn() throws IOException {
+        this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Client client = new Client(server.accept());
+                    clients.add(client);
+                    Thread thread = new Thread(client, "redis-stand-in-client");
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }, "redis-stand-in");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return how many times a command was received, e.g. "EVALSHA"
+     */
+    long count(String command) {
+        AtomicLong count = counts.get(command);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Forget the loaded scripts, as SCRIPT FLUSH or a restart would.
+     */
+    synchronized void flushScripts() {
+        scripts.clear();
+    }
+
+    /**
+     * Drop every connection, like a server restart would; data and scripts are kept.
+     */
+    void disconnect() {
+        for (Client client : clients) {
+            client.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        disconnect();
+    }
+
+    private synchronized Object execute(Client client, List<String> command) {
+        String name = command.get(0).toUpperCase();
+        counts.computeIfAbsent(name, k -> new AtomicLong()).incrementAndGet();
+        switch (name) {
+            case "PING":
+                return new Status("PONG");
+            case "SELECT":
+            case "CLIENT":
+                return new Status("OK");
+            case "SCRIPT":
+                if (command.size() == 3 && command.get(1).equalsIgnoreCase("LOAD")) {
+                    String sha = sha1(command.get(2));
+                    scripts.put(sha, command.get(2));
+                    return sha;
+                }
+                break;
+            case "EVALSHA":
+                String source = scripts.get(command.get(1));
+                if (source == null) {
+                    return new Error("NOSCRIPT No matching script. Please use EVAL.");
+                }
+                int keys = Integer.parseInt(command.get(2));
+                List<String> keyList = command.subList(3, 3 + keys);
+                List<String> argList = command.subList(3 + keys, command.size());
+                return run(command.get(1), keyList, argList);
+            case "PUBLISH":
+                return publish(command.get(1), command.get(2));
+            case "ZREM":
+                return zrem(command.get(1), command.get(2));
+            case "EXISTS":
+                return exists(command.get(1));
+            case "DEL":
+                return del(command.get(1));
+            case "SUBSCRIBE":
+            case "UNSUBSCRIBE":
+                List<Object> replies = new ArrayList<>();
+                for (String channel : command.subList(1, command.size())) {
+                    if (name.equals("SUBSCRIBE")) {
+                        channels.computeIfAbsent(channel, k -> ConcurrentHashMap.newKeySet()).add(client);
+                        client.channels.add(channel);
+                    } else {
+                        channels.getOrDefault(channel, Set.of()).remove(client);
+                        client.channels.remove(channel);
+                    }
+                    replies.add(Arrays.asList(name.toLowerCase(), channel, (long) client.channels.size()));
+                }
+                return new Multi(replies);
+            default:
+                break;
+        }
+        return new Error("ERR unknown command '" + command.get(0) + "'");
+    }
+
+    private Object run(String sha, List<String> keys, List<String> args) {
+        if (sha.equals(SCRIPTS.get("/lock.lua"))) {
+            return lockScript(keys, args);
+        }
+        if (sha.equals(SCRIPTS.get("/unlock.lua"))) {
+            return unlockScript(keys, args);
+        }
+        if (sha.equals(SCRIPTS.get("/renew.lua"))) {
+            return renewScript(keys, args);
+        }
+        return new Error("ERR stand-in has no equivalent of script " + sha);
+    }
+
+    private Object lockScript(List<String> keys, List<String> args) {
+        String lock = keys.get(0), queue = keys.get(1), alive = keys.get(2);
+        String owner = args.get(0);
+        long lease = Long.parseLong(args.get(1)), ttl = Long.parseLong(args.get(2));
+        boolean fair = args.get(3).equals("1");
+
+        Map<String, String> hash = hash(lock, false);
+        if (hash != null && hash.containsKey(owner)) {
+            hash.put(owner, String.valueOf(Long.parseLong(hash.get(owner)) + 1));
+            pexpire(lock, lease);
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (fair) {
+            while (true) {
+                String head = first(queue);
+                if (head == null) {
+                    break;
+                }
+                Double deadline = zset(alive, true).get(head);
+                if (deadline != null && deadline > now) {
+                    break;
+                }
+                zrem(queue, head);
+                zrem(alive, head);
+            }
+        }
+
+        if (exists(lock) == 0) {
+            String head = fair ? first(queue) : null;
+            if (head == null || head.equals(owner)) {
+                if (head != null) {
+                    zrem(queue, owner);
+                    zrem(alive, owner);
+                }
+                hash(lock, true).put(owner, "1");
+                pexpire(lock, lease);
+                return null;
+            }
+        }
+
+        if (fair && ttl > 0) {
+            Map<String, Double> tickets = zset(queue, true);
+            if (!tickets.containsKey(owner)) {
+                double ticket = tickets.values().stream().mapToDouble(Double::doubleValue).max().orElse(0) + 1;
+                tickets.put(owner, ticket);
+            }
+            zset(alive, true).put(owner, (double) (now + ttl));
+            pexpire(queue, ttl);
+            pexpire(alive, ttl);
+        }
+        return pttl(lock);
+    }
+
+    private Object unlockScript(List<String> keys, List<String> args) {
+        String lock = keys.get(0), owner = args.get(0);
+        Map<String, String> hash = hash(lock, false);
+        if (hash == null || !hash.containsKey(owner)) {
+            return -1L;
+        }
+        long count = Long.parseLong(hash.get(owner)) - 1;
+        hash.put(owner, String.valueOf(count));
+        if (count > 0) {
+            pexpire(lock, Long.parseLong(args.get(1)));
+            return count;
+        }
+        del(lock);
+        publish(args.get(2), owner);
+        return 0L;
+    }
+
+    private Object renewScript(List<String> keys, List<String> args) {
+        Map<String, String> hash = hash(keys.get(0), false);
+        if (hash != null && hash.containsKey(args.get(0))) {
+            pexpire(keys.get(0), Long.parseLong(args.get(1)));
+            return 1L;
+        }
+        return 0L;
+    }
+
+    private Object value(String key) {
+        Long expiry = expiries.get(key);
+        if (expiry != null && expiry <= System.currentTimeMillis()) {
+            data.remove(key);
+            expiries.remove(key);
+        }
+        return data.get(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String> hash(String key, boolean create) {
+        Object value = value(key);
+        if (value == null && create) {
+            data.put(key, value = new HashMap<String, String>());
+        }
+        return (Map<String, String>) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Double> zset(String key, boolean create) {
+        Object value = value(key);
+        if (value == null) {
+            if (!create) {
+                return new HashMap<>();
+            }
+            data.put(key, value = new LinkedHashMap<String, Double>());
+        }
+        return (Map<String, Double>) value;
+    }
+
+    private String first(String key) {
+        return zset(key, false).entrySet().stream()
+                .min(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(null);
+    }
+
+    private long zrem(String key, String member) {
+        Map<String, Double> set = zset(key, false);
+        long removed = set.remove(member) != null ? 1 : 0;
+        if (set.isEmpty()) {
+            del(key);
+        }
+        return removed;
+    }
+
+    private long exists(String key) {
+        return value(key) != null ? 1 : 0;
+    }
+
+    private long del(String key) {
+        expiries.remove(key);
+        return data.remove(key) != null ? 1 : 0;
+    }
+
+    private void pexpire(String key, long millis) {
+        if (value(key) != null) {
+            expiries.put(key, System.currentTimeMillis() + millis);
+        }
+    }
+
+    private long pttl(String key) {
+        if (value(key) == null) {
+            return -2;
+        }
+        Long expiry = expiries.get(key);
+        return expiry == null ? -1 : Math.max(0, expiry - System.currentTimeMillis());
+    }
+
+    private long publish(String channel, String message) {
+        Set<Client> subscribers = channels.getOrDefault(channel, Set.of());
+        for (Client subscriber : subscribers) {
+            subscriber.send(Arrays.asList("message", channel, message));
+        }
+        return subscribers.size();
+    }
+
+    static String resource(String name) {
+        try (InputStream stream = RedisStandIn.class.getResourceAsStream(name)) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String sha1(String source) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Status {
+        final String text;
+
+        Status(String text) {
+            this.text = text;
+        }
+    }
+
+    private static final class Error {
+        final String text;
+
+        Error(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * Several replies to one command, as SUBSCRIBE sends one per channel.
+     */
+    private static final class Multi {
+        final List<Object> replies;
+
+        Multi(List<Object> replies) {
+            this.replies = replies;
+        }
+    }
+
+    private final class Client implements Runnable {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        private final Set<String> channels = ConcurrentHashMap.newKeySet();
+
+        Client(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = socket.getOutputStream();
+        }
+
+        @Override
+        public void run() {
+            try {
+                List<String> command;
+                while ((command = read()) != null) {
+                    Object reply = execute(this, command);
+                    if (reply instanceof Multi) {
+                        for (Object part : ((Multi) reply).replies) {
+                            send(part);
+                        }
+                    } else {
+                        send(reply);
+                    }
+                }
+            } catch (IOException ignored) {
+                // Connection closed
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            for (String channel : channels) {
+                RedisStandIn.this.channels.getOrDefault(channel, Set.of()).remove(this);
+            }
+            clients.remove(this);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
+        }
+
+        synchronized void send(Object reply) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            write(buffer, reply);
+            try {
+                out.write(buffer.toByteArray());
+                out.flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void write(ByteArrayOutputStream buffer, Object reply) {
+            if (reply == null) {
+                buffer.writeBytes("$-1\r\n".getBytes(StandardCharsets.UTF_8));
+            } else if (reply instanceof Status) {
+                buffer.writeBytes(("+" + ((Status) reply).text + "\r\n").getBytes(StandardCharsets.UTF_8));
+            } else if (reply instanceof Error) {
+                buffer.writeBytes(("-" + ((Error) reply).text + "\r\n").getBytes(StandardCharsets.UTF_8));
+            } else if (reply instanceof Long) {
+                buffer.writeBytes((":" + reply + "\r\n").getBytes(StandardCharsets.UTF_8));
+            } else if (reply instanceof List) {
+                List<?> list = (List<?>) reply;
+                buffer.writeBytes(("*" + list.size() + "\r\n").getBytes(StandardCharsets.UTF_8));
+                for (Object item : list) {
+                    write(buffer, item);
+                }
+            } else {
+                byte[] bytes = reply.toString().getBytes(StandardCharsets.UTF_8);
+                buffer.writeBytes(("$" + bytes.length + "\r\n").getBytes(StandardCharsets.UTF_8));
+                buffer.writeBytes(bytes);
+                buffer.writeBytes("\r\n".getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        private List<String> read() throws IOException {
+            String header = line();
+            if (header == null) {
+                return null;
+            }
+            if (header.charAt(0) != '*') {
+                // Inline command
+                return Arrays.asList(header.trim().split("\\s+"));
+            }
+            int count = Integer.parseInt(header.substring(1));
+            List<String> command = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int length = Integer.parseInt(line().substring(1));
+                byte[] bytes = in.readNBytes(length + 2);
+                command.add(new String(bytes, 0, length, StandardCharsets.UTF_8));
+            }
+            return command;
+        }
+
+        private String line() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\r') {
+                    in.read();
+                    return line.toString(StandardCharsets.UTF_8);
+                }
+                line.write(b);
+            }
+            return null;
+        }
+    }
+}
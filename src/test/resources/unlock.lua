@@ -1,7 +0,0 @@
-local key = KEYS[1]
-local content = KEYS[2]
-local value = redis.call('get', key)
-if value == content then
-    return redis.call('del', key);
-end
-return 0;
\ No newline at end of file